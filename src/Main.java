@@ -1,14 +1,38 @@
+import api.DeskServer;
+import api.HttpApiServer;
 import models.Book;
 import models.Member;
 import models.Transaction;
+import services.AdmissionController;
 import services.AuthService;
 import services.BookService;
+import services.CirculationRollup;
+import services.DataTransferService;
+import services.InventoryTracker;
+import services.LoanDurationStats;
 import services.MemberService;
+import services.MutationPipeline;
+import services.PopularityTracker;
+import services.QueryService;
+import services.ReportEngine;
 import services.TransactionService;
+import utils.LogHistogram;
+import utils.ReportWriter;
+import utils.SpaceSaving;
 import utils.Validator;
 
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Main class - Entry point for Library Management System
@@ -21,11 +45,21 @@ public class Main {
     private static BookService bookService;
     private static MemberService memberService;
     private static TransactionService transactionService;
+    private static DataTransferService dataTransferService;
+    private static QueryService queryService;
     
     public static void main(String[] args) {
         // Initialize services
         initializeServices();
         
+        // Headless mode: serve the network front ends instead of the console menu
+        int httpPort = parsePort(args, "--http");
+        int deskPort = parsePort(args, "--desk");
+        if (httpPort >= 0 || deskPort >= 0) {
+            runServers(httpPort, deskPort);
+            return;
+        }
+        
         // Display welcome message
         displayWelcome();
         
@@ -53,6 +87,77 @@ public class Main {
         bookService = new BookService();
         memberService = new MemberService();
         transactionService = new TransactionService(bookService, memberService);
+        dataTransferService = new DataTransferService(bookService, memberService, transactionService);
+        queryService = new QueryService(bookService, memberService, transactionService);
+    }
+    
+    /**
+     * Port given after an option such as --http, or -1 if absent
+     */
+    private static int parsePort(String[] args, String option) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(option)) {
+                if (i + 1 < args.length && args[i + 1].matches("\\d{1,5}")) {
+                    return Integer.parseInt(args[i + 1]);
+                }
+                System.out.println("Error: " + option + " requires a port number!");
+                System.exit(1);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Serve the HTTP API and/or desk protocol until the process is stopped
+     * Both front ends share one mutation pipeline, so writes stay serialized,
+     * and one admission controller, so their limits are global
+     */
+    private static void runServers(int httpPort, int deskPort) {
+        MutationPipeline pipeline = new MutationPipeline(bookService, memberService, transactionService);
+        AdmissionController admission = new AdmissionController();
+        pipeline.start();
+        HttpApiServer httpServer = null;
+        DeskServer deskServer = null;
+        try {
+            if (httpPort >= 0) {
+                httpServer = new HttpApiServer(authService, bookService, memberService, transactionService, pipeline, admission, httpPort);
+                httpServer.start();
+                System.out.println("HTTP API listening on port " + httpServer.getPort());
+            }
+            if (deskPort >= 0) {
+                deskServer = new DeskServer(authService, bookService, memberService, transactionService, pipeline, admission, deskPort);
+                deskServer.start();
+                System.out.println("Desk protocol listening on port " + deskServer.getPort());
+            }
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            stopServers(httpServer, deskServer, pipeline);
+            return;
+        }
+        System.out.println("Press Ctrl+C to stop");
+        
+        HttpApiServer http = httpServer;
+        DeskServer desk = deskServer;
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopServers(http, desk, pipeline);
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void stopServers(HttpApiServer httpServer, DeskServer deskServer, MutationPipeline pipeline) {
+        if (httpServer != null) {
+            httpServer.stop();
+        }
+        if (deskServer != null) {
+            deskServer.stop();
+        }
+        pipeline.shutdown();
     }
     
     /**
@@ -111,7 +216,8 @@ public class Main {
         System.out.println("2. Member Management");
         System.out.println("3. Transaction Management");
         System.out.println("4. Reports");
-        System.out.println("5. Logout");
+        System.out.println("5. Import / Export Data");
+        System.out.println("6. Logout");
         System.out.println("========================================");
         System.out.print("Enter your choice: ");
         
@@ -131,6 +237,9 @@ public class Main {
                 showReportsMenu();
                 break;
             case "5":
+                showDataTransferMenu();
+                break;
+            case "6":
                 authService.logout();
                 System.out.println("Logged out successfully!");
                 break;
@@ -231,7 +340,7 @@ public class Main {
                 handleBookSearch();
                 break;
             case "5":
-                bookService.displayAllBooks();
+                displayBookList(bookService.getAllBooks(), "ALL BOOKS");
                 break;
             case "6":
                 bookService.displayAvailableBooks();
@@ -446,7 +555,7 @@ public class Main {
                 handleMemberSearch();
                 break;
             case "4":
-                memberService.displayAllMembers();
+                displayMemberList(memberService.getAllMembers(), "ALL MEMBERS");
                 break;
             case "5":
                 handleViewMemberDetails();
@@ -496,7 +605,7 @@ public class Main {
         }
         
         System.out.print("Member Type (STUDENT/FACULTY): ");
-        String memberType = scanner.nextLine().trim().toUpperCase();
+        String memberType = scanner.nextLine().trim().toUpperCase(Locale.ROOT);
         
         if (!Validator.isValidMemberType(memberType)) {
             System.out.println("Invalid member type! Must be STUDENT or FACULTY.");
@@ -538,7 +647,7 @@ public class Main {
         if (phone.isEmpty()) phone = existingMember.getPhone();
         
         System.out.print("Member Type [" + existingMember.getMemberType() + "]: ");
-        String memberType = scanner.nextLine().trim().toUpperCase();
+        String memberType = scanner.nextLine().trim().toUpperCase(Locale.ROOT);
         if (memberType.isEmpty()) memberType = existingMember.getMemberType();
         
         Member updatedMember = new Member(memberId, name, email, phone, memberType);
@@ -605,7 +714,9 @@ public class Main {
         System.out.println("3. View All Transactions");
         System.out.println("4. View Issued Books");
         System.out.println("5. View Member Transactions");
-        System.out.println("6. Back");
+        System.out.println("6. Issue Multiple Books");
+        System.out.println("7. Return Multiple Books");
+        System.out.println("8. Back");
         System.out.println("========================================");
         System.out.print("Enter your choice: ");
         
@@ -619,7 +730,7 @@ public class Main {
                 handleReturnBook();
                 break;
             case "3":
-                transactionService.displayAllTransactions();
+                displayTransactionList(transactionService.getAllTransactions(), "ALL TRANSACTIONS");
                 break;
             case "4":
                 displayTransactionList(transactionService.getIssuedTransactions(), "Currently Issued Books");
@@ -628,6 +739,12 @@ public class Main {
                 handleViewMemberTransactions();
                 break;
             case "6":
+                handleIssueMultipleBooks();
+                break;
+            case "7":
+                handleReturnMultipleBooks();
+                break;
+            case "8":
                 break;
             default:
                 System.out.println("Invalid choice!");
@@ -711,6 +828,31 @@ public class Main {
         }
     }
     
+    private static void handleIssueMultipleBooks() {
+        System.out.println("\n========================================");
+        System.out.println("   ISSUE MULTIPLE BOOKS");
+        System.out.println("========================================");
+        
+        System.out.print("Enter Member ID: ");
+        String memberId = scanner.nextLine().trim();
+        
+        System.out.print("Enter Book IDs (comma separated): ");
+        List<String> bookIds = parseIdList(scanner.nextLine());
+        
+        transactionService.issueBooks(memberId, bookIds);
+    }
+    
+    private static void handleReturnMultipleBooks() {
+        System.out.println("\n========================================");
+        System.out.println("   RETURN MULTIPLE BOOKS");
+        System.out.println("========================================");
+        
+        System.out.print("Enter Transaction IDs (comma separated): ");
+        List<String> transactionIds = parseIdList(scanner.nextLine());
+        
+        transactionService.returnBooks(transactionIds);
+    }
+    
     private static void handleViewMemberTransactions() {
         System.out.print("Enter Member ID: ");
         String memberId = scanner.nextLine().trim();
@@ -730,7 +872,14 @@ public class Main {
         System.out.println("3. All Members Report");
         System.out.println("4. All Transactions Report");
         System.out.println("5. Statistics");
-        System.out.println("6. Back");
+        System.out.println("6. Most Borrowed Books");
+        System.out.println("7. Unique Borrowers");
+        System.out.println("8. Circulation Trends");
+        System.out.println("9. Loan Durations");
+        System.out.println("10. History Summary");
+        System.out.println("11. Custom Query");
+        System.out.println("12. Inventory Utilization");
+        System.out.println("13. Back");
         System.out.println("========================================");
         System.out.print("Enter your choice: ");
         
@@ -741,22 +890,341 @@ public class Main {
                 transactionService.displayOverdueReport();
                 break;
             case "2":
-                bookService.displayAllBooks();
+                displayBookList(bookService.getAllBooks(), "ALL BOOKS");
                 break;
             case "3":
-                memberService.displayAllMembers();
+                displayMemberList(memberService.getAllMembers(), "ALL MEMBERS");
                 break;
             case "4":
-                transactionService.displayAllTransactions();
+                displayTransactionList(transactionService.getAllTransactions(), "ALL TRANSACTIONS");
                 break;
             case "5":
                 displayStatistics();
                 break;
             case "6":
+                handleMostBorrowedReport();
+                break;
+            case "7":
+                displayUniqueBorrowersReport();
+                break;
+            case "8":
+                handleTrendReport();
+                break;
+            case "9":
+                displayLoanDurationReport();
+                break;
+            case "10":
+                displayHistorySummary();
+                break;
+            case "11":
+                handleCustomQuery();
+                break;
+            case "12":
+                handleInventoryReport();
+                break;
+            case "13":
+                break;
+            default:
+                System.out.println("Invalid choice!");
+        }
+    }
+    
+    private static void handleMostBorrowedReport() {
+        System.out.println("\nSelect period:");
+        System.out.println("1. Today");
+        System.out.println("2. This Week");
+        System.out.println("3. This Term");
+        System.out.print("Enter choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        PopularityTracker.Window window;
+        switch (choice) {
+            case "1":
+                window = PopularityTracker.Window.DAY;
+                break;
+            case "2":
+                window = PopularityTracker.Window.WEEK;
+                break;
+            case "3":
+                window = PopularityTracker.Window.TERM;
                 break;
             default:
                 System.out.println("Invalid choice!");
+                return;
+        }
+        
+        PopularityTracker popularity = transactionService.getPopularityTracker();
+        List<SpaceSaving.Entry<String>> top = popularity.getTopBooks(window, 10);
+        System.out.println("\n========================================");
+        System.out.println("   MOST BORROWED - " + window.getLabel().toUpperCase());
+        System.out.println("   (since " + popularity.getWindowStart(window) + ", " + 
+                         popularity.getIssueCount(window) + " issues)");
+        System.out.println("========================================");
+        if (top.isEmpty()) {
+            System.out.println("No books issued in this period.");
+        }
+        for (int i = 0; i < top.size(); i++) {
+            SpaceSaving.Entry<String> entry = top.get(i);
+            Book book = bookService.findBookById(entry.getKey());
+            String title = book != null ? book.getTitle() : "(removed)";
+            String count = entry.getError() > 0 ? "~" + entry.getCount() : Long.toString(entry.getCount());
+            System.out.println((i + 1) + ". " + entry.getKey() + " - " + title + " | Issues: " + count);
+        }
+        System.out.println("========================================");
+    }
+    
+    private static void displayUniqueBorrowersReport() {
+        List<String> categories = bookService.getAllCategories();
+        System.out.println("\n========================================");
+        System.out.println("   UNIQUE BORROWERS (estimated, ±7%)");
+        System.out.println("========================================");
+        if (categories.isEmpty()) {
+            System.out.println("No books in the library.");
+        }
+        for (String category : categories) {
+            System.out.println(category + ": " + transactionService.getUniqueBorrowersByCategory(category));
+        }
+        System.out.println("========================================");
+    }
+    
+    private static void handleTrendReport() {
+        System.out.println("\nSelect period:");
+        System.out.println("1. Daily (last 14 days)");
+        System.out.println("2. Weekly (last 8 weeks)");
+        System.out.println("3. Monthly (last 6 months)");
+        System.out.print("Enter choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        LocalDate today = LocalDate.now();
+        List<LocalDate> starts = new ArrayList<>();
+        ChronoUnit unit;
+        String label;
+        switch (choice) {
+            case "1":
+                unit = ChronoUnit.DAYS;
+                label = "DAILY";
+                for (int i = 13; i >= 0; i--) {
+                    starts.add(today.minusDays(i));
+                }
+                break;
+            case "2":
+                unit = ChronoUnit.WEEKS;
+                label = "WEEKLY";
+                LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                for (int i = 7; i >= 0; i--) {
+                    starts.add(monday.minusWeeks(i));
+                }
+                break;
+            case "3":
+                unit = ChronoUnit.MONTHS;
+                label = "MONTHLY";
+                LocalDate first = today.withDayOfMonth(1);
+                for (int i = 5; i >= 0; i--) {
+                    starts.add(first.minusMonths(i));
+                }
+                break;
+            default:
+                System.out.println("Invalid choice!");
+                return;
+        }
+        
+        CirculationRollup rollup = transactionService.getCirculationRollup();
+        System.out.println("\n==============================================================");
+        System.out.println("   CIRCULATION TRENDS - " + label);
+        System.out.println("==============================================================");
+        System.out.println(String.format("%-12s %7s %9s %8s %6s %10s", 
+                                         "Period", "Issued", "Returned", "Overdue", "Late", "Fines"));
+        for (LocalDate start : starts) {
+            LocalDate end = start.plus(1, unit).minusDays(1);
+            CirculationRollup.Totals totals = rollup.query(start, end);
+            System.out.println(String.format("%-12s %7d %9d %8d %6d %10.2f", 
+                                             start, totals.getIssued(), totals.getReturned(), 
+                                             totals.getOverdue(), totals.getLateReturns(), totals.getFines()));
+        }
+        System.out.println("==============================================================");
+        System.out.println("Overdue: loans that passed their due date in the period.");
+        System.out.println("Late: returns made after the due date. Fines in ₹.");
+    }
+    
+    private static void displayLoanDurationReport() {
+        LoanDurationStats durations = transactionService.getLoanDurationStats();
+        System.out.println("\n==============================================================");
+        System.out.println("   LOAN DURATIONS (days, returned loans)");
+        System.out.println("==============================================================");
+        LogHistogram all = durations.getHistogram(null, null);
+        if (all.getCount() == 0) {
+            System.out.println("No returned loans yet.");
+            System.out.println("==============================================================");
+            return;
         }
+        
+        System.out.println(String.format("%-20s %7s %6s %6s %6s %6s", "Category", "Loans", "p50", "p90", "p99", "Max"));
+        for (String category : durations.getCategories()) {
+            printDurationRow(category, durations.getHistogram(category, null));
+        }
+        System.out.println("--------------------------------------------------------------");
+        System.out.println(String.format("%-20s %7s %6s %6s %6s %6s", "Member Type", "Loans", "p50", "p90", "p99", "Max"));
+        for (String memberType : durations.getMemberTypes()) {
+            printDurationRow(memberType, durations.getHistogram(null, memberType));
+        }
+        System.out.println("--------------------------------------------------------------");
+        printDurationRow("All loans", all);
+        System.out.println("==============================================================");
+    }
+    
+    private static void printDurationRow(String label, LogHistogram histogram) {
+        System.out.println(String.format("%-20s %7d %6d %6d %6d %6d", label, histogram.getCount(), 
+                                         histogram.getPercentile(50), histogram.getPercentile(90), 
+                                         histogram.getPercentile(99), histogram.getMax()));
+    }
+    
+    private static void displayHistorySummary() {
+        ReportEngine.HistoryReport report = transactionService.getHistoryReport();
+        System.out.println("\n========================================");
+        System.out.println("   HISTORY SUMMARY");
+        System.out.println("========================================");
+        System.out.println("Transactions: " + report.getTransactionCount());
+        if (report.getTransactionCount() == 0) {
+            System.out.println("========================================");
+            return;
+        }
+        
+        System.out.println("\nFines by month:");
+        for (Map.Entry<YearMonth, Long> month : report.getFinesByMonth().entrySet()) {
+            System.out.println("  " + month.getKey() + ": ₹" + String.format("%.2f", month.getValue() / 100.0));
+        }
+        
+        System.out.println("\nTop members by loans:");
+        report.getMemberTotals().entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getLoans(), a.getValue().getLoans()))
+                .limit(10)
+                .forEach(entry -> System.out.println("  " + entry.getKey() + 
+                        " - Loans: " + entry.getValue().getLoans() + 
+                        " | Active: " + entry.getValue().getActive() + 
+                        " | Overdue: " + entry.getValue().getOverdue() + 
+                        " | Fines: ₹" + String.format("%.2f", entry.getValue().getFines())));
+        
+        System.out.println("\nTop books by loans:");
+        report.getBookLoans().entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                .limit(10)
+                .forEach(entry -> {
+                    Book book = bookService.findBookById(entry.getKey());
+                    String title = book != null ? book.getTitle() : "(removed)";
+                    System.out.println("  " + entry.getKey() + " - " + title + " | Loans: " + entry.getValue());
+                });
+        System.out.println("========================================");
+    }
+    
+    private static void handleInventoryReport() {
+        System.out.print("Flag titles out of stock for more than how many days? (default 7): ");
+        String input = scanner.nextLine().trim();
+        int days = 7;
+        if (!input.isEmpty()) {
+            if (!Validator.isNonNegativeInteger(input)) {
+                System.out.println("Error: Invalid number of days!");
+                return;
+            }
+            days = Integer.parseInt(input);
+        }
+        
+        InventoryTracker inventory = bookService.getInventoryTracker();
+        InventoryTracker.Utilization library = inventory.getLibraryUtilization();
+        System.out.println("\n========================================");
+        System.out.println("   INVENTORY UTILIZATION");
+        System.out.println("========================================");
+        System.out.println("Library: " + formatUtilization(library));
+        
+        System.out.println("\nBy category:");
+        for (Map.Entry<String, InventoryTracker.Utilization> category : inventory.getCategoryUtilization().entrySet()) {
+            System.out.println("  " + category.getKey() + ": " + formatUtilization(category.getValue()));
+        }
+        
+        System.out.println("\nMost utilized titles:");
+        for (InventoryTracker.TitleStatus title : inventory.getMostUtilized(10)) {
+            if (title.getIssued() == 0) {
+                break;
+            }
+            System.out.println("  " + title.getBookId() + " - " + bookTitle(title.getBookId()) + 
+                    " | " + title.getIssued() + "/" + title.getTotal() + " out (" + 
+                    String.format("%.0f%%", title.getUtilization() * 100) + ")");
+        }
+        
+        List<InventoryTracker.TitleStatus> outOfStock = inventory.getTitlesAtZero(days);
+        System.out.println("\nOut of stock for more than " + days + " days:");
+        if (outOfStock.isEmpty()) {
+            System.out.println("  None");
+        }
+        for (InventoryTracker.TitleStatus title : outOfStock) {
+            System.out.println("  " + title.getBookId() + " - " + bookTitle(title.getBookId()) + 
+                    " | " + String.format("%.1f", title.getDaysAtZero()) + " days now, " + 
+                    String.format("%.1f", title.getTotalDaysAtZero()) + " days in total (" + 
+                    String.format("%.0f%%", title.getShareAtZero() * 100) + " of tracked time)");
+        }
+        System.out.println("========================================");
+    }
+    
+    private static String formatUtilization(InventoryTracker.Utilization utilization) {
+        return utilization.getIssued() + "/" + utilization.getTotal() + " copies out (" + 
+               String.format("%.1f%%", utilization.getRate() * 100) + ") | Titles out of stock: " + 
+               utilization.getTitlesAtZero();
+    }
+    
+    private static String bookTitle(String bookId) {
+        Book book = bookService.findBookById(bookId);
+        return book != null ? book.getTitle() : "(removed)";
+    }
+    
+    private static void handleCustomQuery() {
+        System.out.println("\n========================================");
+        System.out.println("   CUSTOM QUERY");
+        System.out.println("========================================");
+        System.out.println("Syntax: [explain] books|members|transactions");
+        System.out.println("        [where field op value [and ...]] [group by field] [limit n]");
+        System.out.println("Operators: = != < <= > >= ~ (contains)");
+        System.out.println("Dates: yyyy-MM-dd, today, today-N, today+N");
+        System.out.println("Example: transactions where status=ISSUED and dueDate < today-7 group by memberId");
+        for (String entity : new String[] {"books", "members", "transactions"}) {
+            System.out.println("Fields of " + entity + ": " + String.join(", ", queryService.getFieldNames(entity)));
+        }
+        System.out.print("\nQuery: ");
+        String text = scanner.nextLine().trim();
+        if (text.isEmpty()) {
+            System.out.println("Error: Query cannot be empty!");
+            return;
+        }
+        
+        QueryService.Result<?> result = queryService.execute(text);
+        if (result == null) {
+            return;
+        }
+        if (!result.isExecuted()) {
+            System.out.println("\n" + result.getPlan());
+            return;
+        }
+        
+        if (result.getGroups() != null) {
+            System.out.println("\n========================================");
+            System.out.println("   QUERY RESULTS");
+            System.out.println("========================================");
+            long total = 0;
+            for (Map.Entry<String, Long> group : result.getGroups().entrySet()) {
+                System.out.println(group.getKey() + ": " + group.getValue());
+                total += group.getValue();
+            }
+            System.out.println("========================================");
+            System.out.println("Groups: " + result.getGroups().size() + " | Rows: " + total);
+        } else {
+            displayQueryRows(result);
+        }
+    }
+    
+    private static <T> void displayQueryRows(QueryService.Result<T> result) {
+        if (result.getRows().isEmpty()) {
+            System.out.println("No matching rows.");
+            return;
+        }
+        ReportWriter.page(result.getRows(), "QUERY RESULTS", result.getFormatter(), scanner);
     }
     
     private static void displayStatistics() {
@@ -768,27 +1236,83 @@ public class Main {
         System.out.println("Total Members: " + memberService.getAllMembers().size());
         System.out.println("Total Transactions: " + transactionService.getAllTransactions().size());
         System.out.println("Currently Issued: " + transactionService.getIssuedTransactions().size());
-        System.out.println("Overdue Books: " + transactionService.getOverdueTransactions().size());
+        System.out.println("Overdue Books: " + transactionService.countOverdueTransactions());
         System.out.println("Total Fines: ₹" + String.format("%.2f", transactionService.calculateTotalFines()));
         System.out.println("========================================");
     }
     
+    // ==================== IMPORT / EXPORT ====================
+    
+    private static void showDataTransferMenu() {
+        System.out.println("\n========================================");
+        System.out.println("   IMPORT / EXPORT DATA");
+        System.out.println("========================================");
+        System.out.println("1. Export Data");
+        System.out.println("2. Import Data");
+        System.out.println("3. Back");
+        System.out.println("========================================");
+        System.out.print("Enter your choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        if (choice.equals("3")) {
+            return;
+        }
+        if (!choice.equals("1") && !choice.equals("2")) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        
+        System.out.println("1. Books  2. Members  3. Transactions");
+        System.out.print("Data to " + (choice.equals("1") ? "export" : "import") + ": ");
+        DataTransferService.Entity entity;
+        switch (scanner.nextLine().trim()) {
+            case "1":
+                entity = DataTransferService.Entity.BOOKS;
+                break;
+            case "2":
+                entity = DataTransferService.Entity.MEMBERS;
+                break;
+            case "3":
+                entity = DataTransferService.Entity.TRANSACTIONS;
+                break;
+            default:
+                System.out.println("Invalid choice!");
+                return;
+        }
+        
+        System.out.print("File (.csv or .json): ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            System.out.println("Error: File name cannot be empty!");
+            return;
+        }
+        
+        if (choice.equals("1")) {
+            dataTransferService.exportData(entity, path);
+        } else {
+            dataTransferService.importData(entity, path);
+        }
+    }
+    
     // ==================== HELPER METHODS ====================
     
+    private static List<String> parseIdList(String input) {
+        List<String> ids = new ArrayList<>();
+        for (String id : input.split(",")) {
+            if (!id.trim().isEmpty()) {
+                ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+    
     private static void displayBookList(List<Book> books, String title) {
         if (books.isEmpty()) {
             System.out.println("\nNo books found.");
             return;
         }
         
-        System.out.println("\n========================================");
-        System.out.println("   " + title);
-        System.out.println("========================================");
-        for (Book book : books) {
-            System.out.println(book);
-        }
-        System.out.println("========================================");
-        System.out.println("Total: " + books.size());
+        ReportWriter.page(books, title, Book::appendTo, scanner);
     }
     
     private static void displayMemberList(List<Member> members, String title) {
@@ -797,14 +1321,7 @@ public class Main {
             return;
         }
         
-        System.out.println("\n========================================");
-        System.out.println("   " + title);
-        System.out.println("========================================");
-        for (Member member : members) {
-            System.out.println(member);
-        }
-        System.out.println("========================================");
-        System.out.println("Total: " + members.size());
+        ReportWriter.page(members, title, Member::appendTo, scanner);
     }
     
     private static void displayTransactionList(List<Transaction> transactions, String title) {
@@ -813,13 +1330,6 @@ public class Main {
             return;
         }
         
-        System.out.println("\n========================================");
-        System.out.println("   " + title);
-        System.out.println("========================================");
-        for (Transaction txn : transactions) {
-            System.out.println(txn);
-        }
-        System.out.println("========================================");
-        System.out.println("Total: " + transactions.size());
+        ReportWriter.page(transactions, title, Transaction::appendTo, scanner);
     }
 }
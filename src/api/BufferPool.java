@@ -0,0 +1,44 @@
+package api;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * BufferPool recycles direct ByteBuffers of one fixed size
+ * Direct buffers are costly to allocate and are only freed by the GC, so
+ * connections borrow them from here and hand them back when they close.
+ * Not thread-safe: meant to be owned by a single event-loop thread.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    
+    /**
+     * Borrow a cleared buffer, allocating one if the pool is empty
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+    
+    /**
+     * Return a buffer; extras beyond the pool limit are left to the GC
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || free.size() >= maxPooled) {
+            return;
+        }
+        buffer.clear();
+        free.addFirst(buffer);
+    }
+    
+    public int getPooledCount() {
+        return free.size();
+    }
+}
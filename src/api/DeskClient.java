@@ -0,0 +1,215 @@
+package api;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DeskClient talks DeskProtocol to a DeskServer over one blocking connection
+ * Used by the desk terminals; main() doubles as a latency benchmark:
+ *
+ *   java api.DeskClient [host] [port] [requests] [bookId]
+ */
+public class DeskClient implements Closeable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(DeskProtocol.MAX_FRAME + DeskProtocol.HEADER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(DeskProtocol.MAX_FRAME + DeskProtocol.HEADER_SIZE);
+    private int nextRequestId;
+    
+    /**
+     * Decoded response: status plus the fields of an OK reply, in wire order
+     */
+    public static class Reply {
+        private final byte status;
+        private final List<Object> fields;
+        
+        Reply(byte status, List<Object> fields) {
+            this.status = status;
+            this.fields = fields;
+        }
+        
+        public boolean isOk() {
+            return status == DeskProtocol.OK;
+        }
+        
+        public byte getStatus() {
+            return status;
+        }
+        
+        public List<Object> getFields() {
+            return fields;
+        }
+        
+        @Override
+        public String toString() {
+            return DeskProtocol.statusName(status) + (fields.isEmpty() ? "" : " " + fields);
+        }
+    }
+    
+    public DeskClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+    }
+    
+    // ============ REQUESTS ============
+    
+    public Reply login(String username, String password) throws IOException {
+        return call(DeskProtocol.LOGIN, username, password);
+    }
+    
+    public Reply lookupBook(String bookId) throws IOException {
+        return call(DeskProtocol.LOOKUP_BOOK, bookId);
+    }
+    
+    public Reply lookupIsbn(String isbn) throws IOException {
+        return call(DeskProtocol.LOOKUP_ISBN, isbn);
+    }
+    
+    public Reply memberStatus(String memberId) throws IOException {
+        return call(DeskProtocol.MEMBER_STATUS, memberId);
+    }
+    
+    public Reply issueBook(String bookId, String memberId) throws IOException {
+        return call(DeskProtocol.ISSUE, bookId, memberId);
+    }
+    
+    public Reply returnBook(String transactionId) throws IOException {
+        return call(DeskProtocol.RETURN, transactionId);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    // ============ WIRE ============
+    
+    private Reply call(byte opcode, String... args) throws IOException {
+        int requestId = ++nextRequestId;
+        out.clear();
+        int start = DeskProtocol.beginFrame(out);
+        out.put(opcode).putInt(requestId);
+        for (String arg : args) {
+            DeskProtocol.putString(out, arg);
+        }
+        DeskProtocol.endFrame(out, start);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        
+        ByteBuffer frame = readFrame();
+        byte status = frame.get();
+        if (frame.getInt() != requestId) {
+            throw new IOException("Response does not match request " + requestId);
+        }
+        List<Object> fields = new ArrayList<>();
+        if (status == DeskProtocol.OK) {
+            decode(opcode, frame, fields);
+        }
+        return new Reply(status, fields);
+    }
+    
+    private ByteBuffer readFrame() throws IOException {
+        in.clear().limit(DeskProtocol.HEADER_SIZE);
+        fill();
+        int length = in.getInt(0);
+        if (length <= 0 || length > DeskProtocol.MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        in.limit(DeskProtocol.HEADER_SIZE + length);
+        fill();
+        in.position(DeskProtocol.HEADER_SIZE);
+        return in;
+    }
+    
+    private void fill() throws IOException {
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+    
+    private static void decode(byte opcode, ByteBuffer frame, List<Object> fields) {
+        switch (opcode) {
+            case DeskProtocol.LOOKUP_BOOK:
+            case DeskProtocol.LOOKUP_ISBN:
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(frame.getInt());
+                fields.add(frame.getInt());
+                break;
+            case DeskProtocol.MEMBER_STATUS:
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(frame.getInt());
+                fields.add(frame.getInt());
+                fields.add(frame.getInt());
+                break;
+            case DeskProtocol.ISSUE:
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(DeskProtocol.getString(frame));
+                break;
+            case DeskProtocol.RETURN:
+                fields.add(DeskProtocol.getString(frame));
+                fields.add(frame.getLong());
+                break;
+            case DeskProtocol.LOGIN:
+                fields.add(DeskProtocol.getString(frame));
+                break;
+            default:
+                break;
+        }
+    }
+    
+    // ============ BENCHMARK ============
+    
+    /**
+     * Time back-to-back book lookups and print latency percentiles
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 9090;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        String bookId = args.length > 3 ? args[3] : "B001";
+        
+        try (DeskClient client = new DeskClient(host, port)) {
+            System.out.println("Lookup " + bookId + ": " + client.lookupBook(bookId));
+            
+            for (int i = 0; i < Math.min(requests, 20_000); i++) {
+                client.lookupBook(bookId); // warm up
+            }
+            
+            long[] latencies = new long[requests];
+            long started = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                long begin = System.nanoTime();
+                client.lookupBook(bookId);
+                latencies[i] = System.nanoTime() - begin;
+            }
+            long elapsed = System.nanoTime() - started;
+            
+            Arrays.sort(latencies);
+            System.out.println("Requests:   " + requests);
+            System.out.println("Throughput: " + String.format("%.0f req/s", requests / (elapsed / 1e9)));
+            System.out.println("p50:        " + micros(latencies, 0.50));
+            System.out.println("p99:        " + micros(latencies, 0.99));
+            System.out.println("p99.9:      " + micros(latencies, 0.999));
+            System.out.println("max:        " + micros(latencies, 1.0));
+        }
+    }
+    
+    private static String micros(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return String.format("%.1f us", sorted[Math.max(0, index)] / 1000.0);
+    }
+}
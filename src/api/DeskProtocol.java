@@ -0,0 +1,114 @@
+package api;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DeskProtocol defines the binary wire format used by desk terminals
+ *
+ * Every frame is a 4-byte big-endian length followed by that many bytes.
+ *   Request:  opcode (1) | requestId (4) | arguments
+ *   Response: status (1) | requestId (4) | fields (only when status is OK)
+ * Strings are a 2-byte length followed by UTF-8 bytes; numbers are
+ * big-endian ints and longs. Strings are cut to MAX_STRING bytes (at a
+ * character boundary), so every message fits in MAX_FRAME. Request IDs are echoed back so a client can
+ * pipeline several requests on one connection.
+ *
+ * Requests and their OK responses:
+ *   LOOKUP_BOOK   bookId            -> bookId, title, author, available, total
+ *   LOOKUP_ISBN   isbn              -> same as LOOKUP_BOOK
+ *   MEMBER_STATUS memberId          -> memberId, name, type, borrowed, max, overdue
+ *   ISSUE         bookId, memberId  -> transactionId, dueDate
+ *   RETURN        transactionId     -> transactionId, fine (long, in paise)
+ *   LOGIN         username, password -> token
+ *
+ * Book lookups are open; the other requests answer UNAUTHORIZED until the
+ * connection has logged in.
+ */
+public final class DeskProtocol {
+    public static final int MAX_FRAME = 4096;
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_STRING = 1024; // no message has more than three strings
+    
+    // Opcodes
+    public static final byte LOOKUP_BOOK = 1;
+    public static final byte LOOKUP_ISBN = 2;
+    public static final byte MEMBER_STATUS = 3;
+    public static final byte ISSUE = 4;
+    public static final byte RETURN = 5;
+    public static final byte LOGIN = 6;
+    
+    // Status codes
+    public static final byte OK = 0;
+    public static final byte NOT_FOUND = 1;
+    public static final byte REJECTED = 2;
+    public static final byte BAD_REQUEST = 3;
+    public static final byte BUSY = 4;
+    public static final byte ERROR = 5;
+    public static final byte UNAUTHORIZED = 6;
+    
+    private DeskProtocol() {
+    }
+    
+    /**
+     * Write a length-prefixed UTF-8 string, cut to MAX_STRING bytes
+     */
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING);
+        while (length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--; // don't split a multi-byte character
+        }
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+    
+    /**
+     * Read a length-prefixed UTF-8 string
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Reserve space for the length prefix; returns its position for endFrame
+     */
+    public static int beginFrame(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        return start;
+    }
+    
+    /**
+     * Fill in the length prefix of a frame started with beginFrame
+     */
+    public static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - HEADER_SIZE);
+    }
+    
+    public static String statusName(byte status) {
+        switch (status) {
+            case OK:
+                return "OK";
+            case NOT_FOUND:
+                return "NOT_FOUND";
+            case REJECTED:
+                return "REJECTED";
+            case BAD_REQUEST:
+                return "BAD_REQUEST";
+            case BUSY:
+                return "BUSY";
+            case UNAUTHORIZED:
+                return "UNAUTHORIZED";
+            default:
+                return "ERROR";
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package api;
+
+import models.Book;
+import models.Member;
+import models.Session;
+import models.Transaction;
+import services.AdmissionController;
+import services.AdmissionController.OperationClass;
+import services.AuthService;
+import services.BookService;
+import services.MemberService;
+import services.MutationPipeline;
+import services.TransactionService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * DeskServer serves the binary DeskProtocol to barcode-scanner terminals
+ * A single thread runs a Selector loop over all connections. Lookups are
+ * answered inline from the in-memory indexes; issue and return are handed
+ * to the MutationPipeline and their replies are queued back onto the loop
+ * when persistence completes, so the loop itself never waits on disk.
+ * Connection buffers are direct and come from a BufferPool.
+ * Each connection logs in once and keeps its AuthService session token.
+ * Requests share the AdmissionController limits with the HTTP API, but
+ * never wait for a slot: a saturated class is answered with BUSY.
+ */
+public class DeskServer {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    
+    private final AuthService authService;
+    private final BookService bookService;
+    private final MemberService memberService;
+    private final TransactionService transactionService;
+    private final MutationPipeline pipeline;
+    private final AdmissionController admission;
+    private final int port;
+    
+    private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final ByteBuffer scratch = ByteBuffer.allocateDirect(DeskProtocol.MAX_FRAME + DeskProtocol.HEADER_SIZE);
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread loop;
+    private volatile boolean running;
+    
+    /**
+     * Per-connection state, only touched by the event loop
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in;
+        final ByteBuffer out;                                  // kept in fill mode
+        final ArrayDeque<byte[]> overflow = new ArrayDeque<>(); // replies that did not fit in out
+        SelectionKey key;
+        String sessionToken;
+        
+        Connection(SocketChannel channel, ByteBuffer in, ByteBuffer out) {
+            this.channel = channel;
+            this.in = in;
+            this.out = out;
+        }
+    }
+    
+    public DeskServer(AuthService authService, BookService bookService, MemberService memberService,
+                      TransactionService transactionService, MutationPipeline pipeline,
+                      AdmissionController admission, int port) {
+        this.authService = authService;
+        this.bookService = bookService;
+        this.memberService = memberService;
+        this.transactionService = transactionService;
+        this.pipeline = pipeline;
+        this.admission = admission;
+        this.port = port;
+    }
+    
+    /**
+     * Bind the port and start the event loop thread
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        
+        running = true;
+        loop = new Thread(this::runLoop, "desk-selector");
+        loop.setDaemon(true);
+        loop.start();
+    }
+    
+    /**
+     * Stop the event loop and close every connection
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loop = null;
+    }
+    
+    public int getPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : port;
+    }
+    
+    // ============ EVENT LOOP ============
+    
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                runCompletions();
+                
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(connection);
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() != null) {
+                            close((Connection) key.attachment());
+                        }
+                    } catch (RuntimeException e) {
+                        // A bug handling one connection must not take down every desk
+                        System.err.println("Error serving desk connection: " + e);
+                        if (key.attachment() != null) {
+                            close((Connection) key.attachment());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error in desk server loop: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null) {
+                    close((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing desk server: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel, bufferPool.acquire(), bufferPool.acquire());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+    
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection);
+            return;
+        }
+        processFrames(connection);
+        flush(connection);
+    }
+    
+    /**
+     * Handle every complete frame in the input buffer
+     * Stops early while replies are backed up, so a client that never reads
+     * its responses cannot make the server buffer without limit
+     */
+    private void processFrames(Connection connection) {
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= DeskProtocol.HEADER_SIZE && connection.overflow.isEmpty()) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > DeskProtocol.MAX_FRAME) {
+                close(connection); // not speaking our protocol
+                return;
+            }
+            if (in.remaining() < DeskProtocol.HEADER_SIZE + length) {
+                break;
+            }
+            int end = in.position() + DeskProtocol.HEADER_SIZE + length;
+            int limit = in.limit();
+            in.position(in.position() + DeskProtocol.HEADER_SIZE).limit(end);
+            handleRequest(connection, in);
+            in.limit(limit).position(end);
+        }
+        in.compact();
+    }
+    
+    private void write(Connection connection) throws IOException {
+        flush(connection);
+        if (connection.overflow.isEmpty() && isOpen(connection)) {
+            processFrames(connection); // resume requests paused by back-pressure
+            flush(connection);
+        }
+    }
+    
+    /**
+     * Write as much pending output as the socket takes, then adjust interest
+     */
+    private void flush(Connection connection) throws IOException {
+        if (!isOpen(connection)) {
+            return;
+        }
+        ByteBuffer out = connection.out;
+        while (true) {
+            out.flip();
+            connection.channel.write(out);
+            boolean drained = !out.hasRemaining();
+            out.compact();
+            if (!drained) {
+                break;
+            }
+            byte[] next = connection.overflow.peekFirst();
+            if (next == null || next.length > out.remaining()) {
+                break;
+            }
+            out.put(connection.overflow.pollFirst());
+        }
+        
+        updateInterest(connection);
+    }
+    
+    /**
+     * Wait for writability while output is pending, and stop reading
+     * altogether while replies are backed up in the overflow queue
+     */
+    private void updateInterest(Connection connection) {
+        int ops;
+        if (!connection.overflow.isEmpty()) {
+            ops = SelectionKey.OP_WRITE;
+        } else if (connection.out.position() > 0) {
+            ops = SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        } else {
+            ops = SelectionKey.OP_READ;
+        }
+        connection.key.interestOps(ops);
+    }
+    
+    private static boolean isOpen(Connection connection) {
+        return connection.key != null && connection.key.isValid();
+    }
+    
+    private void close(Connection connection) {
+        if (connection.key == null) {
+            return; // already closed
+        }
+        connection.key.cancel();
+        connection.key = null;
+        authService.closeSession(connection.sessionToken);
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+        bufferPool.release(connection.in);
+        bufferPool.release(connection.out);
+    }
+    
+    /**
+     * Run replies handed back by the pipeline
+     */
+    private void runCompletions() {
+        Runnable completion;
+        while ((completion = completions.poll()) != null) {
+            try {
+                completion.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error completing desk request: " + e);
+            }
+        }
+    }
+    
+    // ============ DISPATCH ============
+    
+    private void handleRequest(Connection connection, ByteBuffer request) {
+        int requestId = 0;
+        OperationClass operation = null;
+        boolean pending = false; // slot is released when the pipeline finishes
+        try {
+            byte opcode = request.get();
+            requestId = request.getInt();
+            OperationClass requested = opcode == DeskProtocol.ISSUE || opcode == DeskProtocol.RETURN
+                    ? OperationClass.WRITE : OperationClass.LOOKUP;
+            if (!admission.tryAcquireNow(requested)) {
+                replyStatus(connection, requestId, DeskProtocol.BUSY);
+                return;
+            }
+            operation = requested;
+            
+            switch (opcode) {
+                case DeskProtocol.LOOKUP_BOOK:
+                    replyBook(connection, requestId, bookService.findBookById(DeskProtocol.getString(request)));
+                    break;
+                case DeskProtocol.LOOKUP_ISBN:
+                    replyBook(connection, requestId, bookService.searchByIsbn(DeskProtocol.getString(request)));
+                    break;
+                case DeskProtocol.LOGIN:
+                    login(connection, requestId, DeskProtocol.getString(request), DeskProtocol.getString(request));
+                    break;
+                case DeskProtocol.MEMBER_STATUS:
+                    if (!isAuthenticated(connection, requestId)) {
+                        break;
+                    }
+                    replyMember(connection, requestId, DeskProtocol.getString(request));
+                    break;
+                case DeskProtocol.ISSUE:
+                    if (!isAuthenticated(connection, requestId)) {
+                        break;
+                    }
+                    pending = issue(connection, requestId, DeskProtocol.getString(request), DeskProtocol.getString(request));
+                    break;
+                case DeskProtocol.RETURN:
+                    if (!isAuthenticated(connection, requestId)) {
+                        break;
+                    }
+                    pending = giveBack(connection, requestId, DeskProtocol.getString(request));
+                    break;
+                default:
+                    replyStatus(connection, requestId, DeskProtocol.BAD_REQUEST);
+            }
+        } catch (BufferUnderflowException e) {
+            replyStatus(connection, requestId, DeskProtocol.BAD_REQUEST);
+        } catch (BufferOverflowException e) {
+            // Reply did not fit in a frame; answer with the bare status instead
+            replyStatus(connection, requestId, DeskProtocol.ERROR);
+        } finally {
+            if (operation != null && !pending) {
+                admission.release(operation);
+            }
+        }
+    }
+    
+    private void login(Connection connection, int requestId, String username, String password) {
+        Session session = authService.openSessionQuietly(username, password);
+        if (session == null) {
+            replyStatus(connection, requestId, DeskProtocol.UNAUTHORIZED);
+            return;
+        }
+        authService.closeSession(connection.sessionToken);
+        connection.sessionToken = session.getToken();
+        ByteBuffer reply = beginReply(DeskProtocol.OK, requestId);
+        DeskProtocol.putString(reply, session.getToken());
+        send(connection, reply);
+    }
+    
+    /**
+     * Check the connection's session, answering UNAUTHORIZED if it has none
+     */
+    private boolean isAuthenticated(Connection connection, int requestId) {
+        if (authService.validateSession(connection.sessionToken) != null) {
+            return true;
+        }
+        replyStatus(connection, requestId, DeskProtocol.UNAUTHORIZED);
+        return false;
+    }
+    
+    private void replyBook(Connection connection, int requestId, Book book) {
+        if (book == null) {
+            replyStatus(connection, requestId, DeskProtocol.NOT_FOUND);
+            return;
+        }
+        ByteBuffer reply = beginReply(DeskProtocol.OK, requestId);
+        DeskProtocol.putString(reply, book.getBookId());
+        DeskProtocol.putString(reply, book.getTitle());
+        DeskProtocol.putString(reply, book.getAuthor());
+        reply.putInt(book.getAvailableQuantity());
+        reply.putInt(book.getTotalQuantity());
+        send(connection, reply);
+    }
+    
+    private void replyMember(Connection connection, int requestId, String memberId) {
+        Member member = memberService.findMemberById(memberId);
+        if (member == null) {
+            replyStatus(connection, requestId, DeskProtocol.NOT_FOUND);
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        int overdue = 0;
+        for (Transaction txn : transactionService.getTransactionsByMember(member.getMemberId())) {
+            if (txn.isOverdue(today)) {
+                overdue++;
+            }
+        }
+        
+        ByteBuffer reply = beginReply(DeskProtocol.OK, requestId);
+        DeskProtocol.putString(reply, member.getMemberId());
+        DeskProtocol.putString(reply, member.getName());
+        DeskProtocol.putString(reply, member.getMemberType());
+        reply.putInt(member.getBorrowedBooks());
+        reply.putInt(member.getMaxBooksAllowed());
+        reply.putInt(overdue);
+        send(connection, reply);
+    }
+    
+    /**
+     * Hand the request to the pipeline; returns false if it was turned away
+     */
+    private boolean issue(Connection connection, int requestId, String bookId, String memberId) {
+        CompletableFuture<Transaction> result;
+        try {
+            result = pipeline.trySubmit(() -> transactionService.issueBookQuietly(bookId, memberId));
+        } catch (IllegalStateException e) {
+            replyStatus(connection, requestId, DeskProtocol.ERROR); // pipeline shut down
+            return false;
+        }
+        if (result == null) {
+            replyStatus(connection, requestId, DeskProtocol.BUSY);
+            return false;
+        }
+        result.whenComplete((txn, failure) -> complete(() -> {
+            admission.release(OperationClass.WRITE);
+            if (failure != null) {
+                replyStatus(connection, requestId, DeskProtocol.ERROR);
+            } else if (txn == null) {
+                replyStatus(connection, requestId, DeskProtocol.REJECTED);
+            } else {
+                ByteBuffer reply = beginReply(DeskProtocol.OK, requestId);
+                DeskProtocol.putString(reply, txn.getTransactionId());
+                DeskProtocol.putString(reply, txn.getDueDate().toString());
+                send(connection, reply);
+            }
+        }));
+        return true;
+    }
+    
+    /**
+     * Hand the request to the pipeline; returns false if it was turned away
+     */
+    private boolean giveBack(Connection connection, int requestId, String transactionId) {
+        CompletableFuture<Boolean> result;
+        try {
+            result = pipeline.trySubmit(() -> transactionService.returnBookQuietly(transactionId));
+        } catch (IllegalStateException e) {
+            replyStatus(connection, requestId, DeskProtocol.ERROR); // pipeline shut down
+            return false;
+        }
+        if (result == null) {
+            replyStatus(connection, requestId, DeskProtocol.BUSY);
+            return false;
+        }
+        result.whenComplete((returned, failure) -> complete(() -> {
+            admission.release(OperationClass.WRITE);
+            if (failure != null) {
+                replyStatus(connection, requestId, DeskProtocol.ERROR);
+            } else if (!returned) {
+                replyStatus(connection, requestId, DeskProtocol.REJECTED);
+            } else {
+                Transaction txn = transactionService.findTransactionById(transactionId);
+                ByteBuffer reply = beginReply(DeskProtocol.OK, requestId);
+                DeskProtocol.putString(reply, txn.getTransactionId());
+                reply.putLong(Math.round(txn.getFine() * 100));
+                send(connection, reply);
+            }
+        }));
+        return true;
+    }
+    
+    /**
+     * Queue work for the event loop from a pipeline thread
+     */
+    private void complete(Runnable completion) {
+        completions.add(completion);
+        selector.wakeup();
+    }
+    
+    // ============ REPLIES ============
+    
+    private void replyStatus(Connection connection, int requestId, byte status) {
+        send(connection, beginReply(status, requestId));
+    }
+    
+    private ByteBuffer beginReply(byte status, int requestId) {
+        scratch.clear();
+        scratch.putInt(0); // length, filled in by send
+        scratch.put(status);
+        scratch.putInt(requestId);
+        return scratch;
+    }
+    
+    /**
+     * Append a finished reply to the connection's output
+     */
+    private void send(Connection connection, ByteBuffer reply) {
+        if (!isOpen(connection)) {
+            return; // client went away while the request was in flight
+        }
+        DeskProtocol.endFrame(reply, 0);
+        reply.flip();
+        if (connection.overflow.isEmpty() && reply.remaining() <= connection.out.remaining()) {
+            connection.out.put(reply);
+        } else {
+            byte[] copy = new byte[reply.remaining()];
+            reply.get(copy);
+            connection.overflow.addLast(copy);
+        }
+        updateInterest(connection);
+    }
+}
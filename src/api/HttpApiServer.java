@@ -0,0 +1,555 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import models.Book;
+import models.Member;
+import models.Session;
+import models.Transaction;
+import services.AdmissionController;
+import services.AdmissionController.OperationClass;
+import services.AuthService;
+import services.BookService;
+import services.CoBorrowingIndex;
+import services.MemberService;
+import services.MutationPipeline;
+import services.TransactionService;
+import utils.Json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HttpApiServer exposes the library services as a small JSON API
+ * Lets every branch desk and the OPAC kiosk share one running process
+ * instead of queueing at the console. Reads go straight to the services'
+ * snapshots; issue and return are funnelled through the MutationPipeline
+ * so concurrent desks never race on the data files.
+ *
+ * Book search is public (for the OPAC kiosk). Everything else needs a
+ * session token from /api/login, sent as "Authorization: Bearer <token>".
+ * POST parameters are read only from the form-encoded body (at most
+ * MAX_BODY bytes, larger bodies get 413), so credentials never end up in
+ * URLs or access logs; malformed parameters get 400.
+ *
+ * Endpoints:
+ *   POST /api/login   (username, password) -> token
+ *   POST /api/logout
+ *   GET  /api/books?title=&author=&category=&isbn=&available=true
+ *   GET  /api/books/{bookId}
+ *   GET  /api/books/{bookId}/recommendations?k=5
+ *   GET  /api/members/{memberId}
+ *   GET  /api/members/{memberId}/transactions
+ *   POST /api/issue   (bookId, memberId)
+ *   POST /api/return  (transactionId)
+ *   GET  /api/reports/statistics | /api/reports/overdue | /api/reports/issued
+ *   GET  /api/admission  (admission counters and queue depths, login required)
+ *
+ * Requests pass an AdmissionController first; when their class is
+ * saturated they get 503 with a Retry-After header.
+ */
+public class HttpApiServer {
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final int BACKLOG = 1024;
+    private static final String BEARER = "Bearer ";
+    static final int MAX_BODY = 4096;
+    
+    private final AuthService authService;
+    private final BookService bookService;
+    private final MemberService memberService;
+    private final TransactionService transactionService;
+    private final MutationPipeline pipeline;
+    private final boolean ownsPipeline;
+    private final AdmissionController admission;
+    private final int port;
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    public HttpApiServer(AuthService authService, BookService bookService, MemberService memberService,
+                         TransactionService transactionService, int port) {
+        this(authService, bookService, memberService, transactionService,
+             new MutationPipeline(bookService, memberService, transactionService), true,
+             new AdmissionController(), port);
+    }
+    
+    /**
+     * Share a pipeline and admission limits with other front ends
+     * The caller starts and stops the pipeline
+     */
+    public HttpApiServer(AuthService authService, BookService bookService, MemberService memberService,
+                         TransactionService transactionService, MutationPipeline pipeline,
+                         AdmissionController admission, int port) {
+        this(authService, bookService, memberService, transactionService, pipeline, false, admission, port);
+    }
+    
+    private HttpApiServer(AuthService authService, BookService bookService, MemberService memberService,
+                          TransactionService transactionService, MutationPipeline pipeline,
+                          boolean ownsPipeline, AdmissionController admission, int port) {
+        this.authService = authService;
+        this.bookService = bookService;
+        this.memberService = memberService;
+        this.transactionService = transactionService;
+        this.pipeline = pipeline;
+        this.ownsPipeline = ownsPipeline;
+        this.admission = admission;
+        this.port = port;
+    }
+    
+    /**
+     * Bind the port and start serving requests
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        if (ownsPipeline) {
+            pipeline.start();
+        }
+        executor = newRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/api/login", exchange -> handle(exchange, OperationClass.LOOKUP, this::handleLogin));
+        server.createContext("/api/logout", exchange -> handle(exchange, OperationClass.LOOKUP, this::handleLogout));
+        server.createContext("/api/books", exchange -> handle(exchange, OperationClass.LOOKUP, this::handleBooks));
+        server.createContext("/api/members", exchange -> handle(exchange, OperationClass.LOOKUP, this::handleMembers));
+        server.createContext("/api/issue", exchange -> handle(exchange, OperationClass.WRITE, this::handleIssue));
+        server.createContext("/api/return", exchange -> handle(exchange, OperationClass.WRITE, this::handleReturn));
+        server.createContext("/api/reports", exchange -> handle(exchange, OperationClass.REPORT, this::handleReports));
+        server.createContext("/api/admission", exchange -> handle(exchange, null, this::handleAdmission));
+        server.start();
+    }
+    
+    /**
+     * Stop accepting requests, give in-flight ones a moment, then drain the pipeline
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsPipeline) {
+            pipeline.shutdown();
+        }
+        server = null;
+        executor = null;
+    }
+    
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+    
+    /**
+     * One virtual thread per request on JDK 21+, otherwise a cached pool
+     * Looked up reflectively so the project still builds for JDK 8
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "http-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    // ============ HANDLERS ============
+    
+    /**
+     * A route returns the response status and fills in the body
+     */
+    private interface Route {
+        int serve(HttpExchange exchange, Map<String, String> params, StringBuilder body) throws Exception;
+    }
+    
+    private int handleLogin(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        Session session = authService.openSessionQuietly(params.get("username"), params.get("password"));
+        if (session == null) {
+            body.append(Json.error("Invalid username or password"));
+            return 401;
+        }
+        body.append("{\"token\":");
+        Json.quote(body, session.getToken()).append(",\"name\":");
+        Json.quote(body, session.getAdmin().getName()).append('}');
+        return 200;
+    }
+    
+    private int handleLogout(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (!authService.closeSession(sessionToken(exchange))) {
+            return unauthorized(body);
+        }
+        body.append("{}");
+        return 200;
+    }
+    
+    private int handleBooks(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        String tail = pathTail(exchange, "/api/books");
+        if (!tail.isEmpty()) {
+            String[] parts = tail.split("/");
+            Book book = bookService.findBookById(parts[0]);
+            if (book == null) {
+                return notFound(body, "Book not found");
+            }
+            if (parts.length == 1) {
+                Json.book(body, book);
+                return 200;
+            }
+            if (parts.length == 2 && parts[1].equals("recommendations")) {
+                int k = CoBorrowingIndex.NEIGHBORS;
+                if (params.containsKey("k")) {
+                    try {
+                        k = Integer.parseInt(params.get("k"));
+                    } catch (NumberFormatException e) {
+                        return badRequest(body, "k must be a number");
+                    }
+                }
+                body.append(Json.books(bookService.getRecommendations(book.getBookId(), k)));
+                return 200;
+            }
+            return notFound(body, "Unknown resource");
+        }
+        
+        List<Book> books;
+        if (params.containsKey("isbn")) {
+            Book book = bookService.searchByIsbn(params.get("isbn"));
+            books = book != null ? Collections.singletonList(book)
+                                 : Collections.<Book>emptyList();
+        } else if (params.containsKey("title")) {
+            books = bookService.searchByTitle(params.get("title"));
+        } else if (params.containsKey("author")) {
+            books = bookService.searchByAuthor(params.get("author"));
+        } else if (params.containsKey("category")) {
+            books = bookService.searchByCategory(params.get("category"));
+        } else if ("true".equalsIgnoreCase(params.get("available"))) {
+            books = bookService.getAvailableBooks();
+        } else {
+            books = bookService.getAllBooks();
+        }
+        body.append(Json.books(books));
+        return 200;
+    }
+    
+    private int handleMembers(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (authService.validateSession(sessionToken(exchange)) == null) {
+            return unauthorized(body);
+        }
+        String tail = pathTail(exchange, "/api/members");
+        if (tail.isEmpty()) {
+            return notFound(body, "Member ID required");
+        }
+        
+        String[] parts = tail.split("/");
+        Member member = memberService.findMemberById(parts[0]);
+        if (member == null) {
+            return notFound(body, "Member not found");
+        }
+        if (parts.length == 1) {
+            Json.member(body, member);
+            return 200;
+        }
+        if (parts.length == 2 && parts[1].equals("transactions")) {
+            body.append(Json.transactions(transactionService.getTransactionsByMember(member.getMemberId())));
+            return 200;
+        }
+        return notFound(body, "Unknown resource");
+    }
+    
+    private int handleIssue(HttpExchange exchange, Map<String, String> params, StringBuilder body) throws Exception {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (authService.validateSession(sessionToken(exchange)) == null) {
+            return unauthorized(body);
+        }
+        String bookId = params.get("bookId");
+        String memberId = params.get("memberId");
+        if (bookId == null || memberId == null) {
+            return badRequest(body, "bookId and memberId are required");
+        }
+        
+        Transaction transaction = await(pipeline.issueBook(bookId, memberId));
+        if (transaction == null) {
+            return conflict(body, "Book could not be issued");
+        }
+        Json.transaction(body, transaction);
+        return 201;
+    }
+    
+    private int handleReturn(HttpExchange exchange, Map<String, String> params, StringBuilder body) throws Exception {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (authService.validateSession(sessionToken(exchange)) == null) {
+            return unauthorized(body);
+        }
+        String transactionId = params.get("transactionId");
+        if (transactionId == null) {
+            return badRequest(body, "transactionId is required");
+        }
+        
+        if (!await(pipeline.returnBook(transactionId))) {
+            return conflict(body, "Book could not be returned");
+        }
+        Json.transaction(body, transactionService.findTransactionById(transactionId));
+        return 200;
+    }
+    
+    private int handleReports(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (authService.validateSession(sessionToken(exchange)) == null) {
+            return unauthorized(body);
+        }
+        switch (pathTail(exchange, "/api/reports")) {
+            case "statistics":
+                body.append("{\"totalBooks\":").append(bookService.getAllBooks().size())
+                    .append(",\"availableBooks\":").append(bookService.getAvailableBooks().size())
+                    .append(",\"totalMembers\":").append(memberService.getAllMembers().size())
+                    .append(",\"totalTransactions\":").append(transactionService.getAllTransactions().size())
+                    .append(",\"currentlyIssued\":").append(transactionService.getIssuedTransactions().size())
+                    .append(",\"overdueBooks\":").append(transactionService.countOverdueTransactions())
+                    .append(",\"totalFines\":").append(transactionService.calculateTotalFines())
+                    .append('}');
+                return 200;
+            case "overdue":
+                body.append(Json.transactions(transactionService.getOverdueTransactions()));
+                return 200;
+            case "issued":
+                body.append(Json.transactions(transactionService.getIssuedTransactions()));
+                return 200;
+            default:
+                return notFound(body, "Unknown report");
+        }
+    }
+    
+    /**
+     * Admission counters per operation class (not itself subject to admission)
+     */
+    private int handleAdmission(HttpExchange exchange, Map<String, String> params, StringBuilder body) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return methodNotAllowed(body);
+        }
+        if (authService.validateSession(sessionToken(exchange)) == null) {
+            return unauthorized(body);
+        }
+        body.append('{');
+        for (OperationClass operation : OperationClass.values()) {
+            if (operation.ordinal() > 0) {
+                body.append(',');
+            }
+            body.append('"').append(operation.name()).append("\":{")
+                .append("\"limit\":").append(admission.getLimit(operation))
+                .append(",\"inFlight\":").append(admission.getInFlight(operation))
+                .append(",\"queued\":").append(admission.getQueueDepth(operation))
+                .append(",\"admitted\":").append(admission.getAdmittedCount(operation))
+                .append(",\"rejected\":").append(admission.getRejectedCount(operation))
+                .append('}');
+        }
+        body.append(",\"pipelineDepth\":").append(pipeline.getQueueDepth()).append('}');
+        return 200;
+    }
+    
+    // ============ PLUMBING ============
+    
+    /**
+     * Run a route inside its admission class
+     * Rejected requests get 503 with a Retry-After hint and never reach the services
+     */
+    private void handle(HttpExchange exchange, OperationClass operation, Route route) throws IOException {
+        if (operation != null && !admission.tryAcquire(operation)) {
+            exchange.getResponseHeaders().set("Retry-After", Integer.toString(admission.getRetryAfterSeconds(operation)));
+            send(exchange, 503, Json.error("Server busy, retry later"));
+            return;
+        }
+        
+        StringBuilder body = new StringBuilder(256);
+        int status;
+        try {
+            Map<String, String> params = readParams(exchange);
+            status = params != null ? route.serve(exchange, params, body) : tooLarge(body);
+        } catch (IllegalArgumentException e) {
+            // Thrown by URLDecoder for a malformed % escape
+            body.setLength(0);
+            status = badRequest(body, "Malformed request parameters");
+        } catch (Exception e) {
+            // Details stay in the server log; clients only learn that it failed
+            System.err.println("Error handling " + exchange.getRequestMethod() + " "
+                               + exchange.getRequestURI().getPath() + ": " + e);
+            body.setLength(0);
+            body.append(Json.error("Internal server error"));
+            status = 500;
+        } finally {
+            if (operation != null) {
+                admission.release(operation);
+            }
+        }
+        send(exchange, status, body.toString());
+    }
+    
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    /**
+     * Wait for a pipeline command, unwrapping its failure
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+    
+    /**
+     * Form parameters from the body for POST, from the query string otherwise
+     * Returns null if the body is larger than MAX_BODY
+     */
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if ("POST".equals(exchange.getRequestMethod())) {
+            String form = readBody(exchange.getRequestBody());
+            if (form == null) {
+                return null;
+            }
+            parseForm(form, params);
+        } else {
+            parseForm(exchange.getRequestURI().getRawQuery(), params);
+        }
+        return params;
+    }
+    
+    /**
+     * Read a request body, or return null once it grows past MAX_BODY
+     */
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            if (buffer.size() + read > MAX_BODY) {
+                return null;
+            }
+            buffer.write(chunk, 0, read);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    private static void parseForm(String form, Map<String, String> params) throws UnsupportedEncodingException {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String key = URLDecoder.decode(pair.substring(0, eq), "UTF-8");
+            String value = URLDecoder.decode(pair.substring(eq + 1), "UTF-8").trim();
+            if (!value.isEmpty()) {
+                params.put(key, value);
+            }
+        }
+    }
+    
+    /**
+     * Path after the context prefix, without surrounding slashes
+     */
+    private static String pathTail(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        String tail = path.length() > prefix.length() ? path.substring(prefix.length()) : "";
+        while (tail.startsWith("/")) {
+            tail = tail.substring(1);
+        }
+        while (tail.endsWith("/")) {
+            tail = tail.substring(0, tail.length() - 1);
+        }
+        return tail;
+    }
+    
+    /**
+     * Session token from the Authorization header, or null
+     */
+    private static String sessionToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith(BEARER)) {
+            return null;
+        }
+        return header.substring(BEARER.length()).trim();
+    }
+    
+    private static int badRequest(StringBuilder body, String message) {
+        body.append(Json.error(message));
+        return 400;
+    }
+    
+    private static int unauthorized(StringBuilder body) {
+        body.append(Json.error("Login required"));
+        return 401;
+    }
+    
+    private static int notFound(StringBuilder body, String message) {
+        body.append(Json.error(message));
+        return 404;
+    }
+    
+    private static int methodNotAllowed(StringBuilder body) {
+        body.append(Json.error("Method not allowed"));
+        return 405;
+    }
+    
+    private static int tooLarge(StringBuilder body) {
+        body.append(Json.error("Request body too large"));
+        return 413;
+    }
+    
+    private static int conflict(StringBuilder body, String message) {
+        body.append(Json.error(message));
+        return 409;
+    }
+}
@@ -1,6 +1,9 @@
 package models;
 
+import utils.StringDictionary;
+
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Book class represents a book in the library system
@@ -15,8 +18,11 @@ public class Book implements Serializable {
     private String author;
     private String isbn;
     private String category;
-    private int totalQuantity;
-    private int availableQuantity;
+    private int categoryCode = StringDictionary.NO_CODE; // dictionary code for fast category filters
+    private volatile int totalQuantity;
+    // Available copies (low 32 bits) and copies held by uncommitted checkouts
+    // (high 32 bits), packed so both change in one compare-and-set
+    private final AtomicLong stock = new AtomicLong();
     
     // Constructors
     public Book() {
@@ -28,9 +34,10 @@ public class Book implements Serializable {
         this.title = title;
         this.author = author;
         this.isbn = isbn;
-        this.category = category;
+        this.category = StringDictionary.intern(category);
+        this.categoryCode = StringDictionary.codeOf(category);
         this.totalQuantity = totalQuantity;
-        this.availableQuantity = totalQuantity;
+        this.stock.set(pack(totalQuantity, 0));
     }
     
     // Getters and Setters
@@ -71,7 +78,12 @@ public class Book implements Serializable {
     }
     
     public void setCategory(String category) {
-        this.category = category;
+        this.category = StringDictionary.intern(category);
+        this.categoryCode = StringDictionary.codeOf(category);
+    }
+    
+    public int getCategoryCode() {
+        return categoryCode;
     }
     
     public int getTotalQuantity() {
@@ -83,41 +95,162 @@ public class Book implements Serializable {
     }
     
     public int getAvailableQuantity() {
-        return availableQuantity;
+        return available(stock.get());
+    }
+    
+    /**
+     * Available copies as of the last commit: held copies still count as in
+     * This is what is persisted, so a save never writes an uncommitted checkout
+     */
+    public int getCommittedAvailableQuantity() {
+        long current = stock.get();
+        return available(current) + held(current);
     }
     
     public void setAvailableQuantity(int availableQuantity) {
-        this.availableQuantity = availableQuantity;
+        while (true) {
+            long current = stock.get();
+            if (stock.compareAndSet(current, pack(availableQuantity, held(current)))) {
+                return;
+            }
+        }
     }
     
     // Business methods
     public boolean isAvailable() {
-        return availableQuantity > 0;
+        return getAvailableQuantity() > 0;
     }
     
-    public void incrementAvailableQuantity() {
-        if (availableQuantity < totalQuantity) {
-            availableQuantity++;
+    /**
+     * Atomically take one copy if any is available
+     * Check and decrement are a single compare-and-set, so concurrent
+     * checkouts of the same title never drive the count below zero
+     */
+    public boolean tryReserveCopy() {
+        while (true) {
+            long current = stock.get();
+            if (available(current) <= 0) {
+                return false;
+            }
+            if (stock.compareAndSet(current, pack(available(current) - 1, held(current)))) {
+                return true;
+            }
         }
     }
     
-    public void decrementAvailableQuantity() {
-        if (availableQuantity > 0) {
-            availableQuantity--;
+    /**
+     * Atomically put one copy back, never exceeding the total quantity
+     */
+    public boolean releaseCopy() {
+        while (true) {
+            long current = stock.get();
+            if (available(current) + held(current) >= totalQuantity) {
+                return false;
+            }
+            if (stock.compareAndSet(current, pack(available(current) + 1, held(current)))) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Atomically take one copy for a checkout that has not committed yet
+     * The copy is unavailable at once but stays in the committed count
+     * until confirmHeldCopy or releaseHeldCopy
+     */
+    public boolean tryHoldCopy() {
+        while (true) {
+            long current = stock.get();
+            if (available(current) <= 0) {
+                return false;
+            }
+            if (stock.compareAndSet(current, pack(available(current) - 1, held(current) + 1))) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * The checkout holding a copy committed: the copy is now out for good
+     * Returns false if no copy was held
+     */
+    public boolean confirmHeldCopy() {
+        while (true) {
+            long current = stock.get();
+            if (held(current) <= 0) {
+                return false;
+            }
+            if (stock.compareAndSet(current, pack(available(current), held(current) - 1))) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * The checkout holding a copy was abandoned: the copy is available again
+     * Returns false if no copy was held
+     */
+    public boolean releaseHeldCopy() {
+        while (true) {
+            long current = stock.get();
+            if (held(current) <= 0) {
+                return false;
+            }
+            if (stock.compareAndSet(current, pack(available(current) + 1, held(current) - 1))) {
+                return true;
+            }
         }
     }
     
+    /**
+     * Atomically take every copy, only if none is currently issued or held
+     * Used before removing a book so no checkout can slip in meanwhile
+     */
+    public boolean tryReserveAllCopies() {
+        int total = totalQuantity;
+        return stock.compareAndSet(pack(total, 0), pack(0, 0));
+    }
+    
+    private static int available(long stock) {
+        return (int) stock;
+    }
+    
+    private static int held(long stock) {
+        return (int) (stock >>> 32);
+    }
+    
+    private static long pack(int available, int held) {
+        return ((long) held << 32) | (available & 0xFFFFFFFFL);
+    }
+    
+    public void incrementAvailableQuantity() {
+        releaseCopy();
+    }
+    
+    public void decrementAvailableQuantity() {
+        tryReserveCopy();
+    }
+    
     // toString for display
     @Override
     public String toString() {
-        return String.format("ID: %s | Title: %s | Author: %s | ISBN: %s | Category: %s | Available: %d/%d",
-                bookId, title, author, isbn, category, availableQuantity, totalQuantity);
+        return appendTo(new StringBuilder(128)).toString();
+    }
+    
+    // Display line appended to a caller's buffer, so report rows reuse one builder
+    public StringBuilder appendTo(StringBuilder line) {
+        return line.append("ID: ").append(bookId)
+                .append(" | Title: ").append(title)
+                .append(" | Author: ").append(author)
+                .append(" | ISBN: ").append(isbn)
+                .append(" | Category: ").append(category)
+                .append(" | Available: ").append(getAvailableQuantity()).append('/').append(totalQuantity);
     }
     
     // String representation for file storage (pipe-delimited)
     public String toFileString() {
         return bookId + "|" + title + "|" + author + "|" + isbn + "|" + 
-               category + "|" + totalQuantity + "|" + availableQuantity;
+               category + "|" + totalQuantity + "|" + getCommittedAvailableQuantity();
     }
     
     // Create Book object from file string
@@ -1,5 +1,7 @@
 package models;
 
+import utils.StringDictionary;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -18,6 +20,7 @@ public class Member implements Serializable {
     private String email;
     private String phone;
     private String memberType; // STUDENT or FACULTY
+    private int memberTypeCode = StringDictionary.NO_CODE; // dictionary code for fast type filters
     private LocalDate registrationDate;
     private int borrowedBooks;
     private int maxBooksAllowed;
@@ -34,7 +37,8 @@ public class Member implements Serializable {
         this.name = name;
         this.email = email;
         this.phone = phone;
-        this.memberType = memberType;
+        this.memberType = StringDictionary.intern(memberType);
+        this.memberTypeCode = StringDictionary.codeOf(memberType);
         this.registrationDate = LocalDate.now();
         this.borrowedBooks = 0;
         
@@ -84,7 +88,8 @@ public class Member implements Serializable {
     }
     
     public void setMemberType(String memberType) {
-        this.memberType = memberType;
+        this.memberType = StringDictionary.intern(memberType);
+        this.memberTypeCode = StringDictionary.codeOf(memberType);
         // Update max books based on type
         if (memberType.equalsIgnoreCase("FACULTY")) {
             this.maxBooksAllowed = 5;
@@ -93,6 +98,10 @@ public class Member implements Serializable {
         }
     }
     
+    public int getMemberTypeCode() {
+        return memberTypeCode;
+    }
+    
     public LocalDate getRegistrationDate() {
         return registrationDate;
     }
@@ -137,9 +146,20 @@ public class Member implements Serializable {
     // toString for display
     @Override
     public String toString() {
-        return String.format("ID: %s | Name: %s | Type: %s | Email: %s | Phone: %s | Books: %d/%d | Registered: %s",
-                memberId, name, memberType, email, phone, borrowedBooks, maxBooksAllowed, 
-                registrationDate.format(DATE_FORMATTER));
+        return appendTo(new StringBuilder(128)).toString();
+    }
+    
+    // Display line appended to a caller's buffer, so report rows reuse one builder
+    public StringBuilder appendTo(StringBuilder line) {
+        line.append("ID: ").append(memberId)
+                .append(" | Name: ").append(name)
+                .append(" | Type: ").append(memberType)
+                .append(" | Email: ").append(email)
+                .append(" | Phone: ").append(phone)
+                .append(" | Books: ").append(borrowedBooks).append('/').append(maxBooksAllowed)
+                .append(" | Registered: ");
+        DATE_FORMATTER.formatTo(registrationDate, line);
+        return line;
     }
     
     // String representation for file storage
@@ -0,0 +1,54 @@
+package models;
+
+/**
+ * Session class represents one logged-in admin on one front end
+ * Identified by a random token; tracks activity for idle expiry
+ */
+public class Session {
+    
+    // Attributes
+    private final String token;
+    private final Admin admin;
+    private final long createdAt;
+    private volatile long lastAccessedAt;
+    
+    // Constructors
+    public Session(String token, Admin admin, long now) {
+        this.token = token;
+        this.admin = admin;
+        this.createdAt = now;
+        this.lastAccessedAt = now;
+    }
+    
+    // Getters
+    public String getToken() {
+        return token;
+    }
+    
+    public Admin getAdmin() {
+        return admin;
+    }
+    
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    public long getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+    
+    // Business methods
+    public void touch(long now) {
+        lastAccessedAt = now;
+    }
+    
+    public boolean isExpired(long now, long idleTimeoutMillis) {
+        return now - lastAccessedAt > idleTimeoutMillis;
+    }
+    
+    // toString for display
+    @Override
+    public String toString() {
+        return "Session: " + admin.getUsername() + " (idle since " + lastAccessedAt + ")";
+    }
+}
@@ -107,25 +107,38 @@ public class Transaction implements Serializable {
     
     // Business methods
     public boolean isOverdue() {
+        return isOverdue(LocalDate.now());
+    }
+    
+    // Overload taking "today" so bulk scans resolve the clock once per pass
+    public boolean isOverdue(LocalDate today) {
         if (status.equals("RETURNED")) {
             return false;
         }
-        return LocalDate.now().isAfter(dueDate);
+        return today.isAfter(dueDate);
     }
     
     public long getOverdueDays() {
-        if (!isOverdue()) {
+        return getOverdueDays(LocalDate.now());
+    }
+    
+    public long getOverdueDays(LocalDate today) {
+        if (!isOverdue(today)) {
             return 0;
         }
-        return ChronoUnit.DAYS.between(dueDate, LocalDate.now());
+        return ChronoUnit.DAYS.between(dueDate, today);
     }
     
     public double calculateFine() {
+        return calculateFine(LocalDate.now());
+    }
+    
+    public double calculateFine(LocalDate today) {
         if (status.equals("RETURNED")) {
             return this.fine; // Already calculated
         }
         
-        long overdueDays = getOverdueDays();
+        long overdueDays = getOverdueDays(today);
         if (overdueDays > 0) {
             this.fine = overdueDays * FINE_PER_DAY;
         } else {
@@ -134,6 +147,14 @@ public class Transaction implements Serializable {
         return this.fine;
     }
     
+    // Fine in paise as of a date, without storing it (safe for parallel report scans)
+    public long getFinePaise(LocalDate today) {
+        if (status.equals("RETURNED")) {
+            return Math.round(fine * 100);
+        }
+        return Math.round(getOverdueDays(today) * FINE_PER_DAY * 100);
+    }
+    
     public void markReturned() {
         this.returnDate = LocalDate.now();
         this.status = "RETURNED";
@@ -143,12 +164,30 @@ public class Transaction implements Serializable {
     // toString for display
     @Override
     public String toString() {
-        String returnInfo = (returnDate != null) ? returnDate.format(DATE_FORMATTER) : "Not Returned";
-        return String.format("TxnID: %s | BookID: %s | MemberID: %s | Issued: %s | Due: %s | Returned: %s | Fine: ₹%.2f | Status: %s",
-                transactionId, bookId, memberId, 
-                issueDate.format(DATE_FORMATTER), 
-                dueDate.format(DATE_FORMATTER), 
-                returnInfo, fine, status);
+        return appendTo(new StringBuilder(160)).toString();
+    }
+    
+    // Display line appended to a caller's buffer, so report rows reuse one builder
+    public StringBuilder appendTo(StringBuilder line) {
+        line.append("TxnID: ").append(transactionId)
+                .append(" | BookID: ").append(bookId)
+                .append(" | MemberID: ").append(memberId)
+                .append(" | Issued: ");
+        DATE_FORMATTER.formatTo(issueDate, line);
+        line.append(" | Due: ");
+        DATE_FORMATTER.formatTo(dueDate, line);
+        line.append(" | Returned: ");
+        if (returnDate != null) {
+            DATE_FORMATTER.formatTo(returnDate, line);
+        } else {
+            line.append("Not Returned");
+        }
+        long paise = Math.round(fine * 100);
+        line.append(" | Fine: ₹").append(paise / 100).append('.');
+        if (paise % 100 < 10) {
+            line.append('0');
+        }
+        return line.append(paise % 100).append(" | Status: ").append(status);
     }
     
     // String representation for file storage
@@ -0,0 +1,155 @@
+package services;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdmissionController bounds how much work the front ends let in at once
+ * Each class of operation has its own concurrency limit and a short,
+ * bounded wait queue. A request that finds the queue full, or waits too
+ * long, is rejected straight away with a retry hint instead of piling up
+ * behind everyone else. Because the classes have separate limits, a burst
+ * of report scans can never take the slots checkouts need.
+ */
+public class AdmissionController {
+    
+    /**
+     * Kinds of work, each admitted independently
+     */
+    public enum OperationClass {
+        LOOKUP,  // single-record reads: book search, member status
+        WRITE,   // issue, return and other mutations
+        REPORT   // full scans: overdue report, transaction listings
+    }
+    
+    /**
+     * Limits and counters for one operation class
+     */
+    private static final class Lane {
+        final int limit;
+        final int maxQueue;
+        final long maxWaitNanos;
+        final Semaphore permits;
+        final AtomicInteger waiting = new AtomicInteger();
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        
+        Lane(int limit, int maxQueue, long maxWaitMillis) {
+            this.limit = limit;
+            this.maxQueue = maxQueue;
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            this.permits = new Semaphore(limit, true);
+        }
+    }
+    
+    private final Map<OperationClass, Lane> lanes = new EnumMap<>(OperationClass.class);
+    
+    /**
+     * Default limits: plenty of room for lookups, a moderate number of
+     * concurrent writes, and only a couple of report scans at a time
+     */
+    public AdmissionController() {
+        configure(OperationClass.LOOKUP, 64, 256, 50);
+        configure(OperationClass.WRITE, 16, 128, 200);
+        configure(OperationClass.REPORT, 2, 4, 0);
+    }
+    
+    /**
+     * Set the limits for one class (call before the controller is shared)
+     */
+    public void configure(OperationClass operation, int limit, int maxQueue, long maxWaitMillis) {
+        lanes.put(operation, new Lane(limit, maxQueue, maxWaitMillis));
+    }
+    
+    /**
+     * Try to admit a request, waiting briefly for a slot if the queue has room
+     * Returns false if rejected; on true the caller must call release
+     */
+    public boolean tryAcquire(OperationClass operation) {
+        Lane lane = lanes.get(operation);
+        if (lane.permits.tryAcquire()) {
+            lane.admitted.increment();
+            return true;
+        }
+        if (lane.maxWaitNanos <= 0) {
+            lane.rejected.increment();
+            return false;
+        }
+        
+        if (lane.waiting.incrementAndGet() > lane.maxQueue) {
+            lane.waiting.decrementAndGet();
+            lane.rejected.increment();
+            return false;
+        }
+        try {
+            if (lane.permits.tryAcquire(lane.maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                lane.admitted.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lane.waiting.decrementAndGet();
+        }
+        lane.rejected.increment();
+        return false;
+    }
+    
+    /**
+     * Admit a request only if a slot is free right now (never waits)
+     * For event-loop callers that must not block
+     */
+    public boolean tryAcquireNow(OperationClass operation) {
+        Lane lane = lanes.get(operation);
+        if (lane.permits.tryAcquire()) {
+            lane.admitted.increment();
+            return true;
+        }
+        lane.rejected.increment();
+        return false;
+    }
+    
+    /**
+     * Give back the slot taken by a successful tryAcquire
+     */
+    public void release(OperationClass operation) {
+        lanes.get(operation).permits.release();
+    }
+    
+    /**
+     * Suggested seconds before a rejected client retries
+     * Grows with the backlog relative to the class's concurrency limit
+     */
+    public int getRetryAfterSeconds(OperationClass operation) {
+        Lane lane = lanes.get(operation);
+        int backlog = lane.waiting.get() + getInFlight(operation);
+        return 1 + backlog / Math.max(1, lane.limit);
+    }
+    
+    // ============ STATISTICS ============
+    
+    public int getInFlight(OperationClass operation) {
+        Lane lane = lanes.get(operation);
+        return lane.limit - lane.permits.availablePermits();
+    }
+    
+    public int getQueueDepth(OperationClass operation) {
+        return lanes.get(operation).waiting.get();
+    }
+    
+    public long getAdmittedCount(OperationClass operation) {
+        return lanes.get(operation).admitted.sum();
+    }
+    
+    public long getRejectedCount(OperationClass operation) {
+        return lanes.get(operation).rejected.sum();
+    }
+    
+    public int getLimit(OperationClass operation) {
+        return lanes.get(operation).limit;
+    }
+}
@@ -1,23 +1,48 @@
 package services;
 
 import models.Admin;
+import models.Session;
 import utils.FileHandler;
 
+import java.security.SecureRandom;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AuthService handles authentication operations
- * Manages admin login and session
+ * Manages admin login and sessions. Every front end (console, HTTP, desk
+ * terminals) gets its own session token; validating a token is a single
+ * hash lookup, and idle sessions are expired by a background sweeper.
  */
 public class AuthService {
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+    private static final int TOKEN_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
     private List<Admin> admins;
+    private final Map<String, Admin> adminsByUsername; // lowercase username -> admin
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long idleTimeoutMillis;
     private FileHandler fileHandler;
-    private Admin currentAdmin;
+    private ScheduledExecutorService sweeper;
+    private volatile String consoleToken;
     
     public AuthService() {
+        this(DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+    
+    public AuthService(long idleTimeoutMillis) {
         this.fileHandler = FileHandler.getInstance();
         this.admins = fileHandler.loadAdmins();
-        this.currentAdmin = null;
+        this.adminsByUsername = new ConcurrentHashMap<>();
+        this.idleTimeoutMillis = idleTimeoutMillis;
         
         // Create default admin if none exists
         if (admins.isEmpty()) {
@@ -25,25 +50,24 @@ public class AuthService {
             admins.add(defaultAdmin);
             fileHandler.saveAdmins(admins);
         }
+        
+        for (Admin admin : admins) {
+            adminsByUsername.putIfAbsent(admin.getUsername().toLowerCase(Locale.ROOT), admin);
+        }
     }
     
     /**
-     * Authenticate admin with username and password
+     * Authenticate admin with username and password (console login)
      */
     public boolean login(String username, String password) {
-        Admin admin = findAdminByUsername(username);
-        
-        if (admin == null) {
-            System.out.println("Error: Invalid username!");
+        Session session = openSession(username, password);
+        if (session == null) {
             return false;
         }
         
-        if (!admin.authenticate(password)) {
-            System.out.println("Error: Invalid password!");
-            return false;
-        }
-        
-        currentAdmin = admin;
+        closeSession(consoleToken); // replace any earlier console session
+        consoleToken = session.getToken();
+        Admin admin = session.getAdmin();
         System.out.println("\n========================================");
         System.out.println("   LOGIN SUCCESSFUL");
         System.out.println("========================================");
@@ -53,43 +77,166 @@ public class AuthService {
     }
     
     /**
-     * Logout current admin
+     * Logout current admin (console session)
      */
     public void logout() {
-        if (currentAdmin != null) {
-            System.out.println("Goodbye, " + currentAdmin.getName() + "!");
-            currentAdmin = null;
+        String token = consoleToken;
+        consoleToken = null;
+        Session session = token != null ? sessions.remove(token) : null;
+        if (session != null) {
+            System.out.println("Goodbye, " + session.getAdmin().getName() + "!");
         }
     }
     
     /**
-     * Check if admin is logged in
+     * Check if admin is logged in at the console
      */
     public boolean isLoggedIn() {
-        return currentAdmin != null;
+        return getCurrentAdmin() != null;
     }
     
     /**
-     * Get current logged-in admin
+     * Get current logged-in admin at the console (null once the session expires)
      */
     public Admin getCurrentAdmin() {
-        return currentAdmin;
+        Session session = validateSession(consoleToken);
+        return session != null ? session.getAdmin() : null;
+    }
+    
+    // ============ SESSIONS ============
+    
+    /**
+     * Authenticate and open a new session
+     * Returns null if the credentials are wrong
+     */
+    public Session openSession(String username, String password) {
+        return open(username, password, true);
+    }
+    
+    /**
+     * Authenticate and open a new session without printing why a login failed
+     * For the network front ends, which answer the caller with a single
+     * "invalid username or password" and must not reveal which one was wrong
+     */
+    public Session openSessionQuietly(String username, String password) {
+        return open(username, password, false);
+    }
+    
+    /**
+     * Check the credentials and register a session for them
+     * The reason for a failed login is printed only when announce is set
+     */
+    private Session open(String username, String password, boolean announce) {
+        Admin admin = findAdminByUsername(username);
+        
+        if (admin == null) {
+            if (announce) {
+                System.out.println("Error: Invalid username!");
+            }
+            return null;
+        }
+        
+        if (!admin.authenticate(password)) {
+            if (announce) {
+                System.out.println("Error: Invalid password!");
+            }
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        Session session;
+        do {
+            session = new Session(newToken(), admin, now);
+        } while (sessions.putIfAbsent(session.getToken(), session) != null);
+        startSweeper();
+        return session;
+    }
+    
+    /**
+     * Look up a live session by token and mark it as used
+     * Returns null for unknown or expired tokens
+     */
+    public Session validateSession(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now, idleTimeoutMillis)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+    
+    /**
+     * End a session; returns false if it was not open
+     */
+    public boolean closeSession(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+    
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+    
+    /**
+     * Remove every idle session
+     */
+    public int expireIdleSessions() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Session session : sessions.values()) {
+            if (session.isExpired(now, idleTimeoutMillis) && sessions.remove(session.getToken(), session)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+    
+    /**
+     * Start the background sweeper on first use
+     */
+    private synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireIdleSessions,
+                SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
     }
     
     /**
      * Find admin by username
      */
     private Admin findAdminByUsername(String username) {
-        return admins.stream()
-                .filter(admin -> admin.getUsername().equalsIgnoreCase(username))
-                .findFirst()
-                .orElse(null);
+        return username != null ? adminsByUsername.get(username.toLowerCase(Locale.ROOT)) : null;
     }
     
     /**
      * Change password for current admin
      */
     public boolean changePassword(String oldPassword, String newPassword) {
+        Admin currentAdmin = getCurrentAdmin();
         if (currentAdmin == null) {
             System.out.println("Error: No admin logged in!");
             return false;
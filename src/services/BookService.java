@@ -2,40 +2,169 @@ package services;
 
 import models.Book;
 import utils.FileHandler;
+import utils.ReportWriter;
+import utils.SnapshotList;
+import utils.StringDictionary;
+import utils.StripedLock;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * BookService handles all book-related operations
  * Manages book inventory and search functionality
+ * Safe for concurrent use: readers scan immutable snapshots of the book list
+ * without locking, adds and removes are serialized, and changes to a
+ * single book are guarded by a striped lock keyed on bookId
  */
 public class BookService {
-    private List<Book> books;
+    private SnapshotList<Book> books;
+    private Map<String, Book> booksById;
+    private Map<String, SnapshotList<Book>> booksByIsbn; // lowercase ISBN -> books sharing it, oldest first
     private FileHandler fileHandler;
+    private final Lock structureLock = new ReentrantLock(); // serializes adds and removes
+    private final StripedLock bookLocks = new StripedLock(64);
+    private final CoBorrowingIndex coBorrowing = new CoBorrowingIndex();
+    private final InventoryTracker inventory = new InventoryTracker();
     
     public BookService() {
         this.fileHandler = FileHandler.getInstance();
-        this.books = fileHandler.loadBooks();
+        this.books = new SnapshotList<>(fileHandler.loadBooks());
+        this.booksById = new ConcurrentHashMap<>();
+        this.booksByIsbn = new ConcurrentHashMap<>();
+        for (Book book : books.snapshot()) {
+            booksById.put(key(book.getBookId()), book);
+            indexIsbn(book);
+        }
+        inventory.load(fileHandler.loadInventory(), books.snapshot());
+    }
+    
+    /**
+     * Get the per-book locks (used to serialize edits of the same book)
+     */
+    public StripedLock getBookLocks() {
+        return bookLocks;
     }
     
     /**
      * Add a new book to the library
+     * Inside a FileHandler batch the book is dropped again if the batch cannot be written
      */
     public boolean addBook(Book book) {
-        // Check if book ID already exists
-        if (findBookById(book.getBookId()) != null) {
-            System.out.println("Error: Book with ID " + book.getBookId() + " already exists!");
+        if (!insertBook(book)) {
             return false;
         }
         
-        books.add(book);
-        fileHandler.saveBooks(books);
+        fileHandler.onBatchFailure(() -> discardBook(book));
+        saveBooks();
         System.out.println("Book added successfully!");
         return true;
     }
     
+    /**
+     * Add a new book without waiting for the disk
+     * The book is searchable as soon as this returns; the future completes
+     * with true once the book list is persisted, or false if it was rejected
+     * or could not be saved, in which case the book has been dropped again
+     */
+    public CompletableFuture<Boolean> addBookAsync(Book book) {
+        if (!insertBook(book)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return fileHandler.saveBooksAsync(this::getAllBooks, () -> discardBook(book));
+    }
+    
+    /**
+     * Add a book to the in-memory list and index
+     */
+    private boolean insertBook(Book book) {
+        structureLock.lock();
+        try {
+            // Check if book ID already exists
+            if (findBookById(book.getBookId()) != null) {
+                System.out.println("Error: Book with ID " + book.getBookId() + " already exists!");
+                return false;
+            }
+            
+            books.add(book);
+            booksById.put(key(book.getBookId()), book);
+            indexIsbn(book);
+        } finally {
+            structureLock.unlock();
+        }
+        trackInventory(book);
+        return true;
+    }
+    
+    /**
+     * Take a just-added book out of the list and indexes again
+     */
+    private void discardBook(Book book) {
+        discardBooks(Collections.singletonList(book));
+    }
+    
+    /**
+     * Take just-added books out of the list and indexes again
+     */
+    private void discardBooks(List<Book> discarded) {
+        structureLock.lock();
+        try {
+            books.removeAll(discarded);
+            for (Book book : discarded) {
+                booksById.remove(key(book.getBookId()), book);
+                unindexIsbn(book, book.getIsbn());
+            }
+        } finally {
+            structureLock.unlock();
+        }
+        for (Book book : discarded) {
+            inventory.remove(book.getBookId());
+        }
+    }
+    
+    /**
+     * Add books in bulk (used by imports)
+     * Books whose ID is already taken are skipped; returns how many were added
+     * Inside a FileHandler batch the books are dropped again if the batch cannot be written
+     */
+    public int importBooks(List<Book> imported) {
+        List<Book> added = new ArrayList<>();
+        structureLock.lock();
+        try {
+            for (Book book : imported) {
+                if (findBookById(book.getBookId()) != null) {
+                    continue;
+                }
+                booksById.put(key(book.getBookId()), book);
+                indexIsbn(book);
+                added.add(book);
+            }
+            books.addAll(added);
+        } finally {
+            structureLock.unlock();
+        }
+        for (Book book : added) {
+            trackInventory(book);
+        }
+        
+        if (!added.isEmpty()) {
+            fileHandler.onBatchFailure(() -> discardBooks(added));
+            saveBooks();
+        }
+        return added.size();
+    }
+    
     /**
      * Update existing book details
      */
@@ -47,13 +176,30 @@ public class BookService {
         }
         
         // Update book details
-        existingBook.setTitle(updatedBook.getTitle());
-        existingBook.setAuthor(updatedBook.getAuthor());
-        existingBook.setIsbn(updatedBook.getIsbn());
-        existingBook.setCategory(updatedBook.getCategory());
-        existingBook.setTotalQuantity(updatedBook.getTotalQuantity());
+        Lock lock = bookLocks.get(existingBook.getBookId());
+        lock.lock();
+        try {
+            existingBook.setTitle(updatedBook.getTitle());
+            existingBook.setAuthor(updatedBook.getAuthor());
+            if (!Objects.equals(existingBook.getIsbn(), updatedBook.getIsbn())) {
+                structureLock.lock();
+                try {
+                    String oldIsbn = existingBook.getIsbn();
+                    existingBook.setIsbn(updatedBook.getIsbn());
+                    unindexIsbn(existingBook, oldIsbn);
+                    indexIsbn(existingBook);
+                } finally {
+                    structureLock.unlock();
+                }
+            }
+            existingBook.setCategory(updatedBook.getCategory());
+            existingBook.setTotalQuantity(updatedBook.getTotalQuantity());
+        } finally {
+            lock.unlock();
+        }
+        trackInventory(existingBook);
         
-        fileHandler.saveBooks(books);
+        saveBooks();
         System.out.println("Book updated successfully!");
         return true;
     }
@@ -68,14 +214,26 @@ public class BookService {
             return false;
         }
         
-        // Check if book is currently issued
-        if (book.getAvailableQuantity() < book.getTotalQuantity()) {
-            System.out.println("Error: Cannot remove book. Some copies are currently issued!");
-            return false;
+        Lock lock = bookLocks.get(book.getBookId());
+        lock.lock();
+        structureLock.lock();
+        try {
+            // Check if book is currently issued, taking every copy so no checkout slips in
+            if (!book.tryReserveAllCopies()) {
+                System.out.println("Error: Cannot remove book. Some copies are currently issued!");
+                return false;
+            }
+            
+            books.remove(book);
+            booksById.remove(key(book.getBookId()));
+            unindexIsbn(book, book.getIsbn());
+        } finally {
+            structureLock.unlock();
+            lock.unlock();
         }
+        inventory.remove(book.getBookId());
         
-        books.remove(book);
-        fileHandler.saveBooks(books);
+        saveBooks();
         System.out.println("Book removed successfully!");
         return true;
     }
@@ -84,111 +242,218 @@ public class BookService {
      * Find book by ID
      */
     public Book findBookById(String bookId) {
-        return books.stream()
-                .filter(book -> book.getBookId().equalsIgnoreCase(bookId))
-                .findFirst()
-                .orElse(null);
+        if (bookId == null) {
+            return null;
+        }
+        return booksById.get(key(bookId));
     }
     
     /**
      * Search books by title
      */
     public List<Book> searchByTitle(String title) {
-        return books.stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+        return filter(book -> book.getTitle().toLowerCase(Locale.ROOT).contains(title.toLowerCase(Locale.ROOT)));
     }
     
     /**
      * Search books by author
      */
     public List<Book> searchByAuthor(String author) {
-        return books.stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+        return filter(book -> book.getAuthor().toLowerCase(Locale.ROOT).contains(author.toLowerCase(Locale.ROOT)));
     }
     
     /**
      * Search books by category
      */
     public List<Book> searchByCategory(String category) {
-        return books.stream()
-                .filter(book -> book.getCategory().equalsIgnoreCase(category))
-                .collect(Collectors.toList());
+        int code = StringDictionary.lookupCode(category);
+        if (code == StringDictionary.NO_CODE) {
+            return new ArrayList<>();
+        }
+        return filter(book -> book.getCategoryCode() == code);
     }
     
     /**
      * Search books by ISBN
+     * Returns the first book added with it if several share it
      */
     public Book searchByIsbn(String isbn) {
-        return books.stream()
-                .filter(book -> book.getIsbn().equalsIgnoreCase(isbn))
-                .findFirst()
-                .orElse(null);
+        List<Book> matches = findBooksByIsbn(isbn);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+    
+    /**
+     * All books with an ISBN, oldest first, from the index
+     */
+    public List<Book> findBooksByIsbn(String isbn) {
+        if (isbn == null) {
+            return Collections.emptyList();
+        }
+        SnapshotList<Book> matches = booksByIsbn.get(key(isbn));
+        return matches != null ? matches.snapshot() : Collections.<Book>emptyList();
     }
     
     /**
      * Get all books
+     * Returns a read-only point-in-time snapshot in O(1); later changes are not visible in it
      */
     public List<Book> getAllBooks() {
-        return new ArrayList<>(books);
+        return books.snapshot();
     }
     
     /**
      * Get all available books
      */
     public List<Book> getAvailableBooks() {
-        return books.stream()
-                .filter(Book::isAvailable)
-                .collect(Collectors.toList());
+        return filter(Book::isAvailable);
+    }
+    
+    /**
+     * Books most often borrowed by readers of a book ("readers also borrowed")
+     * Served from precomputed neighbor lists; at most k books, removed ones skipped
+     */
+    public List<Book> getRecommendations(String bookId, int k) {
+        List<Book> recommendations = new ArrayList<>();
+        for (CoBorrowingIndex.Neighbor neighbor : coBorrowing.getNeighbors(bookId)) {
+            if (recommendations.size() >= k) {
+                break;
+            }
+            Book book = findBookById(neighbor.getBookId());
+            if (book != null) {
+                recommendations.add(book);
+            }
+        }
+        return recommendations;
+    }
+    
+    /**
+     * Per-title and per-category utilization and stock-out times, kept current
+     * by every change to a book's quantities
+     */
+    public InventoryTracker getInventoryTracker() {
+        return inventory;
+    }
+    
+    /**
+     * Co-borrowing matrix behind getRecommendations (maintained by TransactionService)
+     */
+    public CoBorrowingIndex getCoBorrowingIndex() {
+        return coBorrowing;
     }
     
     /**
      * Get all categories
      */
     public List<String> getAllCategories() {
-        return books.stream()
+        return getAllBooks().stream()
                 .map(Book::getCategory)
                 .distinct()
                 .collect(Collectors.toList());
     }
     
     /**
-     * Update book quantity (used during issue/return)
+     * Reserve (change < 0) or release (change > 0) one copy in memory only
+     * Lock-free compare-and-set on the book; callers persist (see UnitOfWork)
+     * Every change is passed on to the inventory utilization figures
+     * Returns false if no copy was available or all copies are already in
      */
-    public boolean updateBookQuantity(String bookId, int change) {
-        Book book = findBookById(bookId);
-        if (book == null) {
-            return false;
+    public boolean adjustAvailableQuantity(Book book, int change) {
+        boolean changed = change < 0 ? book.tryReserveCopy() : book.releaseCopy();
+        if (changed) {
+            trackInventory(book);
         }
-        
-        if (change < 0) {
-            book.decrementAvailableQuantity();
-        } else {
-            book.incrementAvailableQuantity();
+        return changed;
+    }
+    
+    /**
+     * Hold one copy for a checkout that has not committed yet (see UnitOfWork)
+     * The copy is unavailable at once, but book saves still count it as in
+     * until confirmHeldCopy, so no uncommitted checkout reaches the disk
+     * Returns false if no copy was available
+     */
+    public boolean holdCopy(Book book) {
+        boolean held = book.tryHoldCopy();
+        if (held) {
+            trackInventory(book);
         }
-        
-        fileHandler.saveBooks(books);
-        return true;
+        return held;
     }
     
     /**
-     * Display all books in formatted manner
+     * Count a held copy as issued once its checkout is committed
+     * Returns false if the book had no held copy
      */
-    public void displayAllBooks() {
-        if (books.isEmpty()) {
-            System.out.println("No books available in the library.");
+    public boolean confirmHeldCopy(Book book) {
+        return book.confirmHeldCopy();
+    }
+    
+    /**
+     * Make a held copy available again when its checkout is abandoned
+     * Returns false if the book had no held copy
+     */
+    public boolean releaseHeldCopy(Book book) {
+        boolean released = book.releaseHeldCopy();
+        if (released) {
+            trackInventory(book);
+        }
+        return released;
+    }
+    
+    /**
+     * Bring the utilization figures up to date with a book's quantities
+     * Stock-out timings are saved in the background when a title runs out or
+     * gets a copy back; queued saves merge
+     */
+    private void trackInventory(Book book) {
+        if (inventory.refresh(book)) {
+            fileHandler.saveInventoryAsync(inventory::toFileLines);
+        }
+    }
+    
+    /**
+     * Persist the book list
+     * The snapshot is taken under the file lock so concurrent saves land in order
+     */
+    public void saveBooks() {
+        fileHandler.saveBooks(this::getAllBooks);
+    }
+    
+    /**
+     * Books matching a filter, scanned over a snapshot without locking
+     */
+    private List<Book> filter(Predicate<Book> predicate) {
+        return books.snapshot().stream()
+                .filter(predicate)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Add a book to the ISBN index after any earlier books sharing its ISBN
+     * Callers hold structureLock (or are the constructor)
+     */
+    private void indexIsbn(Book book) {
+        if (book.getIsbn() != null) {
+            booksByIsbn.computeIfAbsent(key(book.getIsbn()), isbn -> new SnapshotList<>(Collections.<Book>emptyList()))
+                       .add(book);
+        }
+    }
+    
+    /**
+     * Drop a book from the ISBN index under the given ISBN
+     * Callers hold structureLock
+     */
+    private void unindexIsbn(Book book, String isbn) {
+        if (isbn == null) {
             return;
         }
-        
-        System.out.println("\n========================================");
-        System.out.println("           ALL BOOKS");
-        System.out.println("========================================");
-        for (Book book : books) {
-            System.out.println(book);
+        SnapshotList<Book> matches = booksByIsbn.get(key(isbn));
+        if (matches != null && matches.remove(book) && matches.isEmpty()) {
+            booksByIsbn.remove(key(isbn), matches);
         }
-        System.out.println("========================================");
-        System.out.println("Total books: " + books.size());
+    }
+    
+    private static String key(String bookId) {
+        return bookId.toLowerCase(Locale.ROOT);
     }
     
     /**
@@ -202,13 +467,15 @@ public class BookService {
             return;
         }
         
-        System.out.println("\n========================================");
-        System.out.println("         AVAILABLE BOOKS");
-        System.out.println("========================================");
-        for (Book book : availableBooks) {
-            System.out.println(book);
-        }
-        System.out.println("========================================");
-        System.out.println("Total available books: " + availableBooks.size());
+        try (ReportWriter out = ReportWriter.toConsole()) {
+            out.println("\n========================================");
+            out.println("         AVAILABLE BOOKS");
+            out.println("========================================");
+            out.writeRows(availableBooks, Book::appendTo);
+            out.println("========================================");
+            out.println("Total available books: " + availableBooks.size());
+        } catch (IOException e) {
+            System.err.println("Error writing report!");
+        }
     }
 }
@@ -0,0 +1,132 @@
+package services;
+
+import models.Transaction;
+import utils.HyperLogLog;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * BorrowerTracker estimates how many distinct members borrowed each book
+ * Every book keeps one HyperLogLog sketch per term (256 bytes each) instead
+ * of a member set, so counts can be merged across books (a category) or
+ * terms (a date range) at a fixed cost. Sketches are persisted with the
+ * date they were saved; on load, issues from that date on are replayed,
+ * which is safe because adding a member twice never changes a sketch.
+ */
+public class BorrowerTracker {
+    private static final String SAVED_TAG = "SAVED";
+    
+    // book ID (uppercase) -> term start -> sketch of member IDs
+    private final Map<String, NavigableMap<LocalDate, HyperLogLog>> sketches = new HashMap<>();
+    
+    /**
+     * Restore persisted sketches and catch up with issues made since they were saved
+     * With no saved sketches, or any damaged line, the whole history is replayed
+     */
+    public synchronized void load(List<String> lines, List<Transaction> transactions) {
+        sketches.clear();
+        LocalDate savedOn = null;
+        boolean damaged = false;
+        for (String line : lines) {
+            String[] parts = line.trim().split("\\|");
+            try {
+                if (parts.length == 2 && parts[0].equals(SAVED_TAG)) {
+                    savedOn = LocalDate.parse(parts[1]);
+                } else if (parts.length == 3) {
+                    HyperLogLog sketch = HyperLogLog.fromHex(parts[2]);
+                    if (sketch != null) {
+                        termsOf(parts[0]).put(LocalDate.parse(parts[1]), sketch);
+                    } else {
+                        damaged = true;
+                    }
+                } else {
+                    damaged = true;
+                }
+            } catch (DateTimeParseException e) {
+                damaged = true;
+            }
+        }
+        if (damaged) {
+            // Lost sketches can only be rebuilt from the full history
+            System.err.println("Error: Damaged borrower sketches, recounting from the full history!");
+            savedOn = null;
+        }
+        
+        for (Transaction transaction : transactions) {
+            if (savedOn == null || !transaction.getIssueDate().isBefore(savedOn)) {
+                record(transaction.getBookId(), transaction.getMemberId(), transaction.getIssueDate());
+            }
+        }
+    }
+    
+    /**
+     * Count a member as a borrower of a book
+     */
+    public synchronized void record(String bookId, String memberId, LocalDate issueDate) {
+        if (bookId == null || memberId == null || issueDate == null) {
+            return;
+        }
+        LocalDate term = PopularityTracker.Window.TERM.startOf(issueDate);
+        termsOf(bookId).computeIfAbsent(term, start -> new HyperLogLog()).add(memberId.toUpperCase(Locale.ROOT));
+    }
+    
+    /**
+     * Estimated distinct borrowers of one book over its whole history
+     */
+    public long getUniqueBorrowers(String bookId) {
+        return merge(Collections.singletonList(bookId), null, null).estimate();
+    }
+    
+    /**
+     * Combined sketch for several books over the terms overlapping a date range
+     * A null bound leaves that side of the range open. A member who borrowed
+     * more than one of the books is counted once.
+     */
+    public synchronized HyperLogLog merge(Collection<String> bookIds, LocalDate from, LocalDate to) {
+        HyperLogLog merged = new HyperLogLog();
+        for (String bookId : bookIds) {
+            NavigableMap<LocalDate, HyperLogLog> terms = bookId != null ? sketches.get(bookId.toUpperCase(Locale.ROOT)) : null;
+            if (terms == null) {
+                continue;
+            }
+            if (from != null) {
+                terms = terms.tailMap(PopularityTracker.Window.TERM.startOf(from), true);
+            }
+            if (to != null) {
+                terms = terms.headMap(to, true);
+            }
+            for (HyperLogLog sketch : terms.values()) {
+                merged.merge(sketch);
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Sketches as file lines, headed by today's date as the replay point
+     */
+    public synchronized List<String> toFileLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add(SAVED_TAG + "|" + LocalDate.now());
+        for (Map.Entry<String, NavigableMap<LocalDate, HyperLogLog>> book : sketches.entrySet()) {
+            for (Map.Entry<LocalDate, HyperLogLog> term : book.getValue().entrySet()) {
+                lines.add(book.getKey() + "|" + term.getKey() + "|" + term.getValue().toHex());
+            }
+        }
+        return lines;
+    }
+    
+    private NavigableMap<LocalDate, HyperLogLog> termsOf(String bookId) {
+        return sketches.computeIfAbsent(bookId.toUpperCase(Locale.ROOT), id -> new TreeMap<>());
+    }
+}
@@ -0,0 +1,205 @@
+package services;
+
+import models.Transaction;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CirculationRollup keeps pre-aggregated circulation counts per period
+ * Counts are bucketed by epoch day, with matching week (from Monday) and
+ * month buckets updated alongside. A range query adds whole months, then
+ * whole weeks, then single days, so it costs O(buckets) rather than a
+ * scan of the transaction history. Buckets are filled in parallel from
+ * history at load and updated on every issue and return.
+ */
+public class CirculationRollup {
+    
+    /**
+     * Counts for one bucket or one queried range
+     */
+    public static final class Totals {
+        private long issued;
+        private long returned;
+        private long lateReturns;
+        private long finesPaise;
+        private long due;          // loans falling due on the day
+        private long dueReturned;  // of those, returned by the due date
+        
+        public long getIssued() {
+            return issued;
+        }
+        
+        public long getReturned() {
+            return returned;
+        }
+        
+        public long getLateReturns() {
+            return lateReturns;
+        }
+        
+        /**
+         * Fines charged on returns, in rupees
+         */
+        public double getFines() {
+            return finesPaise / 100.0;
+        }
+        
+        /**
+         * Loans that went overdue in the range, whether or not returned since
+         * Only days before today count, so this never includes loans still on time
+         */
+        public long getOverdue() {
+            return due - dueReturned;
+        }
+        
+        void add(Totals other) {
+            issued += other.issued;
+            returned += other.returned;
+            lateReturns += other.lateReturns;
+            finesPaise += other.finesPaise;
+            due += other.due;
+            dueReturned += other.dueReturned;
+        }
+    }
+    
+    // Guarded by this; keys are epoch days (of the Monday for weeks, the 1st for months)
+    private final TreeMap<Long, Totals> days = new TreeMap<>();
+    private final Map<Long, Totals> weeks = new HashMap<>();
+    private final Map<Long, Totals> months = new HashMap<>();
+    
+    /**
+     * Rebuild every bucket from the loan history
+     * The history is split across the common fork-join pool; each part fills
+     * its own day buckets and the partial maps are merged.
+     */
+    public synchronized void rebuild(List<Transaction> transactions) {
+        Map<Long, Totals> byDay = transactions.parallelStream().collect(
+                HashMap::new,
+                (partial, transaction) -> {
+                    countIssue(partial, transaction);
+                    if (transaction.getReturnDate() != null) {
+                        countReturn(partial, transaction);
+                    }
+                },
+                (into, from) -> from.forEach((day, totals) -> into.merge(day, totals, (a, b) -> {
+                    a.add(b);
+                    return a;
+                })));
+        
+        days.clear();
+        weeks.clear();
+        months.clear();
+        apply(byDay);
+    }
+    
+    /**
+     * Count a new loan (on its issue date, and as falling due on its due date)
+     */
+    public synchronized void recordIssue(Transaction transaction) {
+        Map<Long, Totals> change = new HashMap<>();
+        countIssue(change, transaction);
+        apply(change);
+    }
+    
+    /**
+     * Count a closed loan (on its return date, and against its due date if on time)
+     */
+    public synchronized void recordReturn(Transaction transaction) {
+        Map<Long, Totals> change = new HashMap<>();
+        countReturn(change, transaction);
+        apply(change);
+    }
+    
+    /**
+     * Totals for the days from one date to another, both inclusive
+     */
+    public synchronized Totals query(LocalDate from, LocalDate to) {
+        Totals result = new Totals();
+        accumulate(from, to, result);
+        
+        // Loans due today or later may still come back on time: count
+        // overdue only up to yesterday
+        Totals past = new Totals();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        accumulate(from, to.isAfter(yesterday) ? yesterday : to, past);
+        result.due = past.due;
+        result.dueReturned = past.dueReturned;
+        return result;
+    }
+    
+    /**
+     * Add the buckets covering a range, using the coarsest that fit
+     */
+    private void accumulate(LocalDate from, LocalDate to, Totals into) {
+        LocalDate date = from;
+        while (!date.isAfter(to)) {
+            LocalDate monthEnd = date.with(TemporalAdjusters.lastDayOfMonth());
+            LocalDate weekEnd = date.plusDays(6);
+            if (date.getDayOfMonth() == 1 && !monthEnd.isAfter(to)) {
+                addBucket(months.get(date.toEpochDay()), into);
+                date = monthEnd.plusDays(1);
+            } else if (date.getDayOfWeek() == DayOfWeek.MONDAY && !weekEnd.isAfter(to)) {
+                addBucket(weeks.get(date.toEpochDay()), into);
+                date = weekEnd.plusDays(1);
+            } else {
+                addBucket(days.get(date.toEpochDay()), into);
+                date = date.plusDays(1);
+            }
+        }
+    }
+    
+    private static void addBucket(Totals bucket, Totals into) {
+        if (bucket != null) {
+            into.add(bucket);
+        }
+    }
+    
+    /**
+     * Date of the first activity on record, or null if there is none
+     */
+    public synchronized LocalDate getFirstDay() {
+        return days.isEmpty() ? null : LocalDate.ofEpochDay(days.firstKey());
+    }
+    
+    /**
+     * Add per-day changes to the day, week and month buckets
+     */
+    private void apply(Map<Long, Totals> change) {
+        for (Map.Entry<Long, Totals> day : change.entrySet()) {
+            LocalDate date = LocalDate.ofEpochDay(day.getKey());
+            days.computeIfAbsent(day.getKey(), key -> new Totals()).add(day.getValue());
+            weeks.computeIfAbsent(weekKey(date), key -> new Totals()).add(day.getValue());
+            months.computeIfAbsent(monthKey(date), key -> new Totals()).add(day.getValue());
+        }
+    }
+    
+    private static void countIssue(Map<Long, Totals> byDay, Transaction transaction) {
+        byDay.computeIfAbsent(transaction.getIssueDate().toEpochDay(), key -> new Totals()).issued++;
+        byDay.computeIfAbsent(transaction.getDueDate().toEpochDay(), key -> new Totals()).due++;
+    }
+    
+    private static void countReturn(Map<Long, Totals> byDay, Transaction transaction) {
+        Totals day = byDay.computeIfAbsent(transaction.getReturnDate().toEpochDay(), key -> new Totals());
+        day.returned++;
+        day.finesPaise += Math.round(transaction.getFine() * 100);
+        if (transaction.getReturnDate().isAfter(transaction.getDueDate())) {
+            day.lateReturns++;
+        } else {
+            byDay.computeIfAbsent(transaction.getDueDate().toEpochDay(), key -> new Totals()).dueReturned++;
+        }
+    }
+    
+    private static long weekKey(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+    }
+    
+    private static long monthKey(LocalDate date) {
+        return date.withDayOfMonth(1).toEpochDay();
+    }
+}
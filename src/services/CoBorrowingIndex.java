@@ -0,0 +1,234 @@
+package services;
+
+import models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * CoBorrowingIndex answers "readers of X also borrowed Y"
+ * Keeps a sparse item-item matrix counting, for each pair of books, how
+ * many members have borrowed both, plus a precomputed top-NEIGHBORS list
+ * per book. Lookups read an immutable list from a concurrent map and
+ * never lock. Only closed loans count: the matrix is built from returned
+ * transactions at startup (members are split across fork-join tasks) and
+ * updated as each loan is returned, refreshing just the affected lists.
+ */
+public class CoBorrowingIndex {
+    public static final int NEIGHBORS = 10;
+    private static final int MEMBERS_PER_TASK = 256;
+    
+    /**
+     * A book borrowed by readers of another, with how many readers did both
+     */
+    public static final class Neighbor {
+        private final String bookId;
+        private final int count;
+        
+        Neighbor(String bookId, int count) {
+            this.bookId = bookId;
+            this.count = count;
+        }
+        
+        public String getBookId() {
+            return bookId;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+    }
+    
+    // Guarded by this: member ID -> books returned, book ID -> book ID -> members in common
+    private final Map<String, Set<String>> booksByMember = new HashMap<>();
+    private Map<String, Map<String, Integer>> counts = new HashMap<>();
+    
+    // Precomputed, immutable neighbor lists (IDs uppercase)
+    private final Map<String, List<Neighbor>> neighbors = new ConcurrentHashMap<>();
+    
+    /**
+     * Rebuild the matrix and every neighbor list from the loan history
+     */
+    public synchronized void rebuild(List<Transaction> transactions) {
+        booksByMember.clear();
+        for (Transaction transaction : transactions) {
+            if (transaction.getStatus().equals("RETURNED")) {
+                booksByMember.computeIfAbsent(transaction.getMemberId().toUpperCase(Locale.ROOT), id -> new HashSet<>())
+                        .add(transaction.getBookId().toUpperCase(Locale.ROOT));
+            }
+        }
+        
+        List<Set<String>> histories = new ArrayList<>(booksByMember.values());
+        counts = ForkJoinPool.commonPool().invoke(new CountTask(histories, 0, histories.size()));
+        
+        neighbors.clear();
+        counts.entrySet().parallelStream()
+                .forEach(row -> neighbors.put(row.getKey(), topNeighbors(row.getValue())));
+    }
+    
+    /**
+     * Count a closed loan
+     * The first return of a book by a member pairs it with every other book
+     * that member has returned; repeat loans of the same book add nothing.
+     */
+    public synchronized void recordReturn(String memberId, String bookId) {
+        if (memberId == null || bookId == null) {
+            return;
+        }
+        String book = bookId.toUpperCase(Locale.ROOT);
+        Set<String> history = booksByMember.computeIfAbsent(memberId.toUpperCase(Locale.ROOT), id -> new HashSet<>());
+        if (!history.add(book) || history.size() == 1) {
+            return;
+        }
+        
+        Map<String, Integer> row = counts.computeIfAbsent(book, id -> new HashMap<>());
+        List<Neighbor> bookNeighbors = getNeighbors(book);
+        for (String other : history) {
+            if (!other.equals(book)) {
+                int count = row.merge(other, 1, Integer::sum);
+                counts.computeIfAbsent(other, id -> new HashMap<>()).merge(book, 1, Integer::sum);
+                bookNeighbors = raise(bookNeighbors, other, count);
+                neighbors.put(other, raise(getNeighbors(other), book, count));
+            }
+        }
+        neighbors.put(book, bookNeighbors);
+    }
+    
+    /**
+     * Books most often borrowed by readers of a book, most shared readers first
+     * At most NEIGHBORS entries; empty if the book has no co-borrowings
+     */
+    public List<Neighbor> getNeighbors(String bookId) {
+        if (bookId == null) {
+            return Collections.emptyList();
+        }
+        List<Neighbor> list = neighbors.get(bookId.toUpperCase(Locale.ROOT));
+        return list != null ? list : Collections.<Neighbor>emptyList();
+    }
+    
+    /**
+     * Number of books with at least one co-borrowed neighbor
+     */
+    public int size() {
+        return neighbors.size();
+    }
+    
+    /**
+     * Highest counts first, ties broken by book ID so lists are stable
+     */
+    private static List<Neighbor> topNeighbors(Map<String, Integer> row) {
+        List<Neighbor> all = new ArrayList<>(row.size());
+        for (Map.Entry<String, Integer> entry : row.entrySet()) {
+            all.add(new Neighbor(entry.getKey(), entry.getValue()));
+        }
+        all.sort(CoBorrowingIndex::compare);
+        List<Neighbor> top = all.size() > NEIGHBORS ? new ArrayList<>(all.subList(0, NEIGHBORS)) : all;
+        return Collections.unmodifiableList(top);
+    }
+    
+    /**
+     * Copy of a neighbor list after one neighbor's count rose to count
+     * Counts only ever grow, so a book outside the list can only enter it
+     * when its own count rises; no need to look at the rest of the row.
+     */
+    private static List<Neighbor> raise(List<Neighbor> current, String bookId, int count) {
+        Neighbor raised = new Neighbor(bookId, count);
+        List<Neighbor> updated = new ArrayList<>(current.size() + 1);
+        for (Neighbor neighbor : current) {
+            if (!neighbor.bookId.equals(bookId)) {
+                updated.add(neighbor);
+            }
+        }
+        int position = 0;
+        while (position < updated.size() && compare(updated.get(position), raised) < 0) {
+            position++;
+        }
+        if (position >= NEIGHBORS) {
+            return current;
+        }
+        updated.add(position, raised);
+        if (updated.size() > NEIGHBORS) {
+            updated.remove(NEIGHBORS);
+        }
+        return Collections.unmodifiableList(updated);
+    }
+    
+    private static int compare(Neighbor a, Neighbor b) {
+        return a.count != b.count ? Integer.compare(b.count, a.count) : a.bookId.compareTo(b.bookId);
+    }
+    
+    /**
+     * Counts co-borrowed pairs for a range of member histories
+     * Ranges split in half until small, and partial matrices are merged
+     */
+    private static final class CountTask extends RecursiveTask<Map<String, Map<String, Integer>>> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Set<String>> histories;
+        private final int from;
+        private final int to;
+        
+        CountTask(List<Set<String>> histories, int from, int to) {
+            this.histories = histories;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Map<String, Map<String, Integer>> compute() {
+            if (to - from <= MEMBERS_PER_TASK) {
+                Map<String, Map<String, Integer>> matrix = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    Set<String> history = histories.get(i);
+                    if (history.size() < 2) {
+                        continue;
+                    }
+                    for (String book : history) {
+                        Map<String, Integer> row = matrix.computeIfAbsent(book, id -> new HashMap<>());
+                        for (String other : history) {
+                            if (!other.equals(book)) {
+                                row.merge(other, 1, Integer::sum);
+                            }
+                        }
+                    }
+                }
+                return matrix;
+            }
+            
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(histories, from, middle);
+            left.fork();
+            Map<String, Map<String, Integer>> right = new CountTask(histories, middle, to).compute();
+            return merge(left.join(), right);
+        }
+        
+        /**
+         * Add the smaller matrix into the larger one
+         */
+        private static Map<String, Map<String, Integer>> merge(Map<String, Map<String, Integer>> a,
+                                                              Map<String, Map<String, Integer>> b) {
+            Map<String, Map<String, Integer>> into = a.size() >= b.size() ? a : b;
+            Map<String, Map<String, Integer>> from = into == a ? b : a;
+            for (Map.Entry<String, Map<String, Integer>> row : from.entrySet()) {
+                Map<String, Integer> target = into.get(row.getKey());
+                if (target == null) {
+                    into.put(row.getKey(), row.getValue());
+                    continue;
+                }
+                for (Map.Entry<String, Integer> cell : row.getValue().entrySet()) {
+                    target.merge(cell.getKey(), cell.getValue(), Integer::sum);
+                }
+            }
+            return into;
+        }
+    }
+}
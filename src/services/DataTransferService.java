@@ -0,0 +1,312 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import utils.FileHandler;
+import utils.RecordFormat;
+import utils.ReportWriter;
+import utils.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DataTransferService exports books, members and transactions to CSV or
+ * JSON Lines files and imports them back
+ * Both directions stream one record at a time. Export walks a snapshot of
+ * the service's list (taken in O(1), never copied) through a buffered file
+ * writer; import reads line by line, parses and validates each record and
+ * inserts them in batches of BATCH_SIZE, so the only memory it needs beyond
+ * the library itself is one batch. Records are mapped field for field onto
+ * the pipe-delimited storage format and built with fromFileString, so an
+ * export imports back to exactly the same data.
+ */
+public class DataTransferService {
+    public static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 5;
+    
+    /**
+     * Exportable entities, with their columns in storage-format order
+     */
+    public enum Entity {
+        BOOKS("books", new String[] {"bookId", "title", "author", "isbn", "category",
+                                     "totalQuantity", "availableQuantity"}, 5, 6),
+        MEMBERS("members", new String[] {"memberId", "name", "email", "phone", "memberType",
+                                         "registrationDate", "borrowedBooks", "maxBooksAllowed"}, 6, 7),
+        TRANSACTIONS("transactions", new String[] {"transactionId", "bookId", "memberId", "issueDate",
+                                                   "dueDate", "returnDate", "fine", "status"}, 6);
+        
+        private final String label;
+        private final String[] columns;
+        private final boolean[] numeric;
+        
+        Entity(String label, String[] columns, int... numericColumns) {
+            this.label = label;
+            this.columns = columns;
+            this.numeric = new boolean[columns.length];
+            for (int column : numericColumns) {
+                numeric[column] = true;
+            }
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private final BookService bookService;
+    private final MemberService memberService;
+    private final TransactionService transactionService;
+    private final FileHandler fileHandler;
+    
+    public DataTransferService(BookService bookService, MemberService memberService,
+                               TransactionService transactionService) {
+        this.bookService = bookService;
+        this.memberService = memberService;
+        this.transactionService = transactionService;
+        this.fileHandler = FileHandler.getInstance();
+    }
+    
+    // ============ EXPORT ============
+    
+    /**
+     * Write every record of an entity to a file
+     * The format follows the extension: .csv, or .json/.jsonl/.ndjson for JSON Lines
+     * Returns false if the file name or the write failed
+     */
+    public boolean exportData(Entity entity, String path) {
+        RecordFormat format = formatOf(path);
+        if (format == null) {
+            return false;
+        }
+        
+        switch (entity) {
+            case BOOKS:
+                return exportRecords(entity, format, path, bookService.getAllBooks(), Book::toFileString);
+            case MEMBERS:
+                return exportRecords(entity, format, path, memberService.getAllMembers(), Member::toFileString);
+            default:
+                return exportRecords(entity, format, path, transactionService.getAllTransactions(),
+                                     Transaction::toFileString);
+        }
+    }
+    
+    private <T> boolean exportRecords(Entity entity, RecordFormat format, String path, List<T> records,
+                                      Function<T, String> storage) {
+        try (ReportWriter out = ReportWriter.toFile(path)) {
+            String header = format.header(entity.columns);
+            if (header != null) {
+                out.println(header);
+            }
+            int count = out.writeRows(records, (record, line) ->
+                    format.appendRecord(line, entity.columns, storage.apply(record).split("\\|", -1), entity.numeric));
+            System.out.println("Exported " + count + " " + entity.label + " to " + path);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: Could not write " + path + "!");
+            return false;
+        }
+    }
+    
+    // ============ IMPORT ============
+    
+    /**
+     * Read records of an entity from a file and add those not already present
+     * Records whose ID (or member email) is taken are skipped, and malformed
+     * or invalid ones are counted and reported without stopping the import.
+     * Transactions must refer to existing books and members, so import those
+     * first; an open loan takes a copy of its book and a borrowing slot of
+     * its member, and is skipped if either has none left.
+     * Everything imported is persisted once at the end; if that write fails,
+     * or the file cannot be read to the end, the imported records are
+     * dropped again and nothing is saved.
+     * Returns false if the file could not be read or the import not saved
+     */
+    public boolean importData(Entity entity, String path) {
+        RecordFormat format = formatOf(path);
+        if (format == null) {
+            return false;
+        }
+        
+        boolean imported = false;
+        fileHandler.beginBatch();
+        try {
+            switch (entity) {
+                case BOOKS:
+                    imported = importRecords(entity, format, path, Book::fromFileString,
+                                             DataTransferService::checkBook, bookService::importBooks);
+                    break;
+                case MEMBERS:
+                    imported = importRecords(entity, format, path, Member::fromFileString,
+                                             DataTransferService::checkMember, memberService::importMembers);
+                    break;
+                default:
+                    imported = importRecords(entity, format, path, Transaction::fromFileString,
+                                             this::checkTransaction, transactionService::importTransactions);
+            }
+        } finally {
+            if (!imported) {
+                fileHandler.abortBatch(); // a read error part way: drop whatever was inserted
+            } else if (!fileHandler.endBatch()) {
+                System.out.println("Error: Could not save the imported " + entity.label + "; nothing was imported!");
+                imported = false;
+            }
+        }
+        return imported;
+    }
+    
+    /**
+     * Parse, validate and insert records a batch at a time
+     * The validator returns an error message, or null if the record is fine;
+     * the inserter returns how many records of a batch it actually added.
+     * Returns false on a read error, after which the caller must abort the
+     * FileHandler batch to drop the batches already inserted
+     */
+    private <T> boolean importRecords(Entity entity, RecordFormat format, String path,
+                                      Function<String, T> parser, Function<T, String> validator,
+                                      Function<List<T>, Integer> inserter) {
+        long read = 0;
+        long imported = 0;
+        long invalid = 0;
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            long lineNumber = 1;
+            if (line != null && format.header(entity.columns) != null) {
+                String header = line.startsWith("\uFEFF") ? line.substring(1) : line;
+                if (!header.trim().equals(format.header(entity.columns))) {
+                    System.out.println("Error: Expected header " + format.header(entity.columns) + "!");
+                    return false;
+                }
+                line = reader.readLine();
+                lineNumber++;
+            }
+            
+            for (; line != null; line = reader.readLine(), lineNumber++) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                read++;
+                
+                String error;
+                T record = null;
+                try {
+                    record = parser.apply(toStorageLine(format.parseRecord(line, entity.columns)));
+                    error = record == null ? "wrong number of fields" : validator.apply(record);
+                } catch (RuntimeException e) {
+                    error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                }
+                if (error != null) {
+                    if (++invalid <= MAX_REPORTED_ERRORS) {
+                        System.out.println("  Line " + lineNumber + ": " + error);
+                    }
+                    continue;
+                }
+                
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    imported += inserter.apply(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += inserter.apply(batch);
+            }
+        } catch (NoSuchFileException e) {
+            System.out.println("Error: File " + path + " not found!");
+            return false;
+        } catch (IOException e) {
+            System.out.println("Error: Could not read " + path + "; nothing was imported!");
+            return false;
+        }
+        
+        if (invalid > MAX_REPORTED_ERRORS) {
+            System.out.println("  ... and " + (invalid - MAX_REPORTED_ERRORS) + " more invalid lines");
+        }
+        System.out.println("Imported " + imported + " " + entity.label + " from " + path
+                + " (" + (read - invalid - imported) + " skipped, " + invalid + " invalid)");
+        return true;
+    }
+    
+    /**
+     * Join parsed values into a storage-format line
+     * Values cannot contain the storage delimiter or line breaks
+     */
+    private static String toStorageLine(String[] values) {
+        for (String value : values) {
+            if (value.indexOf('|') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("values cannot contain '|' or line breaks");
+            }
+        }
+        return String.join("|", values);
+    }
+    
+    private static RecordFormat formatOf(String path) {
+        RecordFormat format = RecordFormat.forFile(path);
+        if (format == null) {
+            System.out.println("Error: File must end in .csv, .json, .jsonl or .ndjson!");
+        }
+        return format;
+    }
+    
+    // ============ VALIDATION ============
+    
+    private static String checkBook(Book book) {
+        if (!Validator.isNotEmpty(book.getBookId())) {
+            return "missing book ID";
+        }
+        if (book.getTotalQuantity() < 0 || book.getAvailableQuantity() < 0
+                || book.getAvailableQuantity() > book.getTotalQuantity()) {
+            return "invalid quantities for book " + book.getBookId();
+        }
+        return null;
+    }
+    
+    private static String checkMember(Member member) {
+        if (!Validator.isNotEmpty(member.getMemberId())) {
+            return "missing member ID";
+        }
+        if (!Validator.isValidEmail(member.getEmail())) {
+            return "invalid email for member " + member.getMemberId();
+        }
+        if (!Validator.isValidMemberType(member.getMemberType())) {
+            return "invalid member type for member " + member.getMemberId();
+        }
+        if (member.getBorrowedBooks() < 0) {
+            return "invalid borrowed count for member " + member.getMemberId();
+        }
+        return null;
+    }
+    
+    private String checkTransaction(Transaction transaction) {
+        if (!Validator.isNotEmpty(transaction.getTransactionId())) {
+            return "missing transaction ID";
+        }
+        if (bookService.findBookById(transaction.getBookId()) == null) {
+            return "unknown book " + transaction.getBookId() + " for transaction " + transaction.getTransactionId();
+        }
+        if (memberService.findMemberById(transaction.getMemberId()) == null) {
+            return "unknown member " + transaction.getMemberId() + " for transaction " + transaction.getTransactionId();
+        }
+        boolean returned = transaction.getStatus().equals("RETURNED");
+        if (!returned && !transaction.getStatus().equals("ISSUED")) {
+            return "invalid status for transaction " + transaction.getTransactionId();
+        }
+        if (returned != (transaction.getReturnDate() != null)) {
+            return "return date does not match status for transaction " + transaction.getTransactionId();
+        }
+        if (transaction.getDueDate().isBefore(transaction.getIssueDate()) || transaction.getFine() < 0) {
+            return "invalid dates or fine for transaction " + transaction.getTransactionId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,389 @@
+package services;
+
+import models.Book;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InventoryTracker keeps utilization and stock-out figures current as copies move
+ * BookService calls refresh whenever a book's available or total quantity
+ * changes. Each call reconciles that one title: issued copies per category
+ * and for the whole library are adjusted by the difference, and the title
+ * enters or leaves the set of titles with no copy on the shelf. How long
+ * each title has been at zero (now and in total) is timed from those
+ * transitions, so reports read the running figures instead of replaying
+ * the history. Only the stock-out timings are persisted; the counts are
+ * rebuilt from the books on load.
+ */
+public class InventoryTracker {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final String UNKNOWN = "Unknown";
+    
+    /**
+     * Issued and total copies for a group of titles
+     */
+    public static final class Utilization {
+        private long issued;
+        private long total;
+        private int titlesAtZero;
+        
+        public long getIssued() {
+            return issued;
+        }
+        
+        public long getTotal() {
+            return total;
+        }
+        
+        /**
+         * Titles in the group with every copy out
+         */
+        public int getTitlesAtZero() {
+            return titlesAtZero;
+        }
+        
+        /**
+         * Issued copies divided by total copies (0 with no copies)
+         */
+        public double getRate() {
+            return total == 0 ? 0.0 : (double) issued / total;
+        }
+        
+        private Utilization copy() {
+            Utilization copy = new Utilization();
+            copy.issued = issued;
+            copy.total = total;
+            copy.titlesAtZero = titlesAtZero;
+            return copy;
+        }
+    }
+    
+    /**
+     * Point-in-time figures for one title
+     */
+    public static final class TitleStatus {
+        private final String bookId;
+        private final String category;
+        private final int issued;
+        private final int total;
+        private final long zeroSince;
+        private final long zeroMillis;
+        private final long trackedSince;
+        private final long now;
+        
+        private TitleStatus(Level level, long now) {
+            this.bookId = level.bookId;
+            this.category = level.category;
+            this.issued = level.issued;
+            this.total = level.total;
+            this.zeroSince = level.zeroSince;
+            this.zeroMillis = level.zeroMillis;
+            this.trackedSince = level.trackedSince;
+            this.now = now;
+        }
+        
+        public String getBookId() {
+            return bookId;
+        }
+        
+        public String getCategory() {
+            return category;
+        }
+        
+        public int getIssued() {
+            return issued;
+        }
+        
+        public int getTotal() {
+            return total;
+        }
+        
+        public double getUtilization() {
+            return total == 0 ? 0.0 : (double) issued / total;
+        }
+        
+        public boolean isAtZero() {
+            return zeroSince >= 0;
+        }
+        
+        /**
+         * Days the title has been at zero without a break (0 if a copy is in)
+         */
+        public double getDaysAtZero() {
+            return zeroSince >= 0 ? (double) (now - zeroSince) / MILLIS_PER_DAY : 0.0;
+        }
+        
+        /**
+         * Days at zero in total since tracking began, including the current stretch
+         */
+        public double getTotalDaysAtZero() {
+            return (double) (zeroMillis + (zeroSince >= 0 ? now - zeroSince : 0)) / MILLIS_PER_DAY;
+        }
+        
+        /**
+         * Share of the tracked time spent at zero (0 to 1)
+         */
+        public double getShareAtZero() {
+            long tracked = now - trackedSince;
+            return tracked <= 0 ? (zeroSince >= 0 ? 1.0 : 0.0)
+                                : Math.min(1.0, getTotalDaysAtZero() * MILLIS_PER_DAY / tracked);
+        }
+    }
+    
+    /**
+     * Tracked state of one title; guarded by its own monitor
+     */
+    private static final class Level {
+        final String bookId;
+        final long trackedSince;
+        String category;           // category counted in (UNKNOWN if none), null until first refresh
+        int issued;
+        int total;
+        long zeroSince = -1;       // start of the current stretch at zero, -1 if not at zero
+        long zeroMillis;           // finished stretches at zero
+        boolean removed;
+        
+        Level(String bookId, long trackedSince) {
+            this.bookId = bookId;
+            this.trackedSince = trackedSince;
+        }
+    }
+    
+    private final Map<String, Level> levels = new ConcurrentHashMap<>();
+    private final Map<String, Level> atZero = new ConcurrentHashMap<>();
+    
+    // Guarded by this
+    private final Map<String, Utilization> categories = new HashMap<>();
+    private final Utilization library = new Utilization();
+    
+    /**
+     * Start tracking the given books, restoring saved stock-out timings
+     * A title saved as at zero that now has a copy in is closed at load time
+     */
+    public void load(List<String> lines, List<Book> books) {
+        long now = System.currentTimeMillis();
+        levels.clear();
+        atZero.clear();
+        synchronized (this) {
+            categories.clear();
+            library.issued = 0;
+            library.total = 0;
+            library.titlesAtZero = 0;
+        }
+        
+        for (String line : lines) {
+            String[] parts = line.trim().split("\\|");
+            if (parts.length != 4) {
+                continue;
+            }
+            try {
+                Level level = new Level(parts[0], Long.parseLong(parts[3]));
+                level.zeroSince = Long.parseLong(parts[1]);
+                level.zeroMillis = Long.parseLong(parts[2]);
+                levels.put(key(parts[0]), level);
+            } catch (NumberFormatException e) {
+                // Skip damaged lines; the title is tracked afresh from now
+            }
+        }
+        
+        for (Book book : books) {
+            refresh(book, now);
+        }
+        levels.keySet().retainAll(keysOf(books));
+        atZero.keySet().retainAll(levels.keySet());
+    }
+    
+    /**
+     * Reconcile a title with its current quantities
+     * Safe to call from any thread after any change; the latest call always
+     * reads the latest quantities. Returns true if the title started or
+     * stopped being at zero, i.e. the persisted timings changed.
+     */
+    public boolean refresh(Book book) {
+        return refresh(book, System.currentTimeMillis());
+    }
+    
+    private boolean refresh(Book book, long now) {
+        Level level = levels.computeIfAbsent(key(book.getBookId()), id -> new Level(book.getBookId(), now));
+        synchronized (level) {
+            if (level.removed) {
+                return false;
+            }
+            int total = Math.max(0, book.getTotalQuantity());
+            int issued = Math.max(0, total - book.getAvailableQuantity());
+            boolean wasZero = level.zeroSince >= 0;
+            boolean isZero = total > 0 && issued >= total;
+            
+            synchronized (this) {
+                if (level.category != null) {
+                    count(level.category, -level.issued, -level.total, level.issued >= level.total && level.total > 0 ? -1 : 0);
+                }
+                level.category = book.getCategory() != null ? book.getCategory() : UNKNOWN;
+                level.issued = issued;
+                level.total = total;
+                count(level.category, issued, total, isZero ? 1 : 0);
+            }
+            
+            if (isZero && !wasZero) {
+                level.zeroSince = now;
+            } else if (!isZero && wasZero) {
+                level.zeroMillis += Math.max(0, now - level.zeroSince);
+                level.zeroSince = -1;
+            }
+            if (isZero) {
+                atZero.put(key(level.bookId), level);
+            } else {
+                atZero.remove(key(level.bookId));
+            }
+            return isZero != wasZero;
+        }
+    }
+    
+    /**
+     * Stop tracking a removed title
+     */
+    public void remove(String bookId) {
+        Level level = levels.remove(key(bookId));
+        if (level == null) {
+            return;
+        }
+        synchronized (level) {
+            level.removed = true;
+            atZero.remove(key(bookId));
+            if (level.category != null) {
+                synchronized (this) {
+                    count(level.category, -level.issued, -level.total, level.issued >= level.total && level.total > 0 ? -1 : 0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Add to a category's and the library's counts; caller holds this
+     */
+    private void count(String category, long issued, long total, int titlesAtZero) {
+        Utilization group = categories.computeIfAbsent(category, name -> new Utilization());
+        group.issued += issued;
+        group.total += total;
+        group.titlesAtZero += titlesAtZero;
+        if (group.total == 0 && group.issued == 0 && group.titlesAtZero == 0) {
+            categories.remove(category);
+        }
+        library.issued += issued;
+        library.total += total;
+        library.titlesAtZero += titlesAtZero;
+    }
+    
+    // ============ QUERIES ============
+    
+    public synchronized Utilization getLibraryUtilization() {
+        return library.copy();
+    }
+    
+    /**
+     * Utilization per category, sorted by category
+     */
+    public synchronized SortedMap<String, Utilization> getCategoryUtilization() {
+        SortedMap<String, Utilization> copy = new TreeMap<>();
+        for (Map.Entry<String, Utilization> entry : categories.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+    
+    /**
+     * Figures for one title, or null if it is not tracked
+     */
+    public TitleStatus getTitleStatus(String bookId) {
+        Level level = levels.get(key(bookId));
+        if (level == null) {
+            return null;
+        }
+        synchronized (level) {
+            return new TitleStatus(level, System.currentTimeMillis());
+        }
+    }
+    
+    /**
+     * The k titles with the highest utilization, highest first
+     * One pass over the titles with a k-sized heap
+     */
+    public List<TitleStatus> getMostUtilized(int k) {
+        long now = System.currentTimeMillis();
+        PriorityQueue<TitleStatus> top = new PriorityQueue<>(Math.max(1, k),
+                (a, b) -> Double.compare(a.getUtilization(), b.getUtilization()));
+        for (Level level : levels.values()) {
+            TitleStatus status;
+            synchronized (level) {
+                status = new TitleStatus(level, now);
+            }
+            if (status.getTotal() == 0) {
+                continue;
+            }
+            top.add(status);
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        List<TitleStatus> result = new ArrayList<>(top);
+        result.sort((a, b) -> Double.compare(b.getUtilization(), a.getUtilization()));
+        return result;
+    }
+    
+    /**
+     * Titles that have had no copy on the shelf for more than the given days,
+     * longest first; only titles currently at zero are visited
+     */
+    public List<TitleStatus> getTitlesAtZero(double minDays) {
+        long now = System.currentTimeMillis();
+        List<TitleStatus> result = new ArrayList<>();
+        for (Level level : atZero.values()) {
+            TitleStatus status;
+            synchronized (level) {
+                status = new TitleStatus(level, now);
+            }
+            if (status.isAtZero() && status.getDaysAtZero() > minDays) {
+                result.add(status);
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.getDaysAtZero(), a.getDaysAtZero()));
+        return result;
+    }
+    
+    /**
+     * Stock-out timings as lines: bookId|zeroSince|zeroMillis|trackedSince
+     */
+    public List<String> toFileLines() {
+        List<String> lines = new ArrayList<>();
+        for (Level level : levels.values()) {
+            synchronized (level) {
+                lines.add(level.bookId + "|" + level.zeroSince + "|" + level.zeroMillis + "|" + level.trackedSince);
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+    
+    private static Set<String> keysOf(List<Book> books) {
+        Set<String> keys = new HashSet<>();
+        for (Book book : books) {
+            keys.add(key(book.getBookId()));
+        }
+        return keys;
+    }
+    
+    private static String key(String bookId) {
+        return bookId.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,82 @@
+package services;
+
+import utils.LogHistogram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * LoanDurationStats tracks how long loans last (return date minus issue date)
+ * One LogHistogram is kept for every category and member type pair, so
+ * memory is fixed per pair however long the history grows. Histograms for
+ * a category, a member type or the whole library are merged from the
+ * pairs on demand, and percentiles cost one pass over the buckets.
+ */
+public class LoanDurationStats {
+    private static final String UNKNOWN = "Unknown";
+    
+    // Guarded by this: category -> member type -> histogram of days on loan,
+    // both keyed in lower case so spellings differing in case share a cell
+    private final Map<String, Map<String, LogHistogram>> cells = new HashMap<>();
+    private final Map<String, String> categoryLabels = new HashMap<>();   // key -> first spelling seen
+    private final Map<String, String> memberTypeLabels = new HashMap<>(); // key -> first spelling seen
+    
+    /**
+     * Record a closed loan
+     * A missing category or member type is recorded as Unknown
+     */
+    public synchronized void record(String category, String memberType, long days) {
+        cells.computeIfAbsent(key(category, categoryLabels), key -> new HashMap<>())
+                .computeIfAbsent(key(memberType, memberTypeLabels), key -> new LogHistogram())
+                .record(days);
+    }
+    
+    /**
+     * Merged durations for a category and member type, matched ignoring case
+     * A null argument means any value of that dimension
+     */
+    public synchronized LogHistogram getHistogram(String category, String memberType) {
+        LogHistogram merged = new LogHistogram();
+        String wantedCategory = category != null ? category.toLowerCase(Locale.ROOT) : null;
+        String wantedType = memberType != null ? memberType.toLowerCase(Locale.ROOT) : null;
+        for (Map.Entry<String, Map<String, LogHistogram>> row : cells.entrySet()) {
+            if (wantedCategory != null && !row.getKey().equals(wantedCategory)) {
+                continue;
+            }
+            for (Map.Entry<String, LogHistogram> cell : row.getValue().entrySet()) {
+                if (wantedType == null || cell.getKey().equals(wantedType)) {
+                    merged.merge(cell.getValue());
+                }
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Categories with at least one closed loan, sorted, each as first spelled
+     */
+    public synchronized List<String> getCategories() {
+        return new ArrayList<>(new TreeSet<>(categoryLabels.values()));
+    }
+    
+    /**
+     * Member types with at least one closed loan, sorted, each as first spelled
+     */
+    public synchronized List<String> getMemberTypes() {
+        return new ArrayList<>(new TreeSet<>(memberTypeLabels.values()));
+    }
+    
+    /**
+     * Lower-case key for a value, remembering how it was first spelled
+     */
+    private static String key(String value, Map<String, String> labels) {
+        String label = value != null ? value : UNKNOWN;
+        String key = label.toLowerCase(Locale.ROOT);
+        labels.putIfAbsent(key, label);
+        return key;
+    }
+}
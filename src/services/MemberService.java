@@ -2,46 +2,162 @@ package services;
 
 import models.Member;
 import utils.FileHandler;
+import utils.SnapshotList;
+import utils.StringDictionary;
+import utils.StripedLock;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * MemberService handles all member-related operations
  * Manages member registration and profiles
+ * Safe for concurrent use: readers scan immutable snapshots of the member list
+ * without locking, adds and removes are serialized, and changes to a
+ * single member are guarded by a striped lock keyed on memberId
  */
 public class MemberService {
-    private List<Member> members;
+    private SnapshotList<Member> members;
+    private Map<String, Member> membersById;
+    private Map<String, Member> membersByEmail;
     private FileHandler fileHandler;
+    private final Lock structureLock = new ReentrantLock(); // serializes adds and removes
+    private final StripedLock memberLocks = new StripedLock(64);
     
     public MemberService() {
         this.fileHandler = FileHandler.getInstance();
-        this.members = fileHandler.loadMembers();
+        this.members = new SnapshotList<>(fileHandler.loadMembers());
+        this.membersById = new ConcurrentHashMap<>();
+        this.membersByEmail = new ConcurrentHashMap<>();
+        for (Member member : members.snapshot()) {
+            membersById.put(key(member.getMemberId()), member);
+            membersByEmail.putIfAbsent(key(member.getEmail()), member);
+        }
+    }
+    
+    /**
+     * Get the per-member locks (used to serialize borrowing by the same member)
+     */
+    public StripedLock getMemberLocks() {
+        return memberLocks;
     }
     
     /**
      * Register a new member
+     * Inside a FileHandler batch the member is dropped again if the batch cannot be written
      */
     public boolean registerMember(Member member) {
-        // Check if member ID already exists
-        if (findMemberById(member.getMemberId()) != null) {
-            System.out.println("Error: Member with ID " + member.getMemberId() + " already exists!");
-            return false;
-        }
-        
-        // Check if email already exists
-        if (findMemberByEmail(member.getEmail()) != null) {
-            System.out.println("Error: Member with email " + member.getEmail() + " already exists!");
+        if (!insertMember(member)) {
             return false;
         }
         
-        members.add(member);
-        fileHandler.saveMembers(members);
+        fileHandler.onBatchFailure(() -> discardMember(member));
+        saveMembers();
         System.out.println("Member registered successfully!");
         return true;
     }
     
+    /**
+     * Register a new member without waiting for the disk
+     * The member can borrow as soon as this returns; the future completes
+     * with true once the member list is persisted, or false if it was rejected
+     * or could not be saved, in which case the member has been dropped again
+     */
+    public CompletableFuture<Boolean> registerMemberAsync(Member member) {
+        if (!insertMember(member)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return fileHandler.saveMembersAsync(this::getAllMembers, () -> discardMember(member));
+    }
+    
+    /**
+     * Add a member to the in-memory list and index
+     */
+    private boolean insertMember(Member member) {
+        structureLock.lock();
+        try {
+            // Check if member ID already exists
+            if (findMemberById(member.getMemberId()) != null) {
+                System.out.println("Error: Member with ID " + member.getMemberId() + " already exists!");
+                return false;
+            }
+            
+            // Check if email already exists
+            if (findMemberByEmail(member.getEmail()) != null) {
+                System.out.println("Error: Member with email " + member.getEmail() + " already exists!");
+                return false;
+            }
+            
+            members.add(member);
+            membersById.put(key(member.getMemberId()), member);
+            membersByEmail.put(key(member.getEmail()), member);
+        } finally {
+            structureLock.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Take a just-registered member out of the list and indexes again
+     */
+    private void discardMember(Member member) {
+        discardMembers(Collections.singletonList(member));
+    }
+    
+    /**
+     * Take just-registered members out of the list and indexes again
+     */
+    private void discardMembers(List<Member> discarded) {
+        structureLock.lock();
+        try {
+            members.removeAll(discarded);
+            for (Member member : discarded) {
+                membersById.remove(key(member.getMemberId()), member);
+                membersByEmail.remove(key(member.getEmail()), member);
+            }
+        } finally {
+            structureLock.unlock();
+        }
+    }
+    
+    /**
+     * Add members in bulk (used by imports)
+     * Members whose ID or email is already taken are skipped; returns how many were added
+     * Inside a FileHandler batch the members are dropped again if the batch cannot be written
+     */
+    public int importMembers(List<Member> imported) {
+        List<Member> added = new ArrayList<>();
+        structureLock.lock();
+        try {
+            for (Member member : imported) {
+                if (findMemberById(member.getMemberId()) != null || findMemberByEmail(member.getEmail()) != null) {
+                    continue;
+                }
+                membersById.put(key(member.getMemberId()), member);
+                membersByEmail.put(key(member.getEmail()), member);
+                added.add(member);
+            }
+            members.addAll(added);
+        } finally {
+            structureLock.unlock();
+        }
+        
+        if (!added.isEmpty()) {
+            fileHandler.onBatchFailure(() -> discardMembers(added));
+            saveMembers();
+        }
+        return added.size();
+    }
+    
     /**
      * Update member details
      */
@@ -53,12 +169,29 @@ public class MemberService {
         }
         
         // Update member details
-        existingMember.setName(updatedMember.getName());
-        existingMember.setEmail(updatedMember.getEmail());
-        existingMember.setPhone(updatedMember.getPhone());
-        existingMember.setMemberType(updatedMember.getMemberType());
+        Lock lock = memberLocks.get(existingMember.getMemberId());
+        lock.lock();
+        structureLock.lock();
+        try {
+            // The new email must not belong to another member
+            Member owner = findMemberByEmail(updatedMember.getEmail());
+            if (owner != null && owner != existingMember) {
+                System.out.println("Error: Member with email " + updatedMember.getEmail() + " already exists!");
+                return false;
+            }
+            
+            membersByEmail.remove(key(existingMember.getEmail()), existingMember);
+            membersByEmail.put(key(updatedMember.getEmail()), existingMember);
+            existingMember.setName(updatedMember.getName());
+            existingMember.setEmail(updatedMember.getEmail());
+            existingMember.setPhone(updatedMember.getPhone());
+            existingMember.setMemberType(updatedMember.getMemberType());
+        } finally {
+            structureLock.unlock();
+            lock.unlock();
+        }
         
-        fileHandler.saveMembers(members);
+        saveMembers();
         System.out.println("Member updated successfully!");
         return true;
     }
@@ -67,64 +200,58 @@ public class MemberService {
      * Find member by ID
      */
     public Member findMemberById(String memberId) {
-        return members.stream()
-                .filter(member -> member.getMemberId().equalsIgnoreCase(memberId))
-                .findFirst()
-                .orElse(null);
+        if (memberId == null) {
+            return null;
+        }
+        return membersById.get(key(memberId));
     }
     
     /**
      * Find member by email
      */
     public Member findMemberByEmail(String email) {
-        return members.stream()
-                .filter(member -> member.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        if (email == null) {
+            return null;
+        }
+        return membersByEmail.get(key(email));
     }
     
     /**
      * Search members by name
      */
     public List<Member> searchByName(String name) {
-        return members.stream()
-                .filter(member -> member.getName().toLowerCase().contains(name.toLowerCase()))
-                .collect(Collectors.toList());
+        return filter(member -> member.getName().toLowerCase(Locale.ROOT).contains(name.toLowerCase(Locale.ROOT)));
     }
     
     /**
      * Get all members
+     * Returns a read-only point-in-time snapshot in O(1); later changes are not visible in it
      */
     public List<Member> getAllMembers() {
-        return new ArrayList<>(members);
+        return members.snapshot();
     }
     
     /**
      * Get members by type (STUDENT or FACULTY)
      */
     public List<Member> getMembersByType(String memberType) {
-        return members.stream()
-                .filter(member -> member.getMemberType().equalsIgnoreCase(memberType))
-                .collect(Collectors.toList());
+        int code = StringDictionary.lookupCode(memberType);
+        if (code == StringDictionary.NO_CODE) {
+            return new ArrayList<>();
+        }
+        return filter(member -> member.getMemberTypeCode() == code);
     }
     
     /**
-     * Update borrowed books count (used during issue/return)
+     * Change borrowed books count by one in memory only
+     * Callers must hold the member's lock and persist (see UnitOfWork)
      */
-    public boolean updateBorrowedBooks(String memberId, int change) {
-        Member member = findMemberById(memberId);
-        if (member == null) {
-            return false;
-        }
-        
+    public void adjustBorrowedBooks(Member member, int change) {
         if (change < 0) {
             member.decrementBorrowedBooks();
         } else {
             member.incrementBorrowedBooks();
         }
-        
-        fileHandler.saveMembers(members);
-        return true;
     }
     
     /**
@@ -139,22 +266,24 @@ public class MemberService {
     }
     
     /**
-     * Display all members
+     * Persist the member list
+     * The snapshot is taken under the file lock so concurrent saves land in order
      */
-    public void displayAllMembers() {
-        if (members.isEmpty()) {
-            System.out.println("No members registered.");
-            return;
-        }
-        
-        System.out.println("\n========================================");
-        System.out.println("           ALL MEMBERS");
-        System.out.println("========================================");
-        for (Member member : members) {
-            System.out.println(member);
-        }
-        System.out.println("========================================");
-        System.out.println("Total members: " + members.size());
+    public void saveMembers() {
+        fileHandler.saveMembers(this::getAllMembers);
+    }
+    
+    /**
+     * Members matching a filter, scanned over a snapshot without locking
+     */
+    private List<Member> filter(Predicate<Member> predicate) {
+        return members.snapshot().stream()
+                .filter(predicate)
+                .collect(Collectors.toList());
+    }
+    
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
     }
     
     /**
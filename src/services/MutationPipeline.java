@@ -0,0 +1,325 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import utils.FileHandler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * MutationPipeline funnels network mutations through one writer thread
+ * It is optional: the console and the services' asynchronous methods
+ * mutate the services directly, and the services' own locks keep those
+ * consistent with the writer. What the pipeline adds is batching and
+ * back-pressure for the HTTP and desk servers.
+ *
+ * Commands are published into a bounded, pre-allocated ring buffer
+ * (Disruptor style). Producers claim slots with a lock-free counter and
+ * block when the ring is full, which gives back-pressure when the disk
+ * falls behind. The writer applies commands strictly in order and opens a
+ * FileHandler batch around each run of commands, so a burst of mutations
+ * costs one write per store. Readers keep querying the services directly.
+ *
+ * Batching is adaptive: when commands have been arriving together, the
+ * writer lingers for a few hundred microseconds after draining the ring so
+ * more of a burst shares the same write. When traffic is light it flushes
+ * at once, so a lone checkout never waits for company.
+ *
+ * If a batch cannot be written, every command in it fails and its
+ * in-memory changes are undone: the service methods register their undo
+ * with FileHandler.onBatchFailure, which endBatch runs on a failed write.
+ * Commands passed to submit directly should do the same.
+ */
+public class MutationPipeline {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 50_000L;
+    private static final long DEFAULT_LINGER_NANOS = 300_000L;
+    private static final double LINGER_THRESHOLD = 1.5; // average batch size that counts as a burst
+    private static final double BATCH_SMOOTHING = 0.2;
+    
+    private final BookService bookService;
+    private final MemberService memberService;
+    private final TransactionService transactionService;
+    private final FileHandler fileHandler;
+    
+    private final Slot[] ring;
+    private final int mask;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final AtomicLong claimed = new AtomicLong(-1); // last sequence claimed by a producer
+    private volatile long consumed = -1;                   // last sequence applied by the writer
+    private volatile boolean running;
+    private volatile boolean stopped = true;               // no writer thread is running
+    private volatile Thread writer;
+    private volatile double averageBatchSize = 1.0; // smoothed, written only by the writer
+    
+    /**
+     * Pre-allocated ring entry, reused for every command
+     */
+    private static final class Slot {
+        volatile long published = -1;
+        final AtomicLong taken = new AtomicLong(-1); // last sequence run by the writer or cancelled by its producer
+        Supplier<?> command;
+        CompletableFuture<Object> result;
+        Object outcome;
+        Throwable failure;
+        
+        /**
+         * Claim the command at a sequence, to run or to cancel it
+         * Only the first of the writer and the producer succeeds
+         */
+        boolean take(long sequence) {
+            long last = taken.get();
+            return last < sequence && taken.compareAndSet(last, sequence);
+        }
+    }
+    
+    public MutationPipeline(BookService bookService, MemberService memberService,
+                            TransactionService transactionService) {
+        this(bookService, memberService, transactionService, DEFAULT_CAPACITY, DEFAULT_LINGER_NANOS);
+    }
+    
+    /**
+     * Pipeline with a given ring capacity and burst linger (0 disables lingering)
+     */
+    public MutationPipeline(BookService bookService, MemberService memberService,
+                            TransactionService transactionService, int capacity, long lingerNanos) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.bookService = bookService;
+        this.memberService = memberService;
+        this.transactionService = transactionService;
+        this.fileHandler = FileHandler.getInstance();
+        this.ring = new Slot[size];
+        this.mask = size - 1;
+        this.maxBatch = Math.min(MAX_BATCH, size); // a batch never waits on a slot it is still holding
+        this.lingerNanos = lingerNanos;
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+    }
+    
+    /**
+     * Start the writer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        stopped = false;
+        writer = new Thread(this::runWriter, "mutation-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Stop accepting work once queued commands are applied
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+    
+    // ============ MUTATIONS ============
+    
+    public CompletableFuture<Boolean> addBook(Book book) {
+        return submit(() -> bookService.addBook(book));
+    }
+    
+    public CompletableFuture<Boolean> registerMember(Member member) {
+        return submit(() -> memberService.registerMember(member));
+    }
+    
+    public CompletableFuture<Transaction> issueBook(String bookId, String memberId) {
+        return submit(() -> transactionService.issueBookQuietly(bookId, memberId));
+    }
+    
+    public CompletableFuture<Boolean> returnBook(String transactionId) {
+        return submit(() -> transactionService.returnBookQuietly(transactionId));
+    }
+    
+    /**
+     * Queue a command, waiting for a free slot if the ring is full
+     * The future completes once the command is applied and persisted; it
+     * fails if the pipeline shuts down before the command could run
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        if (!running) {
+            throw new IllegalStateException("Mutation pipeline is not running");
+        }
+        long sequence = claimed.incrementAndGet();
+        while (sequence - consumed > ring.length) {
+            if (stopped) {
+                CompletableFuture<T> result = new CompletableFuture<>();
+                result.completeExceptionally(new IllegalStateException("Mutation pipeline was shut down"));
+                return result;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS); // ring full: back-pressure
+        }
+        return publish(sequence, command);
+    }
+    
+    /**
+     * Queue a command only if a slot is free right now
+     * Returns null when the ring is full so callers can shed load
+     */
+    public <T> CompletableFuture<T> trySubmit(Supplier<T> command) {
+        if (!running) {
+            throw new IllegalStateException("Mutation pipeline is not running");
+        }
+        while (true) {
+            long current = claimed.get();
+            if (current + 1 - consumed > ring.length) {
+                return null;
+            }
+            if (claimed.compareAndSet(current, current + 1)) {
+                return publish(current + 1, command);
+            }
+        }
+    }
+    
+    /**
+     * Number of commands waiting to be applied
+     */
+    public int getQueueDepth() {
+        return (int) (claimed.get() - consumed);
+    }
+    
+    /**
+     * Smoothed number of commands persisted per write
+     */
+    public double getAverageBatchSize() {
+        return averageBatchSize;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> publish(long sequence, Supplier<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Slot slot = ring[(int) (sequence & mask)];
+        slot.command = command;
+        slot.result = (CompletableFuture<Object>) result;
+        slot.published = sequence; // volatile write makes the slot visible to the writer
+        LockSupport.unpark(writer);
+        
+        // Shut down meanwhile: the writer may have left without this command.
+        // Fail at once unless the writer has already taken it
+        if (!running && slot.take(sequence)) {
+            result.completeExceptionally(new IllegalStateException("Mutation pipeline was shut down"));
+        }
+        return result;
+    }
+    
+    // ============ WRITER ============
+    
+    private void runWriter() {
+        try {
+            writeBatches();
+        } finally {
+            stopped = true;
+        }
+    }
+    
+    private void writeBatches() {
+        long next = consumed + 1;
+        while (running || claimed.get() >= next) {
+            Slot first = ring[(int) (next & mask)];
+            if (first.published != next) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            
+            // Apply every published command in order, up to one batch
+            long end = next;
+            long deadline = 0;
+            fileHandler.beginBatch();
+            while (end - next < maxBatch) {
+                Slot slot = ring[(int) (end & mask)];
+                if (slot.published != end) {
+                    if (claimed.get() >= end) {
+                        Thread.yield(); // claimed but not yet published: it is moments away
+                        continue;
+                    }
+                    if (!shouldLinger(end - next)) {
+                        break;
+                    }
+                    long now = System.nanoTime();
+                    if (deadline == 0) {
+                        deadline = now + lingerNanos;
+                    } else if (now >= deadline) {
+                        break;
+                    }
+                    Thread.yield();
+                    continue;
+                }
+                if (slot.take(end)) {
+                    try {
+                        slot.outcome = slot.command.get();
+                    } catch (Throwable e) {
+                        slot.failure = e; // reported to the caller; the writer carries on
+                    }
+                } else {
+                    slot.result = null; // cancelled by its producer, which has failed it
+                }
+                end++;
+            }
+            boolean persisted;
+            try {
+                persisted = fileHandler.endBatch();
+            } catch (Throwable e) {
+                System.err.println("Error writing a batch of mutations!");
+                e.printStackTrace();
+                persisted = false;
+            }
+            averageBatchSize += BATCH_SMOOTHING * ((end - next) - averageBatchSize);
+            
+            // Complete callers only after the batch is on disk, then free the slots
+            for (long sequence = next; sequence < end; sequence++) {
+                Slot slot = ring[(int) (sequence & mask)];
+                CompletableFuture<Object> result = slot.result;
+                Object outcome = slot.outcome;
+                Throwable failure = slot.failure;
+                slot.command = null;
+                slot.result = null;
+                slot.outcome = null;
+                slot.failure = null;
+                consumed = sequence;
+                
+                if (result == null) {
+                    continue;
+                }
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else if (!persisted) {
+                    result.completeExceptionally(new IllegalStateException("Batch could not be persisted"));
+                } else {
+                    result.complete(outcome);
+                }
+            }
+            next = end;
+        }
+    }
+    
+    /**
+     * Wait for more commands only during a burst: the current run already
+     * holds several commands, or recent batches have been large
+     */
+    private boolean shouldLinger(long batched) {
+        return lingerNanos > 0 && running && (batched > 1 || averageBatchSize >= LINGER_THRESHOLD);
+    }
+}
@@ -0,0 +1,143 @@
+package services;
+
+import models.Transaction;
+import utils.SpaceSaving;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PopularityTracker keeps running "most borrowed" counts per time window
+ * Each window (today, this week, this term) is a tumbling window backed by
+ * a fixed-size SpaceSaving sketch, so memory stays bounded however large
+ * the catalog grows and the top of the list is read without scanning the
+ * transaction history. A window resets itself when the first issue of the
+ * next period arrives. Terms follow the university calendar: January to
+ * June and July to December.
+ */
+public class PopularityTracker {
+    private static final int SKETCH_CAPACITY = 128;
+    
+    /**
+     * Reporting windows
+     */
+    public enum Window {
+        DAY("Today"),
+        WEEK("This Week"),
+        TERM("This Term");
+        
+        private final String label;
+        
+        Window(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+        
+        /**
+         * First day of the period containing a date
+         */
+        LocalDate startOf(LocalDate date) {
+            switch (this) {
+                case DAY:
+                    return date;
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                default:
+                    Month first = date.getMonthValue() <= 6 ? Month.JANUARY : Month.JULY;
+                    return LocalDate.of(date.getYear(), first, 1);
+            }
+        }
+    }
+    
+    private final Map<Window, SpaceSaving<String>> sketches = new EnumMap<>(Window.class);
+    private final Map<Window, LocalDate> windowStarts = new EnumMap<>(Window.class);
+    
+    public PopularityTracker() {
+        LocalDate today = LocalDate.now();
+        for (Window window : Window.values()) {
+            sketches.put(window, new SpaceSaving<>(SKETCH_CAPACITY));
+            windowStarts.put(window, window.startOf(today));
+        }
+    }
+    
+    /**
+     * Count issues from existing history that fall in the current windows
+     */
+    public synchronized void rebuild(List<Transaction> transactions) {
+        for (SpaceSaving<String> sketch : sketches.values()) {
+            sketch.clear();
+        }
+        for (Transaction transaction : transactions) {
+            recordIssue(transaction.getBookId(), transaction.getIssueDate());
+        }
+    }
+    
+    /**
+     * Count one issue of a book
+     * Issues from before a window's current period are ignored
+     */
+    public synchronized void recordIssue(String bookId, LocalDate issueDate) {
+        if (bookId == null || issueDate == null) {
+            return;
+        }
+        String key = bookId.toUpperCase(Locale.ROOT);
+        for (Window window : Window.values()) {
+            LocalDate start = window.startOf(issueDate);
+            LocalDate current = windowStarts.get(window);
+            if (start.isBefore(current)) {
+                continue;
+            }
+            SpaceSaving<String> sketch = sketches.get(window);
+            if (start.isAfter(current)) {
+                sketch.clear(); // a new period has begun
+                windowStarts.put(window, start);
+            }
+            sketch.offer(key);
+        }
+    }
+    
+    /**
+     * Most borrowed books in a window, highest count first
+     * Counts are estimates; getError bounds how far each may be over
+     */
+    public synchronized List<SpaceSaving.Entry<String>> getTopBooks(Window window, int n) {
+        roll(window, LocalDate.now());
+        return sketches.get(window).top(n);
+    }
+    
+    /**
+     * Total issues counted in a window
+     */
+    public synchronized long getIssueCount(Window window) {
+        roll(window, LocalDate.now());
+        return sketches.get(window).getTotal();
+    }
+    
+    /**
+     * Start of the period a window is currently counting
+     */
+    public synchronized LocalDate getWindowStart(Window window) {
+        roll(window, LocalDate.now());
+        return windowStarts.get(window);
+    }
+    
+    /**
+     * Move a window on if its period ended with no issues since
+     */
+    private void roll(Window window, LocalDate today) {
+        LocalDate start = window.startOf(today);
+        if (start.isAfter(windowStarts.get(window))) {
+            sketches.get(window).clear();
+            windowStarts.put(window, start);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
+
+/**
+ * Query is a parsed ad-hoc report query
+ * The grammar is
+ *   [explain] (books|members|transactions)
+ *       [where field op value {and field op value}]
+ *       [group by field] [limit n]
+ * where op is one of = != < <= > >= ~ (contains), and a value is a word,
+ * a quoted string, null, a number, a date (yyyy-MM-dd) or today, today-N
+ * or today+N (spaces around the sign are allowed). Keywords are
+ * case-insensitive. Field names and values are checked when QueryService
+ * compiles the query against an entity.
+ */
+public class Query {
+    
+    /**
+     * Comparison operators, each mapping a compareTo result to a match
+     */
+    public enum Op {
+        EQ("=", c -> c == 0),
+        NE("!=", c -> c != 0),
+        LT("<", c -> c < 0),
+        LE("<=", c -> c <= 0),
+        GT(">", c -> c > 0),
+        GE(">=", c -> c >= 0),
+        CONTAINS("~", c -> c == 0);
+        
+        private final String symbol;
+        private final IntPredicate outcome;
+        
+        Op(String symbol, IntPredicate outcome) {
+            this.symbol = symbol;
+            this.outcome = outcome;
+        }
+        
+        public String getSymbol() {
+            return symbol;
+        }
+        
+        /**
+         * Whether a comparison result (as from compareTo) satisfies this operator
+         */
+        public IntPredicate getOutcome() {
+            return outcome;
+        }
+        
+        static Op fromSymbol(String symbol) {
+            for (Op op : values()) {
+                if (op.symbol.equals(symbol)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * One "field op value" filter; value is null for the null literal
+     */
+    public static final class Condition {
+        private final String field;
+        private final Op op;
+        private final String value;
+        
+        Condition(String field, Op op, String value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+        
+        public String getField() {
+            return field;
+        }
+        
+        public Op getOp() {
+            return op;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        @Override
+        public String toString() {
+            return field + " " + op.symbol + " " + (value == null ? "null" : "'" + value + "'");
+        }
+    }
+    
+    private final boolean explain;
+    private final String source;
+    private final List<Condition> conditions;
+    private final String groupBy;
+    private final int limit;
+    
+    private Query(boolean explain, String source, List<Condition> conditions, String groupBy, int limit) {
+        this.explain = explain;
+        this.source = source;
+        this.conditions = Collections.unmodifiableList(conditions);
+        this.groupBy = groupBy;
+        this.limit = limit;
+    }
+    
+    public boolean isExplain() {
+        return explain;
+    }
+    
+    /**
+     * Entity queried, lowercase (books, members or transactions)
+     */
+    public String getSource() {
+        return source;
+    }
+    
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+    
+    /**
+     * Field to count rows by, or null for a plain listing
+     */
+    public String getGroupBy() {
+        return groupBy;
+    }
+    
+    /**
+     * Maximum rows to return, or -1 for all
+     */
+    public int getLimit() {
+        return limit;
+    }
+    
+    /**
+     * Parse query text
+     * Throws IllegalArgumentException describing the first syntax error
+     */
+    public static Query parse(String text) {
+        Tokens tokens = new Tokens(tokenize(text));
+        
+        boolean explain = tokens.acceptKeyword("explain");
+        String source = tokens.word("entity").toLowerCase(Locale.ROOT);
+        
+        List<Condition> conditions = new ArrayList<>();
+        if (tokens.acceptKeyword("where")) {
+            do {
+                String field = tokens.word("field name");
+                String symbol = tokens.next("operator after " + field);
+                Op op = Op.fromSymbol(symbol);
+                if (op == null) {
+                    throw new IllegalArgumentException("Unknown operator " + symbol);
+                }
+                conditions.add(new Condition(field, op, tokens.value("value after " + field + " " + symbol)));
+            } while (tokens.acceptKeyword("and"));
+        }
+        
+        String groupBy = null;
+        if (tokens.acceptKeyword("group")) {
+            if (!tokens.acceptKeyword("by")) {
+                throw new IllegalArgumentException("Expected 'by' after 'group'");
+            }
+            groupBy = tokens.word("field name after 'group by'");
+        }
+        
+        int limit = -1;
+        if (tokens.acceptKeyword("limit")) {
+            String count = tokens.word("row count after 'limit'");
+            try {
+                limit = Integer.parseInt(count);
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("Invalid limit " + count);
+            }
+        }
+        
+        if (tokens.hasNext()) {
+            throw new IllegalArgumentException("Unexpected '" + tokens.peekText() + "'");
+        }
+        return new Query(explain, source, conditions, groupBy, limit);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(source);
+        for (int i = 0; i < conditions.size(); i++) {
+            text.append(i == 0 ? " where " : " and ").append(conditions.get(i));
+        }
+        if (groupBy != null) {
+            text.append(" group by ").append(groupBy);
+        }
+        if (limit >= 0) {
+            text.append(" limit ").append(limit);
+        }
+        return text.toString();
+    }
+    
+    // ============ TOKENIZER ============
+    
+    private static final String OPERATOR_CHARS = "=!<>~";
+    
+    /**
+     * A word, quoted string or operator
+     */
+    private static final class Token {
+        final String text;
+        final boolean quoted;
+        final boolean operator;
+        
+        Token(String text, boolean quoted, boolean operator) {
+            this.text = text;
+            this.quoted = quoted;
+            this.operator = operator;
+        }
+    }
+    
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = text.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated string starting at position " + (i + 1));
+                }
+                tokens.add(new Token(text.substring(i + 1, end), true, false));
+                i = end + 1;
+            } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+                int start = i;
+                while (i < text.length() && OPERATOR_CHARS.indexOf(text.charAt(i)) >= 0) {
+                    i++;
+                }
+                tokens.add(new Token(text.substring(start, i), false, true));
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                        && OPERATOR_CHARS.indexOf(text.charAt(i)) < 0
+                        && text.charAt(i) != '\'' && text.charAt(i) != '"') {
+                    i++;
+                }
+                tokens.add(new Token(text.substring(start, i), false, false));
+            }
+        }
+        return tokens;
+    }
+    
+    /**
+     * Cursor over the tokens
+     */
+    private static final class Tokens {
+        private final List<Token> tokens;
+        private int position;
+        
+        Tokens(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+        
+        boolean hasNext() {
+            return position < tokens.size();
+        }
+        
+        String peekText() {
+            return tokens.get(position).text;
+        }
+        
+        boolean acceptKeyword(String keyword) {
+            if (hasNext() && !tokens.get(position).quoted && !tokens.get(position).operator
+                    && tokens.get(position).text.equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+        
+        String next(String expected) {
+            if (!hasNext()) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+            return tokens.get(position++).text;
+        }
+        
+        String word(String expected) {
+            if (!hasNext() || tokens.get(position).quoted || tokens.get(position).operator) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+            return tokens.get(position++).text;
+        }
+        
+        String value(String expected) {
+            if (!hasNext() || tokens.get(position).operator) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+            Token token = tokens.get(position++);
+            if (token.quoted) {
+                return token.text;
+            }
+            if (token.text.equalsIgnoreCase("null")) {
+                return null;
+            }
+            if (token.text.equalsIgnoreCase("today")) {
+                return token.text + dayOffset();
+            }
+            if ((token.text.equalsIgnoreCase("today-") || token.text.equalsIgnoreCase("today+"))
+                    && isPlainWord(position)) {
+                return token.text + tokens.get(position++).text; // "today- 7"
+            }
+            return token.text;
+        }
+        
+        /**
+         * A "- N" or "+ N" written apart from today, joined up as "-N"/"+N"
+         * Returns "" (consuming nothing) if no offset follows
+         */
+        private String dayOffset() {
+            if (!isPlainWord(position)) {
+                return "";
+            }
+            String sign = tokens.get(position).text;
+            if ((sign.equals("-") || sign.equals("+")) && isPlainWord(position + 1)) {
+                position += 2;
+                return sign + tokens.get(position - 1).text;
+            }
+            if (sign.length() > 1 && (sign.charAt(0) == '-' || sign.charAt(0) == '+')) {
+                position++;
+                return sign; // "today -7"
+            }
+            return "";
+        }
+        
+        private boolean isPlainWord(int index) {
+            return index < tokens.size() && !tokens.get(index).quoted && !tokens.get(index).operator;
+        }
+    }
+}
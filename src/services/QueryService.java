@@ -0,0 +1,536 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import utils.ReportWriter;
+import utils.StringDictionary;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * QueryService runs ad-hoc report queries (see Query for the syntax)
+ * A query is parsed once and compiled against its entity: every filter
+ * becomes a typed predicate with its value already converted (dates such
+ * as today-7 are resolved once, dictionary fields compare integer codes),
+ * and the filters are fused into one predicate applied in a single pass.
+ * An equality filter on an indexed field (book, member or transaction
+ * ID, ISBN, member email, a transaction's member ID) is answered from the
+ * service's hash index; anything else scans a snapshot, in parallel once
+ * it is large enough. EXPLAIN shows the chosen plan without running it.
+ */
+public class QueryService {
+    private static final int PARALLEL_THRESHOLD = 8192;
+    
+    /**
+     * Outcome of a query: the plan plus either matching rows or counts per group
+     */
+    public static final class Result<T> {
+        private final String plan;
+        private final boolean executed;
+        private final List<T> rows;
+        private final Map<String, Long> groups;
+        private final ReportWriter.RowFormatter<? super T> formatter;
+        
+        Result(String plan, boolean executed, List<T> rows, Map<String, Long> groups,
+               ReportWriter.RowFormatter<? super T> formatter) {
+            this.plan = plan;
+            this.executed = executed;
+            this.rows = rows;
+            this.groups = groups;
+            this.formatter = formatter;
+        }
+        
+        /**
+         * Human-readable access path, filter and aggregation
+         */
+        public String getPlan() {
+            return plan;
+        }
+        
+        /**
+         * False for EXPLAIN queries, which are planned but not run
+         */
+        public boolean isExecuted() {
+            return executed;
+        }
+        
+        /**
+         * Matching rows, or null for grouped queries
+         */
+        public List<T> getRows() {
+            return rows;
+        }
+        
+        /**
+         * Row count per group value, largest first, or null for plain listings
+         */
+        public Map<String, Long> getGroups() {
+            return groups;
+        }
+        
+        /**
+         * Display formatter for the rows
+         */
+        public ReportWriter.RowFormatter<? super T> getFormatter() {
+            return formatter;
+        }
+    }
+    
+    private final Source<Book> books;
+    private final Source<Member> members;
+    private final Source<Transaction> transactions;
+    
+    public QueryService(BookService bookService, MemberService memberService,
+                        TransactionService transactionService) {
+        books = new Source<>("books", bookService::getAllBooks, Book::appendTo);
+        books.field(new StringField<>("bookId", Book::getBookId, null));
+        books.field(new StringField<>("title", Book::getTitle, null));
+        books.field(new StringField<>("author", Book::getAuthor, null));
+        books.field(new StringField<>("isbn", Book::getIsbn, null));
+        books.field(new StringField<>("category", Book::getCategory, Book::getCategoryCode));
+        books.field(new IntField<>("totalQuantity", Book::getTotalQuantity));
+        books.field(new IntField<>("availableQuantity", Book::getAvailableQuantity));
+        books.index("bookId", single(bookService::findBookById));
+        books.index("isbn", bookService::findBooksByIsbn);
+        
+        members = new Source<>("members", memberService::getAllMembers, Member::appendTo);
+        members.field(new StringField<>("memberId", Member::getMemberId, null));
+        members.field(new StringField<>("name", Member::getName, null));
+        members.field(new StringField<>("email", Member::getEmail, null));
+        members.field(new StringField<>("phone", Member::getPhone, null));
+        members.field(new StringField<>("memberType", Member::getMemberType, Member::getMemberTypeCode));
+        members.field(new DateField<>("registrationDate", Member::getRegistrationDate));
+        members.field(new IntField<>("borrowedBooks", Member::getBorrowedBooks));
+        members.field(new IntField<>("maxBooksAllowed", Member::getMaxBooksAllowed));
+        members.index("memberId", single(memberService::findMemberById));
+        members.index("email", single(memberService::findMemberByEmail));
+        
+        transactions = new Source<>("transactions", transactionService::getAllTransactions, Transaction::appendTo);
+        transactions.field(new StringField<>("transactionId", Transaction::getTransactionId, null));
+        transactions.field(new StringField<>("bookId", Transaction::getBookId, null));
+        transactions.field(new StringField<>("memberId", Transaction::getMemberId, null));
+        transactions.field(new DateField<>("issueDate", Transaction::getIssueDate));
+        transactions.field(new DateField<>("dueDate", Transaction::getDueDate));
+        transactions.field(new DateField<>("returnDate", Transaction::getReturnDate));
+        transactions.field(new DoubleField<>("fine", Transaction::getFine));
+        transactions.field(new StringField<>("status", Transaction::getStatus, null));
+        transactions.index("transactionId", single(transactionService::findTransactionById));
+        transactions.index("memberId", transactionService::getTransactionsByMember);
+    }
+    
+    /**
+     * Adapt a unique-key lookup to an index returning the matching rows
+     */
+    private static <T> Function<String, List<T>> single(Function<String, T> lookup) {
+        return value -> {
+            T hit = lookup.apply(value);
+            return hit != null ? Collections.singletonList(hit) : Collections.<T>emptyList();
+        };
+    }
+    
+    /**
+     * Parse, plan and run a query
+     * Returns null (after printing the reason) if the query is invalid
+     */
+    public Result<?> execute(String text) {
+        try {
+            Query query = Query.parse(text);
+            switch (query.getSource()) {
+                case "books":
+                    return books.run(query, LocalDate.now());
+                case "members":
+                    return members.run(query, LocalDate.now());
+                case "transactions":
+                    return transactions.run(query, LocalDate.now());
+                default:
+                    throw new IllegalArgumentException("Unknown entity " + query.getSource()
+                            + " (use books, members or transactions)");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage() + "!");
+            return null;
+        }
+    }
+    
+    /**
+     * Field names available for an entity, in declaration order (empty if unknown)
+     */
+    public List<String> getFieldNames(String entity) {
+        for (Source<?> source : new Source<?>[] {books, members, transactions}) {
+            if (source.name.equalsIgnoreCase(entity)) {
+                List<String> names = new ArrayList<>();
+                for (Field<?> field : source.fields.values()) {
+                    names.add(field.name);
+                }
+                return names;
+            }
+        }
+        return Collections.emptyList();
+    }
+    
+    // ============ PLANNING AND EXECUTION ============
+    
+    /**
+     * A queryable entity: its rows, fields and hash indexes
+     */
+    private static final class Source<T> {
+        private final String name;
+        private final Supplier<List<T>> snapshot;
+        private final ReportWriter.RowFormatter<? super T> formatter;
+        private final Map<String, Field<T>> fields = new LinkedHashMap<>();          // by lowercase name
+        private final Map<String, Function<String, List<T>>> indexes = new LinkedHashMap<>(); // by lowercase name
+        
+        Source(String name, Supplier<List<T>> snapshot, ReportWriter.RowFormatter<? super T> formatter) {
+            this.name = name;
+            this.snapshot = snapshot;
+            this.formatter = formatter;
+        }
+        
+        void field(Field<T> field) {
+            fields.put(field.name.toLowerCase(Locale.ROOT), field);
+        }
+        
+        void index(String field, Function<String, List<T>> lookup) {
+            indexes.put(field.toLowerCase(Locale.ROOT), lookup);
+        }
+        
+        Field<T> resolve(String name) {
+            Field<T> field = fields.get(name.toLowerCase(Locale.ROOT));
+            if (field == null) {
+                List<String> names = new ArrayList<>();
+                for (Field<T> known : fields.values()) {
+                    names.add(known.name);
+                }
+                throw new IllegalArgumentException("Unknown field " + name + " for " + this.name
+                        + " (fields: " + String.join(", ", names) + ")");
+            }
+            return field;
+        }
+        
+        Result<T> run(Query query, LocalDate today) {
+            // Compile every filter, and pick the first indexed equality as the access path
+            List<Predicate<T>> filters = new ArrayList<>();
+            List<String> filterText = new ArrayList<>();
+            Query.Condition lookup = null;
+            for (Query.Condition condition : query.getConditions()) {
+                Field<T> field = resolve(condition.getField());
+                filters.add(field.compile(condition.getOp(), condition.getValue(), today));
+                filterText.add(field.name + " " + condition.getOp().getSymbol() + " "
+                        + field.describe(condition.getValue(), today));
+                if (lookup == null && condition.getOp() == Query.Op.EQ && condition.getValue() != null
+                        && indexes.containsKey(field.name.toLowerCase(Locale.ROOT))) {
+                    lookup = condition;
+                }
+            }
+            Predicate<T> filter = fuse(filters);
+            Field<T> groupBy = query.getGroupBy() != null ? resolve(query.getGroupBy()) : null;
+            
+            List<T> all = snapshot.get();
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            boolean parallel = lookup == null && all.size() >= PARALLEL_THRESHOLD && parallelism > 1;
+            
+            StringBuilder plan = new StringBuilder();
+            plan.append("Query:     ").append(query).append(System.lineSeparator());
+            plan.append("Access:    ");
+            if (lookup != null) {
+                plan.append("index lookup on ").append(resolve(lookup.getField()).name)
+                        .append(" = '").append(lookup.getValue()).append("'");
+            } else if (parallel) {
+                plan.append("parallel scan of ").append(all.size()).append(' ').append(name)
+                        .append(" (").append(parallelism).append(" threads)");
+            } else {
+                plan.append("sequential scan of ").append(all.size()).append(' ').append(name);
+            }
+            plan.append(System.lineSeparator());
+            plan.append("Filter:    ").append(filterText.isEmpty() ? "none" : String.join(" and ", filterText))
+                    .append(System.lineSeparator());
+            plan.append("Aggregate: ").append(groupBy != null ? "count group by " + groupBy.name : "none");
+            if (query.getLimit() >= 0) {
+                plan.append(System.lineSeparator()).append("Limit:     ").append(query.getLimit());
+            }
+            if (query.isExplain()) {
+                return new Result<>(plan.toString(), false, null, null, formatter);
+            }
+            
+            Stream<T> rows;
+            if (lookup != null) {
+                rows = indexes.get(resolve(lookup.getField()).name.toLowerCase(Locale.ROOT)).apply(lookup.getValue()).stream();
+            } else {
+                rows = parallel ? all.parallelStream() : all.stream();
+            }
+            rows = rows.filter(filter);
+            
+            if (groupBy != null) {
+                Field<T> key = groupBy;
+                Map<String, Long> counts = rows.collect(Collectors.groupingBy(key::groupKey, Collectors.counting()));
+                Map<String, Long> groups = new LinkedHashMap<>();
+                counts.entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .limit(query.getLimit() >= 0 ? query.getLimit() : Long.MAX_VALUE)
+                        .forEachOrdered(entry -> groups.put(entry.getKey(), entry.getValue()));
+                return new Result<>(plan.toString(), true, null, Collections.unmodifiableMap(groups), formatter);
+            }
+            if (query.getLimit() >= 0) {
+                rows = rows.limit(query.getLimit());
+            }
+            return new Result<>(plan.toString(), true, rows.collect(Collectors.toList()), null, formatter);
+        }
+        
+        /**
+         * Combine filters into one predicate that stops at the first miss
+         */
+        private static <T> Predicate<T> fuse(List<Predicate<T>> filters) {
+            switch (filters.size()) {
+                case 0:
+                    return row -> true;
+                case 1:
+                    return filters.get(0);
+                case 2:
+                    Predicate<T> first = filters.get(0);
+                    Predicate<T> second = filters.get(1);
+                    return row -> first.test(row) && second.test(row);
+                default:
+                    @SuppressWarnings({"unchecked", "rawtypes"})
+                    Predicate<T>[] all = filters.toArray(new Predicate[0]);
+                    return row -> {
+                        for (Predicate<T> predicate : all) {
+                            if (!predicate.test(row)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    };
+            }
+        }
+    }
+    
+    // ============ FIELDS ============
+    
+    /**
+     * A typed column that compiles filters and produces group keys
+     */
+    private abstract static class Field<T> {
+        final String name;
+        
+        Field(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * Predicate for "field op value", with the value converted once
+         */
+        abstract Predicate<T> compile(Query.Op op, String value, LocalDate today);
+        
+        /**
+         * Value as written in a plan (resolved, so dates show the actual day)
+         */
+        String describe(String value, LocalDate today) {
+            return value == null ? "null" : "'" + value + "'";
+        }
+        
+        abstract String groupKey(T row);
+        
+        IllegalArgumentException unsupported(Query.Op op) {
+            return new IllegalArgumentException("Operator " + op.getSymbol() + " not supported for " + name);
+        }
+        
+        void requireValue(Query.Op op, String value) {
+            if (value == null) {
+                throw new IllegalArgumentException(name + " cannot be compared with null");
+            }
+            if (op == Query.Op.CONTAINS) {
+                throw unsupported(op);
+            }
+        }
+    }
+    
+    /**
+     * Text column, compared case-insensitively
+     * Dictionary-encoded columns (category, member type) compare integer codes for = and !=
+     * A row whose value is missing matches no condition and groups under NULL
+     */
+    private static final class StringField<T> extends Field<T> {
+        private final Function<T, String> getter;
+        private final ToIntFunction<T> code;
+        
+        StringField(String name, Function<T, String> getter, ToIntFunction<T> code) {
+            super(name);
+            this.getter = getter;
+            this.code = code;
+        }
+        
+        @Override
+        Predicate<T> compile(Query.Op op, String value, LocalDate today) {
+            if (value == null) {
+                throw new IllegalArgumentException(name + " cannot be compared with null");
+            }
+            if (op == Query.Op.CONTAINS) {
+                String needle = value.toLowerCase(Locale.ROOT);
+                return row -> {
+                    String text = getter.apply(row);
+                    return text != null && text.toLowerCase(Locale.ROOT).contains(needle);
+                };
+            }
+            if (code != null && op == Query.Op.EQ) {
+                int wanted = StringDictionary.lookupCode(value);
+                if (wanted == StringDictionary.NO_CODE) {
+                    return row -> false; // no row holds a value the dictionary has never seen
+                }
+                return row -> code.applyAsInt(row) == wanted;
+            }
+            if (code != null && op == Query.Op.NE) {
+                int wanted = StringDictionary.lookupCode(value);
+                return row -> code.applyAsInt(row) != wanted && getter.apply(row) != null;
+            }
+            IntPredicate outcome = op.getOutcome();
+            return row -> {
+                String text = getter.apply(row);
+                return text != null && outcome.test(text.compareToIgnoreCase(value));
+            };
+        }
+        
+        @Override
+        String groupKey(T row) {
+            String text = getter.apply(row);
+            return text != null ? text : "NULL";
+        }
+    }
+    
+    private static final class IntField<T> extends Field<T> {
+        private final ToIntFunction<T> getter;
+        
+        IntField(String name, ToIntFunction<T> getter) {
+            super(name);
+            this.getter = getter;
+        }
+        
+        @Override
+        Predicate<T> compile(Query.Op op, String value, LocalDate today) {
+            requireValue(op, value);
+            int wanted;
+            try {
+                wanted = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number " + value + " for " + name);
+            }
+            IntPredicate outcome = op.getOutcome();
+            return row -> outcome.test(Integer.compare(getter.applyAsInt(row), wanted));
+        }
+        
+        @Override
+        String describe(String value, LocalDate today) {
+            return value;
+        }
+        
+        @Override
+        String groupKey(T row) {
+            return Integer.toString(getter.applyAsInt(row));
+        }
+    }
+    
+    private static final class DoubleField<T> extends Field<T> {
+        private final ToDoubleFunction<T> getter;
+        
+        DoubleField(String name, ToDoubleFunction<T> getter) {
+            super(name);
+            this.getter = getter;
+        }
+        
+        @Override
+        Predicate<T> compile(Query.Op op, String value, LocalDate today) {
+            requireValue(op, value);
+            double wanted;
+            try {
+                wanted = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number " + value + " for " + name);
+            }
+            IntPredicate outcome = op.getOutcome();
+            return row -> outcome.test(Double.compare(getter.applyAsDouble(row), wanted));
+        }
+        
+        @Override
+        String describe(String value, LocalDate today) {
+            return value;
+        }
+        
+        @Override
+        String groupKey(T row) {
+            return Double.toString(getter.applyAsDouble(row));
+        }
+    }
+    
+    /**
+     * Date column; values are yyyy-MM-dd, today, today-N or today+N
+     * Only = and != accept null (e.g. returnDate = null for open loans)
+     */
+    private static final class DateField<T> extends Field<T> {
+        private final Function<T, LocalDate> getter;
+        
+        DateField(String name, Function<T, LocalDate> getter) {
+            super(name);
+            this.getter = getter;
+        }
+        
+        @Override
+        Predicate<T> compile(Query.Op op, String value, LocalDate today) {
+            if (value == null && (op == Query.Op.EQ || op == Query.Op.NE)) {
+                boolean isNull = op == Query.Op.EQ;
+                return row -> (getter.apply(row) == null) == isNull;
+            }
+            requireValue(op, value);
+            LocalDate wanted = parseDate(value, today);
+            IntPredicate outcome = op.getOutcome();
+            return row -> {
+                LocalDate date = getter.apply(row);
+                return date != null && outcome.test(date.compareTo(wanted));
+            };
+        }
+        
+        @Override
+        String describe(String value, LocalDate today) {
+            return value == null ? "null" : parseDate(value, today).toString();
+        }
+        
+        @Override
+        String groupKey(T row) {
+            LocalDate date = getter.apply(row);
+            return date != null ? date.toString() : "NULL";
+        }
+        
+        private LocalDate parseDate(String value, LocalDate today) {
+            String text = value.trim().toLowerCase(Locale.ROOT);
+            try {
+                if (text.equals("today")) {
+                    return today;
+                }
+                if (text.startsWith("today+") || text.startsWith("today-")) {
+                    long days = Long.parseLong(text.substring(6));
+                    return text.charAt(5) == '+' ? today.plusDays(days) : today.minusDays(days);
+                }
+                return LocalDate.parse(text);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date " + value + " for " + name
+                        + " (use yyyy-MM-dd, today, today-N or today+N)");
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package services;
+
+import models.Transaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ReportEngine computes full-history reports over the transaction store
+ * The history is split into index ranges that are aggregated on the
+ * common fork-join pool into HistoryReport accumulators and merged
+ * pairwise. Every figure is an integer count or a sum of whole paise,
+ * and results are returned in sorted maps, so a parallel run gives
+ * exactly the same report as a sequential one.
+ */
+public class ReportEngine {
+    private static final int MIN_CHUNK_SIZE = 8192;
+    private static final int CHUNKS_PER_THREAD = 4; // spare chunks for work stealing
+    
+    /**
+     * Loan and fine totals for one member
+     */
+    public static final class MemberTotals {
+        private long loans;
+        private long active;
+        private long overdue;
+        private long finesPaise;
+        
+        public long getLoans() {
+            return loans;
+        }
+        
+        public long getActive() {
+            return active;
+        }
+        
+        public long getOverdue() {
+            return overdue;
+        }
+        
+        /**
+         * Fines charged on returns plus fines accrued on overdue loans, in rupees
+         */
+        public double getFines() {
+            return finesPaise / 100.0;
+        }
+        
+        public long getFinesPaise() {
+            return finesPaise;
+        }
+        
+        void merge(MemberTotals other) {
+            loans += other.loans;
+            active += other.active;
+            overdue += other.overdue;
+            finesPaise += other.finesPaise;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MemberTotals)) {
+                return false;
+            }
+            MemberTotals other = (MemberTotals) o;
+            return loans == other.loans && active == other.active
+                    && overdue == other.overdue && finesPaise == other.finesPaise;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(loans) * 31 + Long.hashCode(finesPaise);
+        }
+    }
+    
+    /**
+     * Mergeable accumulator for the full-history report
+     */
+    public static final class HistoryReport {
+        private final Map<String, MemberTotals> members = new HashMap<>();
+        private final Map<String, Long> bookLoans = new HashMap<>();
+        private final Map<YearMonth, Long> finesByMonth = new HashMap<>();
+        private long transactions;
+        
+        void add(Transaction transaction, LocalDate today) {
+            transactions++;
+            long finePaise = transaction.getFinePaise(today);
+            
+            MemberTotals member = members.computeIfAbsent(transaction.getMemberId().toUpperCase(Locale.ROOT),
+                                                          id -> new MemberTotals());
+            member.loans++;
+            member.finesPaise += finePaise;
+            if (transaction.getReturnDate() == null) {
+                member.active++;
+                if (transaction.isOverdue(today)) {
+                    member.overdue++;
+                }
+            }
+            
+            bookLoans.merge(transaction.getBookId().toUpperCase(Locale.ROOT), 1L, Long::sum);
+            
+            // Fines are booked in the month they were charged (returned) or, while
+            // still accruing, in the current month
+            if (finePaise > 0) {
+                LocalDate charged = transaction.getReturnDate() != null ? transaction.getReturnDate() : today;
+                finesByMonth.merge(YearMonth.from(charged), finePaise, Long::sum);
+            }
+        }
+        
+        /**
+         * Combine two partial reports, folding the smaller into the larger
+         */
+        HistoryReport merge(HistoryReport other) {
+            if (other.members.size() > members.size()) {
+                return other.merge(this);
+            }
+            transactions += other.transactions;
+            for (Map.Entry<String, MemberTotals> entry : other.members.entrySet()) {
+                MemberTotals mine = members.putIfAbsent(entry.getKey(), entry.getValue());
+                if (mine != null) {
+                    mine.merge(entry.getValue());
+                }
+            }
+            other.bookLoans.forEach((bookId, count) -> bookLoans.merge(bookId, count, Long::sum));
+            other.finesByMonth.forEach((month, paise) -> finesByMonth.merge(month, paise, Long::sum));
+            return this;
+        }
+        
+        public long getTransactionCount() {
+            return transactions;
+        }
+        
+        /**
+         * Totals per member, by member ID (uppercase)
+         */
+        public SortedMap<String, MemberTotals> getMemberTotals() {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(members));
+        }
+        
+        /**
+         * Number of loans per book, by book ID (uppercase)
+         */
+        public SortedMap<String, Long> getBookLoans() {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(bookLoans));
+        }
+        
+        /**
+         * Fines in paise per month
+         */
+        public SortedMap<YearMonth, Long> getFinesByMonth() {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(finesByMonth));
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof HistoryReport)) {
+                return false;
+            }
+            HistoryReport other = (HistoryReport) o;
+            return transactions == other.transactions && members.equals(other.members)
+                    && bookLoans.equals(other.bookLoans) && finesByMonth.equals(other.finesByMonth);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(transactions) * 31 + bookLoans.hashCode();
+        }
+    }
+    
+    /**
+     * Build the report on the common fork-join pool
+     * Fines on open loans are accrued up to today. Chunks are sized so each
+     * worker gets a few of them: more chunks only add merging work.
+     */
+    public HistoryReport run(List<Transaction> history, LocalDate today) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, history.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        if (history.size() <= chunkSize) {
+            return runSequential(history, today);
+        }
+        return pool.invoke(new ChunkTask(history, 0, history.size(), chunkSize, today));
+    }
+    
+    /**
+     * Build the same report on the calling thread
+     */
+    public HistoryReport runSequential(List<Transaction> history, LocalDate today) {
+        HistoryReport report = new HistoryReport();
+        for (Transaction transaction : history) {
+            report.add(transaction, today);
+        }
+        return report;
+    }
+    
+    /**
+     * Aggregates a range of the history, splitting it while it is large
+     */
+    private static final class ChunkTask extends RecursiveTask<HistoryReport> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Transaction> history;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final LocalDate today;
+        
+        ChunkTask(List<Transaction> history, int from, int to, int chunkSize, LocalDate today) {
+            this.history = history;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.today = today;
+        }
+        
+        @Override
+        protected HistoryReport compute() {
+            if (to - from <= chunkSize) {
+                HistoryReport report = new HistoryReport();
+                for (int i = from; i < to; i++) {
+                    report.add(history.get(i), today);
+                }
+                return report;
+            }
+            
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(history, from, middle, chunkSize, today);
+            left.fork();
+            HistoryReport right = new ChunkTask(history, middle, to, chunkSize, today).compute();
+            return left.join().merge(right);
+        }
+    }
+}
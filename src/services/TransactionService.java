@@ -4,71 +4,226 @@ import models.Book;
 import models.Member;
 import models.Transaction;
 import utils.FileHandler;
+import utils.SnapshotList;
+import utils.IdAllocator;
+import utils.StripedLock;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * TransactionService handles all transaction operations
  * Manages book issue, return, and fine calculations
+ * Safe for concurrent use: issue and return lock the member's stripe, and
+ * copies are reserved with a lock-free compare-and-set on the book, so
+ * checkouts of the same title run in parallel while two desks racing for
+ * the last copy still produce exactly one success. Reports scan immutable
+ * snapshots of the history list, so they never block and always see whole
+ * adds and removes; a return updates its transaction in place, so a scan
+ * racing one may see some of its fields changed before the others
  */
 public class TransactionService {
-    private List<Transaction> transactions;
+    private static final String ID_PREFIX = "TXN";
+    private static final int ID_DIGITS = 5;
+    
+    private SnapshotList<Transaction> transactions;
+    private Map<String, Transaction> transactionsById;
+    private final Map<String, SnapshotList<Transaction>> transactionsByMember = new ConcurrentHashMap<>(); // lowercase member ID -> history
     private FileHandler fileHandler;
+    private final Lock structureLock = new ReentrantLock(); // serializes adds and removes
     private BookService bookService;
     private MemberService memberService;
-    private int transactionCounter;
+    private IdAllocator transactionIds;
+    private final PopularityTracker popularity = new PopularityTracker();
+    private final BorrowerTracker borrowers = new BorrowerTracker();
+    private final CirculationRollup rollup = new CirculationRollup();
+    private final LoanDurationStats durations = new LoanDurationStats();
+    private final ReportEngine reportEngine = new ReportEngine();
     
     public TransactionService(BookService bookService, MemberService memberService) {
         this.fileHandler = FileHandler.getInstance();
-        this.transactions = fileHandler.loadTransactions();
+        this.transactions = new SnapshotList<>(fileHandler.loadTransactions());
         this.bookService = bookService;
         this.memberService = memberService;
-        this.transactionCounter = transactions.size() + 1;
+        this.transactionsById = new ConcurrentHashMap<>();
+        for (Transaction txn : transactions.snapshot()) {
+            transactionsById.put(key(txn.getTransactionId()), txn);
+            indexMember(txn);
+        }
+        this.transactionIds = new IdAllocator(ID_PREFIX, ID_DIGITS, highestTransactionSequence() + 1);
+        popularity.rebuild(transactions.snapshot());
+        borrowers.load(fileHandler.loadBorrowerSketches(), transactions.snapshot());
+        bookService.getCoBorrowingIndex().rebuild(transactions.snapshot());
+        rollup.rebuild(transactions.snapshot());
+        for (Transaction txn : transactions.snapshot()) {
+            if (txn.getReturnDate() != null) {
+                recordDuration(txn);
+            }
+        }
+    }
+    
+    /**
+     * Borrow counts for the most-borrowed reports, fed by every issue
+     */
+    public PopularityTracker getPopularityTracker() {
+        return popularity;
+    }
+    
+    /**
+     * Daily, weekly and monthly circulation counts, fed by every issue and return
+     */
+    public CirculationRollup getCirculationRollup() {
+        return rollup;
+    }
+    
+    /**
+     * Loan-duration histograms by category and member type, fed by every return
+     */
+    public LoanDurationStats getLoanDurationStats() {
+        return durations;
+    }
+    
+    /**
+     * Distinct-borrower sketches per book, fed by every issue
+     */
+    public BorrowerTracker getBorrowerTracker() {
+        return borrowers;
+    }
+    
+    /**
+     * Estimated number of distinct members who have borrowed a book
+     */
+    public long getUniqueBorrowers(String bookId) {
+        return borrowers.getUniqueBorrowers(bookId);
+    }
+    
+    /**
+     * Estimated number of distinct members who have borrowed any book in a category
+     */
+    public long getUniqueBorrowersByCategory(String category) {
+        List<String> bookIds = new ArrayList<>();
+        for (Book book : bookService.searchByCategory(category)) {
+            bookIds.add(book.getBookId());
+        }
+        return borrowers.merge(bookIds, null, null).estimate();
+    }
+    
+    /**
+     * Highest numeric transaction ID found in the loaded history
+     */
+    private long highestTransactionSequence() {
+        long highest = 0;
+        for (Transaction txn : transactions.snapshot()) {
+            highest = Math.max(highest, IdAllocator.parseSequence(txn.getTransactionId(), ID_PREFIX));
+        }
+        return highest;
     }
     
     /**
      * Issue a book to a member
      */
     public Transaction issueBook(String bookId, String memberId) {
+        return issue(bookId, memberId, null, true);
+    }
+    
+    /**
+     * Issue a book without printing the receipt or rejection reasons
+     * For the network front ends, which report the outcome to the caller
+     */
+    public Transaction issueBookQuietly(String bookId, String memberId) {
+        return issue(bookId, memberId, null, false);
+    }
+    
+    /**
+     * Issue a book without waiting for the disk
+     * The loan takes effect immediately; the future completes with the
+     * transaction once it is persisted, or null if it was rejected or could
+     * not be saved, in which case the loan has been undone and may be retried
+     * Nothing is printed; the caller reports the outcome
+     */
+    public CompletableFuture<Transaction> issueBookAsync(String bookId, String memberId) {
+        CompletableFuture<Boolean> persisted = new CompletableFuture<>();
+        Transaction transaction = issue(bookId, memberId, persisted, false);
+        if (transaction == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return persisted.thenApply(saved -> saved ? transaction : null);
+    }
+    
+    /**
+     * Issue a book, committing synchronously or, when persisted is given,
+     * asynchronously with the outcome delivered through it
+     * The receipt and rejection reasons are printed only when announce is set
+     */
+    private Transaction issue(String bookId, String memberId, CompletableFuture<Boolean> persisted,
+                              boolean announce) {
         // Validate book
         Book book = bookService.findBookById(bookId);
         if (book == null) {
-            System.out.println("Error: Book not found!");
-            return null;
-        }
-        
-        if (!book.isAvailable()) {
-            System.out.println("Error: Book is not available!");
+            reject(announce, "Book not found");
             return null;
         }
         
         // Validate member
         Member member = memberService.findMemberById(memberId);
         if (member == null) {
-            System.out.println("Error: Member not found!");
+            reject(announce, "Member not found");
             return null;
         }
         
-        if (!member.canBorrow()) {
-            System.out.println("Error: Member has reached borrowing limit (" + 
-                             member.getMaxBooksAllowed() + " books)!");
-            return null;
+        String transactionId;
+        Transaction transaction;
+        UnitOfWork work = newUnitOfWork();
+        Lock memberLock = memberService.getMemberLocks().get(member.getMemberId());
+        memberLock.lock();
+        try {
+            if (!work.reserveCopy(book)) {
+                reject(announce, "Book is not available");
+                return null;
+            }
+            
+            if (!work.borrow(member)) {
+                work.rollback();
+                reject(announce, "Member has reached borrowing limit (" +
+                                 member.getMaxBooksAllowed() + " books)");
+                return null;
+            }
+            
+            // Create transaction
+            transactionId = allocateTransactionId(work);
+            if (transactionId == null) {
+                return null;
+            }
+            transaction = new Transaction(transactionId, bookId, memberId);
+            work.addTransaction(transaction);
+            
+            // Update book, member and transactions in one commit
+            if (persisted != null) {
+                forward(work.commitAsync(), persisted);
+            } else if (!work.commit()) {
+                System.out.println("Error: Could not save the transaction!");
+                return null;
+            }
+        } finally {
+            memberLock.unlock();
+        }
+        afterCommit(work, () -> recordIssued(Collections.singletonList(transaction)));
+        if (!announce) {
+            return transaction;
         }
-        
-        // Create transaction
-        String transactionId = "TXN" + String.format("%05d", transactionCounter++);
-        Transaction transaction = new Transaction(transactionId, bookId, memberId);
-        
-        // Update book and member
-        bookService.updateBookQuantity(bookId, -1);
-        memberService.updateBorrowedBooks(memberId, 1);
-        
-        // Save transaction
-        transactions.add(transaction);
-        fileHandler.saveTransactions(transactions);
         
         System.out.println("\n========================================");
         System.out.println("       BOOK ISSUED SUCCESSFULLY");
@@ -87,32 +242,81 @@ public class TransactionService {
      * Return a book
      */
     public boolean returnBook(String transactionId) {
+        return giveBack(transactionId, null, true);
+    }
+    
+    /**
+     * Return a book without printing the receipt or rejection reasons
+     * For the network front ends, which report the outcome to the caller
+     */
+    public boolean returnBookQuietly(String transactionId) {
+        return giveBack(transactionId, null, false);
+    }
+    
+    /**
+     * Return a book without waiting for the disk
+     * The copy is back on the shelf immediately; the future completes with
+     * true once the return is persisted, or false if it was rejected or could
+     * not be saved, in which case the loan is open again
+     * Nothing is printed; the caller reports the outcome
+     */
+    public CompletableFuture<Boolean> returnBookAsync(String transactionId) {
+        CompletableFuture<Boolean> persisted = new CompletableFuture<>();
+        if (!giveBack(transactionId, persisted, false)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return persisted;
+    }
+    
+    /**
+     * Return a book, committing synchronously or, when persisted is given,
+     * asynchronously with the outcome delivered through it
+     * The receipt and rejection reasons are printed only when announce is set
+     */
+    private boolean giveBack(String transactionId, CompletableFuture<Boolean> persisted, boolean announce) {
         Transaction transaction = findTransactionById(transactionId);
         
         if (transaction == null) {
-            System.out.println("Error: Transaction not found!");
-            return false;
-        }
-        
-        if (transaction.getStatus().equals("RETURNED")) {
-            System.out.println("Error: Book already returned!");
+            reject(announce, "Transaction not found");
             return false;
         }
         
-        // Mark as returned and calculate fine
-        transaction.markReturned();
-        
-        // Update book and member
-        bookService.updateBookQuantity(transaction.getBookId(), 1);
-        memberService.updateBorrowedBooks(transaction.getMemberId(), -1);
-        
-        // Save transaction
-        fileHandler.saveTransactions(transactions);
-        
-        // Get book and member details for display
+        // Get book and member details
         Book book = bookService.findBookById(transaction.getBookId());
         Member member = memberService.findMemberById(transaction.getMemberId());
         
+        UnitOfWork work = newUnitOfWork();
+        Lock memberLock = memberService.getMemberLocks().get(transaction.getMemberId());
+        memberLock.lock();
+        try {
+            if (transaction.getStatus().equals("RETURNED")) {
+                reject(announce, "Book already returned");
+                return false;
+            }
+            
+            // Mark as returned (calculates fine) and update book and member in one commit
+            work.markReturned(transaction);
+            if (book != null) {
+                work.releaseCopy(book);
+            }
+            if (member != null) {
+                work.giveBack(member);
+            }
+            
+            if (persisted != null) {
+                forward(work.commitAsync(), persisted);
+            } else if (!work.commit()) {
+                System.out.println("Error: Could not save the return!");
+                return false;
+            }
+        } finally {
+            memberLock.unlock();
+        }
+        afterCommit(work, () -> recordReturned(Collections.singletonList(transaction)));
+        if (!announce) {
+            return true;
+        }
+        
         System.out.println("\n========================================");
         System.out.println("       BOOK RETURNED SUCCESSFULLY");
         System.out.println("========================================");
@@ -127,91 +331,511 @@ public class TransactionService {
         return true;
     }
     
+    /**
+     * Issue several books to one member as a single all-or-nothing batch
+     * The whole batch is validated first and persisted with one write per file
+     */
+    public List<Transaction> issueBooks(String memberId, List<String> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            System.out.println("Error: No books given!");
+            return null;
+        }
+        
+        // Validate member
+        Member member = memberService.findMemberById(memberId);
+        if (member == null) {
+            System.out.println("Error: Member not found!");
+            return null;
+        }
+        
+        List<Book> books = new ArrayList<>();
+        List<Transaction> issued = new ArrayList<>();
+        UnitOfWork work = newUnitOfWork();
+        Lock memberLock = memberService.getMemberLocks().get(member.getMemberId());
+        memberLock.lock();
+        try {
+            // Validate every book, counting repeated copies of the same title
+            for (String bookId : bookIds) {
+                Book book = bookService.findBookById(bookId);
+                if (book == null) {
+                    work.rollback();
+                    System.out.println("Error: Book " + bookId + " not found!");
+                    return null;
+                }
+                
+                if (!work.reserveCopy(book)) {
+                    work.rollback();
+                    System.out.println("Error: Not enough copies of " + book.getTitle() + " available!");
+                    return null;
+                }
+                
+                if (!work.borrow(member)) {
+                    work.rollback();
+                    System.out.println("Error: Batch exceeds borrowing limit (" + 
+                                     member.getBorrowedBooks() + " borrowed, " + 
+                                     member.getMaxBooksAllowed() + " allowed)!");
+                    return null;
+                }
+                books.add(book);
+            }
+            
+            for (Book book : books) {
+                String transactionId = allocateTransactionId(work);
+                if (transactionId == null) {
+                    return null;
+                }
+                Transaction transaction = new Transaction(transactionId, book.getBookId(), member.getMemberId());
+                work.addTransaction(transaction);
+                issued.add(transaction);
+            }
+            
+            // Apply and persist the whole batch in one commit
+            if (!work.commit()) {
+                System.out.println("Error: Could not save the transactions!");
+                return null;
+            }
+        } finally {
+            memberLock.unlock();
+        }
+        afterCommit(work, () -> recordIssued(issued));
+        
+        System.out.println("\n========================================");
+        System.out.println("       BOOKS ISSUED SUCCESSFULLY");
+        System.out.println("========================================");
+        System.out.println("Member: " + member.getName());
+        for (int i = 0; i < issued.size(); i++) {
+            System.out.println(issued.get(i).getTransactionId() + " - " + books.get(i).getTitle());
+        }
+        System.out.println("Due Date: " + issued.get(0).getDueDate());
+        System.out.println("========================================");
+        
+        return issued;
+    }
+    
+    /**
+     * Return several books as a single all-or-nothing batch
+     * The whole batch is validated first and persisted with one write per file
+     */
+    public boolean returnBooks(List<String> transactionIds) {
+        if (transactionIds == null || transactionIds.isEmpty()) {
+            System.out.println("Error: No transactions given!");
+            return false;
+        }
+        
+        // Resolve every transaction
+        List<Transaction> batch = new ArrayList<>();
+        Set<Transaction> seen = new HashSet<>();
+        List<String> memberIds = new ArrayList<>();
+        for (String transactionId : transactionIds) {
+            Transaction transaction = findTransactionById(transactionId);
+            if (transaction == null) {
+                System.out.println("Error: Transaction " + transactionId + " not found!");
+                return false;
+            }
+            
+            if (!seen.add(transaction)) {
+                System.out.println("Error: Transaction " + transactionId + " listed twice!");
+                return false;
+            }
+            batch.add(transaction);
+            memberIds.add(transaction.getMemberId());
+        }
+        
+        UnitOfWork work = newUnitOfWork();
+        List<Lock> memberLocks = memberService.getMemberLocks().lockAll(memberIds);
+        try {
+            // Validate and stage every return
+            for (Transaction transaction : batch) {
+                if (transaction.getStatus().equals("RETURNED")) {
+                    work.rollback();
+                    System.out.println("Error: Book for " + transaction.getTransactionId() + " already returned!");
+                    return false;
+                }
+                
+                work.markReturned(transaction);
+                Book book = bookService.findBookById(transaction.getBookId());
+                if (book != null) {
+                    work.releaseCopy(book);
+                }
+                Member member = memberService.findMemberById(transaction.getMemberId());
+                if (member != null) {
+                    work.giveBack(member);
+                }
+            }
+            
+            // Apply and persist the whole batch in one commit
+            if (!work.commit()) {
+                System.out.println("Error: Could not save the returns!");
+                return false;
+            }
+        } finally {
+            StripedLock.unlockAll(memberLocks);
+        }
+        
+        afterCommit(work, () -> recordReturned(batch));
+        double totalFine = 0.0;
+        for (Transaction transaction : batch) {
+            totalFine += transaction.getFine();
+        }
+        
+        System.out.println("\n========================================");
+        System.out.println("       BOOKS RETURNED SUCCESSFULLY");
+        System.out.println("========================================");
+        for (Transaction transaction : batch) {
+            System.out.println(transaction.getTransactionId() + " - Fine: ₹" + 
+                             String.format("%.2f", transaction.getFine()));
+        }
+        System.out.println("Total Fine: ₹" + String.format("%.2f", totalFine));
+        System.out.println("========================================");
+        
+        return true;
+    }
+    
+    /**
+     * Add transactions in bulk (used by imports)
+     * Transactions whose ID is already taken are skipped; the check and the
+     * insert happen under one lock, so a concurrent issue cannot slip in a
+     * duplicate ID. Open loans are issued like live ones: each takes a copy
+     * of its book and counts towards its member's borrowed books, and one
+     * whose book or member is unknown, whose book has no copy left or whose
+     * member is at the borrowing limit is skipped. Imported loans feed the
+     * same counts as live issues and returns once they are saved, and new
+     * IDs are allocated after the highest imported one. Inside a FileHandler
+     * batch everything is undone again if the batch cannot be written.
+     * Returns how many were added.
+     */
+    public int importTransactions(List<Transaction> imported) {
+        List<Transaction> added = new ArrayList<>();
+        List<Transaction> open = new ArrayList<>();
+        long highest = -1;
+        structureLock.lock();
+        try {
+            for (Transaction transaction : imported) {
+                if (findTransactionById(transaction.getTransactionId()) != null) {
+                    continue; // also catches duplicates within the import
+                }
+                highest = Math.max(highest, IdAllocator.parseSequence(transaction.getTransactionId(), ID_PREFIX));
+                if (transaction.getReturnDate() == null) {
+                    open.add(transaction); // issued below, outside this lock
+                    continue;
+                }
+                transactionsById.put(key(transaction.getTransactionId()), transaction);
+                indexMember(transaction);
+                added.add(transaction);
+            }
+            transactions.addAll(added);
+        } finally {
+            structureLock.unlock();
+        }
+        if (highest >= 0) {
+            transactionIds.advancePast(highest);
+        }
+        
+        if (!added.isEmpty()) {
+            List<Transaction> returned = new ArrayList<>(added);
+            CompletableFuture<Boolean> outcome = fileHandler.onBatchFailure(() -> removeTransactions(returned));
+            if (outcome != null) {
+                outcome.thenAccept(saved -> {
+                    if (saved) {
+                        recordIssued(returned);
+                        recordReturned(returned);
+                    }
+                });
+            } else {
+                recordIssued(returned);
+                recordReturned(returned);
+            }
+            fileHandler.saveTransactions(transactions::snapshot);
+        }
+        
+        for (Transaction transaction : open) {
+            if (importLoan(transaction)) {
+                added.add(transaction);
+            }
+        }
+        return added.size();
+    }
+    
+    /**
+     * Issue an imported open loan, taking a copy and a borrowing slot
+     * Returns false if the loan was skipped or could not be saved
+     */
+    private boolean importLoan(Transaction transaction) {
+        Book book = bookService.findBookById(transaction.getBookId());
+        Member member = memberService.findMemberById(transaction.getMemberId());
+        if (book == null || member == null) {
+            return false;
+        }
+        
+        UnitOfWork work = newUnitOfWork();
+        Lock memberLock = memberService.getMemberLocks().get(member.getMemberId());
+        memberLock.lock();
+        try {
+            if (findTransactionById(transaction.getTransactionId()) != null) {
+                return false; // an earlier loan in the import had the same ID
+            }
+            if (!work.reserveCopy(book)) {
+                return false;
+            }
+            if (!work.borrow(member)) {
+                work.rollback();
+                return false;
+            }
+            work.addTransaction(transaction);
+            if (!work.commit()) {
+                return false;
+            }
+        } finally {
+            memberLock.unlock();
+        }
+        afterCommit(work, () -> recordIssued(Collections.singletonList(transaction)));
+        return true;
+    }
+    
+    /**
+     * Start a unit of work over the book, member and transaction stores
+     */
+    private UnitOfWork newUnitOfWork() {
+        return new UnitOfWork(bookService, memberService, this);
+    }
+    
+    /**
+     * Allocate the next transaction ID
+     * If the sequence cannot be reserved the work is rolled back, releasing
+     * its reserved copies, and null is returned
+     */
+    private String allocateTransactionId(UnitOfWork work) {
+        try {
+            return transactionIds.nextId();
+        } catch (IllegalStateException e) {
+            work.rollback();
+            System.out.println("Error: Could not allocate a transaction ID!");
+            return null;
+        }
+    }
+    
+    /**
+     * Print why a request was turned down, unless the caller reports it itself
+     */
+    private static void reject(boolean announce, String reason) {
+        if (announce) {
+            System.out.println("Error: " + reason + "!");
+        }
+    }
+    
+    /**
+     * Run an action once a unit of work's commit is on disk: right away, or
+     * when the batch or I/O thread it was deferred to writes it (never if
+     * that write fails)
+     */
+    private static void afterCommit(UnitOfWork work, Runnable action) {
+        work.getBatchOutcome().thenAccept(saved -> {
+            if (saved) {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * Feed newly issued loans to the popularity, borrower and circulation counts
+     * The borrower sketches are saved in the background; queued saves merge
+     */
+    private void recordIssued(List<Transaction> issued) {
+        for (Transaction transaction : issued) {
+            popularity.recordIssue(transaction.getBookId(), transaction.getIssueDate());
+            borrowers.record(transaction.getBookId(), transaction.getMemberId(), transaction.getIssueDate());
+            rollup.recordIssue(transaction);
+        }
+        fileHandler.saveBorrowerSketchesAsync(borrowers::toFileLines);
+    }
+    
+    /**
+     * Feed closed loans to the co-borrowing, circulation and duration counts
+     */
+    private void recordReturned(List<Transaction> returned) {
+        for (Transaction transaction : returned) {
+            bookService.getCoBorrowingIndex().recordReturn(transaction.getMemberId(), transaction.getBookId());
+            rollup.recordReturn(transaction);
+            recordDuration(transaction);
+        }
+    }
+    
+    /**
+     * Add a closed loan's length to the histogram for its category and member type
+     */
+    private void recordDuration(Transaction transaction) {
+        Book book = bookService.findBookById(transaction.getBookId());
+        Member member = memberService.findMemberById(transaction.getMemberId());
+        durations.record(book != null ? book.getCategory() : "Unknown",
+                         member != null ? member.getMemberType() : "Unknown",
+                         ChronoUnit.DAYS.between(transaction.getIssueDate(), transaction.getReturnDate()));
+    }
+    
+    /**
+     * Pass the outcome of an asynchronous commit on to a caller's future
+     */
+    private static void forward(CompletableFuture<Boolean> source, CompletableFuture<Boolean> target) {
+        source.whenComplete((saved, failure) -> {
+            if (failure != null) {
+                target.completeExceptionally(failure);
+            } else {
+                target.complete(saved);
+            }
+        });
+    }
+    
+    /**
+     * Append transactions to the history (called by UnitOfWork on commit)
+     */
+    void addTransactions(List<Transaction> added) {
+        structureLock.lock();
+        try {
+            transactions.addAll(added);
+            for (Transaction txn : added) {
+                transactionsById.put(key(txn.getTransactionId()), txn);
+                indexMember(txn);
+            }
+        } finally {
+            structureLock.unlock();
+        }
+    }
+    
+    /**
+     * Remove transactions again (called by UnitOfWork when a commit fails)
+     */
+    void removeTransactions(List<Transaction> removed) {
+        structureLock.lock();
+        try {
+            transactions.removeAll(removed);
+            for (Transaction txn : removed) {
+                transactionsById.remove(key(txn.getTransactionId()));
+                SnapshotList<Transaction> history = transactionsByMember.get(key(txn.getMemberId()));
+                if (history != null) {
+                    history.remove(txn);
+                }
+            }
+        } finally {
+            structureLock.unlock();
+        }
+    }
+    
+    /**
+     * Add a transaction to its member's history (callers hold structureLock)
+     */
+    private void indexMember(Transaction txn) {
+        transactionsByMember.computeIfAbsent(key(txn.getMemberId()),
+                                             id -> new SnapshotList<>(Collections.<Transaction>emptyList()))
+                            .add(txn);
+    }
+    
+    /**
+     * Transactions matching a filter, scanned over a snapshot without locking
+     */
+    private List<Transaction> filter(Predicate<Transaction> predicate) {
+        return transactions.snapshot().stream()
+                .filter(predicate)
+                .collect(Collectors.toList());
+    }
+    
+    private static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+    
     /**
      * Find transaction by ID
      */
     public Transaction findTransactionById(String transactionId) {
-        return transactions.stream()
-                .filter(txn -> txn.getTransactionId().equalsIgnoreCase(transactionId))
-                .findFirst()
-                .orElse(null);
+        if (transactionId == null) {
+            return null;
+        }
+        return transactionsById.get(key(transactionId));
     }
     
     /**
      * Get all transactions
+     * Returns a read-only point-in-time snapshot in O(1); later changes are not visible in it
      */
     public List<Transaction> getAllTransactions() {
-        return new ArrayList<>(transactions);
+        return transactions.snapshot();
     }
     
     /**
      * Get transactions by member ID
+     * Served from the per-member index as a read-only snapshot, without scanning the history
      */
     public List<Transaction> getTransactionsByMember(String memberId) {
-        return transactions.stream()
-                .filter(txn -> txn.getMemberId().equalsIgnoreCase(memberId))
-                .collect(Collectors.toList());
+        if (memberId == null) {
+            return Collections.emptyList();
+        }
+        SnapshotList<Transaction> history = transactionsByMember.get(key(memberId));
+        return history != null ? history.snapshot() : Collections.<Transaction>emptyList();
     }
     
     /**
      * Get transactions by book ID
      */
     public List<Transaction> getTransactionsByBook(String bookId) {
-        return transactions.stream()
-                .filter(txn -> txn.getBookId().equalsIgnoreCase(bookId))
-                .collect(Collectors.toList());
+        return filter(txn -> txn.getBookId().equalsIgnoreCase(bookId));
     }
     
     /**
      * Get currently issued books
      */
     public List<Transaction> getIssuedTransactions() {
-        return transactions.stream()
-                .filter(txn -> txn.getStatus().equals("ISSUED"))
-                .collect(Collectors.toList());
+        return filter(txn -> txn.getStatus().equals("ISSUED"));
     }
     
     /**
      * Get overdue transactions
+     * Single pass with today's date resolved once for the whole scan
      */
     public List<Transaction> getOverdueTransactions() {
-        return transactions.stream()
-                .filter(Transaction::isOverdue)
-                .collect(Collectors.toList());
+        LocalDate today = LocalDate.now();
+        return filter(txn -> txn.isOverdue(today));
+    }
+    
+    /**
+     * Count overdue transactions without building a result list
+     */
+    public int countOverdueTransactions() {
+        LocalDate today = LocalDate.now();
+        int count = 0;
+        for (Transaction txn : transactions.snapshot()) {
+            if (txn.isOverdue(today)) {
+                count++;
+            }
+        }
+        return count;
     }
     
     /**
      * Calculate total fines for overdue books
+     * Read-only: fines are computed as of today without being stored on the loans
      */
     public double calculateTotalFines() {
-        return getOverdueTransactions().stream()
-                .mapToDouble(Transaction::calculateFine)
-                .sum();
+        LocalDate today = LocalDate.now();
+        long totalPaise = 0;
+        for (Transaction txn : transactions.snapshot()) {
+            if (txn.isOverdue(today)) {
+                totalPaise += txn.getFinePaise(today);
+            }
+        }
+        return totalPaise / 100.0;
     }
     
     /**
-     * Display all transactions
+     * Per-member totals, per-book loan counts and fines by month over the whole history
+     * Aggregated in parallel; the result is identical to a sequential pass
      */
-    public void displayAllTransactions() {
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found.");
-            return;
-        }
-        
-        System.out.println("\n========================================");
-        System.out.println("         ALL TRANSACTIONS");
-        System.out.println("========================================");
-        for (Transaction txn : transactions) {
-            System.out.println(txn);
-        }
-        System.out.println("========================================");
-        System.out.println("Total transactions: " + transactions.size());
+    public ReportEngine.HistoryReport getHistoryReport() {
+        return reportEngine.run(transactions.snapshot(), LocalDate.now());
     }
     
     /**
      * Display overdue books report
      */
     public void displayOverdueReport() {
+        LocalDate today = LocalDate.now();
         List<Transaction> overdueList = getOverdueTransactions();
         
         if (overdueList.isEmpty()) {
@@ -222,14 +846,17 @@ public class TransactionService {
         System.out.println("\n========================================");
         System.out.println("         OVERDUE BOOKS REPORT");
         System.out.println("========================================");
+        long totalPaise = 0;
         for (Transaction txn : overdueList) {
+            long finePaise = txn.getFinePaise(today);
+            totalPaise += finePaise;
             System.out.println(txn);
-            System.out.println("  → Overdue by: " + txn.getOverdueDays() + " days");
-            System.out.println("  → Current Fine: ₹" + String.format("%.2f", txn.calculateFine()));
+            System.out.println("  → Overdue by: " + txn.getOverdueDays(today) + " days");
+            System.out.println("  → Current Fine: ₹" + String.format("%.2f", finePaise / 100.0));
             System.out.println("----------------------------------------");
         }
         System.out.println("Total overdue books: " + overdueList.size());
-        System.out.println("Total fines: ₹" + String.format("%.2f", calculateTotalFines()));
+        System.out.println("Total fines: ₹" + String.format("%.2f", totalPaise / 100.0));
         System.out.println("========================================");
     }
 }
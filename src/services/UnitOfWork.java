@@ -0,0 +1,285 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import utils.FileHandler;
+import utils.StripedLock;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * UnitOfWork collects changes to books, members and transactions
+ * Changes are validated while staged and only applied on commit, which
+ * persists all three stores with a single atomic FileHandler commit
+ * Book copies are the exception: they are held immediately with a
+ * compare-and-set so concurrent checkouts cannot oversell a title, and
+ * are released again on rollback. A held copy is unavailable to other
+ * desks but is still saved as on the shelf until the commit confirms it,
+ * so a save by another desk never persists an uncommitted checkout
+ */
+public class UnitOfWork {
+    private final BookService bookService;
+    private final MemberService memberService;
+    private final TransactionService transactionService;
+    private final FileHandler fileHandler;
+    
+    // Staged changes
+    private final List<Book> reservedCopies = new ArrayList<>();
+    private final List<Book> releasedCopies = new ArrayList<>();
+    private final Map<Member, Integer> borrowChanges = new IdentityHashMap<>();
+    private final List<Transaction> newTransactions = new ArrayList<>();
+    private final List<Transaction> returnedTransactions = new ArrayList<>();
+    private CompletableFuture<Boolean> batchOutcome; // set by a commit deferred to a batch or the I/O thread
+    
+    public UnitOfWork(BookService bookService, MemberService memberService, TransactionService transactionService) {
+        this.bookService = bookService;
+        this.memberService = memberService;
+        this.transactionService = transactionService;
+        this.fileHandler = FileHandler.getInstance();
+    }
+    
+    /**
+     * Hold one copy of a book right away
+     * Returns false if no copy is left
+     */
+    public boolean reserveCopy(Book book) {
+        if (!bookService.holdCopy(book)) {
+            return false;
+        }
+        reservedCopies.add(book);
+        return true;
+    }
+    
+    /**
+     * Stage putting one copy of a book back
+     */
+    public void releaseCopy(Book book) {
+        releasedCopies.add(book);
+    }
+    
+    /**
+     * Stage one more borrowed book for a member
+     * Returns false if the member would exceed the borrowing limit
+     */
+    public boolean borrow(Member member) {
+        int staged = borrowChanges.getOrDefault(member, 0);
+        if (member.getBorrowedBooks() + staged + 1 > member.getMaxBooksAllowed()) {
+            return false;
+        }
+        borrowChanges.put(member, staged + 1);
+        return true;
+    }
+    
+    /**
+     * Stage one less borrowed book for a member
+     */
+    public void giveBack(Member member) {
+        borrowChanges.merge(member, -1, Integer::sum);
+    }
+    
+    /**
+     * Stage a new transaction
+     */
+    public void addTransaction(Transaction transaction) {
+        newTransactions.add(transaction);
+    }
+    
+    /**
+     * Stage marking a transaction as returned
+     */
+    public void markReturned(Transaction transaction) {
+        returnedTransactions.add(transaction);
+    }
+    
+    /**
+     * Check if anything is staged
+     */
+    public boolean isEmpty() {
+        return reservedCopies.isEmpty() && releasedCopies.isEmpty() && borrowChanges.isEmpty()
+                && newTransactions.isEmpty() && returnedTransactions.isEmpty();
+    }
+    
+    /**
+     * Apply all staged changes and persist them in one atomic write
+     * If the write fails the in-memory changes are undone
+     * Inside a FileHandler batch nothing is written yet: true means the
+     * changes are staged, the real outcome is the future returned by
+     * getBatchOutcome, and endBatch undoes the changes if its write fails
+     * Callers must hold the locks of every staged member
+     */
+    public boolean commit() {
+        if (isEmpty()) {
+            return true;
+        }
+        
+        applyInMemory();
+        
+        if (fileHandler.isBatchOpen()) {
+            UnitOfWork applied = copy();
+            batchOutcome = fileHandler.onBatchFailure(applied::undoDeferred);
+            fileHandler.commit(bookService::getAllBooks, 
+                               memberService::getAllMembers, 
+                               transactionService::getAllTransactions);
+            clear();
+            return true;
+        }
+        
+        boolean saved = fileHandler.commit(bookService::getAllBooks, 
+                                           memberService::getAllMembers, 
+                                           transactionService::getAllTransactions);
+        if (!saved) {
+            undoInMemory();
+        }
+        
+        clear();
+        return saved;
+    }
+    
+    /**
+     * Outcome of the last commit made inside a batch or asynchronously,
+     * completed when it is written; already true for a commit written directly
+     */
+    public CompletableFuture<Boolean> getBatchOutcome() {
+        return batchOutcome != null ? batchOutcome : CompletableFuture.completedFuture(true);
+    }
+    
+    /**
+     * Apply the staged changes now and persist them on the I/O thread
+     * The future completes with false if the commit could not be written;
+     * the changes have then been undone, as by commit, before it completes
+     */
+    public CompletableFuture<Boolean> commitAsync() {
+        if (isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        
+        applyInMemory();
+        UnitOfWork applied = copy();
+        clear();
+        batchOutcome = fileHandler.commitAsync(bookService::getAllBooks, 
+                                               memberService::getAllMembers, 
+                                               transactionService::getAllTransactions,
+                                               applied::undoDeferred);
+        return batchOutcome;
+    }
+    
+    /**
+     * Discard all staged changes and give back reserved copies
+     */
+    public void rollback() {
+        for (Book book : reservedCopies) {
+            if (!bookService.releaseHeldCopy(book)) {
+                System.err.println("Error: Could not give back the held copy of " + book.getBookId() + "!");
+            }
+        }
+        clear();
+    }
+    
+    /**
+     * Apply the staged changes to the shared objects
+     * Done while holding the file lock, which every save holds while taking
+     * its snapshots, so no save writes a half-applied unit
+     */
+    private void applyInMemory() {
+        synchronized (fileHandler) {
+            for (Book book : reservedCopies) {
+                if (!bookService.confirmHeldCopy(book)) {
+                    System.err.println("Error: No held copy of " + book.getBookId() + " to confirm!");
+                }
+            }
+            apply(1);
+            for (Book book : releasedCopies) {
+                if (!bookService.adjustAvailableQuantity(book, 1)) {
+                    System.err.println("Error: Could not put back the returned copy of " + book.getBookId() + "!");
+                }
+            }
+            for (Transaction transaction : returnedTransactions) {
+                transaction.markReturned();
+            }
+            transactionService.addTransactions(newTransactions);
+        }
+    }
+    
+    /**
+     * Reverse applyInMemory after the commit could not be written
+     * Inconsistencies found on the way are logged, not thrown, so the
+     * remaining changes are still undone; holds the file lock like applyInMemory
+     */
+    private void undoInMemory() {
+        synchronized (fileHandler) {
+            transactionService.removeTransactions(newTransactions);
+            for (Transaction transaction : returnedTransactions) {
+                transaction.setReturnDate(null);
+                transaction.setFine(0.0);
+                transaction.setStatus("ISSUED");
+            }
+            for (Book book : releasedCopies) {
+                if (!bookService.adjustAvailableQuantity(book, -1)) {
+                    System.err.println("Error: Could not take back the returned copy of " + book.getBookId() + "!");
+                }
+            }
+            apply(-1);
+            for (Book book : reservedCopies) {
+                if (!bookService.adjustAvailableQuantity(book, 1)) {
+                    System.err.println("Error: Could not give back the issued copy of " + book.getBookId() + "!");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Undo run by FileHandler.endBatch or the I/O thread on another call
+     * stack, so the staged members are locked again first
+     */
+    private void undoDeferred() {
+        List<String> memberIds = new ArrayList<>();
+        for (Member member : borrowChanges.keySet()) {
+            memberIds.add(member.getMemberId());
+        }
+        List<Lock> locks = memberService.getMemberLocks().lockAll(memberIds);
+        try {
+            undoInMemory();
+        } finally {
+            StripedLock.unlockAll(locks);
+        }
+    }
+    
+    /**
+     * A unit holding a copy of the staged changes, so they can be undone after clear
+     */
+    private UnitOfWork copy() {
+        UnitOfWork copy = new UnitOfWork(bookService, memberService, transactionService);
+        copy.reservedCopies.addAll(reservedCopies);
+        copy.releasedCopies.addAll(releasedCopies);
+        copy.borrowChanges.putAll(borrowChanges);
+        copy.newTransactions.addAll(newTransactions);
+        copy.returnedTransactions.addAll(returnedTransactions);
+        return copy;
+    }
+    
+    /**
+     * Apply staged borrow count changes, or undo them with direction -1
+     */
+    private void apply(int direction) {
+        for (Map.Entry<Member, Integer> entry : borrowChanges.entrySet()) {
+            int change = entry.getValue() * direction;
+            for (int i = 0; i < Math.abs(change); i++) {
+                memberService.adjustBorrowedBooks(entry.getKey(), Integer.signum(change));
+            }
+        }
+    }
+    
+    private void clear() {
+        reservedCopies.clear();
+        releasedCopies.clear();
+        borrowChanges.clear();
+        newTransactions.clear();
+        returnedTransactions.clear();
+    }
+}
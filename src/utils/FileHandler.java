@@ -6,15 +6,29 @@ import models.Member;
 import models.Transaction;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * FileHandler manages all file I/O operations
  * Singleton pattern for centralized file management
  */
 public class FileHandler {
-    private static FileHandler instance;
     
     // File paths
     private static final String DATA_DIR = "data/";
@@ -22,20 +36,60 @@ public class FileHandler {
     private static final String MEMBERS_FILE = DATA_DIR + "members.txt";
     private static final String TRANSACTIONS_FILE = DATA_DIR + "transactions.txt";
     private static final String ADMINS_FILE = DATA_DIR + "admins.txt";
+    private static final String SEQUENCES_FILE = DATA_DIR + "sequences.txt";
+    private static final String BORROWERS_FILE = DATA_DIR + "borrowers.txt";
+    private static final String INVENTORY_FILE = DATA_DIR + "inventory.txt";
+    private static final String COMMIT_MARKER = DATA_DIR + "commit.marker";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String[] COMMIT_FILES = {BOOKS_FILE, MEMBERS_FILE, TRANSACTIONS_FILE};
     
     // Private constructor for singleton
     private FileHandler() {
         initializeDataDirectory();
     }
     
+    // Serializes sequence reservations in this process; the lock file covers other processes
+    private final Object sequenceLock = new Object();
+    
+    // Saves deferred by the current thread while a batch is open
+    private final ThreadLocal<Batch> openBatch = new ThreadLocal<>();
+    
+    /**
+     * Latest snapshot of each store saved during a batch
+     */
+    private static final class Batch {
+        Supplier<List<Book>> books;
+        Supplier<List<Member>> members;
+        Supplier<List<Transaction>> transactions;
+        boolean atomic;
+        final List<Runnable> undoActions = new ArrayList<>();           // run in reverse if the write fails
+        final CompletableFuture<Boolean> outcome = new CompletableFuture<>(); // completed by endBatch
+    }
+    
+    // Asynchronous saves waiting for the I/O thread, keyed by file (guarded by itself)
+    private final Map<String, PendingSave> pendingSaves = new LinkedHashMap<>();
+    private ExecutorService ioExecutor;
+    
+    /**
+     * A queued asynchronous save; later saves of the same file replace its write
+     */
+    private static final class PendingSave {
+        BooleanSupplier write;
+        final List<Runnable> undoActions = new ArrayList<>(); // run in reverse if the write fails
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+    }
+    
+    // Lazily created on first use; class initialization makes this thread-safe
+    private static class Holder {
+        private static final FileHandler INSTANCE = new FileHandler();
+    }
+    
     /**
      * Get singleton instance
      */
     public static FileHandler getInstance() {
-        if (instance == null) {
-            instance = new FileHandler();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
     
     /**
@@ -52,6 +106,10 @@ public class FileHandler {
         createFileIfNotExists(MEMBERS_FILE);
         createFileIfNotExists(TRANSACTIONS_FILE);
         createFileIfNotExists(ADMINS_FILE);
+        createFileIfNotExists(SEQUENCES_FILE);
+        createFileIfNotExists(BORROWERS_FILE);
+        
+        recoverPendingCommit();
     }
     
     /**
@@ -73,8 +131,9 @@ public class FileHandler {
     
     /**
      * Save all books to file
+     * Returns false if the file could not be written
      */
-    public void saveBooks(List<Book> books) {
+    public synchronized boolean saveBooks(List<Book> books) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(BOOKS_FILE))) {
             for (Book book : books) {
                 writer.write(book.toFileString());
@@ -83,7 +142,22 @@ public class FileHandler {
         } catch (IOException e) {
             System.err.println("Error saving books to file!");
             e.printStackTrace();
+            return false;
         }
+        return true;
+    }
+    
+    /**
+     * Save books using a snapshot taken while holding the file lock
+     * so concurrent saves are written in the order their snapshots were taken
+     */
+    public synchronized void saveBooks(Supplier<List<Book>> snapshot) {
+        Batch batch = openBatch.get();
+        if (batch != null) {
+            batch.books = snapshot;
+            return;
+        }
+        saveBooks(snapshot.get());
     }
     
     /**
@@ -117,8 +191,9 @@ public class FileHandler {
     
     /**
      * Save all members to file
+     * Returns false if the file could not be written
      */
-    public void saveMembers(List<Member> members) {
+    public synchronized boolean saveMembers(List<Member> members) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(MEMBERS_FILE))) {
             for (Member member : members) {
                 writer.write(member.toFileString());
@@ -127,7 +202,21 @@ public class FileHandler {
         } catch (IOException e) {
             System.err.println("Error saving members to file!");
             e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Save members using a snapshot taken while holding the file lock
+     */
+    public synchronized void saveMembers(Supplier<List<Member>> snapshot) {
+        Batch batch = openBatch.get();
+        if (batch != null) {
+            batch.members = snapshot;
+            return;
         }
+        saveMembers(snapshot.get());
     }
     
     /**
@@ -160,8 +249,9 @@ public class FileHandler {
     
     /**
      * Save all transactions to file
+     * Returns false if the file could not be written
      */
-    public void saveTransactions(List<Transaction> transactions) {
+    public synchronized boolean saveTransactions(List<Transaction> transactions) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(TRANSACTIONS_FILE))) {
             for (Transaction transaction : transactions) {
                 writer.write(transaction.toFileString());
@@ -170,7 +260,21 @@ public class FileHandler {
         } catch (IOException e) {
             System.err.println("Error saving transactions to file!");
             e.printStackTrace();
+            return false;
         }
+        return true;
+    }
+    
+    /**
+     * Save transactions using a snapshot taken while holding the file lock
+     */
+    public synchronized void saveTransactions(Supplier<List<Transaction>> snapshot) {
+        Batch batch = openBatch.get();
+        if (batch != null) {
+            batch.transactions = snapshot;
+            return;
+        }
+        saveTransactions(snapshot.get());
     }
     
     /**
@@ -204,7 +308,7 @@ public class FileHandler {
     /**
      * Save all admins to file
      */
-    public void saveAdmins(List<Admin> admins) {
+    public synchronized void saveAdmins(List<Admin> admins) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(ADMINS_FILE))) {
             for (Admin admin : admins) {
                 writer.write(admin.toFileString());
@@ -242,6 +346,485 @@ public class FileHandler {
         return admins;
     }
     
+    // ============ BORROWER SKETCH OPERATIONS ============
+    
+    /**
+     * Save the unique-borrower sketches (lines produced by BorrowerTracker)
+     * The lines are staged in a synced .pending file and moved over the live
+     * one, so a crash never leaves the saved-on header with a cut-off list
+     * Returns false if the file could not be written
+     */
+    public synchronized boolean saveBorrowerSketches(List<String> lines) {
+        try {
+            writeSynced(BORROWERS_FILE + PENDING_SUFFIX, lines);
+            moveIntoPlace(Paths.get(BORROWERS_FILE + PENDING_SUFFIX), Paths.get(BORROWERS_FILE));
+        } catch (IOException e) {
+            System.err.println("Error saving borrower sketches to file!");
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Save the unique-borrower sketches on the I/O thread, merging queued saves like saveBooksAsync
+     */
+    public CompletableFuture<Boolean> saveBorrowerSketchesAsync(Supplier<List<String>> snapshot) {
+        return saveAsync(BORROWERS_FILE, () -> {
+            synchronized (this) {
+                return saveBorrowerSketches(snapshot.get());
+            }
+        }, null);
+    }
+    
+    /**
+     * Load the unique-borrower sketch lines
+     */
+    public List<String> loadBorrowerSketches() {
+        List<String> lines = new ArrayList<>();
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(BORROWERS_FILE))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Borrower sketches not found. Rebuilding from history.");
+        } catch (IOException e) {
+            System.err.println("Error loading borrower sketches from file!");
+            e.printStackTrace();
+        }
+        
+        return lines;
+    }
+    
+    // ============ INVENTORY OPERATIONS ============
+    
+    /**
+     * Save the per-title stock-out history (lines produced by InventoryTracker)
+     * Staged and moved into place like saveBorrowerSketches
+     * Returns false if the file could not be written
+     */
+    public synchronized boolean saveInventory(List<String> lines) {
+        try {
+            writeSynced(INVENTORY_FILE + PENDING_SUFFIX, lines);
+            moveIntoPlace(Paths.get(INVENTORY_FILE + PENDING_SUFFIX), Paths.get(INVENTORY_FILE));
+        } catch (IOException e) {
+            System.err.println("Error saving inventory levels to file!");
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Save the stock-out history on the I/O thread, merging queued saves like saveBooksAsync
+     */
+    public CompletableFuture<Boolean> saveInventoryAsync(Supplier<List<String>> snapshot) {
+        return saveAsync(INVENTORY_FILE, () -> {
+            synchronized (this) {
+                return saveInventory(snapshot.get());
+            }
+        }, null);
+    }
+    
+    /**
+     * Load the stock-out history lines
+     */
+    public List<String> loadInventory() {
+        List<String> lines = new ArrayList<>();
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(INVENTORY_FILE))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // File doesn't exist yet; tracking starts from the current stock levels
+        } catch (IOException e) {
+            System.err.println("Error loading inventory levels from file!");
+            e.printStackTrace();
+        }
+        
+        return lines;
+    }
+    
+    // ============ ATOMIC COMMIT OPERATIONS ============
+    
+    /**
+     * Save books, members and transactions as one atomic commit
+     * New contents are staged in .pending files and synced, then a commit
+     * marker is written; that single durable write is the commit point.
+     * The pending files are then moved over the live ones and the marker
+     * removed. A crash before the marker leaves the old data untouched,
+     * a crash after it is completed by recoverPendingCommit on startup.
+     * Snapshots are taken while holding the file lock, like the save methods.
+     * Inside a batch the commit is deferred to endBatch and reported as done;
+     * callers that need the real outcome use onBatchFailure.
+     */
+    public synchronized boolean commit(Supplier<List<Book>> bookSnapshot, 
+                                       Supplier<List<Member>> memberSnapshot, 
+                                       Supplier<List<Transaction>> transactionSnapshot) {
+        Batch batch = openBatch.get();
+        if (batch != null) {
+            batch.books = bookSnapshot;
+            batch.members = memberSnapshot;
+            batch.transactions = transactionSnapshot;
+            batch.atomic = true;
+            return true;
+        }
+        
+        try {
+            List<Book> books = bookSnapshot.get();
+            List<Member> members = memberSnapshot.get();
+            List<Transaction> transactions = transactionSnapshot.get();
+            
+            List<String> bookLines = new ArrayList<>(books.size());
+            for (Book book : books) {
+                bookLines.add(book.toFileString());
+            }
+            List<String> memberLines = new ArrayList<>(members.size());
+            for (Member member : members) {
+                memberLines.add(member.toFileString());
+            }
+            List<String> transactionLines = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                transactionLines.add(transaction.toFileString());
+            }
+            
+            writeSynced(BOOKS_FILE + PENDING_SUFFIX, bookLines);
+            writeSynced(MEMBERS_FILE + PENDING_SUFFIX, memberLines);
+            writeSynced(TRANSACTIONS_FILE + PENDING_SUFFIX, transactionLines);
+            
+            List<String> marker = new ArrayList<>();
+            marker.add(Long.toString(System.currentTimeMillis()));
+            writeSynced(COMMIT_MARKER, marker);
+        } catch (IOException e) {
+            System.err.println("Error committing changes to file!");
+            e.printStackTrace();
+            discardPendingFiles();
+            return false;
+        }
+        
+        // Committed: from here on recovery rolls forward
+        try {
+            applyPendingFiles();
+        } catch (IOException e) {
+            System.err.println("Error applying commit, it will be completed on next start!");
+            e.printStackTrace();
+        }
+        return true;
+    }
+    
+    // ============ ASYNCHRONOUS OPERATIONS ============
+    
+    /**
+     * Save books on the I/O thread
+     * The future completes with true once the file is written, false if it failed.
+     * Saves queued while an earlier one is still waiting are merged into it:
+     * snapshots are taken when the write runs, so one write covers them all.
+     * If the write fails, undo (when given) runs on the I/O thread before the
+     * future completes, like a batch's undo actions, so the caller's
+     * in-memory change is gone before anyone sees the failure.
+     * Not deferred by batches.
+     */
+    public CompletableFuture<Boolean> saveBooksAsync(Supplier<List<Book>> snapshot, Runnable undo) {
+        return saveAsync(BOOKS_FILE, () -> {
+            synchronized (this) {
+                return saveBooks(snapshot.get());
+            }
+        }, undo);
+    }
+    
+    /**
+     * Save members on the I/O thread, merging queued saves like saveBooksAsync
+     */
+    public CompletableFuture<Boolean> saveMembersAsync(Supplier<List<Member>> snapshot, Runnable undo) {
+        return saveAsync(MEMBERS_FILE, () -> {
+            synchronized (this) {
+                return saveMembers(snapshot.get());
+            }
+        }, undo);
+    }
+    
+    /**
+     * Atomic commit of all three stores on the I/O thread
+     * Queued commits are merged into one, and undone on failure, like saveBooksAsync
+     */
+    public CompletableFuture<Boolean> commitAsync(Supplier<List<Book>> bookSnapshot, 
+                                                  Supplier<List<Member>> memberSnapshot, 
+                                                  Supplier<List<Transaction>> transactionSnapshot,
+                                                  Runnable undo) {
+        return saveAsync(COMMIT_MARKER, () -> commit(bookSnapshot, memberSnapshot, transactionSnapshot), undo);
+    }
+    
+    private CompletableFuture<Boolean> saveAsync(String file, BooleanSupplier write, Runnable undo) {
+        synchronized (pendingSaves) {
+            PendingSave pending = pendingSaves.get(file);
+            boolean queued = pending != null;
+            if (!queued) {
+                pending = new PendingSave();
+                pendingSaves.put(file, pending);
+            }
+            pending.write = write;
+            if (undo != null) {
+                pending.undoActions.add(undo);
+            }
+            if (!queued) {
+                ioExecutor().execute(() -> runPendingSave(file));
+            }
+            return pending.done;
+        }
+    }
+    
+    private void runPendingSave(String file) {
+        PendingSave pending;
+        synchronized (pendingSaves) {
+            pending = pendingSaves.remove(file);
+        }
+        boolean saved = false;
+        RuntimeException failure = null;
+        try {
+            saved = pending.write.getAsBoolean();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        if (!saved) {
+            undo(pending.undoActions);
+        }
+        if (failure != null) {
+            pending.done.completeExceptionally(failure);
+        } else {
+            pending.done.complete(saved);
+        }
+    }
+    
+    /**
+     * Single daemon thread for asynchronous saves, created on first use
+     */
+    private ExecutorService ioExecutor() {
+        synchronized (pendingSaves) {
+            if (ioExecutor == null) {
+                ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "file-io");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return ioExecutor;
+        }
+    }
+    
+    // ============ BATCH OPERATIONS ============
+    
+    /**
+     * Start deferring saves made by the current thread
+     * Repeated saves of a store inside the batch collapse into one write
+     */
+    public void beginBatch() {
+        if (openBatch.get() == null) {
+            openBatch.set(new Batch());
+        }
+    }
+    
+    /**
+     * Check if the current thread has a batch open
+     */
+    public boolean isBatchOpen() {
+        return openBatch.get() != null;
+    }
+    
+    /**
+     * Register an action that undoes in-memory changes if the current
+     * thread's batch cannot be written; actions run newest first
+     * Returns the future endBatch completes with the batch's outcome,
+     * or null (registering nothing) if no batch is open
+     */
+    public CompletableFuture<Boolean> onBatchFailure(Runnable undo) {
+        Batch batch = openBatch.get();
+        if (batch == null) {
+            return null;
+        }
+        batch.undoActions.add(undo);
+        return batch.outcome;
+    }
+    
+    /**
+     * Write everything saved since beginBatch, once per store
+     * If any deferred save was a commit, all stores are written atomically
+     * Returns false if any write failed; the batch's undo actions have then been run
+     */
+    public boolean endBatch() {
+        Batch batch = openBatch.get();
+        openBatch.remove();
+        if (batch == null) {
+            return true;
+        }
+        
+        boolean saved = false; // stays false if a snapshot or write throws
+        try {
+            if (batch.atomic) {
+                saved = commit(batch.books, batch.members, batch.transactions);
+            } else {
+                synchronized (this) {
+                    boolean written = batch.books == null || saveBooks(batch.books.get());
+                    written &= batch.members == null || saveMembers(batch.members.get());
+                    written &= batch.transactions == null || saveTransactions(batch.transactions.get());
+                    saved = written;
+                }
+            }
+        } finally {
+            if (!saved) {
+                undo(batch.undoActions);
+            }
+            batch.outcome.complete(saved);
+        }
+        return saved;
+    }
+    
+    /**
+     * Close the current thread's batch without writing it
+     * Its undo actions are run and its outcome completes with false, as if
+     * the write had failed
+     */
+    public void abortBatch() {
+        Batch batch = openBatch.get();
+        openBatch.remove();
+        if (batch == null) {
+            return;
+        }
+        try {
+            undo(batch.undoActions);
+        } finally {
+            batch.outcome.complete(false);
+        }
+    }
+    
+    /**
+     * Run undo actions newest first; one failing does not stop the rest
+     */
+    private static void undo(List<Runnable> actions) {
+        for (int i = actions.size() - 1; i >= 0; i--) {
+            try {
+                actions.get(i).run();
+            } catch (RuntimeException e) {
+                System.err.println("Error undoing a change that could not be saved!");
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Finish or discard a commit interrupted by a crash
+     */
+    private void recoverPendingCommit() {
+        if (new File(COMMIT_MARKER).exists()) {
+            try {
+                applyPendingFiles();
+                System.out.println("Recovered an interrupted commit.");
+            } catch (IOException e) {
+                System.err.println("Error recovering interrupted commit!");
+                e.printStackTrace();
+            }
+        } else {
+            discardPendingFiles();
+        }
+    }
+    
+    /**
+     * Move committed pending files over the live files, then drop the marker
+     */
+    private void applyPendingFiles() throws IOException {
+        for (String file : COMMIT_FILES) {
+            Path pending = Paths.get(file + PENDING_SUFFIX);
+            if (Files.exists(pending)) {
+                moveIntoPlace(pending, Paths.get(file));
+            }
+        }
+        Files.deleteIfExists(Paths.get(COMMIT_MARKER));
+    }
+    
+    /**
+     * Replace a file with a staged one, atomically where the file system allows
+     */
+    private static void moveIntoPlace(Path staged, Path target) throws IOException {
+        try {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Delete pending files of a commit that never reached its commit point
+     */
+    private void discardPendingFiles() {
+        for (String file : COMMIT_FILES) {
+            new File(file + PENDING_SUFFIX).delete();
+        }
+    }
+    
+    /**
+     * Write lines to a file and force them to disk
+     */
+    private void writeSynced(String filePath, List<String> lines) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(filePath)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+    
+    // ============ SEQUENCE OPERATIONS ============
+    
+    /**
+     * Reserve a block of sequence values and persist the new high-water mark
+     * The new marks are staged in a synced .pending file and moved over the
+     * live one, so a crash leaves either the old or the new mark, never none.
+     * A lock file is held while reading and writing so separate processes
+     * sharing the data directory never receive overlapping blocks; within
+     * this process reservations serialize on their own lock, not the file lock
+     * Returns the first value of the reserved block
+     */
+    public long reserveSequenceBlock(String name, long floor, int blockSize) {
+        synchronized (sequenceLock) {
+            try (FileChannel lock = FileChannel.open(Paths.get(SEQUENCES_FILE + LOCK_SUFFIX),
+                                                     StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                lock.lock(); // released when the channel closes
+                
+                Map<String, Long> sequences = new LinkedHashMap<>();
+                for (String line : Files.readAllLines(Paths.get(SEQUENCES_FILE), StandardCharsets.UTF_8)) {
+                    String[] parts = line.trim().split("\\|");
+                    if (parts.length == 2) {
+                        sequences.put(parts[0], Long.parseLong(parts[1]));
+                    }
+                }
+                
+                long highWaterMark = sequences.getOrDefault(name, 0L);
+                long start = Math.max(highWaterMark, floor);
+                sequences.put(name, start + blockSize);
+                
+                List<String> lines = new ArrayList<>();
+                for (Map.Entry<String, Long> entry : sequences.entrySet()) {
+                    lines.add(entry.getKey() + "|" + entry.getValue());
+                }
+                writeSynced(SEQUENCES_FILE + PENDING_SUFFIX, lines);
+                moveIntoPlace(Paths.get(SEQUENCES_FILE + PENDING_SUFFIX), Paths.get(SEQUENCES_FILE));
+                return start;
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Error reserving sequence block for " + name, e);
+            }
+        }
+    }
+    
     /**
      * Clear all data (for testing purposes)
      */
@@ -251,6 +834,9 @@ public class FileHandler {
             new FileWriter(MEMBERS_FILE).close();
             new FileWriter(TRANSACTIONS_FILE).close();
             new FileWriter(ADMINS_FILE).close();
+            new FileWriter(SEQUENCES_FILE).close();
+            new FileWriter(BORROWERS_FILE).close();
+            new FileWriter(INVENTORY_FILE).close();
             System.out.println("All data cleared successfully!");
         } catch (IOException e) {
             System.err.println("Error clearing data!");
@@ -0,0 +1,139 @@
+package utils;
+
+/**
+ * HyperLogLog estimates how many distinct values have been added
+ * Uses 2^PRECISION one-byte registers (256 bytes), giving a standard error
+ * of about 1.04 / sqrt(256) = 6.5% whatever the true count. Adding a value
+ * twice changes nothing, and two sketches merge by taking the larger of
+ * each register pair, so per-book sketches can be combined into category
+ * or date-range totals without ever keeping the underlying sets.
+ * Not thread-safe.
+ */
+public class HyperLogLog {
+    public static final int PRECISION = 8;
+    public static final int REGISTERS = 1 << PRECISION;
+    
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private final byte[] registers;
+    
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+    
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+    
+    /**
+     * Add a value to the sketch (case-sensitive)
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // Rank of the first 1-bit in the remaining bits; the sentinel caps it
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+    
+    /**
+     * Fold another sketch into this one
+     * Afterwards this sketch estimates the size of the union
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    /**
+     * Estimated number of distinct values added
+     * Small counts use linear counting, which is close to exact
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public HyperLogLog copy() {
+        return new HyperLogLog(registers.clone());
+    }
+    
+    // ============ PERSISTENCE ============
+    
+    /**
+     * Registers as a hex string (two characters per register)
+     */
+    public String toHex() {
+        char[] chars = new char[REGISTERS * 2];
+        for (int i = 0; i < REGISTERS; i++) {
+            chars[i * 2] = HEX[(registers[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[registers[i] & 0xF];
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Parse a sketch written by toHex
+     * Returns null if the text is not a sketch of this precision
+     */
+    public static HyperLogLog fromHex(String hex) {
+        if (hex == null || hex.length() != REGISTERS * 2) {
+            return null;
+        }
+        byte[] registers = new byte[REGISTERS];
+        for (int i = 0; i < REGISTERS; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            registers[i] = (byte) ((high << 4) | low);
+        }
+        return new HyperLogLog(registers);
+    }
+    
+    /**
+     * 64-bit FNV-1a over the characters, finished with the MurmurHash3
+     * mixer so that short, similar IDs spread across all registers
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e87cbL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
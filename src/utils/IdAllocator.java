@@ -0,0 +1,121 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdAllocator hands out monotonic, collision-free IDs such as TXN00042
+ * Values are reserved from a persisted high-water mark in blocks, so
+ * callers only touch the sequence file once per block and IDs are never
+ * reused even after history is trimmed or the application restarts
+ */
+public class IdAllocator {
+    private static final int DEFAULT_BLOCK_SIZE = 100;
+    
+    private final String prefix;
+    private final int minDigits;
+    private final int blockSize;
+    private final FileHandler fileHandler;
+    private long floor;
+    private volatile Block current;
+    
+    /**
+     * A reserved range [next, end) of sequence values
+     */
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+        
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+    
+    public IdAllocator(String prefix, int minDigits, long floor) {
+        this(prefix, minDigits, floor, DEFAULT_BLOCK_SIZE);
+    }
+    
+    public IdAllocator(String prefix, int minDigits, long floor, int blockSize) {
+        this.prefix = prefix;
+        this.minDigits = minDigits;
+        this.blockSize = blockSize;
+        this.floor = floor;
+        this.fileHandler = FileHandler.getInstance();
+        this.current = new Block(0, 0); // empty, first call reserves a block
+    }
+    
+    /**
+     * Allocate the next ID
+     */
+    public String nextId() {
+        while (true) {
+            Block block = current;
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return format(value);
+            }
+            refill(block);
+        }
+    }
+    
+    /**
+     * Make sure later IDs come after the given sequence value
+     * Used when records with existing IDs are brought in from outside; the
+     * current block is retired if it could still hand out a value at or below it.
+     * Its next value is moved to its end first, so a nextId that read the
+     * block before it was replaced falls through to refill instead of using it
+     */
+    public synchronized void advancePast(long sequence) {
+        floor = Math.max(floor, sequence + 1);
+        Block block = current;
+        while (true) {
+            long next = block.next.get();
+            if (sequence < next) {
+                return; // every value left in the block is above it
+            }
+            if (block.next.compareAndSet(next, Math.max(next, block.end))) {
+                break;
+            }
+        }
+        current = new Block(0, 0);
+    }
+    
+    /**
+     * Reserve a new block once the given one is exhausted
+     */
+    private synchronized void refill(Block exhausted) {
+        if (current != exhausted) {
+            return; // another thread already refilled
+        }
+        long start = fileHandler.reserveSequenceBlock(prefix, floor, blockSize);
+        floor = start + blockSize;
+        current = new Block(start, start + blockSize);
+    }
+    
+    /**
+     * Format a value as prefix plus zero-padded digits (grows past minDigits)
+     */
+    private String format(long value) {
+        String digits = Long.toString(value);
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(minDigits, digits.length()));
+        id.append(prefix);
+        for (int i = digits.length(); i < minDigits; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+    
+    /**
+     * Parse the numeric part of an ID created with the given prefix (-1 if not parseable)
+     */
+    public static long parseSequence(String id, String prefix) {
+        if (id == null || id.length() <= prefix.length() || !id.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package utils;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+
+import java.util.List;
+
+/**
+ * Json writes strings and model objects as JSON, for the HTTP API and exports
+ * Hand-written to keep the project free of external libraries
+ */
+public class Json {
+    
+    private Json() {
+    }
+    
+    /**
+     * Append a string as a quoted, escaped JSON value (null stays null)
+     */
+    public static StringBuilder quote(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+    
+    public static StringBuilder book(StringBuilder out, Book book) {
+        out.append("{\"bookId\":");
+        quote(out, book.getBookId()).append(",\"title\":");
+        quote(out, book.getTitle()).append(",\"author\":");
+        quote(out, book.getAuthor()).append(",\"isbn\":");
+        quote(out, book.getIsbn()).append(",\"category\":");
+        quote(out, book.getCategory());
+        out.append(",\"totalQuantity\":").append(book.getTotalQuantity());
+        out.append(",\"availableQuantity\":").append(book.getAvailableQuantity());
+        return out.append('}');
+    }
+    
+    public static StringBuilder member(StringBuilder out, Member member) {
+        out.append("{\"memberId\":");
+        quote(out, member.getMemberId()).append(",\"name\":");
+        quote(out, member.getName()).append(",\"email\":");
+        quote(out, member.getEmail()).append(",\"phone\":");
+        quote(out, member.getPhone()).append(",\"memberType\":");
+        quote(out, member.getMemberType()).append(",\"registrationDate\":");
+        quote(out, String.valueOf(member.getRegistrationDate()));
+        out.append(",\"borrowedBooks\":").append(member.getBorrowedBooks());
+        out.append(",\"maxBooksAllowed\":").append(member.getMaxBooksAllowed());
+        return out.append('}');
+    }
+    
+    public static StringBuilder transaction(StringBuilder out, Transaction txn) {
+        out.append("{\"transactionId\":");
+        quote(out, txn.getTransactionId()).append(",\"bookId\":");
+        quote(out, txn.getBookId()).append(",\"memberId\":");
+        quote(out, txn.getMemberId()).append(",\"issueDate\":");
+        quote(out, String.valueOf(txn.getIssueDate())).append(",\"dueDate\":");
+        quote(out, String.valueOf(txn.getDueDate())).append(",\"returnDate\":");
+        quote(out, txn.getReturnDate() != null ? txn.getReturnDate().toString() : null);
+        out.append(",\"fine\":").append(txn.getFine());
+        out.append(",\"status\":");
+        quote(out, txn.getStatus());
+        return out.append('}');
+    }
+    
+    public static String books(List<Book> books) {
+        StringBuilder out = new StringBuilder(64 + books.size() * 160).append('[');
+        for (int i = 0; i < books.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            book(out, books.get(i));
+        }
+        return out.append(']').toString();
+    }
+    
+    public static String transactions(List<Transaction> transactions) {
+        StringBuilder out = new StringBuilder(64 + transactions.size() * 200).append('[');
+        for (int i = 0; i < transactions.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            transaction(out, transactions.get(i));
+        }
+        return out.append(']').toString();
+    }
+    
+    /**
+     * Simple {"error": "..."} body
+     */
+    public static String error(String message) {
+        return quote(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+}
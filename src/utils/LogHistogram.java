@@ -0,0 +1,98 @@
+package utils;
+
+/**
+ * LogHistogram records non-negative values in log-scaled buckets
+ * (in the style of HdrHistogram). Values below 32 get a bucket each, so
+ * loan durations up to a month are exact; above that every power of two
+ * is split into 16 buckets, keeping the relative error under 1/16. The
+ * bucket array has a fixed size, histograms merge by adding counts, and
+ * a percentile is found with one pass over the buckets.
+ * Not thread-safe.
+ */
+public class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;     // per power of two
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;         // values below this are exact
+    private static final int MAX_POWER = 20;                         // values clamp at 2^21 - 1
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_POWER - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+    
+    /**
+     * Record one value (negative values count as 0)
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), (1L << (MAX_POWER + 1)) - 1);
+        counts[bucketOf(clamped)]++;
+        total++;
+        sum += clamped;
+        max = Math.max(max, clamped);
+    }
+    
+    /**
+     * Add another histogram's counts into this one
+     */
+    public void merge(LogHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * Value at a percentile (0-100): the highest value in the bucket holding it
+     * Returns 0 for an empty histogram
+     */
+    public long getPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+    
+    public long getCount() {
+        return total;
+    }
+    
+    public double getMean() {
+        return total == 0 ? 0.0 : (double) sum / total;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);   // >= SUB_BUCKET_BITS + 1
+        int shift = power - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (power - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+    
+    private static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int power = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        int shift = power - SUB_BUCKET_BITS;
+        long low = (1L << power) | ((long) sub << shift);
+        return low + (1L << shift) - 1;
+    }
+}
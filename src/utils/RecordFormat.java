@@ -0,0 +1,285 @@
+package utils;
+
+import java.util.Locale;
+
+/**
+ * RecordFormat encodes and decodes flat records one line at a time
+ * CSV follows RFC 4180 quoting with a header line; JSON is written as
+ * JSON Lines (one object per line), so both can be streamed without
+ * holding a whole file. Values are strings in the pipe-delimited file
+ * format; in JSON, numeric columns are written as numbers and the file
+ * format's "NULL" marker as null.
+ */
+public enum RecordFormat {
+    CSV,
+    JSON;
+    
+    private static final String NULL_VALUE = "NULL";
+    
+    /**
+     * Pick the format from a file name (.csv, or .json/.jsonl/.ndjson)
+     * Returns null for any other extension
+     */
+    public static RecordFormat forFile(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lower.endsWith(".json") || lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) {
+            return JSON;
+        }
+        return null;
+    }
+    
+    /**
+     * Header line written before the records, or null if the format has none
+     */
+    public String header(String[] columns) {
+        if (this == JSON) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        appendRecord(line, columns, columns, new boolean[columns.length]);
+        return line.toString();
+    }
+    
+    /**
+     * Append one record (without a line break)
+     */
+    public void appendRecord(StringBuilder line, String[] columns, String[] values, boolean[] numeric) {
+        if (this == CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendCsvField(line, values[i]);
+            }
+            return;
+        }
+        
+        line.append('{');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Json.quote(line, columns[i]);
+            line.append(':');
+            if (NULL_VALUE.equals(values[i])) {
+                line.append("null");
+            } else if (numeric[i]) {
+                line.append(values[i]);
+            } else {
+                Json.quote(line, values[i]);
+            }
+        }
+        line.append('}');
+    }
+    
+    /**
+     * Decode one record into values ordered like columns
+     * Throws IllegalArgumentException if the line is malformed or a column is missing
+     */
+    public String[] parseRecord(String line, String[] columns) {
+        return this == CSV ? parseCsv(line, columns.length) : parseJson(line, columns);
+    }
+    
+    // ============ CSV ============
+    
+    private static void appendCsvField(StringBuilder line, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+    
+    private static String[] parseCsv(String line, int fieldCount) {
+        String[] values = new String[fieldCount];
+        StringBuilder field = new StringBuilder();
+        int count = 0;
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+            } else {
+                while (i < line.length() && line.charAt(i) != ',') {
+                    field.append(line.charAt(i++));
+                }
+            }
+            
+            if (count == fieldCount) {
+                throw new IllegalArgumentException("expected " + fieldCount + " fields");
+            }
+            values[count++] = field.toString();
+            if (i >= line.length()) {
+                break;
+            }
+            if (line.charAt(i) != ',') {
+                throw new IllegalArgumentException("unexpected character after quoted field");
+            }
+            i++;
+        }
+        if (count != fieldCount) {
+            throw new IllegalArgumentException("expected " + fieldCount + " fields");
+        }
+        return values;
+    }
+    
+    // ============ JSON ============
+    
+    /**
+     * Parse a flat JSON object whose values are strings, numbers, booleans or null
+     * Keys not among the columns are ignored
+     */
+    private static String[] parseJson(String line, String[] columns) {
+        String[] values = new String[columns.length];
+        int[] pos = {skipSpace(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = readString(line, pos);
+                expect(line, pos, ':');
+                String value = readValue(line, pos);
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i].equals(key)) {
+                        values[i] = value;
+                    }
+                }
+                char next = peek(line, pos);
+                pos[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("expected ',' or '}'");
+                }
+            }
+        }
+        if (skipSpace(line, pos[0]) != line.length()) {
+            throw new IllegalArgumentException("trailing characters");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException("missing " + columns[i]);
+            }
+        }
+        return values;
+    }
+    
+    private static String readValue(String line, int[] pos) {
+        if (peek(line, pos) == '"') {
+            return readString(line, pos);
+        }
+        int start = pos[0];
+        while (pos[0] < line.length() && ",}] \t".indexOf(line.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String token = line.substring(start, pos[0]);
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("missing value");
+        }
+        return token.equals("null") ? NULL_VALUE : token;
+    }
+    
+    private static String readString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (pos[0] >= line.length()) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            char c = line.charAt(pos[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (pos[0] >= line.length()) {
+                throw new IllegalArgumentException("unterminated escape");
+            }
+            char escaped = line.charAt(pos[0]++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (pos[0] + 4 > line.length()) {
+                        throw new IllegalArgumentException("bad unicode escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ \/
+            }
+        }
+    }
+    
+    private static void expect(String line, int[] pos, char c) {
+        if (peek(line, pos) != c) {
+            throw new IllegalArgumentException("expected '" + c + "'");
+        }
+        pos[0]++;
+    }
+    
+    /**
+     * Next non-space character, leaving pos on it (0 at end of line)
+     */
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipSpace(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : 0;
+    }
+    
+    private static int skipSpace(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
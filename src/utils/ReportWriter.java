@@ -0,0 +1,193 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * ReportWriter streams report rows through one large buffer
+ * Each row is formatted into a single reused StringBuilder and written to
+ * a 64 KB buffered writer, so dumping a long report costs no per-row
+ * String.format or console flush. Rows are read straight from the source
+ * list or iterable; nothing is copied. The same writer targets the console
+ * or a file, and page() adds an interactive pager for the console.
+ */
+public class ReportWriter implements Closeable {
+    public static final int PAGE_SIZE = 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Formats one row into the shared line buffer
+     */
+    public interface RowFormatter<T> {
+        void format(T row, StringBuilder line);
+    }
+    
+    private final Writer out;
+    private final boolean console;
+    private final StringBuilder line = new StringBuilder(256);
+    
+    private ReportWriter(Writer out, boolean console) {
+        this.out = new BufferedWriter(out, BUFFER_SIZE);
+        this.console = console;
+    }
+    
+    /**
+     * Writer to standard output; close() flushes but leaves System.out open
+     */
+    public static ReportWriter toConsole() {
+        return new ReportWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), true);
+    }
+    
+    /**
+     * Writer to a file (UTF-8), replacing its contents
+     */
+    public static ReportWriter toFile(String path) throws IOException {
+        return new ReportWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8), false);
+    }
+    
+    /**
+     * Write one line of text
+     */
+    public ReportWriter println(String text) throws IOException {
+        out.write(text);
+        out.write(System.lineSeparator());
+        return this;
+    }
+    
+    /**
+     * Write every row, one per line; returns how many were written
+     */
+    public <T> int writeRows(Iterable<? extends T> rows, RowFormatter<? super T> formatter) throws IOException {
+        int count = 0;
+        for (T row : rows) {
+            writeRow(row, formatter);
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Write rows from index from (inclusive) to to (exclusive) of a list
+     */
+    public <T> void writeRows(List<? extends T> rows, int from, int to, RowFormatter<? super T> formatter) throws IOException {
+        for (int i = from; i < to; i++) {
+            writeRow(rows.get(i), formatter);
+        }
+    }
+    
+    private <T> void writeRow(T row, RowFormatter<? super T> formatter) throws IOException {
+        line.setLength(0);
+        formatter.format(row, line);
+        line.append(System.lineSeparator());
+        out.append(line);
+    }
+    
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (console) {
+            out.flush();
+        } else {
+            out.close();
+        }
+    }
+    
+    // ============ CONSOLE PAGING ============
+    
+    /**
+     * Show a list a page at a time on the console
+     * Short lists are printed in full. Longer ones stop after each page for
+     * a command: Enter or n (next), p (previous), g (go to page), e (export
+     * the whole list to a file) or q (quit). Pages are read from the list
+     * by index, so moving the cursor never copies rows. Lists are expected
+     * to be random access, like the services' snapshots.
+     */
+    public static <T> void page(List<? extends T> rows, String title, RowFormatter<? super T> formatter, Scanner input) {
+        int pages = Math.max(1, (rows.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int page = 0;
+        try (ReportWriter console = toConsole()) {
+            while (true) {
+                int from = page * PAGE_SIZE;
+                int to = Math.min(rows.size(), from + PAGE_SIZE);
+                console.println("\n========================================");
+                console.println("   " + title + (pages > 1 ? " (page " + (page + 1) + " of " + pages + ")" : ""));
+                console.println("========================================");
+                console.writeRows(rows, from, to, formatter);
+                console.println("========================================");
+                if (pages == 1) {
+                    console.println("Total: " + rows.size());
+                    console.flush();
+                    return;
+                }
+                console.println("Showing " + (from + 1) + "-" + to + " of " + rows.size());
+                console.println("[Enter/n] next  [p] previous  [g] go to page  [e] export  [q] quit");
+                console.flush();
+                System.out.print("> ");
+                
+                String command = input.hasNextLine() ? input.nextLine().trim().toLowerCase(Locale.ROOT) : "q";
+                switch (command) {
+                    case "":
+                    case "n":
+                        if (page + 1 >= pages) {
+                            return;
+                        }
+                        page++;
+                        break;
+                    case "p":
+                        page = Math.max(0, page - 1);
+                        break;
+                    case "g":
+                        System.out.print("Page (1-" + pages + "): ");
+                        try {
+                            page = Math.min(pages, Math.max(1, Integer.parseInt(input.nextLine().trim()))) - 1;
+                        } catch (NumberFormatException e) {
+                            System.out.println("Error: Invalid page number!");
+                        }
+                        break;
+                    case "e":
+                        System.out.print("Export to file: ");
+                        export(rows, input.nextLine().trim(), formatter);
+                        break;
+                    case "q":
+                        return;
+                    default:
+                        System.out.println("Invalid choice!");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing report!");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Stream every row to a file
+     * Returns false if the file could not be written
+     */
+    public static <T> boolean export(Iterable<? extends T> rows, String path, RowFormatter<? super T> formatter) {
+        if (path.isEmpty()) {
+            System.out.println("Error: File name cannot be empty!");
+            return false;
+        }
+        try (ReportWriter file = toFile(path)) {
+            int count = file.writeRows(rows, formatter);
+            System.out.println("Exported " + count + " rows to " + path);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: Could not write " + path + "!");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * SnapshotList is a list whose readers get immutable point-in-time views
+ * Taking a snapshot is O(1) and never blocks; writers are serialized.
+ * Appends reuse the backing array (slots beyond an older view's size are
+ * invisible to it), removals copy, so a published view never changes.
+ */
+public class SnapshotList<T> {
+    private volatile View<T> view;
+    
+    /**
+     * Immutable view over the first size slots of a backing array
+     */
+    private static final class View<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] items;
+        private final int size;
+        
+        View(Object[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (T) items[index];
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+    
+    public SnapshotList(Collection<? extends T> initial) {
+        Object[] items = initial.toArray(new Object[Math.max(16, initial.size())]);
+        this.view = new View<>(items, initial.size());
+    }
+    
+    /**
+     * Current contents as an immutable list (O(1), no copy)
+     */
+    public List<T> snapshot() {
+        return view;
+    }
+    
+    public int size() {
+        return view.size;
+    }
+    
+    public boolean isEmpty() {
+        return view.size == 0;
+    }
+    
+    /**
+     * Append one item
+     */
+    public synchronized void add(T item) {
+        Object[] items = ensureCapacity(view.size + 1);
+        items[view.size] = item;
+        view = new View<>(items, view.size + 1);
+    }
+    
+    /**
+     * Append several items, published together
+     */
+    public synchronized void addAll(Collection<? extends T> added) {
+        Object[] items = ensureCapacity(view.size + added.size());
+        int size = view.size;
+        for (T item : added) {
+            items[size++] = item;
+        }
+        view = new View<>(items, size);
+    }
+    
+    /**
+     * Remove one item (matched by identity)
+     */
+    public synchronized boolean remove(T item) {
+        for (int i = 0; i < view.size; i++) {
+            if (view.items[i] == item) {
+                Object[] items = new Object[Math.max(16, view.items.length)];
+                System.arraycopy(view.items, 0, items, 0, i);
+                System.arraycopy(view.items, i + 1, items, i, view.size - i - 1);
+                view = new View<>(items, view.size - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Remove several items (matched by identity)
+     */
+    public synchronized void removeAll(Collection<? extends T> removed) {
+        Map<Object, Boolean> toRemove = new IdentityHashMap<>();
+        for (T item : removed) {
+            toRemove.put(item, Boolean.TRUE);
+        }
+        Object[] items = new Object[Math.max(16, view.items.length)];
+        int size = 0;
+        for (int i = 0; i < view.size; i++) {
+            if (!toRemove.containsKey(view.items[i])) {
+                items[size++] = view.items[i];
+            }
+        }
+        view = new View<>(items, size);
+    }
+    
+    /**
+     * Backing array with room for the given size, growing by half when full
+     */
+    private Object[] ensureCapacity(int required) {
+        Object[] items = view.items;
+        if (required <= items.length) {
+            return items;
+        }
+        return Arrays.copyOf(items, Math.max(required, items.length + (items.length >> 1)));
+    }
+}
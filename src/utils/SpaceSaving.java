@@ -0,0 +1,230 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpaceSaving tracks the most frequent keys of a stream in bounded memory
+ * (Metwally et al.'s Space-Saving algorithm over a Stream-Summary).
+ * At most capacity keys are monitored. An unmonitored key evicts the key
+ * with the smallest count and inherits that count as its error bound, so
+ * any key whose true frequency exceeds total/capacity is guaranteed to be
+ * present. Counters are kept in buckets of equal count, linked in order,
+ * making each offer O(1) and a top-n query O(n). Not thread-safe.
+ */
+public class SpaceSaving<K> {
+    
+    /**
+     * Monitored key with its estimated count (never an underestimate)
+     * and the maximum overestimation error
+     */
+    public static final class Entry<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+        
+        Entry(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+        
+        public K getKey() {
+            return key;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getError() {
+            return error;
+        }
+        
+        /**
+         * Lower bound on the true count
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+    
+    private static final class Counter<K> {
+        K key;
+        long error;
+        Bucket<K> bucket;
+        Counter<K> prev;
+        Counter<K> next;
+    }
+    
+    /**
+     * All counters sharing one count, in a list ordered by count
+     */
+    private static final class Bucket<K> {
+        final long count;
+        Counter<K> head;
+        Bucket<K> prev; // smaller count
+        Bucket<K> next; // larger count
+        
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+    
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private Bucket<K> smallest;
+    private Bucket<K> largest;
+    private long total;
+    
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+    
+    /**
+     * Count one occurrence of a key
+     */
+    public void offer(K key) {
+        total++;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            increment(counter);
+            return;
+        }
+        
+        if (counters.size() < capacity) {
+            counter = new Counter<>();
+            counter.key = key;
+            counters.put(key, counter);
+            attach(counter, bucketAfter(null, 1));
+            return;
+        }
+        
+        // Full: the least frequent key makes room and passes on its count
+        counter = smallest.head;
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.error = smallest.count;
+        counters.put(key, counter);
+        increment(counter);
+    }
+    
+    /**
+     * The n keys with the highest estimated counts, highest first
+     */
+    public List<Entry<K>> top(int n) {
+        List<Entry<K>> result = new ArrayList<>(Math.min(n, counters.size()));
+        for (Bucket<K> bucket = largest; bucket != null && result.size() < n; bucket = bucket.prev) {
+            for (Counter<K> counter = bucket.head; counter != null && result.size() < n; counter = counter.next) {
+                result.add(new Entry<>(counter.key, bucket.count, counter.error));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Estimated count of a key (0 if it is not monitored)
+     */
+    public long estimate(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter != null ? counter.bucket.count : 0;
+    }
+    
+    /**
+     * Number of offers since the last clear
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    public int size() {
+        return counters.size();
+    }
+    
+    public void clear() {
+        counters.clear();
+        smallest = null;
+        largest = null;
+        total = 0;
+    }
+    
+    // ============ STREAM-SUMMARY ============
+    
+    private void increment(Counter<K> counter) {
+        Bucket<K> from = counter.bucket;
+        Bucket<K> to = from.next != null && from.next.count == from.count + 1
+                ? from.next
+                : bucketAfter(from, from.count + 1);
+        detach(counter);
+        attach(counter, to);
+    }
+    
+    /**
+     * Create and link a bucket right after the given one (null for the front)
+     */
+    private Bucket<K> bucketAfter(Bucket<K> previous, long count) {
+        if (previous == null && smallest != null && smallest.count == count) {
+            return smallest;
+        }
+        Bucket<K> bucket = new Bucket<>(count);
+        bucket.prev = previous;
+        bucket.next = previous != null ? previous.next : smallest;
+        if (bucket.prev != null) {
+            bucket.prev.next = bucket;
+        } else {
+            smallest = bucket;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket;
+        } else {
+            largest = bucket;
+        }
+        return bucket;
+    }
+    
+    private void attach(Counter<K> counter, Bucket<K> bucket) {
+        counter.bucket = bucket;
+        counter.prev = null;
+        counter.next = bucket.head;
+        if (bucket.head != null) {
+            bucket.head.prev = counter;
+        }
+        bucket.head = counter;
+    }
+    
+    /**
+     * Unlink a counter, dropping its bucket if that leaves it empty
+     */
+    private void detach(Counter<K> counter) {
+        Bucket<K> bucket = counter.bucket;
+        if (counter.prev != null) {
+            counter.prev.next = counter.next;
+        } else {
+            bucket.head = counter.next;
+        }
+        if (counter.next != null) {
+            counter.next.prev = counter.prev;
+        }
+        counter.prev = null;
+        counter.next = null;
+        
+        if (bucket.head == null) {
+            if (bucket.prev != null) {
+                bucket.prev.next = bucket.next;
+            } else {
+                smallest = bucket.next;
+            }
+            if (bucket.next != null) {
+                bucket.next.prev = bucket.prev;
+            } else {
+                largest = bucket.prev;
+            }
+        }
+    }
+}
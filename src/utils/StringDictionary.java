@@ -0,0 +1,75 @@
+package utils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StringDictionary provides a global pool for low-cardinality strings
+ * Repeated values (categories, member types) share one instance and get a
+ * small integer code for case-insensitive comparisons. Entries are never
+ * evicted, so only fields with a small, bounded set of values belong here;
+ * free text such as titles or authors must not be interned
+ */
+public class StringDictionary {
+    
+    public static final int NO_CODE = -1;
+    
+    private static final Map<String, String> CANONICAL = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();       // keyed by lowercase value
+    private static final Map<String, Integer> EXACT_CODES = new ConcurrentHashMap<>(); // keyed by value as given
+    private static final AtomicInteger NEXT_CODE = new AtomicInteger();
+    
+    private StringDictionary() {
+    }
+    
+    /**
+     * Return the shared instance for a value
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = CANONICAL.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+    
+    /**
+     * Get the code for a value, registering it if new
+     * Values that differ only in case share the same code. Each spelling is
+     * lowercased once, the first time it is seen; later calls are one lookup
+     */
+    public static int codeOf(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = EXACT_CODES.get(value);
+        if (code == null) {
+            code = CODES.computeIfAbsent(value.toLowerCase(Locale.ROOT), key -> NEXT_CODE.getAndIncrement());
+            EXACT_CODES.putIfAbsent(value, code);
+        }
+        return code;
+    }
+    
+    /**
+     * Get the code for a value without registering it (NO_CODE if unknown)
+     */
+    public static int lookupCode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = EXACT_CODES.get(value);
+        if (code == null) {
+            code = CODES.get(value.toLowerCase(Locale.ROOT));
+        }
+        return code != null ? code : NO_CODE;
+    }
+    
+    /**
+     * Number of distinct pooled strings
+     */
+    public static int size() {
+        return CANONICAL.size();
+    }
+}
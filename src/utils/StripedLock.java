@@ -0,0 +1,75 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StripedLock maps keys (book or member IDs) onto a fixed set of locks
+ * Operations on unrelated keys usually get different stripes and run in
+ * parallel, while operations on the same key are always serialized
+ */
+public class StripedLock {
+    private final ReentrantLock[] locks;
+    
+    /**
+     * Create a striped lock, rounding the stripe count up to a power of two
+     */
+    public StripedLock(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Get the lock guarding a key (IDs are matched case-insensitively)
+     */
+    public Lock get(String key) {
+        return locks[indexFor(key)];
+    }
+    
+    /**
+     * Lock the stripes of several keys in a fixed order to avoid deadlocks
+     * Returns the acquired locks so they can be passed to unlockAll
+     */
+    public List<Lock> lockAll(Collection<String> keys) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String key : keys) {
+            indexes.add(indexFor(key));
+        }
+        
+        List<Lock> acquired = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            locks[index].lock();
+            acquired.add(locks[index]);
+        }
+        return acquired;
+    }
+    
+    /**
+     * Release locks acquired with lockAll, in reverse order
+     */
+    public static void unlockAll(List<Lock> acquired) {
+        for (int i = acquired.size() - 1; i >= 0; i--) {
+            acquired.get(i).unlock();
+        }
+    }
+    
+    private int indexFor(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.toLowerCase(Locale.ROOT).hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (locks.length - 1);
+    }
+}
@@ -1,5 +1,6 @@
 package utils;
 
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 /**
@@ -114,7 +115,7 @@ public class Validator {
         if (memberType == null) {
             return false;
         }
-        String type = memberType.trim().toUpperCase();
+        String type = memberType.trim().toUpperCase(Locale.ROOT);
         return type.equals("STUDENT") || type.equals("FACULTY");
     }
     
@@ -0,0 +1,246 @@
+package api;
+
+import models.Book;
+import models.Member;
+import services.AdmissionController;
+import services.AuthService;
+import services.BookService;
+import services.MemberService;
+import services.MutationPipeline;
+import services.TransactionService;
+import support.Tests;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+import static support.Tests.checkThrows;
+
+/**
+ * DeskProtocol encoding and DeskServer framing
+ * The server cases talk to a real DeskServer on an ephemeral port, both
+ * through DeskClient and with hand-built frames split across writes
+ */
+public class DeskProtocolTest {
+    private static final String LONG_TITLE = repeat("Chronicle ", 700);
+    
+    private static BookService books;
+    private static MemberService members;
+    private static TransactionService transactions;
+    private static AuthService auth;
+    private static MutationPipeline pipeline;
+    private static DeskServer server;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            auth = new AuthService();
+            books = new BookService();
+            members = new MemberService();
+            transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Short", "Author", "111", "Fiction", 2));
+            books.addBook(new Book("B2", LONG_TITLE, repeat("Writer ", 400), "222", "Fiction", 1));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+        });
+        pipeline = new MutationPipeline(books, members, transactions);
+        pipeline.start();
+        server = new DeskServer(auth, books, members, transactions, pipeline, new AdmissionController(), 0);
+        server.start();
+        
+        Tests tests = new Tests("DeskProtocolTest");
+        tests.run("strings round-trip, including non-ASCII", DeskProtocolTest::stringRoundTrip);
+        tests.run("long strings are cut at a character boundary", DeskProtocolTest::longStringsCut);
+        tests.run("a string longer than its frame is rejected", DeskProtocolTest::truncatedString);
+        tests.run("endFrame writes the body length", DeskProtocolTest::frameLength);
+        tests.run("replies with long fields fit in a frame", DeskProtocolTest::longReply);
+        tests.run("frames split across writes and pipelined together", DeskProtocolTest::splitAndPipelined);
+        tests.run("a malformed request gets BAD_REQUEST and the connection stays usable", DeskProtocolTest::malformed);
+        tests.run("an invalid frame length closes the connection", DeskProtocolTest::invalidLength);
+        tests.run("issue, member status and return over the wire", DeskProtocolTest::circulation);
+        tests.run("writes after the pipeline stops are answered with ERROR", DeskProtocolTest::pipelineStopped);
+        server.stop();
+        tests.finish();
+    }
+    
+    // ============ ENCODING ============
+    
+    private static void stringRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        DeskProtocol.putString(buffer, "Fine ₹12");
+        DeskProtocol.putString(buffer, null);
+        buffer.flip();
+        checkEquals("Fine ₹12", DeskProtocol.getString(buffer), "non-ASCII string");
+        checkEquals("", DeskProtocol.getString(buffer), "null written as empty");
+        check(!buffer.hasRemaining(), "nothing left over");
+    }
+    
+    private static void longStringsCut() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        String rupees = repeat("₹", 1000); // 3 bytes each
+        DeskProtocol.putString(buffer, rupees);
+        buffer.flip();
+        String read = DeskProtocol.getString(buffer);
+        check(read.getBytes(StandardCharsets.UTF_8).length <= DeskProtocol.MAX_STRING, "cut to MAX_STRING bytes");
+        checkEquals(DeskProtocol.MAX_STRING / 3, read.length(), "only whole characters kept");
+        check(rupees.startsWith(read), "prefix of the original");
+    }
+    
+    private static void truncatedString() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putShort((short) 100).put((byte) 'x').flip();
+        checkThrows(BufferUnderflowException.class, () -> DeskProtocol.getString(buffer), "length past the end");
+    }
+    
+    private static void frameLength() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 9);
+        int start = DeskProtocol.beginFrame(buffer);
+        buffer.put(DeskProtocol.LOOKUP_BOOK).putInt(7);
+        DeskProtocol.putString(buffer, "B1");
+        DeskProtocol.endFrame(buffer, start);
+        checkEquals(1 + 4 + 2 + 2, buffer.getInt(start), "length excludes the prefix");
+    }
+    
+    // ============ SERVER ============
+    
+    private static void longReply() throws IOException {
+        try (DeskClient client = connect()) {
+            DeskClient.Reply reply = client.lookupBook("B2");
+            check(reply.isOk(), "lookup answered: " + reply.getStatus());
+            String title = (String) reply.getFields().get(1);
+            check(LONG_TITLE.startsWith(title) && !title.isEmpty(), "title is a prefix of the stored one");
+            checkEquals(1, reply.getFields().get(4), "fields after the long strings intact");
+            check(client.lookupBook("B1").isOk(), "connection still usable");
+        }
+    }
+    
+    private static void splitAndPipelined() throws Exception {
+        ByteBuffer requests = ByteBuffer.allocate(256);
+        for (int id = 1; id <= 3; id++) {
+            int start = DeskProtocol.beginFrame(requests);
+            requests.put(DeskProtocol.LOOKUP_BOOK).putInt(id);
+            DeskProtocol.putString(requests, id == 2 ? "NOPE" : "B1");
+            DeskProtocol.endFrame(requests, start);
+        }
+        requests.flip();
+        
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            // First frame one byte at a time, then the other two in a single write
+            int first = DeskProtocol.HEADER_SIZE + requests.getInt(0);
+            for (int i = 0; i < first; i++) {
+                channel.write(ByteBuffer.wrap(new byte[] {requests.get(i)}));
+                Thread.sleep(1);
+            }
+            requests.position(first);
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            
+            byte[] statuses = new byte[3];
+            for (int id = 1; id <= 3; id++) {
+                ByteBuffer reply = readFrame(channel);
+                statuses[id - 1] = reply.get();
+                checkEquals(id, reply.getInt(), "replies in request order");
+            }
+            check(Arrays.equals(new byte[] {DeskProtocol.OK, DeskProtocol.NOT_FOUND, DeskProtocol.OK}, statuses),
+                  "statuses " + Arrays.toString(statuses));
+        }
+    }
+    
+    private static void malformed() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            // Claims a 50-byte string but the frame ends after one byte
+            ByteBuffer request = ByteBuffer.allocate(32);
+            int start = DeskProtocol.beginFrame(request);
+            request.put(DeskProtocol.LOOKUP_BOOK).putInt(5).putShort((short) 50).put((byte) 'B');
+            DeskProtocol.endFrame(request, start);
+            request.flip();
+            channel.write(request);
+            
+            ByteBuffer reply = readFrame(channel);
+            checkEquals(DeskProtocol.BAD_REQUEST, reply.get(), "status");
+            checkEquals(5, reply.getInt(), "request ID echoed");
+        }
+        try (DeskClient client = connect()) {
+            check(client.lookupBook("B1").isOk(), "server still serving");
+        }
+    }
+    
+    private static void invalidLength() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            ByteBuffer request = ByteBuffer.allocate(8);
+            request.putInt(DeskProtocol.MAX_FRAME + 1).putInt(0).flip();
+            channel.write(request);
+            check(channel.read(ByteBuffer.allocate(16)) < 0, "server closed the connection");
+        }
+    }
+    
+    private static void circulation() throws IOException {
+        try (DeskClient client = connect()) {
+            checkEquals(DeskProtocol.UNAUTHORIZED, client.issueBook("B1", "M1").getStatus(), "issue before login");
+            check(client.login("admin", "admin123").isOk(), "login");
+            
+            DeskClient.Reply issued = client.issueBook("B1", "M1");
+            check(issued.isOk(), "issued: " + issued);
+            String transactionId = (String) issued.getFields().get(0);
+            
+            DeskClient.Reply status = client.memberStatus("m1");
+            check(status.isOk(), "member status: " + status);
+            checkEquals(1, status.getFields().get(3), "borrowed count");
+            checkEquals(0, status.getFields().get(5), "nothing overdue");
+            
+            DeskClient.Reply returned = client.returnBook(transactionId);
+            check(returned.isOk(), "returned: " + returned);
+            checkEquals(0L, returned.getFields().get(1), "no fine");
+            checkEquals(DeskProtocol.REJECTED, client.returnBook(transactionId).getStatus(), "second return rejected");
+        }
+    }
+    
+    private static void pipelineStopped() throws IOException {
+        try (DeskClient client = connect()) {
+            check(client.login("admin", "admin123").isOk(), "login");
+            pipeline.shutdown();
+            checkEquals(DeskProtocol.ERROR, client.issueBook("B1", "M1").getStatus(), "issue refused");
+            check(client.lookupBook("B1").isOk(), "lookups still served");
+        }
+    }
+    
+    // ============ HELPERS ============
+    
+    private static DeskClient connect() throws IOException {
+        return new DeskClient("127.0.0.1", server.getPort());
+    }
+    
+    /**
+     * Read one response frame, positioned after the length prefix
+     */
+    private static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(DeskProtocol.HEADER_SIZE);
+        fill(channel, header);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        fill(channel, body);
+        body.flip();
+        return body;
+    }
+    
+    private static void fill(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("connection closed");
+            }
+        }
+    }
+    
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,270 @@
+package api;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import services.BookService;
+import services.MemberService;
+import support.Tests;
+import utils.FileHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Ten thousand clients hitting the HTTP API at once
+ * The server runs headless in its own JVM (as "Main --http 0"), so the
+ * clients' sockets and the server's do not share one descriptor limit.
+ * All clients connect together from one selector thread; most search the
+ * catalogue, one in ten issues a book. Every client must get a complete
+ * response: a result, a conflict, or 503 with Retry-After, never a 500 or
+ * a dropped connection. Afterwards the saved data must agree with the
+ * issues the clients were told succeeded.
+ */
+public class HttpApiLoadTest {
+    private static final int CLIENTS = 10_000;
+    private static final int WRITE_EVERY = 10;
+    private static final int BOOKS = 50;
+    private static final int COPIES = 5;
+    private static final int MEMBERS = 200;
+    private static final long TIMEOUT_MILLIS = 180_000L;
+    private static final Pattern LISTENING = Pattern.compile("HTTP API listening on port (\\d+)");
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+    
+    /**
+     * One client connection and the response collected so far
+     */
+    private static final class Client {
+        final ByteBuffer request;
+        final ByteArrayOutputStream response = new ByteArrayOutputStream(512);
+        
+        Client(String request) {
+            this.request = ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("HttpApiLoadTest");
+        tests.run("10k concurrent clients all get an answer and issues stay consistent", HttpApiLoadTest::load);
+        tests.finish();
+    }
+    
+    private static void load() throws Exception {
+        Tests.quietly(() -> {
+            BookService books = new BookService();
+            MemberService members = new MemberService();
+            for (int i = 0; i < BOOKS; i++) {
+                books.addBook(new Book("B" + i, "Title " + i, "Author", "isbn-" + i, "Fiction", COPIES));
+            }
+            for (int i = 0; i < MEMBERS; i++) {
+                members.registerMember(new Member("M" + i, "Member " + i, "m" + i + "@example.com",
+                                                  "9876543210", "STUDENT"));
+            }
+        });
+        
+        File log = new File("server.log");
+        Process server = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                                            "-cp", System.getProperty("java.class.path"), "Main", "--http", "0")
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        Map<Integer, Integer> statuses;
+        int issued;
+        try {
+            int port = awaitPort(server, log);
+            String token = login(port);
+            
+            Client[] clients = new Client[CLIENTS];
+            for (int i = 0; i < CLIENTS; i++) {
+                clients[i] = new Client(i % WRITE_EVERY == 0
+                        ? issueRequest(token, "B" + (i / WRITE_EVERY) % BOOKS, "M" + (i / WRITE_EVERY) % MEMBERS)
+                        : "GET /api/books?title=Title%20" + i % BOOKS + " HTTP/1.1\r\n"
+                          + "Host: localhost\r\nConnection: close\r\n\r\n");
+            }
+            runClients(port, clients);
+            
+            statuses = new TreeMap<>();
+            issued = 0;
+            for (int i = 0; i < CLIENTS; i++) {
+                String response = new String(clients[i].response.toByteArray(), StandardCharsets.UTF_8);
+                check(response.startsWith("HTTP/1.1 "), "client " + i + " got a response: " + response);
+                int status = Integer.parseInt(response.substring(9, 12));
+                statuses.merge(status, 1, Integer::sum);
+                if (status == 503) {
+                    check(response.contains("\r\nRetry-after: ") || response.contains("\r\nRetry-After: "),
+                          "503 carries Retry-After");
+                }
+                if (status == 201) {
+                    issued++;
+                }
+            }
+        } finally {
+            server.destroy(); // the shutdown hook drains the pipeline
+            if (!server.waitFor(30, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+        }
+        
+        System.out.println("  statuses: " + statuses);
+        for (int status : statuses.keySet()) {
+            check(status == 200 || status == 201 || status == 409 || status == 503, "unexpected status " + status);
+        }
+        check(statuses.containsKey(200), "some searches answered");
+        check(issued > 0, "some issues went through");
+        
+        String output = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        check(!output.contains("ISSUED SUCCESSFULLY") && !output.contains("Error:"),
+              "server stays quiet while serving requests");
+        checkPersisted(issued);
+    }
+    
+    // ============ CLIENTS ============
+    
+    private static String issueRequest(String token, String bookId, String memberId) {
+        String form = "bookId=" + bookId + "&memberId=" + memberId;
+        return "POST /api/issue HTTP/1.1\r\n"
+               + "Host: localhost\r\nConnection: close\r\n"
+               + "Authorization: Bearer " + token + "\r\n"
+               + "Content-Type: application/x-www-form-urlencoded\r\n"
+               + "Content-Length: " + form.length() + "\r\n\r\n" + form;
+    }
+    
+    /**
+     * Open every client's connection at once and drive them all to completion
+     */
+    private static void runClients(int port, Client[] clients) throws IOException {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        int open = 0;
+        try (Selector selector = Selector.open()) {
+            for (Client client : clients) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, client);
+                open++;
+            }
+            
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (open > 0) {
+                check(System.currentTimeMillis() < deadline, open + " clients still waiting at the deadline");
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    Client client = (Client) key.attachment();
+                    if (key.isConnectable()) {
+                        channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    } else if (key.isWritable()) {
+                        channel.write(client.request);
+                        if (!client.request.hasRemaining()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                        }
+                    } else if (key.isReadable()) {
+                        buffer.clear();
+                        int read = channel.read(buffer);
+                        if (read < 0) {
+                            channel.close();
+                            open--;
+                        } else {
+                            client.response.write(buffer.array(), 0, read);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    // ============ HELPERS ============
+    
+    /**
+     * Port the server reports once it is listening
+     */
+    private static int awaitPort(Process server, File log) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000L;
+        while (System.currentTimeMillis() < deadline) {
+            check(server.isAlive(), "server exited early");
+            if (log.exists()) {
+                Matcher matcher = LISTENING.matcher(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+                if (matcher.find()) {
+                    return Integer.parseInt(matcher.group(1));
+                }
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("server did not start listening");
+    }
+    
+    private static String login(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/api/login").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write("username=admin&password=admin123".getBytes(StandardCharsets.UTF_8));
+        }
+        checkEquals(200, connection.getResponseCode(), "login status");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                body.write(chunk, 0, read);
+            }
+        }
+        Matcher matcher = TOKEN.matcher(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        check(matcher.find(), "login returned a token");
+        return matcher.group(1);
+    }
+    
+    /**
+     * The files the server saved must hold exactly the acknowledged issues
+     */
+    private static void checkPersisted(int issued) {
+        FileHandler fileHandler = FileHandler.getInstance();
+        List<Transaction> transactions = fileHandler.loadTransactions();
+        checkEquals(issued, transactions.size(), "saved transactions");
+        
+        Map<String, Integer> loansByBook = new HashMap<>();
+        Map<String, Integer> loansByMember = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            loansByBook.merge(transaction.getBookId(), 1, Integer::sum);
+            loansByMember.merge(transaction.getMemberId(), 1, Integer::sum);
+        }
+        for (Book book : fileHandler.loadBooks()) {
+            checkEquals(book.getTotalQuantity(),
+                        book.getAvailableQuantity() + loansByBook.getOrDefault(book.getBookId(), 0),
+                        "copies of " + book.getBookId());
+        }
+        for (Member member : fileHandler.loadMembers()) {
+            int loans = loansByMember.getOrDefault(member.getMemberId(), 0);
+            checkEquals(loans, member.getBorrowedBooks(), "loans of " + member.getMemberId());
+            check(loans <= member.getMaxBooksAllowed(), member.getMemberId() + " within the limit");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package api;
+
+import models.Book;
+import models.Member;
+import services.AuthService;
+import services.BookService;
+import services.MemberService;
+import services.TransactionService;
+import support.Tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Request parsing and access rules of HttpApiServer, against a real server on an ephemeral port
+ */
+public class HttpApiServerTest {
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+    
+    private static HttpApiServer server;
+    
+    /**
+     * Status and body of one response
+     */
+    private static final class Response {
+        final int status;
+        final String body;
+        
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            BookService books = new BookService();
+            MemberService members = new MemberService();
+            TransactionService transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 2));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+            server = new HttpApiServer(new AuthService(), books, members, transactions, 0);
+            server.start();
+        });
+        
+        Tests tests = new Tests("HttpApiServerTest");
+        tests.run("login reads credentials from the body only", HttpApiServerTest::loginFromBodyOnly);
+        tests.run("an oversized body gets 413", HttpApiServerTest::oversizedBody);
+        tests.run("a malformed escape gets 400", HttpApiServerTest::malformedEscape);
+        tests.run("admission counters need a login", HttpApiServerTest::admissionNeedsLogin);
+        tests.run("issue takes its parameters from the body", HttpApiServerTest::issueFromBody);
+        server.stop();
+        tests.finish();
+    }
+    
+    private static void loginFromBodyOnly() throws IOException {
+        checkEquals(401, post("/api/login?username=admin&password=admin123", "", null).status,
+                    "credentials in the query string ignored");
+        checkEquals(401, post("/api/login", "username=admin&password=wrong", null).status, "wrong password");
+        check(login() != null, "credentials in the body accepted");
+    }
+    
+    private static void oversizedBody() throws IOException {
+        char[] padding = new char[HttpApiServer.MAX_BODY];
+        Arrays.fill(padding, 'x');
+        Response response = post("/api/login", "username=admin&password=admin123&pad=" + new String(padding), null);
+        checkEquals(413, response.status, "status");
+        check(response.body.contains("too large"), "error message: " + response.body);
+    }
+    
+    private static void malformedEscape() throws IOException {
+        checkEquals(400, get("/api/books?title=%zz", null).status, "query string");
+        checkEquals(400, post("/api/login", "username=%E&password=x", null).status, "body");
+        checkEquals(200, get("/api/books?title=Ti", null).status, "well-formed request still served");
+    }
+    
+    private static void admissionNeedsLogin() throws IOException {
+        checkEquals(401, get("/api/admission", null).status, "anonymous");
+        Response response = get("/api/admission", login());
+        checkEquals(200, response.status, "logged in");
+        check(response.body.contains("\"pipelineDepth\""), "counters returned");
+    }
+    
+    private static void issueFromBody() throws IOException {
+        String token = login();
+        checkEquals(400, post("/api/issue?bookId=B1&memberId=M1", "", token).status, "query string ignored");
+        checkEquals(201, post("/api/issue", "bookId=B1&memberId=M1", token).status, "body accepted");
+    }
+    
+    // ============ HELPERS ============
+    
+    private static String login() throws IOException {
+        Response response = post("/api/login", "username=admin&password=admin123", null);
+        checkEquals(200, response.status, "login status");
+        Matcher matcher = TOKEN.matcher(response.body);
+        check(matcher.find(), "login returned a token");
+        return matcher.group(1);
+    }
+    
+    private static Response get(String path, String token) throws IOException {
+        return exchange("GET", path, null, token);
+    }
+    
+    private static Response post(String path, String form, String token) throws IOException {
+        return exchange("POST", path, form, token);
+    }
+    
+    private static Response exchange(String method, String path, String form, String token) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (form != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] chunk = new byte[1024];
+                int read;
+                while ((read = stream.read(chunk)) != -1) {
+                    body.write(chunk, 0, read);
+                }
+            }
+        }
+        return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,36 @@
+#!/bin/sh
+# Compile src and test, then run every *Test class in its own scratch directory
+# Usage: test/run-tests.sh [TestName ...]
+set -u
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mkdir -p "$WORK/classes"
+if ! javac -encoding UTF-8 -d "$WORK/classes" $(find "$ROOT/src" "$ROOT/test" -name '*.java'); then
+    echo "Compilation failed"
+    exit 1
+fi
+
+if [ $# -gt 0 ]; then
+    TESTS="$*"
+else
+    TESTS=$(cd "$ROOT/test" && find . -name '*Test.java' | sed 's|^\./||; s|\.java$||; s|/|.|g' | sort)
+fi
+
+FAILED=0
+for TEST in $TESTS; do
+    echo "== $TEST"
+    RUN_DIR="$WORK/run-$TEST"
+    mkdir -p "$RUN_DIR"
+    if ! (cd "$RUN_DIR" && java -cp "$WORK/classes" "$TEST"); then
+        FAILED=$((FAILED + 1))
+    fi
+done
+
+if [ "$FAILED" -gt 0 ]; then
+    echo "$FAILED test class(es) failed"
+    exit 1
+fi
+echo "All tests passed"
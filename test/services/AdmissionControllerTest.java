@@ -0,0 +1,142 @@
+package services;
+
+import services.AdmissionController.OperationClass;
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Per-class limits, bounded wait queues and rejections
+ */
+public class AdmissionControllerTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("AdmissionControllerTest");
+        tests.run("a class with no wait rejects once its limit is reached", AdmissionControllerTest::limitWithoutWait);
+        tests.run("a full queue rejects at once", AdmissionControllerTest::fullQueue);
+        tests.run("a wait that runs out is rejected", AdmissionControllerTest::waitTimesOut);
+        tests.run("a full class leaves the others alone", AdmissionControllerTest::independentClasses);
+        tests.run("concurrent requests never exceed the limit", AdmissionControllerTest::concurrentLimit);
+        tests.finish();
+    }
+    
+    private static void limitWithoutWait() {
+        AdmissionController admission = new AdmissionController();
+        for (int i = 0; i < 2; i++) {
+            check(admission.tryAcquire(OperationClass.REPORT), "report " + i + " admitted");
+        }
+        check(!admission.tryAcquire(OperationClass.REPORT), "third report rejected");
+        check(!admission.tryAcquireNow(OperationClass.REPORT), "third report rejected without waiting");
+        checkEquals(2, admission.getInFlight(OperationClass.REPORT), "in flight");
+        checkEquals(2L, admission.getRejectedCount(OperationClass.REPORT), "rejected");
+        
+        admission.release(OperationClass.REPORT);
+        check(admission.tryAcquire(OperationClass.REPORT), "admitted after a release");
+        checkEquals(3L, admission.getAdmittedCount(OperationClass.REPORT), "admitted");
+    }
+    
+    private static void fullQueue() throws Exception {
+        AdmissionController admission = new AdmissionController();
+        admission.configure(OperationClass.WRITE, 1, 2, 10_000);
+        check(admission.tryAcquire(OperationClass.WRITE), "first write admitted");
+        
+        AtomicInteger admitted = new AtomicInteger();
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread waiter = new Thread(() -> {
+                if (admission.tryAcquire(OperationClass.WRITE)) {
+                    admitted.incrementAndGet();
+                    admission.release(OperationClass.WRITE);
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admission.getQueueDepth(OperationClass.WRITE) < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        checkEquals(2, admission.getQueueDepth(OperationClass.WRITE), "two writes queued");
+        
+        long start = System.nanoTime();
+        check(!admission.tryAcquire(OperationClass.WRITE), "third waiter rejected");
+        check(System.nanoTime() - start < 1_000_000_000L, "rejected without waiting");
+        check(admission.getRetryAfterSeconds(OperationClass.WRITE) > 1, "retry hint grows with the backlog");
+        
+        admission.release(OperationClass.WRITE);
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+        checkEquals(2, admitted.get(), "queued writes admitted in turn");
+        checkEquals(0, admission.getQueueDepth(OperationClass.WRITE), "queue drained");
+        checkEquals(0, admission.getInFlight(OperationClass.WRITE), "nothing in flight");
+        checkEquals(1, admission.getRetryAfterSeconds(OperationClass.WRITE), "retry hint when idle");
+    }
+    
+    private static void waitTimesOut() {
+        AdmissionController admission = new AdmissionController();
+        admission.configure(OperationClass.LOOKUP, 1, 4, 50);
+        check(admission.tryAcquire(OperationClass.LOOKUP), "first lookup admitted");
+        long start = System.nanoTime();
+        check(!admission.tryAcquire(OperationClass.LOOKUP), "second lookup rejected");
+        check(System.nanoTime() - start >= 40_000_000L, "rejected only after waiting");
+        checkEquals(0, admission.getQueueDepth(OperationClass.LOOKUP), "left the queue");
+        checkEquals(1L, admission.getRejectedCount(OperationClass.LOOKUP), "rejected");
+    }
+    
+    private static void independentClasses() {
+        AdmissionController admission = new AdmissionController();
+        while (admission.tryAcquireNow(OperationClass.REPORT)) {
+            // take every report slot
+        }
+        check(admission.tryAcquireNow(OperationClass.WRITE), "write admitted");
+        check(admission.tryAcquireNow(OperationClass.LOOKUP), "lookup admitted");
+        checkEquals(admission.getLimit(OperationClass.REPORT), admission.getInFlight(OperationClass.REPORT),
+                    "reports at their limit");
+    }
+    
+    private static void concurrentLimit() throws Exception {
+        AdmissionController admission = new AdmissionController();
+        admission.configure(OperationClass.WRITE, 4, 8, 20);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[32];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 200; i++) {
+                    if (!admission.tryAcquire(OperationClass.WRITE)) {
+                        continue;
+                    }
+                    try {
+                        peak.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        Thread.yield();
+                    } finally {
+                        inside.decrementAndGet();
+                        admission.release(OperationClass.WRITE);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        check(peak.get() <= 4, "at most four writes at once (saw " + peak.get() + ")");
+        checkEquals(32L * 200, admission.getAdmittedCount(OperationClass.WRITE)
+                + admission.getRejectedCount(OperationClass.WRITE), "every request admitted or rejected");
+        checkEquals(0, admission.getInFlight(OperationClass.WRITE), "every slot returned");
+    }
+}
@@ -0,0 +1,148 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * The asynchronous write paths: quiet, and undone when the write fails
+ */
+public class AsyncWriteTest {
+    private static BookService books;
+    private static MemberService members;
+    private static TransactionService transactions;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            books = new BookService();
+            members = new MemberService();
+            transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 2));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+        });
+        
+        Tests tests = new Tests("AsyncWriteTest");
+        tests.run("an asynchronous issue and return persist without printing", AsyncWriteTest::issueAndReturn);
+        tests.run("a failed asynchronous issue is undone and can be retried", AsyncWriteTest::failedIssueUndone);
+        tests.run("a failed asynchronous return reopens the loan", AsyncWriteTest::failedReturnUndone);
+        tests.run("a failed asynchronous add drops the book", AsyncWriteTest::failedAddUndone);
+        tests.run("a failed asynchronous registration drops the member", AsyncWriteTest::failedRegisterUndone);
+        tests.finish();
+    }
+    
+    private static void issueAndReturn() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(console, true));
+        Transaction issued;
+        boolean returned;
+        try {
+            issued = transactions.issueBookAsync("B1", "M1").get(5, TimeUnit.SECONDS);
+            returned = issued != null && transactions.returnBookAsync(issued.getTransactionId()).get(5, TimeUnit.SECONDS);
+        } finally {
+            System.setOut(original);
+        }
+        check(issued != null, "issued");
+        check(returned, "returned");
+        checkEquals("", console.toString(), "console output");
+        checkEquals(2, books.findBookById("B1").getAvailableQuantity(), "copy back on the shelf");
+    }
+    
+    private static void failedIssueUndone() throws Exception {
+        Book book = books.findBookById("B1");
+        Member member = members.findMemberById("M1");
+        int available = book.getAvailableQuantity();
+        int borrowed = member.getBorrowedBooks();
+        int loans = transactions.getAllTransactions().size();
+        
+        File blocker = new File("data/transactions.txt.pending");
+        check(blocker.mkdir(), "blocker created");
+        Transaction result;
+        try {
+            result = transactions.issueBookAsync("B1", "M1").get(5, TimeUnit.SECONDS);
+        } finally {
+            blocker.delete();
+        }
+        check(result == null, "issue reported as not done");
+        checkEquals(available, book.getAvailableQuantity(), "copy given back");
+        checkEquals(borrowed, member.getBorrowedBooks(), "borrowed count restored");
+        checkEquals(loans, transactions.getAllTransactions().size(), "transaction removed");
+        checkEquals(loans, transactions.getTransactionsByMember("M1").size(), "member index cleaned up");
+        
+        Transaction retried = transactions.issueBookAsync("B1", "M1").get(5, TimeUnit.SECONDS);
+        check(retried != null, "retry succeeds");
+        checkEquals(available - 1, book.getAvailableQuantity(), "only one copy out after the retry");
+        checkEquals(borrowed + 1, member.getBorrowedBooks(), "only one loan after the retry");
+        check(transactions.returnBookAsync(retried.getTransactionId()).get(5, TimeUnit.SECONDS), "returned again");
+    }
+    
+    private static void failedReturnUndone() throws Exception {
+        Transaction issued = transactions.issueBookAsync("B1", "M1").get(5, TimeUnit.SECONDS);
+        check(issued != null, "issued");
+        Book book = books.findBookById("B1");
+        Member member = members.findMemberById("M1");
+        int available = book.getAvailableQuantity();
+        int borrowed = member.getBorrowedBooks();
+        
+        File blocker = new File("data/books.txt.pending");
+        check(blocker.mkdir(), "blocker created");
+        boolean returned;
+        try {
+            returned = transactions.returnBookAsync(issued.getTransactionId()).get(5, TimeUnit.SECONDS);
+        } finally {
+            blocker.delete();
+        }
+        check(!returned, "return reported as not done");
+        checkEquals("ISSUED", issued.getStatus(), "loan open again");
+        check(issued.getReturnDate() == null, "return date cleared");
+        checkEquals(available, book.getAvailableQuantity(), "copy taken back");
+        checkEquals(borrowed, member.getBorrowedBooks(), "borrowed count restored");
+        
+        check(transactions.returnBookAsync(issued.getTransactionId()).get(5, TimeUnit.SECONDS), "retry succeeds");
+        checkEquals(available + 1, book.getAvailableQuantity(), "copy back once");
+    }
+    
+    private static void failedAddUndone() throws Exception {
+        File booksFile = new File("data/books.txt");
+        File saved = new File("data/books.txt.saved");
+        check(booksFile.renameTo(saved) && booksFile.mkdir(), "books file replaced by a directory");
+        boolean added;
+        try {
+            added = books.addBookAsync(new Book("B2", "Other", "Author", "222", "Fiction", 1)).get(5, TimeUnit.SECONDS);
+        } finally {
+            booksFile.delete();
+            saved.renameTo(booksFile);
+        }
+        check(!added, "add reported as not done");
+        check(books.findBookById("B2") == null, "book dropped again");
+        check(books.searchByIsbn("222") == null, "ISBN index cleaned up");
+        check(books.addBookAsync(new Book("B2", "Other", "Author", "222", "Fiction", 1)).get(5, TimeUnit.SECONDS),
+              "retry succeeds");
+    }
+    
+    private static void failedRegisterUndone() throws Exception {
+        File membersFile = new File("data/members.txt");
+        File saved = new File("data/members.txt.saved");
+        check(membersFile.renameTo(saved) && membersFile.mkdir(), "members file replaced by a directory");
+        boolean registered;
+        try {
+            registered = members.registerMemberAsync(
+                    new Member("M2", "Other", "o@example.com", "9876543211", "STUDENT")).get(5, TimeUnit.SECONDS);
+        } finally {
+            membersFile.delete();
+            saved.renameTo(membersFile);
+        }
+        check(!registered, "registration reported as not done");
+        check(members.findMemberById("M2") == null, "member dropped again");
+        check(members.findMemberByEmail("o@example.com") == null, "email index cleaned up");
+    }
+}
@@ -0,0 +1,103 @@
+package services;
+
+import models.Session;
+import support.Tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Session tokens: quiet network logins, validation, logout and idle expiry
+ */
+public class AuthServiceTest {
+    private static final long IDLE_TIMEOUT_MILLIS = 200;
+    
+    private static AuthService auth;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> auth = new AuthService(IDLE_TIMEOUT_MILLIS));
+        
+        Tests tests = new Tests("AuthServiceTest");
+        tests.run("a failed quiet login prints nothing", AuthServiceTest::quietFailure);
+        tests.run("a login yields a distinct token that validates", AuthServiceTest::tokens);
+        tests.run("unknown and closed tokens are rejected", AuthServiceTest::rejectedTokens);
+        tests.run("an idle session expires and a used one does not", AuthServiceTest::idleExpiry);
+        tests.run("the sweep removes only idle sessions", AuthServiceTest::sweep);
+        tests.finish();
+    }
+    
+    private static void quietFailure() {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(console, true));
+        Session unknownUser;
+        Session wrongPassword;
+        try {
+            unknownUser = auth.openSessionQuietly("nobody", "admin123");
+            wrongPassword = auth.openSessionQuietly("admin", "wrong");
+        } finally {
+            System.setOut(original);
+        }
+        check(unknownUser == null, "unknown username refused");
+        check(wrongPassword == null, "wrong password refused");
+        checkEquals("", console.toString(), "console output");
+    }
+    
+    private static void tokens() {
+        Session first = auth.openSessionQuietly("ADMIN", "admin123");
+        Session second = auth.openSessionQuietly("admin", "admin123");
+        check(first != null && second != null, "both logins accepted");
+        check(first.getToken().matches("[0-9a-f]{32}"), "token is 16 random bytes in hex: " + first.getToken());
+        check(!first.getToken().equals(second.getToken()), "tokens differ");
+        check(auth.validateSession(first.getToken()) == first, "first token validates");
+        check(auth.validateSession(second.getToken()) == second, "second token validates");
+        checkEquals("admin", auth.validateSession(first.getToken()).getAdmin().getUsername(), "session admin");
+        auth.closeSession(first.getToken());
+        auth.closeSession(second.getToken());
+    }
+    
+    private static void rejectedTokens() {
+        check(auth.validateSession(null) == null, "null token");
+        check(auth.validateSession("0123456789abcdef0123456789abcdef") == null, "unknown token");
+        
+        Session session = auth.openSessionQuietly("admin", "admin123");
+        check(auth.closeSession(session.getToken()), "close reports an open session");
+        check(auth.validateSession(session.getToken()) == null, "closed token");
+        check(!auth.closeSession(session.getToken()), "second close reports nothing to close");
+        check(!auth.closeSession(null), "null token has nothing to close");
+    }
+    
+    private static void idleExpiry() throws Exception {
+        Session idle = auth.openSessionQuietly("admin", "admin123");
+        Session used = auth.openSessionQuietly("admin", "admin123");
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(IDLE_TIMEOUT_MILLIS / 2);
+            check(auth.validateSession(used.getToken()) != null, "used session stays alive, step " + i);
+        }
+        check(auth.validateSession(idle.getToken()) == null, "idle session expired");
+        check(auth.validateSession(idle.getToken()) == null, "expired session stays gone");
+        auth.closeSession(used.getToken());
+    }
+    
+    private static void sweep() throws Exception {
+        List<Session> idle = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            idle.add(auth.openSessionQuietly("admin", "admin123"));
+        }
+        Thread.sleep(IDLE_TIMEOUT_MILLIS * 2);
+        Session fresh = auth.openSessionQuietly("admin", "admin123");
+        int before = auth.getActiveSessionCount();
+        checkEquals(3, auth.expireIdleSessions(), "idle sessions swept");
+        checkEquals(before - 3, auth.getActiveSessionCount(), "active sessions after the sweep");
+        for (Session session : idle) {
+            check(auth.validateSession(session.getToken()) == null, "swept token rejected");
+        }
+        check(auth.validateSession(fresh.getToken()) != null, "fresh session kept");
+        auth.closeSession(fresh.getToken());
+    }
+}
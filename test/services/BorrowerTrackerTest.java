@@ -0,0 +1,85 @@
+package services;
+
+import models.Transaction;
+import support.Tests;
+import utils.FileHandler;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Persisting and restoring the unique-borrower sketches
+ */
+public class BorrowerTrackerTest {
+    private static final LocalDate LAST_YEAR = LocalDate.now().minusYears(1);
+    
+    public static void main(String[] args) throws Exception {
+        Tests tests = new Tests("BorrowerTrackerTest");
+        tests.run("saved sketches plus a replay of newer issues restore the counts", BorrowerTrackerTest::roundTrip);
+        tests.run("a damaged sketch line recounts the full history", BorrowerTrackerTest::damagedLineReplaysAll);
+        tests.run("saving replaces the file whole", BorrowerTrackerTest::savedWhole);
+        tests.finish();
+    }
+    
+    private static void roundTrip() {
+        List<Transaction> history = history();
+        BorrowerTracker original = new BorrowerTracker();
+        original.load(new ArrayList<>(), history);
+        long before = original.getUniqueBorrowers("B1");
+        check(Math.abs(before - 40) <= 2, "forty members borrowed B1, estimated " + before);
+        
+        // Saved today, so only today's issues are replayed; last year's come from the sketches
+        BorrowerTracker restored = new BorrowerTracker();
+        restored.load(original.toFileLines(), history);
+        checkEquals(before, restored.getUniqueBorrowers("B1"), "restored estimate");
+    }
+    
+    private static void damagedLineReplaysAll() throws Exception {
+        List<Transaction> history = history();
+        BorrowerTracker original = new BorrowerTracker();
+        original.load(new ArrayList<>(), history);
+        List<String> lines = original.toFileLines();
+        int damaged = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith("B1|" + PopularityTracker.Window.TERM.startOf(LAST_YEAR))) {
+                damaged = i;
+            }
+        }
+        check(damaged > 0, "last year's sketch line found");
+        lines.set(damaged, lines.get(damaged).substring(0, 20)); // cut off mid-line
+        
+        BorrowerTracker restored = new BorrowerTracker();
+        Tests.quietly(() -> restored.load(lines, history));
+        checkEquals(original.getUniqueBorrowers("B1"), restored.getUniqueBorrowers("B1"), "recounted estimate");
+    }
+    
+    private static void savedWhole() throws Exception {
+        BorrowerTracker tracker = new BorrowerTracker();
+        tracker.load(new ArrayList<>(), history());
+        FileHandler fileHandler = FileHandler.getInstance();
+        check(fileHandler.saveBorrowerSketches(tracker.toFileLines()), "saved");
+        check(!Files.exists(Paths.get("data/borrowers.txt.pending")), "no pending file left");
+        checkEquals(tracker.toFileLines(), fileHandler.loadBorrowerSketches(), "lines read back");
+    }
+    
+    /**
+     * Thirty members borrowing B1 last year and ten more today
+     */
+    private static List<Transaction> history() {
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Transaction transaction = new Transaction("TXN" + i, "B1", "M" + i);
+            if (i < 30) {
+                transaction.setIssueDate(LAST_YEAR);
+            }
+            history.add(transaction);
+        }
+        return history;
+    }
+}
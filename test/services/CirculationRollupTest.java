@@ -0,0 +1,149 @@
+package services;
+
+import models.Transaction;
+import support.Tests;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static support.Tests.checkEquals;
+
+/**
+ * Range queries over the day, week and month buckets match a scan of the history
+ */
+public class CirculationRollupTest {
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final int SPAN_DAYS = 400;
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("CirculationRollupTest");
+        tests.run("random ranges match a scan of the history", CirculationRollupTest::randomRanges);
+        tests.run("whole weeks and months match a scan", CirculationRollupTest::alignedRanges);
+        tests.run("recording loans one by one matches a rebuild", CirculationRollupTest::incrementalMatchesRebuild);
+        tests.finish();
+    }
+    
+    private static void randomRanges() {
+        List<Transaction> history = history(5000, 3);
+        CirculationRollup rollup = new CirculationRollup();
+        rollup.rebuild(history);
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            LocalDate from = TODAY.minusDays(SPAN_DAYS + 10 - random.nextInt(SPAN_DAYS + 40));
+            LocalDate to = from.plusDays(random.nextInt(120));
+            checkRange(rollup, history, from, to);
+        }
+    }
+    
+    private static void alignedRanges() {
+        List<Transaction> history = history(5000, 7);
+        CirculationRollup rollup = new CirculationRollup();
+        rollup.rebuild(history);
+        LocalDate month = TODAY.minusDays(SPAN_DAYS).withDayOfMonth(1);
+        for (int i = 0; i < 14; i++) {
+            checkRange(rollup, history, month, month.plusMonths(1).minusDays(1));
+            checkRange(rollup, history, month, month.plusMonths(3).minusDays(1));
+            month = month.plusMonths(1);
+        }
+        LocalDate monday = TODAY.minusDays(SPAN_DAYS).with(DayOfWeek.MONDAY);
+        for (int i = 0; i < 60; i++) {
+            checkRange(rollup, history, monday, monday.plusDays(6));
+            checkRange(rollup, history, monday.minusDays(1), monday.plusDays(14));
+            monday = monday.plusWeeks(1);
+        }
+        checkRange(rollup, history, TODAY, TODAY);
+    }
+    
+    private static void incrementalMatchesRebuild() {
+        List<Transaction> history = history(3000, 13);
+        CirculationRollup incremental = new CirculationRollup();
+        for (Transaction transaction : history) {
+            incremental.recordIssue(transaction);
+            if (transaction.getReturnDate() != null) {
+                incremental.recordReturn(transaction);
+            }
+        }
+        CirculationRollup rebuilt = new CirculationRollup();
+        rebuilt.rebuild(history);
+        checkEquals(rebuilt.getFirstDay(), incremental.getFirstDay(), "first day");
+        Random random = new Random(17);
+        for (int i = 0; i < 100; i++) {
+            LocalDate from = TODAY.minusDays(random.nextInt(SPAN_DAYS + 30));
+            LocalDate to = from.plusDays(random.nextInt(90));
+            checkEquals(describe(rebuilt.query(from, to)), describe(incremental.query(from, to)), from + ".." + to);
+        }
+    }
+    
+    private static void checkRange(CirculationRollup rollup, List<Transaction> history, LocalDate from, LocalDate to) {
+        checkEquals(scan(history, from, to), describe(rollup.query(from, to)), from + ".." + to);
+    }
+    
+    /**
+     * The totals for a range worked out loan by loan
+     */
+    private static String scan(List<Transaction> history, LocalDate from, LocalDate to) {
+        LocalDate yesterday = TODAY.minusDays(1);
+        LocalDate overdueTo = to.isAfter(yesterday) ? yesterday : to;
+        long issued = 0;
+        long returned = 0;
+        long late = 0;
+        long finesPaise = 0;
+        long overdue = 0;
+        for (Transaction transaction : history) {
+            LocalDate returnDate = transaction.getReturnDate();
+            if (within(transaction.getIssueDate(), from, to)) {
+                issued++;
+            }
+            if (returnDate != null && within(returnDate, from, to)) {
+                returned++;
+                finesPaise += Math.round(transaction.getFine() * 100);
+                if (returnDate.isAfter(transaction.getDueDate())) {
+                    late++;
+                }
+            }
+            boolean onTime = returnDate != null && !returnDate.isAfter(transaction.getDueDate());
+            if (within(transaction.getDueDate(), from, overdueTo) && !onTime) {
+                overdue++;
+            }
+        }
+        return issued + " issued, " + returned + " returned, " + late + " late, "
+                + finesPaise / 100.0 + " fines, " + overdue + " overdue";
+    }
+    
+    private static String describe(CirculationRollup.Totals totals) {
+        return totals.getIssued() + " issued, " + totals.getReturned() + " returned, " + totals.getLateReturns()
+                + " late, " + totals.getFines() + " fines, " + totals.getOverdue() + " overdue";
+    }
+    
+    private static boolean within(LocalDate date, LocalDate from, LocalDate to) {
+        return !date.isBefore(from) && !date.isAfter(to);
+    }
+    
+    /**
+     * Loans issued over the last SPAN_DAYS days, some still out (a few of
+     * those overdue), some returned late with a fine
+     */
+    private static List<Transaction> history(int size, long seed) {
+        Random random = new Random(seed);
+        List<Transaction> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = new Transaction();
+            LocalDate issued = TODAY.minusDays(random.nextInt(SPAN_DAYS));
+            transaction.setIssueDate(issued);
+            transaction.setDueDate(issued.plusDays(14));
+            LocalDate returned = issued.plusDays(random.nextInt(30));
+            if (random.nextInt(4) == 0 || returned.isAfter(TODAY)) {
+                transaction.setStatus("ISSUED");
+            } else {
+                transaction.setReturnDate(returned);
+                transaction.setFine(returned.isAfter(issued.plusDays(14)) ? random.nextInt(400) / 4.0 : 0.0);
+                transaction.setStatus("RETURNED");
+            }
+            history.add(transaction);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,151 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Many desks issuing and returning the same few books at once
+ * After the run, and again after reloading from disk, every book must have
+ * available copies plus open loans equal to its total, and every member's
+ * borrowed count must match their open loans without exceeding the limit
+ */
+public class CirculationStressTest {
+    private static final int BOOKS = 4;
+    private static final int COPIES = 3;
+    private static final int MEMBERS = 12;
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 250;
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("CirculationStressTest");
+        tests.run("concurrent issue and return keep copies and limits consistent", CirculationStressTest::stress);
+        tests.finish();
+    }
+    
+    private static void stress() throws Exception {
+        BookService[] bookService = new BookService[1];
+        MemberService[] memberService = new MemberService[1];
+        TransactionService[] transactionService = new TransactionService[1];
+        Tests.quietly(() -> {
+            bookService[0] = new BookService();
+            memberService[0] = new MemberService();
+            transactionService[0] = new TransactionService(bookService[0], memberService[0]);
+            for (int i = 0; i < BOOKS; i++) {
+                bookService[0].addBook(new Book("B" + i, "Title " + i, "Author", "isbn-" + i, "Fiction", COPIES));
+            }
+            for (int i = 0; i < MEMBERS; i++) {
+                memberService[0].registerMember(new Member("M" + i, "Member " + i, "m" + i + "@example.com",
+                                                           "9876543210", "STUDENT"));
+            }
+        });
+        BookService books = bookService[0];
+        MemberService members = memberService[0];
+        TransactionService transactions = transactionService[0];
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                for (Member member : members.getAllMembers()) {
+                    if (member.getBorrowedBooks() > member.getMaxBooksAllowed()) {
+                        violation.compareAndSet(null, member.getMemberId() + " over the limit");
+                    }
+                }
+                for (Book book : books.getAllBooks()) {
+                    if (book.getAvailableQuantity() < 0 || book.getAvailableQuantity() > book.getTotalQuantity()) {
+                        violation.compareAndSet(null, book.getBookId() + " has " + book.getAvailableQuantity() + " available");
+                    }
+                }
+            }
+        });
+        
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> desks = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread desk = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        if (random.nextInt(100) < 55) {
+                            transactions.issueBook("B" + random.nextInt(BOOKS), "M" + random.nextInt(MEMBERS));
+                        } else {
+                            List<Transaction> open = transactions.getIssuedTransactions();
+                            if (!open.isEmpty()) {
+                                transactions.returnBook(open.get(random.nextInt(open.size())).getTransactionId());
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            desks.add(desk);
+        }
+        
+        Tests.quietly(() -> {
+            watcher.start();
+            for (Thread desk : desks) {
+                desk.start();
+            }
+            start.countDown();
+            for (Thread desk : desks) {
+                desk.join();
+            }
+            running.set(false);
+            watcher.join();
+        });
+        
+        if (failure.get() != null) {
+            throw new AssertionError("desk thread failed", failure.get());
+        }
+        check(violation.get() == null, "invariant broken during the run: " + violation.get());
+        check(!transactions.getAllTransactions().isEmpty(), "some books were issued");
+        checkConsistent(books, members, transactions, "in memory");
+        
+        // Everything that was committed must reload consistently
+        Tests.quietly(() -> {
+            bookService[0] = new BookService();
+            memberService[0] = new MemberService();
+            transactionService[0] = new TransactionService(bookService[0], memberService[0]);
+        });
+        checkConsistent(bookService[0], memberService[0], transactionService[0], "after reload");
+    }
+    
+    private static void checkConsistent(BookService books, MemberService members,
+                                        TransactionService transactions, String when) {
+        Map<String, Integer> loansByBook = new HashMap<>();
+        Map<String, Integer> loansByMember = new HashMap<>();
+        for (Transaction transaction : transactions.getIssuedTransactions()) {
+            loansByBook.merge(transaction.getBookId(), 1, Integer::sum);
+            loansByMember.merge(transaction.getMemberId(), 1, Integer::sum);
+        }
+        
+        checkEquals(BOOKS, books.getAllBooks().size(), "books " + when);
+        for (Book book : books.getAllBooks()) {
+            int open = loansByBook.getOrDefault(book.getBookId(), 0);
+            checkEquals(book.getTotalQuantity(), book.getAvailableQuantity() + open,
+                        "available plus open loans for " + book.getBookId() + " " + when);
+        }
+        for (Member member : members.getAllMembers()) {
+            int open = loansByMember.getOrDefault(member.getMemberId(), 0);
+            checkEquals(open, member.getBorrowedBooks(), "borrowed count of " + member.getMemberId() + " " + when);
+            check(open <= member.getMaxBooksAllowed(), member.getMemberId() + " over the limit " + when);
+        }
+    }
+}
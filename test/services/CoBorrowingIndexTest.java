@@ -0,0 +1,111 @@
+package services;
+
+import models.Transaction;
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Neighbor lists kept up to date return by return match a full rebuild
+ */
+public class CoBorrowingIndexTest {
+    private static final int BOOKS = 60;
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("CoBorrowingIndexTest");
+        tests.run("returns recorded one by one match a rebuild", CoBorrowingIndexTest::incrementalMatchesRebuild);
+        tests.run("returns after a rebuild match a rebuild of everything", CoBorrowingIndexTest::rebuildThenRecord);
+        tests.run("open loans and repeat loans add nothing", CoBorrowingIndexTest::ignoredLoans);
+        tests.finish();
+    }
+    
+    private static void incrementalMatchesRebuild() {
+        List<Transaction> history = history(6000, 11);
+        CoBorrowingIndex incremental = new CoBorrowingIndex();
+        for (Transaction transaction : history) {
+            incremental.recordReturn(transaction.getMemberId(), transaction.getBookId());
+        }
+        CoBorrowingIndex rebuilt = new CoBorrowingIndex();
+        rebuilt.rebuild(history);
+        checkSame(rebuilt, incremental);
+    }
+    
+    private static void rebuildThenRecord() {
+        List<Transaction> history = history(6000, 23);
+        CoBorrowingIndex index = new CoBorrowingIndex();
+        index.rebuild(history.subList(0, history.size() / 2));
+        for (Transaction transaction : history.subList(history.size() / 2, history.size())) {
+            index.recordReturn(transaction.getMemberId(), transaction.getBookId());
+        }
+        CoBorrowingIndex rebuilt = new CoBorrowingIndex();
+        rebuilt.rebuild(history);
+        checkSame(rebuilt, index);
+    }
+    
+    private static void ignoredLoans() {
+        CoBorrowingIndex index = new CoBorrowingIndex();
+        List<Transaction> history = new ArrayList<>();
+        history.add(loan("M1", "B1", true));
+        history.add(loan("M1", "B2", true));
+        history.add(loan("m1", "b2", true)); // repeat loan, other case
+        history.add(loan("M1", "B3", false)); // still out
+        index.rebuild(history);
+        checkEquals(1, index.getNeighbors("B1").size(), "B1 has one neighbor");
+        checkEquals("B2", index.getNeighbors("b1").get(0).getBookId(), "neighbor of B1");
+        checkEquals(1, index.getNeighbors("B1").get(0).getCount(), "one reader in common");
+        check(index.getNeighbors("B3").isEmpty(), "open loan not counted");
+        
+        index.recordReturn("m1", "B2");
+        checkEquals(1, index.getNeighbors("B1").get(0).getCount(), "repeat return adds nothing");
+    }
+    
+    private static void checkSame(CoBorrowingIndex expected, CoBorrowingIndex actual) {
+        checkEquals(expected.size(), actual.size(), "books with neighbors");
+        int full = 0;
+        for (int book = 0; book < BOOKS; book++) {
+            String bookId = "B" + book;
+            checkEquals(describe(expected.getNeighbors(bookId)), describe(actual.getNeighbors(bookId)), bookId);
+            if (expected.getNeighbors(bookId).size() == CoBorrowingIndex.NEIGHBORS) {
+                full++;
+            }
+        }
+        check(full > 0, "some lists are cut at NEIGHBORS entries");
+    }
+    
+    private static List<String> describe(List<CoBorrowingIndex.Neighbor> neighbors) {
+        List<String> described = new ArrayList<>();
+        for (CoBorrowingIndex.Neighbor neighbor : neighbors) {
+            described.add(neighbor.getBookId() + "x" + neighbor.getCount());
+        }
+        return described;
+    }
+    
+    /**
+     * Closed loans by 400 members over BOOKS books, a few popular, with IDs
+     * in mixed case and some members borrowing the same book again
+     */
+    private static List<Transaction> history(int size, long seed) {
+        Random random = new Random(seed);
+        List<Transaction> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int member = random.nextInt(400);
+            int book = random.nextBoolean() ? random.nextInt(8) : random.nextInt(BOOKS);
+            history.add(loan((random.nextBoolean() ? "M" : "m") + member,
+                             (random.nextBoolean() ? "B" : "b") + book, true));
+        }
+        return history;
+    }
+    
+    private static Transaction loan(String memberId, String bookId, boolean returned) {
+        Transaction transaction = new Transaction();
+        transaction.setMemberId(memberId);
+        transaction.setBookId(bookId);
+        transaction.setStatus(returned ? "RETURNED" : "ISSUED");
+        return transaction;
+    }
+}
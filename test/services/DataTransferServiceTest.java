@@ -0,0 +1,163 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+
+import utils.RecordFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Export and import: records read back unchanged, imported loans reconciled,
+ * and an import that cannot be read to the end leaves nothing behind
+ */
+public class DataTransferServiceTest {
+    private static final String HEADER = "transactionId,bookId,memberId,issueDate,dueDate,returnDate,fine,status";
+    
+    private static BookService books;
+    private static MemberService members;
+    private static TransactionService transactions;
+    private static DataTransferService transfer;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            books = new BookService();
+            members = new MemberService();
+            transactions = new TransactionService(books, members);
+            transfer = new DataTransferService(books, members, transactions);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 1));
+            books.addBook(new Book("B2", "Other", "Author", "222", "Science", 2));
+            books.addBook(new Book("B3", "War, \"Peace\" and Ünïcödé", "O'Brien", "333", "Fiction", 1));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+            members.registerMember(new Member("M2", "Walk-in", "w@example.com", "9876543211", "STUDENT"));
+        });
+        
+        Tests tests = new Tests("DataTransferServiceTest");
+        tests.run("imported loans must name an existing book and member", DataTransferServiceTest::references);
+        tests.run("an imported open loan takes a copy and a borrowing slot", DataTransferServiceTest::openLoans);
+        tests.run("a failed save undoes imported loans", DataTransferServiceTest::failedSave);
+        tests.run("CSV exports read back to the stored records", () -> exportReadsBack(RecordFormat.CSV, "csv"));
+        tests.run("JSON exports read back to the stored records", () -> exportReadsBack(RecordFormat.JSON, "json"));
+        tests.run("a read error part way imports nothing", DataTransferServiceTest::readError);
+        tests.finish();
+    }
+    
+    private static void references() throws Exception {
+        importTransactions("refs.csv",
+                "TXN9001,B9,M1,2024-01-01,2024-01-15,NULL,0.0,ISSUED",
+                "TXN9002,B2,M9,2024-01-01,2024-01-15,2024-01-10,0.0,RETURNED");
+        check(transactions.findTransactionById("TXN9001") == null, "unknown book rejected");
+        check(transactions.findTransactionById("TXN9002") == null, "unknown member rejected");
+        checkEquals(2, books.findBookById("B2").getAvailableQuantity(), "no copy taken");
+    }
+    
+    private static void openLoans() throws Exception {
+        importTransactions("loans.csv",
+                "TXN9101,B1,M1,2024-01-01,2024-01-15,NULL,0.0,ISSUED",
+                "TXN9102,B1,M2,2024-01-02,2024-01-16,NULL,0.0,ISSUED",
+                "TXN9103,B2,M2,2024-01-01,2024-01-15,2024-01-10,0.0,RETURNED");
+        check(transactions.findTransactionById("TXN9101") != null, "first loan imported");
+        check(transactions.findTransactionById("TXN9102") == null, "loan of a copy already out skipped");
+        check(transactions.findTransactionById("TXN9103") != null, "returned loan imported");
+        checkEquals(0, books.findBookById("B1").getAvailableQuantity(), "the only copy of B1 is out");
+        checkEquals(2, books.findBookById("B2").getAvailableQuantity(), "returned loan takes no copy");
+        checkEquals(1, members.findMemberById("M1").getBorrowedBooks(), "M1 has the loan");
+        checkEquals(0, members.findMemberById("M2").getBorrowedBooks(), "M2 has none");
+        
+        check(transactions.returnBookQuietly("TXN9101"), "an imported loan can be returned");
+        checkEquals(1, books.findBookById("B1").getAvailableQuantity(), "copy back on the shelf");
+        checkEquals(0, members.findMemberById("M1").getBorrowedBooks(), "M1 has returned it");
+    }
+    
+    private static void failedSave() throws Exception {
+        File blocker = new File("data/transactions.txt.pending");
+        check(blocker.mkdir(), "blocker created");
+        try {
+            importTransactions("failed.csv",
+                    "TXN9201,B2,M2,2024-01-01,2024-01-15,NULL,0.0,ISSUED",
+                    "TXN9202,B2,M1,2024-01-01,2024-01-15,2024-01-10,0.0,RETURNED");
+        } finally {
+            blocker.delete();
+        }
+        check(transactions.findTransactionById("TXN9201") == null, "loan dropped");
+        check(transactions.findTransactionById("TXN9202") == null, "returned loan dropped");
+        checkEquals(2, books.findBookById("B2").getAvailableQuantity(), "copy given back");
+        checkEquals(0, members.findMemberById("M2").getBorrowedBooks(), "borrowing slot given back");
+    }
+    
+    private static void exportReadsBack(RecordFormat format, String extension) throws Exception {
+        checkExport(format, "books." + extension, DataTransferService.Entity.BOOKS,
+                    books.getAllBooks(), Book::toFileString);
+        checkExport(format, "members." + extension, DataTransferService.Entity.MEMBERS,
+                    members.getAllMembers(), Member::toFileString);
+        checkExport(format, "transactions." + extension, DataTransferService.Entity.TRANSACTIONS,
+                    transactions.getAllTransactions(), Transaction::toFileString);
+    }
+    
+    private static <T> void checkExport(RecordFormat format, String path, DataTransferService.Entity entity,
+                                        List<T> records, Function<T, String> storage) throws Exception {
+        Tests.quietly(() -> check(transfer.exportData(entity, path), "exported " + path));
+        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        String[] columns = exportHeader(entity).split(",");
+        if (format == RecordFormat.CSV) {
+            checkEquals(exportHeader(entity), lines.remove(0), path + " header");
+        }
+        List<String> readBack = new ArrayList<>();
+        for (String line : lines) {
+            readBack.add(String.join("|", format.parseRecord(line, columns)));
+        }
+        List<String> stored = new ArrayList<>();
+        for (T record : records) {
+            stored.add(storage.apply(record));
+        }
+        checkEquals(stored, readBack, path);
+    }
+    
+    private static String exportHeader(DataTransferService.Entity entity) throws Exception {
+        String path = "header-" + entity.getLabel() + ".csv";
+        Tests.quietly(() -> transfer.exportData(entity, path));
+        return Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8).get(0);
+    }
+    
+    private static void readError() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write("bookId,title,author,isbn,category,totalQuantity,availableQuantity\n".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < DataTransferService.BATCH_SIZE + 500; i++) {
+            String line = "X" + i + ",Imported,Author,999,Fiction,1,1\n";
+            file.write(line.getBytes(StandardCharsets.UTF_8));
+        }
+        file.write(new byte[] {(byte) 0xFF, (byte) 0xFE, '\n'}); // not UTF-8: the read fails here
+        Files.write(Paths.get("broken.csv"), file.toByteArray());
+        int before = books.getAllBooks().size();
+        
+        boolean[] imported = new boolean[1];
+        Tests.quietly(() -> imported[0] = transfer.importData(DataTransferService.Entity.BOOKS, "broken.csv"));
+        check(!imported[0], "import reported as failed");
+        checkEquals(before, books.getAllBooks().size(), "no book kept");
+        check(books.findBookById("X0") == null, "first batch dropped");
+        check(books.searchByIsbn("999") == null, "ISBN index cleaned up");
+        String saved = new String(Files.readAllBytes(Paths.get("data/books.txt")), StandardCharsets.UTF_8);
+        check(!saved.contains("X0|"), "nothing from the file persisted");
+    }
+    
+    private static void importTransactions(String path, String... rows) throws Exception {
+        String[] lines = new String[rows.length + 1];
+        lines[0] = HEADER;
+        System.arraycopy(rows, 0, lines, 1, rows.length);
+        Files.write(Paths.get(path), Arrays.asList(lines), StandardCharsets.UTF_8);
+        Tests.quietly(() -> transfer.importData(DataTransferService.Entity.TRANSACTIONS, path));
+    }
+}
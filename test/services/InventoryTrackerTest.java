@@ -0,0 +1,202 @@
+package services;
+
+import models.Book;
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Running utilization totals match a recount of the books
+ */
+public class InventoryTrackerTest {
+    private static final String[] CATEGORIES = {"Fiction", "Science", "History", null};
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("InventoryTrackerTest");
+        tests.run("random checkouts and returns match a recount", InventoryTrackerTest::randomChanges);
+        tests.run("concurrent refreshes match a recount", InventoryTrackerTest::concurrentChanges);
+        tests.run("removed titles leave the totals", InventoryTrackerTest::removals);
+        tests.run("most utilized and at-zero lists match the books", InventoryTrackerTest::rankings);
+        tests.finish();
+    }
+    
+    private static void randomChanges() {
+        Random random = new Random(1);
+        List<Book> books = books(200, random);
+        InventoryTracker tracker = new InventoryTracker();
+        tracker.load(Collections.<String>emptyList(), books);
+        for (int i = 0; i < 20_000; i++) {
+            change(books.get(random.nextInt(books.size())), random, tracker);
+        }
+        checkTotals(books, tracker);
+        checkReload(books, tracker);
+    }
+    
+    private static void concurrentChanges() throws Exception {
+        List<Book> books = books(50, new Random(2));
+        InventoryTracker tracker = new InventoryTracker();
+        tracker.load(Collections.<String>emptyList(), books);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = 100 + t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    Book book = books.get(random.nextInt(books.size()));
+                    if (random.nextBoolean()) {
+                        book.tryReserveCopy();
+                    } else {
+                        book.releaseCopy();
+                    }
+                    tracker.refresh(book);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        checkTotals(books, tracker);
+    }
+    
+    private static void removals() {
+        Random random = new Random(3);
+        List<Book> books = books(100, random);
+        InventoryTracker tracker = new InventoryTracker();
+        tracker.load(Collections.<String>emptyList(), books);
+        for (int i = 0; i < 5000; i++) {
+            change(books.get(random.nextInt(books.size())), random, tracker);
+        }
+        List<Book> kept = new ArrayList<>();
+        for (Book book : books) {
+            if (random.nextInt(3) == 0) {
+                tracker.remove(book.getBookId());
+                check(tracker.getTitleStatus(book.getBookId()) == null, "removed title untracked");
+            } else {
+                kept.add(book);
+            }
+        }
+        checkTotals(kept, tracker);
+    }
+    
+    private static void rankings() {
+        Random random = new Random(4);
+        List<Book> books = books(100, random);
+        InventoryTracker tracker = new InventoryTracker();
+        tracker.load(Collections.<String>emptyList(), books);
+        for (int i = 0; i < 5000; i++) {
+            change(books.get(random.nextInt(books.size())), random, tracker);
+        }
+        
+        List<Double> rates = new ArrayList<>();
+        int atZero = 0;
+        for (Book book : books) {
+            if (book.getTotalQuantity() > 0) {
+                rates.add(rate(book.getTotalQuantity() - book.getAvailableQuantity(), book.getTotalQuantity()));
+            }
+            if (book.getTotalQuantity() > 0 && book.getAvailableQuantity() == 0) {
+                atZero++;
+            }
+        }
+        rates.sort(Collections.reverseOrder());
+        List<Double> top = new ArrayList<>();
+        for (InventoryTracker.TitleStatus status : tracker.getMostUtilized(10)) {
+            top.add(status.getUtilization());
+        }
+        checkEquals(rates.subList(0, 10), top, "ten highest utilizations");
+        checkEquals(atZero, tracker.getTitlesAtZero(-1).size(), "titles at zero");
+    }
+    
+    /**
+     * Take or return a copy, or occasionally restock or recategorize, then refresh
+     */
+    private static void change(Book book, Random random, InventoryTracker tracker) {
+        int action = random.nextInt(20);
+        if (action == 0) {
+            int out = book.getTotalQuantity() - book.getAvailableQuantity();
+            int total = out + random.nextInt(3);
+            book.setTotalQuantity(total);
+            book.setAvailableQuantity(total - out);
+        } else if (action == 1) {
+            book.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        } else if (action < 11) {
+            book.tryReserveCopy();
+        } else {
+            book.releaseCopy();
+        }
+        tracker.refresh(book);
+    }
+    
+    private static void checkTotals(List<Book> books, InventoryTracker tracker) {
+        long issued = 0;
+        long total = 0;
+        int atZero = 0;
+        SortedMap<String, String> expected = new TreeMap<>();
+        Map<String, long[]> byCategory = new TreeMap<>();
+        for (Book book : books) {
+            int out = book.getTotalQuantity() - book.getAvailableQuantity();
+            boolean zero = book.getTotalQuantity() > 0 && book.getAvailableQuantity() == 0;
+            issued += out;
+            total += book.getTotalQuantity();
+            atZero += zero ? 1 : 0;
+            String category = book.getCategory() != null ? book.getCategory() : "Unknown";
+            long[] counts = byCategory.computeIfAbsent(category, name -> new long[3]);
+            counts[0] += out;
+            counts[1] += book.getTotalQuantity();
+            counts[2] += zero ? 1 : 0;
+        }
+        for (Map.Entry<String, long[]> entry : byCategory.entrySet()) {
+            long[] counts = entry.getValue();
+            if (counts[0] != 0 || counts[1] != 0 || counts[2] != 0) {
+                expected.put(entry.getKey(), counts[0] + "/" + counts[1] + " at zero " + counts[2]);
+            }
+        }
+        
+        InventoryTracker.Utilization library = tracker.getLibraryUtilization();
+        checkEquals(issued, library.getIssued(), "library issued");
+        checkEquals(total, library.getTotal(), "library total");
+        checkEquals(atZero, library.getTitlesAtZero(), "library titles at zero");
+        SortedMap<String, String> actual = new TreeMap<>();
+        for (Map.Entry<String, InventoryTracker.Utilization> entry : tracker.getCategoryUtilization().entrySet()) {
+            InventoryTracker.Utilization group = entry.getValue();
+            actual.put(entry.getKey(), group.getIssued() + "/" + group.getTotal() + " at zero " + group.getTitlesAtZero());
+        }
+        checkEquals(expected, actual, "per category");
+        checkEquals(atZero, tracker.getTitlesAtZero(-1).size(), "at-zero set");
+    }
+    
+    /**
+     * A tracker loaded from the saved timings and the books agrees with the running one
+     */
+    private static void checkReload(List<Book> books, InventoryTracker tracker) {
+        InventoryTracker reloaded = new InventoryTracker();
+        reloaded.load(tracker.toFileLines(), books);
+        checkTotals(books, reloaded);
+        for (Book book : books) {
+            checkEquals(tracker.getTitleStatus(book.getBookId()).isAtZero(),
+                        reloaded.getTitleStatus(book.getBookId()).isAtZero(), book.getBookId() + " at zero");
+        }
+    }
+    
+    private static double rate(int issued, int total) {
+        return (double) issued / total;
+    }
+    
+    private static List<Book> books(int count, Random random) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new Book("B" + i, "Title " + i, "Author", "isbn" + i,
+                               CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(4)));
+        }
+        return books;
+    }
+}
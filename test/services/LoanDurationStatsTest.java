@@ -0,0 +1,53 @@
+package services;
+
+import support.Tests;
+
+import java.util.Arrays;
+
+import static support.Tests.checkEquals;
+
+/**
+ * Loan durations by category and member type, whatever their case
+ */
+public class LoanDurationStatsTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("LoanDurationStatsTest");
+        tests.run("spellings differing in case share one cell", LoanDurationStatsTest::caseInsensitive);
+        tests.run("lookups match any case", LoanDurationStatsTest::lookups);
+        tests.run("a missing category is listed as Unknown", LoanDurationStatsTest::missingValues);
+        tests.finish();
+    }
+    
+    private static void caseInsensitive() {
+        LoanDurationStats stats = new LoanDurationStats();
+        stats.record("Fiction", "STUDENT", 7);
+        stats.record("fiction", "student", 14);
+        stats.record("FICTION", "Faculty", 21);
+        stats.record("Science", "faculty", 3);
+        checkEquals(Arrays.asList("Fiction", "Science"), stats.getCategories(), "categories");
+        checkEquals(Arrays.asList("Faculty", "STUDENT"), stats.getMemberTypes(), "member types");
+        checkEquals(4L, stats.getHistogram(null, null).getCount(), "all loans");
+    }
+    
+    private static void lookups() {
+        LoanDurationStats stats = new LoanDurationStats();
+        stats.record("Fiction", "STUDENT", 7);
+        stats.record("fiction", "student", 14);
+        stats.record("FICTION", "Faculty", 21);
+        stats.record("Science", "faculty", 3);
+        checkEquals(3L, stats.getHistogram("fIcTiOn", null).getCount(), "category");
+        checkEquals(2L, stats.getHistogram(null, "FACULTY").getCount(), "member type");
+        checkEquals(2L, stats.getHistogram("Fiction", "Student").getCount(), "pair");
+        checkEquals(14L, stats.getHistogram("Fiction", "Student").getMax(), "longest student fiction loan");
+        checkEquals(0L, stats.getHistogram("Poetry", null).getCount(), "unknown category");
+    }
+    
+    private static void missingValues() {
+        LoanDurationStats stats = new LoanDurationStats();
+        stats.record(null, "STUDENT", 5);
+        stats.record("unknown", "STUDENT", 6);
+        checkEquals(Arrays.asList("Unknown"), stats.getCategories(), "categories");
+        checkEquals(2L, stats.getHistogram("Unknown", "STUDENT").getCount(), "both under Unknown");
+    }
+}
@@ -0,0 +1,54 @@
+package services;
+
+import models.Member;
+import support.Tests;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Member updates and the email index
+ */
+public class MemberServiceTest {
+    private static MemberService members;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            members = new MemberService();
+            members.registerMember(new Member("M1", "First", "first@example.com", "9876543210", "STUDENT"));
+            members.registerMember(new Member("M2", "Second", "second@example.com", "9876543211", "STUDENT"));
+        });
+        
+        Tests tests = new Tests("MemberServiceTest");
+        tests.run("an update cannot take another member's email", MemberServiceTest::emailTaken);
+        tests.run("an update moves the email index", MemberServiceTest::emailMoved);
+        tests.finish();
+    }
+    
+    private static void emailTaken() throws Exception {
+        boolean[] updated = new boolean[1];
+        Tests.quietly(() -> updated[0] = members.updateMember(
+                new Member("M1", "First", "SECOND@example.com", "9876543210", "STUDENT")));
+        check(!updated[0], "update rejected");
+        checkEquals("first@example.com", members.findMemberById("M1").getEmail(), "email unchanged");
+        checkEquals("M1", members.findMemberByEmail("first@example.com").getMemberId(), "own email still indexed");
+        checkEquals("M2", members.findMemberByEmail("second@example.com").getMemberId(), "other email still indexed");
+        
+        boolean[] registered = new boolean[1];
+        Tests.quietly(() -> registered[0] = members.registerMember(
+                new Member("M3", "Third", "second@example.com", "9876543212", "STUDENT")));
+        check(!registered[0], "taken email cannot be registered again");
+    }
+    
+    private static void emailMoved() throws Exception {
+        boolean[] updated = new boolean[2];
+        Tests.quietly(() -> {
+            updated[0] = members.updateMember(new Member("M1", "First", "FIRST@example.com", "9876543210", "STUDENT"));
+            updated[1] = members.updateMember(new Member("M1", "First", "new@example.com", "9876543210", "STUDENT"));
+        });
+        check(updated[0], "own email in another case accepted");
+        check(updated[1], "free email accepted");
+        check(members.findMemberByEmail("first@example.com") == null, "old email freed");
+        checkEquals("M1", members.findMemberByEmail("new@example.com").getMemberId(), "new email indexed");
+    }
+}
@@ -0,0 +1,283 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+public class MutationPipelineTest {
+    private static BookService books;
+    private static MemberService members;
+    private static TransactionService transactions;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            books = new BookService();
+            members = new MemberService();
+            transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 2));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+        });
+        
+        Tests tests = new Tests("MutationPipelineTest");
+        tests.run("commands run in submission order", MutationPipelineTest::runsInOrder);
+        tests.run("a throwing command fails alone and the writer survives", MutationPipelineTest::survivesFailures);
+        tests.run("trySubmit sheds load when the ring is full", MutationPipelineTest::shedsLoad);
+        tests.run("a failed flush undoes an added book", MutationPipelineTest::failedFlushUndoesAdd);
+        tests.run("a failed flush undoes an issue", MutationPipelineTest::failedFlushUndoesIssue);
+        tests.run("submits racing shutdown complete, and only run commands succeed", MutationPipelineTest::shutdownRace);
+        tests.run("a lone submit is not held back by the linger", MutationPipelineTest::loneSubmitNotDelayed);
+        tests.run("a burst of submits is coalesced into large batches", MutationPipelineTest::burstCoalesced);
+        tests.run("the linger stops once a burst is over", MutationPipelineTest::lingerStopsAfterBurst);
+        tests.finish();
+    }
+    
+    private static MutationPipeline start(int capacity) {
+        MutationPipeline pipeline = new MutationPipeline(books, members, transactions, capacity, 0);
+        pipeline.start();
+        return pipeline;
+    }
+    
+    private static void runsInOrder() throws Exception {
+        MutationPipeline pipeline = start(8);
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            results.add(pipeline.submit(() -> {
+                applied.add(value);
+                return value;
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            checkEquals(i, results.get(i).get(5, TimeUnit.SECONDS), "outcome of command " + i);
+        }
+        for (int i = 0; i < applied.size(); i++) {
+            checkEquals(i, applied.get(i), "order of command " + i);
+        }
+        pipeline.shutdown();
+    }
+    
+    private static void survivesFailures() throws Exception {
+        MutationPipeline pipeline = start(8);
+        CompletableFuture<Object> runtime = pipeline.submit(() -> {
+            throw new IllegalArgumentException("bad command");
+        });
+        CompletableFuture<Object> error = pipeline.submit(() -> {
+            throw new AssertionError("worse command");
+        });
+        CompletableFuture<String> after = pipeline.submit(() -> "still running");
+        
+        checkFails(runtime, IllegalArgumentException.class, "runtime exception reported");
+        checkFails(error, AssertionError.class, "error reported");
+        checkEquals("still running", after.get(5, TimeUnit.SECONDS), "later command applied");
+        pipeline.shutdown();
+    }
+    
+    private static void shedsLoad() throws Exception {
+        MutationPipeline pipeline = start(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocker = pipeline.submit(() -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        List<CompletableFuture<Integer>> accepted = new ArrayList<>();
+        CompletableFuture<Integer> result;
+        while ((result = pipeline.trySubmit(() -> 1)) != null) {
+            accepted.add(result);
+            check(accepted.size() <= 2, "no more than the ring capacity queued");
+        }
+        check(pipeline.getQueueDepth() <= 2, "queue depth bounded by the ring");
+        release.countDown();
+        check(blocker.get(5, TimeUnit.SECONDS), "blocking command finished");
+        for (CompletableFuture<Integer> queued : accepted) {
+            checkEquals(1, queued.get(5, TimeUnit.SECONDS), "queued command applied");
+        }
+        pipeline.shutdown();
+    }
+    
+    private static void failedFlushUndoesAdd() throws Exception {
+        MutationPipeline pipeline = start(8);
+        File booksFile = new File("data/books.txt");
+        File saved = new File("data/books.txt.saved");
+        check(booksFile.renameTo(saved) && booksFile.mkdir(), "books file replaced by a directory");
+        CompletableFuture<Boolean> result;
+        try {
+            result = pipeline.addBook(new Book("B2", "Other", "Author", "222", "Fiction", 1));
+            checkFails(result, IllegalStateException.class, "add reported as not persisted");
+        } finally {
+            booksFile.delete();
+            saved.renameTo(booksFile);
+        }
+        check(books.findBookById("B2") == null, "book dropped again");
+        check(books.searchByIsbn("222") == null, "ISBN index cleaned up");
+        pipeline.shutdown();
+    }
+    
+    private static void failedFlushUndoesIssue() throws Exception {
+        MutationPipeline pipeline = start(8);
+        Book book = books.findBookById("B1");
+        Member member = members.findMemberById("M1");
+        int available = book.getAvailableQuantity();
+        int borrowed = member.getBorrowedBooks();
+        int loans = transactions.getAllTransactions().size();
+        
+        File blocker = new File("data/transactions.txt.pending");
+        check(blocker.mkdir(), "blocker created");
+        try {
+            CompletableFuture<Transaction> result = pipeline.issueBook("B1", "M1");
+            checkFails(result, IllegalStateException.class, "issue reported as not persisted");
+        } finally {
+            blocker.delete();
+        }
+        checkEquals(available, book.getAvailableQuantity(), "copy given back");
+        checkEquals(borrowed, member.getBorrowedBooks(), "borrowed count restored");
+        checkEquals(loans, transactions.getAllTransactions().size(), "transaction removed");
+        
+        Transaction issued = pipeline.issueBook("B1", "M1").get(5, TimeUnit.SECONDS);
+        check(issued != null, "a later issue succeeds");
+        pipeline.shutdown();
+    }
+    
+    private static void shutdownRace() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            MutationPipeline pipeline = start(4);
+            AtomicInteger applied = new AtomicInteger();
+            List<CompletableFuture<Integer>> results = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            results.add(pipeline.submit(applied::incrementAndGet));
+                        }
+                    } catch (IllegalStateException e) {
+                        // Rejected up front once shut down
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            Thread.sleep(1);
+            pipeline.shutdown();
+            for (Thread producer : producers) {
+                producer.join(10_000);
+                check(!producer.isAlive(), "producer not stuck");
+            }
+            int succeeded = 0;
+            for (CompletableFuture<Integer> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    check(e.getCause() instanceof IllegalStateException, "only shutdown failures: " + e.getCause());
+                } catch (TimeoutException e) {
+                    throw new AssertionError("a submit racing shutdown was never completed");
+                }
+            }
+            checkEquals(succeeded, applied.get(), "commands run are exactly those reported done");
+        }
+    }
+    
+    private static void loneSubmitNotDelayed() throws Exception {
+        MutationPipeline pipeline = new MutationPipeline(books, members, transactions, 16, TimeUnit.SECONDS.toNanos(1));
+        pipeline.start();
+        for (int i = 0; i < 20; i++) {
+            checkQuick(pipeline, 500, "lone submit " + i);
+        }
+        check(pipeline.getAverageBatchSize() < 1.5, "batches of one (average " + pipeline.getAverageBatchSize() + ")");
+        pipeline.shutdown();
+    }
+    
+    private static void burstCoalesced() throws Exception {
+        MutationPipeline pipeline = new MutationPipeline(books, members, transactions, 64,
+                                                         TimeUnit.MILLISECONDS.toNanos(20));
+        pipeline.start();
+        burst(pipeline);
+        check(pipeline.getAverageBatchSize() > 1.5, "commands shared batches (average "
+                + pipeline.getAverageBatchSize() + ")");
+        pipeline.shutdown();
+    }
+    
+    private static void lingerStopsAfterBurst() throws Exception {
+        MutationPipeline pipeline = new MutationPipeline(books, members, transactions, 16,
+                                                         TimeUnit.MILLISECONDS.toNanos(100));
+        pipeline.start();
+        burst(pipeline);
+        check(pipeline.getAverageBatchSize() > 1.5, "burst seen");
+        for (int i = 0; i < 100 && pipeline.getAverageBatchSize() >= 1.5; i++) {
+            pipeline.submit(() -> 1).get(5, TimeUnit.SECONDS);
+        }
+        check(pipeline.getAverageBatchSize() < 1.5, "average fell back after the burst");
+        checkQuick(pipeline, 50, "lone submit after the burst");
+        pipeline.shutdown();
+    }
+    
+    /**
+     * Sixteen threads submitting at once, all waited for
+     */
+    private static void burst(MutationPipeline pipeline) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    results.add(pipeline.submit(() -> 1));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        for (CompletableFuture<Integer> result : results) {
+            checkEquals(1, result.get(5, TimeUnit.SECONDS), "burst command applied");
+        }
+    }
+    
+    /**
+     * Submit one command alone and check it completes within the given time
+     */
+    private static void checkQuick(MutationPipeline pipeline, long maxMillis, String message) throws Exception {
+        long start = System.nanoTime();
+        pipeline.submit(() -> 1).get(5, TimeUnit.SECONDS);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        check(millis < maxMillis, message + " took " + millis + " ms");
+    }
+    
+    private static void checkFails(CompletableFuture<?> future, Class<? extends Throwable> cause, String message)
+            throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            check(cause.isInstance(e.getCause()), message + " (got " + e.getCause() + ")");
+            return;
+        }
+        throw new AssertionError(message + " (completed normally)");
+    }
+}
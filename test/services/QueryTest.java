@@ -0,0 +1,166 @@
+package services;
+
+import models.Book;
+import models.Member;
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+import static support.Tests.checkThrows;
+
+/**
+ * Query parsing, and QueryService on rows with missing values
+ */
+public class QueryTest {
+    private static QueryService queries;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            BookService books = new BookService();
+            MemberService members = new MemberService();
+            TransactionService transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 2));
+            books.addBook(new Book("B2", "Second Copy", "Author", "111", "Fiction", 1));
+            books.addBook(new Book("B3", "Other", "Author", "333", "Science", 1));
+            books.addBook(new Book("B4", "Unsorted", "Author", "444", null, 1));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+            members.registerMember(new Member("M2", "Walk-in", "w@example.com", null, "STUDENT"));
+            transactions.issueBook("B1", "M1");
+            transactions.issueBook("B3", "M1");
+            transactions.issueBook("B2", "M2");
+            queries = new QueryService(books, members, transactions);
+        });
+        
+        Tests tests = new Tests("QueryTest");
+        tests.run("a full query parses into its parts", QueryTest::fullQuery);
+        tests.run("today offsets parse with or without spaces", QueryTest::todayOffsets);
+        tests.run("quoted values, null and keywords in any case", QueryTest::values);
+        tests.run("syntax errors are rejected", QueryTest::syntaxErrors);
+        tests.run("text conditions skip rows with a missing value", QueryTest::nullSafeText);
+        tests.run("rows with a missing value group under NULL", QueryTest::nullGroup);
+        tests.run("equality on an indexed field uses the index", QueryTest::indexLookups);
+        tests.finish();
+    }
+    
+    // ============ PARSING ============
+    
+    private static void fullQuery() {
+        Query query = Query.parse("EXPLAIN Books where category = Fiction and totalQuantity >= 2 group by author limit 5");
+        check(query.isExplain(), "explain");
+        checkEquals("books", query.getSource(), "source");
+        List<Query.Condition> conditions = query.getConditions();
+        checkEquals(2, conditions.size(), "conditions");
+        checkEquals("category", conditions.get(0).getField(), "first field");
+        checkEquals(Query.Op.EQ, conditions.get(0).getOp(), "first operator");
+        checkEquals("Fiction", conditions.get(0).getValue(), "first value");
+        checkEquals(Query.Op.GE, conditions.get(1).getOp(), "second operator");
+        checkEquals("author", query.getGroupBy(), "group by");
+        checkEquals(5, query.getLimit(), "limit");
+        
+        Query plain = Query.parse("members");
+        check(!plain.isExplain(), "not explain");
+        check(plain.getConditions().isEmpty(), "no conditions");
+        check(plain.getGroupBy() == null, "no grouping");
+        checkEquals(-1, plain.getLimit(), "no limit");
+    }
+    
+    private static void todayOffsets() {
+        String[][] cases = {
+            {"today-7", "today-7"},
+            {"today - 7", "today-7"},
+            {"today -7", "today-7"},
+            {"today- 7", "today-7"},
+            {"today+3", "today+3"},
+            {"today + 3", "today+3"},
+            {"today", "today"},
+        };
+        for (String[] c : cases) {
+            Query query = Query.parse("transactions where dueDate < " + c[0] + " and status = ISSUED");
+            checkEquals(c[1], query.getConditions().get(0).getValue(), c[0]);
+            checkEquals(2, query.getConditions().size(), "following condition kept after " + c[0]);
+        }
+        Query limited = Query.parse("transactions where dueDate < today limit 3");
+        checkEquals("today", limited.getConditions().get(0).getValue(), "today before limit");
+        checkEquals(3, limited.getLimit(), "limit after today");
+    }
+    
+    private static void values() {
+        Query query = Query.parse("books where title ~ 'War and Peace' and author != \"O'Brien\" and isbn = NULL");
+        List<Query.Condition> conditions = query.getConditions();
+        checkEquals(Query.Op.CONTAINS, conditions.get(0).getOp(), "contains");
+        checkEquals("War and Peace", conditions.get(0).getValue(), "quoted keeps spaces and keywords");
+        checkEquals("O'Brien", conditions.get(1).getValue(), "other quote inside");
+        check(conditions.get(2).getValue() == null, "null literal");
+        checkEquals("books where isbn = null", Query.parse("books WHERE isbn = null").toString(), "toString");
+        checkEquals("null", Query.parse("books where isbn = 'null'").getConditions().get(0).getValue(),
+                "quoted null is text");
+    }
+    
+    private static void syntaxErrors() {
+        checkThrows(IllegalArgumentException.class, () -> Query.parse(""), "empty");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books where"), "missing field");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books where title"), "missing operator");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books where title <>"), "missing value");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books where title =< x"), "unknown operator");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books where title = 'open"), "unterminated");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books group author"), "group without by");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books limit -1"), "negative limit");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books limit ten"), "non-numeric limit");
+        checkThrows(IllegalArgumentException.class, () -> Query.parse("books extra"), "trailing word");
+    }
+    
+    // ============ EXECUTION ============
+    
+    private static void nullSafeText() {
+        checkEquals(1, rows("members where phone ~ 98").size(), "contains");
+        checkEquals(1, rows("members where phone > 5").size(), "compare");
+        checkEquals(0, rows("members where phone < 5").size(), "compare below");
+        checkEquals(1, rows("members where phone != 123").size(), "not equal skips the missing value");
+        checkEquals(0, rows("books where category = NoSuchCategory").size(), "unknown coded value");
+        checkEquals(3, rows("books where category != NoSuchCategory").size(), "not an unknown coded value");
+        checkEquals(2, rows("books where category = fiction").size(), "coded value in another case");
+        checkEquals(1, rows("books where category != Fiction").size(), "not a coded value skips the missing one");
+    }
+    
+    private static void nullGroup() {
+        Map<String, Long> groups = run("members group by phone").getGroups();
+        checkEquals(1L, groups.get("NULL"), "missing phone");
+        checkEquals(1L, groups.get("9876543210"), "present phone");
+    }
+    
+    private static void indexLookups() {
+        String[][] cases = {
+            {"books where isbn = 111", "isbn", "2"},
+            {"books where bookId = b3", "bookId", "1"},
+            {"members where email = R@EXAMPLE.COM", "email", "1"},
+            {"transactions where memberId = m1", "memberId", "2"},
+            {"transactions where memberId = M1 and bookId = B3", "memberId", "1"},
+            {"transactions where memberId = NOBODY", "memberId", "0"},
+        };
+        for (String[] c : cases) {
+            String plan = run("explain " + c[0]).getPlan();
+            check(plan.contains("index lookup on " + c[1]), c[0] + " planned as " + plan);
+            checkEquals(Integer.parseInt(c[2]), rows(c[0]).size(), c[0]);
+        }
+        check(run("explain transactions where bookId = B1").getPlan().contains("scan"), "unindexed field scans");
+    }
+    
+    private static List<?> rows(String text) {
+        return run(text).getRows();
+    }
+    
+    private static QueryService.Result<?> run(String text) {
+        List<QueryService.Result<?>> result = new ArrayList<>();
+        try {
+            Tests.quietly(() -> result.add(queries.execute(text)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        check(result.get(0) != null, "ran: " + text);
+        return result.get(0);
+    }
+}
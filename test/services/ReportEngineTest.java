@@ -0,0 +1,87 @@
+package services;
+
+import models.Transaction;
+import support.Tests;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * The parallel history report matches the sequential one
+ */
+public class ReportEngineTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("ReportEngineTest");
+        tests.run("a history split across workers reports the same as one pass", ReportEngineTest::parallelMatches);
+        tests.run("a history smaller than one chunk reports the same", ReportEngineTest::smallHistory);
+        tests.finish();
+    }
+    
+    private static void parallelMatches() {
+        List<Transaction> history = history(100_000, 42);
+        ReportEngine engine = new ReportEngine();
+        ReportEngine.HistoryReport parallel = engine.run(history, TODAY);
+        ReportEngine.HistoryReport sequential = engine.runSequential(history, TODAY);
+        
+        checkEquals(sequential.getTransactionCount(), parallel.getTransactionCount(), "transaction count");
+        checkEquals(sequential.getMemberTotals(), parallel.getMemberTotals(), "member totals");
+        checkEquals(sequential.getBookLoans(), parallel.getBookLoans(), "book loans");
+        checkEquals(sequential.getFinesByMonth(), parallel.getFinesByMonth(), "fines by month");
+        check(parallel.equals(sequential), "reports equal");
+        
+        checkEquals(100_000L, parallel.getTransactionCount(), "every transaction counted");
+        long loans = 0;
+        for (long count : parallel.getBookLoans().values()) {
+            loans += count;
+        }
+        checkEquals(100_000L, loans, "every loan counted once");
+        check(!parallel.getMemberTotals().containsKey("m1"), "member IDs folded to upper case");
+    }
+    
+    private static void smallHistory() {
+        List<Transaction> history = history(50, 7);
+        ReportEngine engine = new ReportEngine();
+        check(engine.run(history, TODAY).equals(engine.runSequential(history, TODAY)), "reports equal");
+        checkEquals(50L, engine.run(history, TODAY).getTransactionCount(), "transaction count");
+    }
+    
+    /**
+     * Random loans over two years, a third of them still open, with member
+     * and book IDs in mixed case
+     */
+    private static List<Transaction> history(int size, long seed) {
+        Random random = new Random(seed);
+        List<Transaction> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId("TXN" + i);
+            int member = random.nextInt(300);
+            int book = random.nextInt(500);
+            transaction.setMemberId((random.nextBoolean() ? "M" : "m") + member);
+            transaction.setBookId((random.nextBoolean() ? "B" : "b") + book);
+            LocalDate issued = TODAY.minusDays(random.nextInt(730));
+            transaction.setIssueDate(issued);
+            transaction.setDueDate(issued.plusDays(14));
+            if (random.nextInt(3) == 0) {
+                transaction.setStatus("ISSUED");
+            } else {
+                LocalDate returned = issued.plusDays(random.nextInt(30));
+                if (returned.isAfter(TODAY)) {
+                    returned = TODAY;
+                }
+                transaction.setReturnDate(returned);
+                transaction.setFine(random.nextInt(4) == 0 ? random.nextInt(50) + 0.25 : 0.0);
+                transaction.setStatus("RETURNED");
+            }
+            history.add(transaction);
+        }
+        return history;
+    }
+}
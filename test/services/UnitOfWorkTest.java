@@ -0,0 +1,119 @@
+package services;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+import utils.FileHandler;
+
+import java.io.File;
+import java.util.List;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Held copies, commit and rollback of a UnitOfWork
+ */
+public class UnitOfWorkTest {
+    private static BookService books;
+    private static MemberService members;
+    private static TransactionService transactions;
+    
+    public static void main(String[] args) throws Exception {
+        Tests.quietly(() -> {
+            books = new BookService();
+            members = new MemberService();
+            transactions = new TransactionService(books, members);
+            books.addBook(new Book("B1", "Title", "Author", "111", "Fiction", 2));
+            members.registerMember(new Member("M1", "Reader", "r@example.com", "9876543210", "STUDENT"));
+        });
+        
+        Tests tests = new Tests("UnitOfWorkTest");
+        tests.run("a held copy is unavailable but not persisted", UnitOfWorkTest::heldCopyNotPersisted);
+        tests.run("rollback makes a held copy available again", UnitOfWorkTest::rollbackReleases);
+        tests.run("commit persists the checkout", UnitOfWorkTest::commitPersists);
+        tests.run("a commit deferred to a failed batch is undone", UnitOfWorkTest::failedBatchUndone);
+        tests.finish();
+    }
+    
+    private static void heldCopyNotPersisted() {
+        Book book = books.findBookById("B1");
+        UnitOfWork work = new UnitOfWork(books, members, transactions);
+        check(work.reserveCopy(book), "copy held");
+        checkEquals(1, book.getAvailableQuantity(), "available in memory");
+        
+        // Another desk saves the books while the copy is only held
+        books.saveBooks();
+        checkEquals(2, persistedAvailable("B1"), "available on disk");
+        work.rollback();
+    }
+    
+    private static void rollbackReleases() {
+        Book book = books.findBookById("B1");
+        UnitOfWork work = new UnitOfWork(books, members, transactions);
+        check(work.reserveCopy(book), "first copy held");
+        check(work.reserveCopy(book), "second copy held");
+        check(!work.reserveCopy(book), "no third copy");
+        work.rollback();
+        checkEquals(2, book.getAvailableQuantity(), "available after rollback");
+        checkEquals(2, book.getCommittedAvailableQuantity(), "committed after rollback");
+    }
+    
+    private static void commitPersists() {
+        Book book = books.findBookById("B1");
+        Member member = members.findMemberById("M1");
+        UnitOfWork work = new UnitOfWork(books, members, transactions);
+        check(work.reserveCopy(book), "copy held");
+        check(work.borrow(member), "member can borrow");
+        work.addTransaction(new Transaction("TXN-T1", "B1", "M1"));
+        check(work.commit(), "commit written");
+        
+        checkEquals(1, book.getAvailableQuantity(), "available in memory");
+        checkEquals(1, persistedAvailable("B1"), "available on disk");
+        checkEquals(1, member.getBorrowedBooks(), "borrowed count");
+        check(transactions.findTransactionById("TXN-T1") != null, "transaction added");
+    }
+    
+    private static void failedBatchUndone() throws Exception {
+        Book book = books.findBookById("B1");
+        Member member = members.findMemberById("M1");
+        int available = book.getAvailableQuantity();
+        int borrowed = member.getBorrowedBooks();
+        FileHandler fileHandler = FileHandler.getInstance();
+        
+        fileHandler.beginBatch();
+        UnitOfWork work = new UnitOfWork(books, members, transactions);
+        check(work.reserveCopy(book), "copy held");
+        check(work.borrow(member), "member can borrow");
+        work.addTransaction(new Transaction("TXN-T2", "B1", "M1"));
+        check(work.commit(), "commit staged in the batch");
+        check(!work.getBatchOutcome().isDone(), "outcome pending until the batch ends");
+        checkEquals(available - 1, book.getAvailableQuantity(), "applied in memory meanwhile");
+        
+        // Make the batch's atomic commit fail
+        File blocker = new File("data/members.txt.pending");
+        check(blocker.mkdir(), "blocker created");
+        boolean saved;
+        try {
+            saved = fileHandler.endBatch();
+        } finally {
+            blocker.delete();
+        }
+        check(!saved, "batch failed");
+        check(!work.getBatchOutcome().join(), "outcome reports the failure");
+        checkEquals(available, book.getAvailableQuantity(), "copy given back");
+        checkEquals(borrowed, member.getBorrowedBooks(), "borrowed count restored");
+        check(transactions.findTransactionById("TXN-T2") == null, "transaction removed");
+    }
+    
+    private static int persistedAvailable(String bookId) {
+        List<Book> saved = FileHandler.getInstance().loadBooks();
+        for (Book book : saved) {
+            if (book.getBookId().equals(bookId)) {
+                return book.getAvailableQuantity();
+            }
+        }
+        throw new AssertionError(bookId + " not on disk");
+    }
+}
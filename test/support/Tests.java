@@ -0,0 +1,105 @@
+package support;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Objects;
+
+/**
+ * Tests is a minimal runner for the plain-Java test classes under test/
+ * Each test class has a main that runs its cases through one Tests instance
+ * and calls finish, which exits with status 1 if any case failed. The run
+ * script starts every test class in its own JVM and scratch directory, so
+ * FileHandler's relative data/ folder is fresh for each class.
+ */
+public final class Tests {
+    
+    /**
+     * A test case body; any Throwable counts as a failure
+     */
+    public interface Case {
+        void run() throws Exception;
+    }
+    
+    private final String suite;
+    private int passed;
+    private int failed;
+    
+    public Tests(String suite) {
+        this.suite = suite;
+    }
+    
+    /**
+     * Run one case and report it
+     */
+    public void run(String name, Case body) {
+        try {
+            body.run();
+            passed++;
+            System.out.println("  PASS " + name);
+        } catch (Throwable e) {
+            failed++;
+            System.out.println("  FAIL " + name + ": " + e);
+            e.printStackTrace(System.out);
+        }
+    }
+    
+    /**
+     * Print the summary and exit, non-zero if any case failed
+     */
+    public void finish() {
+        System.out.println(suite + ": " + passed + " passed, " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+    
+    // ============ ASSERTIONS ============
+    
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    public static void checkEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + " (expected " + expected + ", got " + actual + ")");
+        }
+    }
+    
+    /**
+     * Check that a body throws the given exception type
+     */
+    public static void checkThrows(Class<? extends Throwable> type, Case body, String message) {
+        try {
+            body.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return;
+            }
+            throw new AssertionError(message + " (threw " + e + ")");
+        }
+        throw new AssertionError(message + " (nothing thrown)");
+    }
+    
+    // ============ HELPERS ============
+    
+    /**
+     * Run a body with System.out discarded, for services that print banners
+     */
+    public static void quietly(Case body) throws Exception {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            body.run();
+        } finally {
+            System.setOut(original);
+        }
+    }
+}
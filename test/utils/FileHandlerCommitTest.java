@@ -0,0 +1,196 @@
+package utils;
+
+import models.Book;
+import models.Member;
+import models.Transaction;
+import support.Tests;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Atomic commit and crash recovery of FileHandler
+ * Crashes are simulated by leaving .pending files and the commit marker
+ * on disk the way an interrupted commit would
+ */
+public class FileHandlerCommitTest {
+    private static final Path DATA = Paths.get("data");
+    private static final Path BOOKS = DATA.resolve("books.txt");
+    private static final Path MEMBERS = DATA.resolve("members.txt");
+    private static final Path TRANSACTIONS = DATA.resolve("transactions.txt");
+    private static final Path MARKER = DATA.resolve("commit.marker");
+    private static final Path SEQUENCES = DATA.resolve("sequences.txt");
+    
+    private static final String OLD_BOOK = "B1|Old Title|Author|111|Fiction|2|2";
+    private static final String NEW_BOOK = "B1|New Title|Author|111|Fiction|2|1";
+    private static final String NEW_MEMBER = "M1|Reader|r@example.com|9876543210|STUDENT|2024-01-01|1|3";
+    private static final String NEW_TRANSACTION = "TXN00001|B1|M1|2024-01-01|2024-01-15|NULL|0.0|ISSUED";
+    
+    public static void main(String[] args) throws Exception {
+        // Leave an interrupted commit behind before FileHandler starts up
+        Files.createDirectories(DATA);
+        write(BOOKS, OLD_BOOK);
+        write(pending(BOOKS), NEW_BOOK);
+        write(pending(MEMBERS), NEW_MEMBER);
+        write(pending(TRANSACTIONS), NEW_TRANSACTION);
+        write(MARKER, "1");
+        
+        Tests tests = new Tests("FileHandlerCommitTest");
+        tests.run("startup rolls a marked commit forward", FileHandlerCommitTest::rollForwardOnStartup);
+        tests.run("pending files without a marker are discarded", FileHandlerCommitTest::discardWithoutMarker);
+        tests.run("a partly applied commit is completed", FileHandlerCommitTest::completePartialApply);
+        tests.run("commit writes all stores and leaves no pending files", FileHandlerCommitTest::commitWritesAll);
+        tests.run("failed commit leaves the live files untouched", FileHandlerCommitTest::failedCommitKeepsOldData);
+        tests.run("failed batch runs undo actions and reports the outcome", FileHandlerCommitTest::failedBatchUndoes);
+        tests.run("a sequence reservation replaces the file whole", FileHandlerCommitTest::sequenceReplacedWhole);
+        tests.run("a sequence reservation does not need the file lock", FileHandlerCommitTest::sequenceWithoutFileLock);
+        tests.finish();
+    }
+    
+    private static void rollForwardOnStartup() throws IOException {
+        FileHandler.getInstance();
+        checkEquals(Collections.singletonList(NEW_BOOK), read(BOOKS), "books after recovery");
+        checkEquals(Collections.singletonList(NEW_MEMBER), read(MEMBERS), "members after recovery");
+        checkEquals(Collections.singletonList(NEW_TRANSACTION), read(TRANSACTIONS), "transactions after recovery");
+        checkNoLeftovers();
+    }
+    
+    private static void discardWithoutMarker() throws Exception {
+        write(BOOKS, OLD_BOOK);
+        write(pending(BOOKS), NEW_BOOK);
+        recover();
+        checkEquals(Collections.singletonList(OLD_BOOK), read(BOOKS), "books without a commit point");
+        checkNoLeftovers();
+    }
+    
+    private static void completePartialApply() throws Exception {
+        // Crash after books were moved into place but before members were
+        write(BOOKS, NEW_BOOK);
+        write(MEMBERS, "");
+        write(pending(MEMBERS), NEW_MEMBER);
+        write(MARKER, "1");
+        recover();
+        checkEquals(Collections.singletonList(NEW_BOOK), read(BOOKS), "books kept");
+        checkEquals(Collections.singletonList(NEW_MEMBER), read(MEMBERS), "members completed");
+        checkNoLeftovers();
+    }
+    
+    private static void commitWritesAll() throws IOException {
+        Book book = Book.fromFileString(NEW_BOOK);
+        Member member = Member.fromFileString(NEW_MEMBER);
+        Transaction transaction = Transaction.fromFileString(NEW_TRANSACTION);
+        boolean saved = FileHandler.getInstance().commit(() -> Collections.singletonList(book),
+                                                         () -> Collections.singletonList(member),
+                                                         () -> Collections.singletonList(transaction));
+        check(saved, "commit reported success");
+        checkEquals(Collections.singletonList(book.toFileString()), read(BOOKS), "books written");
+        checkEquals(Collections.singletonList(member.toFileString()), read(MEMBERS), "members written");
+        checkEquals(Collections.singletonList(transaction.toFileString()), read(TRANSACTIONS), "transactions written");
+        checkNoLeftovers();
+    }
+    
+    private static void failedCommitKeepsOldData() throws IOException {
+        write(BOOKS, OLD_BOOK);
+        List<String> members = read(MEMBERS);
+        // A directory where the pending file should go makes staging fail
+        Files.createDirectories(pending(TRANSACTIONS));
+        try {
+            boolean saved = FileHandler.getInstance().commit(() -> Collections.singletonList(Book.fromFileString(NEW_BOOK)),
+                                                             Collections::emptyList,
+                                                             Collections::emptyList);
+            check(!saved, "commit reported failure");
+        } finally {
+            Files.deleteIfExists(pending(TRANSACTIONS));
+        }
+        checkEquals(Collections.singletonList(OLD_BOOK), read(BOOKS), "books unchanged");
+        checkEquals(members, read(MEMBERS), "members unchanged");
+        checkNoLeftovers();
+    }
+    
+    private static void failedBatchUndoes() throws IOException {
+        FileHandler fileHandler = FileHandler.getInstance();
+        check(fileHandler.onBatchFailure(() -> { }) == null, "no outcome outside a batch");
+        
+        List<String> undone = new ArrayList<>();
+        fileHandler.beginBatch();
+        CompletableFuture<Boolean> outcome = fileHandler.onBatchFailure(() -> undone.add("first"));
+        fileHandler.onBatchFailure(() -> undone.add("second"));
+        check(fileHandler.commit(Collections::emptyList, Collections::emptyList, Collections::emptyList),
+              "deferred commit is accepted");
+        check(!outcome.isDone(), "outcome open until the batch ends");
+        
+        Files.createDirectories(pending(BOOKS));
+        boolean saved;
+        try {
+            saved = fileHandler.endBatch();
+        } finally {
+            Files.deleteIfExists(pending(BOOKS));
+        }
+        check(!saved, "endBatch reported failure");
+        check(outcome.isDone() && !outcome.join(), "outcome completed with false");
+        checkEquals(Arrays.asList("second", "first"), undone, "undo actions ran newest first");
+    }
+    
+    private static void sequenceReplacedWhole() throws IOException {
+        FileHandler fileHandler = FileHandler.getInstance();
+        write(SEQUENCES, "TXN|100" + System.lineSeparator() + "OTHER|7");
+        // A reservation that crashed after staging but before the rename
+        write(pending(SEQUENCES), "TXN|9");
+        
+        checkEquals(100L, fileHandler.reserveSequenceBlock("TXN", 1, 10), "block starts at the live mark");
+        checkEquals(Arrays.asList("TXN|110", "OTHER|7"), read(SEQUENCES), "marks after the reservation");
+        check(!Files.exists(pending(SEQUENCES)), "pending file moved into place");
+        checkEquals(500L, fileHandler.reserveSequenceBlock("TXN", 500, 10), "floor above the mark");
+    }
+    
+    private static void sequenceWithoutFileLock() throws Exception {
+        FileHandler fileHandler = FileHandler.getInstance();
+        CompletableFuture<Long> reserved = new CompletableFuture<>();
+        synchronized (fileHandler) {
+            Thread reserver = new Thread(() -> reserved.complete(fileHandler.reserveSequenceBlock("LOCKED", 1, 10)));
+            reserver.start();
+            reserver.join(5000);
+            check(reserved.isDone(), "reserved while another thread holds the file lock");
+        }
+        checkEquals(1L, reserved.join(), "first block");
+    }
+    
+    // ============ HELPERS ============
+    
+    private static void recover() throws Exception {
+        Method recover = FileHandler.class.getDeclaredMethod("recoverPendingCommit");
+        recover.setAccessible(true);
+        recover.invoke(FileHandler.getInstance());
+    }
+    
+    private static void checkNoLeftovers() {
+        check(!Files.exists(MARKER), "commit marker removed");
+        for (Path file : Arrays.asList(BOOKS, MEMBERS, TRANSACTIONS)) {
+            check(!Files.exists(pending(file)), file + " pending file removed");
+        }
+    }
+    
+    private static Path pending(Path file) {
+        return Paths.get(file + ".pending");
+    }
+    
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.isEmpty() ? new byte[0] : (content + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static List<String> read(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+}
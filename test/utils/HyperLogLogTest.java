@@ -0,0 +1,99 @@
+package utils;
+
+import support.Tests;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+public class HyperLogLogTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("HyperLogLogTest");
+        tests.run("an empty sketch estimates zero", HyperLogLogTest::empty);
+        tests.run("adding a value twice changes nothing", HyperLogLogTest::idempotent);
+        tests.run("small counts are close to exact", HyperLogLogTest::smallCounts);
+        tests.run("large counts stay within three standard errors", HyperLogLogTest::largeCounts);
+        tests.run("merge estimates the union", HyperLogLogTest::mergeIsUnion);
+        tests.run("hex form round-trips and rejects malformed text", HyperLogLogTest::hexRoundTrip);
+        tests.run("copy is independent of the original", HyperLogLogTest::copyIndependent);
+        tests.finish();
+    }
+    
+    private static void empty() {
+        HyperLogLog sketch = new HyperLogLog();
+        check(sketch.isEmpty(), "isEmpty");
+        checkEquals(0L, sketch.estimate(), "estimate");
+    }
+    
+    private static void idempotent() {
+        HyperLogLog sketch = new HyperLogLog();
+        add(sketch, "M", 0, 50);
+        String before = sketch.toHex();
+        add(sketch, "M", 0, 50);
+        checkEquals(before, sketch.toHex(), "registers after re-adding");
+    }
+    
+    private static void smallCounts() {
+        for (int count : new int[] {1, 5, 20}) {
+            HyperLogLog sketch = new HyperLogLog();
+            add(sketch, "MEM", 0, count);
+            long estimate = sketch.estimate();
+            check(Math.abs(estimate - count) <= 1, count + " values estimated as " + estimate);
+        }
+    }
+    
+    private static void largeCounts() {
+        double tolerance = 3 * 1.04 / Math.sqrt(HyperLogLog.REGISTERS);
+        for (int count : new int[] {1_000, 10_000, 200_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            add(sketch, "M", 0, count);
+            double error = Math.abs(sketch.estimate() - count) / (double) count;
+            check(error <= tolerance, count + " values estimated as " + sketch.estimate());
+        }
+    }
+    
+    private static void mergeIsUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        add(first, "M", 0, 3000);
+        add(second, "M", 2000, 5000);
+        add(union, "M", 0, 5000);
+        first.merge(second);
+        checkEquals(union.toHex(), first.toHex(), "merged registers match the union's");
+        checkEquals(union.estimate(), first.estimate(), "merged estimate");
+    }
+    
+    private static void hexRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        add(sketch, "B", 0, 1234);
+        String hex = sketch.toHex();
+        checkEquals(HyperLogLog.REGISTERS * 2, hex.length(), "two characters per register");
+        HyperLogLog parsed = HyperLogLog.fromHex(hex);
+        check(parsed != null, "parsed");
+        checkEquals(sketch.estimate(), parsed.estimate(), "estimate after round trip");
+        
+        check(HyperLogLog.fromHex(null) == null, "null");
+        check(HyperLogLog.fromHex(hex.substring(2)) == null, "wrong length");
+        check(HyperLogLog.fromHex("zz" + hex.substring(2)) == null, "not hex");
+    }
+    
+    private static void copyIndependent() {
+        HyperLogLog original = new HyperLogLog();
+        add(original, "M", 0, 100);
+        String before = original.toHex();
+        HyperLogLog copy = original.copy();
+        add(copy, "X", 0, 10_000);
+        checkEquals(before, original.toHex(), "original unchanged");
+        check(copy.estimate() > original.estimate(), "copy grew");
+    }
+    
+    /**
+     * Add prefix + i for i in [from, to)
+     */
+    private static void add(HyperLogLog sketch, String prefix, int from, int to) {
+        for (int i = from; i < to; i++) {
+            sketch.add(prefix + i);
+        }
+    }
+}
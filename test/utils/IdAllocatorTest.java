@@ -0,0 +1,97 @@
+package utils;
+
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+public class IdAllocatorTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("IdAllocatorTest");
+        tests.run("IDs are zero-padded and increasing", IdAllocatorTest::formatting);
+        tests.run("a new allocator continues after the persisted blocks", IdAllocatorTest::survivesRestart);
+        tests.run("advancePast skips the rest of the current block", IdAllocatorTest::advancePast);
+        tests.run("IDs stay unique and above the import while advancePast races nextId", IdAllocatorTest::advancePastRace);
+        tests.run("parseSequence reads only IDs with the prefix", IdAllocatorTest::parseSequence);
+        tests.finish();
+    }
+    
+    private static void formatting() {
+        IdAllocator ids = new IdAllocator("FMT", 5, 1, 10);
+        checkEquals("FMT00001", ids.nextId(), "first");
+        checkEquals("FMT00002", ids.nextId(), "second");
+        IdAllocator wide = new IdAllocator("WIDE", 2, 123, 10);
+        checkEquals("WIDE123", wide.nextId(), "grows past minDigits");
+    }
+    
+    private static void survivesRestart() {
+        IdAllocator first = new IdAllocator("RST", 3, 1, 10);
+        first.nextId();
+        IdAllocator second = new IdAllocator("RST", 3, 1, 10);
+        checkEquals("RST011", second.nextId(), "starts after the first allocator's block");
+    }
+    
+    private static void advancePast() {
+        IdAllocator ids = new IdAllocator("ADV", 3, 1, 100);
+        checkEquals("ADV001", ids.nextId(), "first");
+        ids.advancePast(50);
+        checkEquals(101L, IdAllocator.parseSequence(ids.nextId(), "ADV"), "next block after the import");
+        ids.advancePast(20);
+        checkEquals(102L, IdAllocator.parseSequence(ids.nextId(), "ADV"), "a lower import keeps the block");
+    }
+    
+    private static void advancePastRace() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            String prefix = "R" + round + "X";
+            IdAllocator ids = new IdAllocator(prefix, 1, 1, 1_000_000);
+            ids.nextId();
+            long imported = 500;
+            AtomicLong advancedAt = new AtomicLong(Long.MAX_VALUE);
+            List<long[]> allocations = new ArrayList<>(); // {start time, value}
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                List<long[]> mine = new ArrayList<>();
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 400; i++) {
+                        long started = System.nanoTime();
+                        mine.add(new long[] {started, IdAllocator.parseSequence(ids.nextId(), prefix)});
+                    }
+                    synchronized (allocations) {
+                        allocations.addAll(mine);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            ids.advancePast(imported);
+            advancedAt.set(System.nanoTime());
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            
+            Set<Long> seen = new HashSet<>();
+            for (long[] allocation : allocations) {
+                check(seen.add(allocation[1]), "duplicate ID " + allocation[1]);
+                if (allocation[0] > advancedAt.get()) {
+                    check(allocation[1] > imported, "ID " + allocation[1] + " handed out after advancePast(" + imported + ")");
+                }
+            }
+        }
+    }
+    
+    private static void parseSequence() {
+        checkEquals(42L, IdAllocator.parseSequence("TXN00042", "TXN"), "plain");
+        checkEquals(42L, IdAllocator.parseSequence("txn00042", "TXN"), "prefix case ignored");
+        checkEquals(-1L, IdAllocator.parseSequence("BK00042", "TXN"), "other prefix");
+        checkEquals(-1L, IdAllocator.parseSequence("TXN", "TXN"), "no digits");
+        checkEquals(-1L, IdAllocator.parseSequence("TXN4x", "TXN"), "not a number");
+        checkEquals(-1L, IdAllocator.parseSequence(null, "TXN"), "null");
+    }
+}
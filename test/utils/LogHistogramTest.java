@@ -0,0 +1,88 @@
+package utils;
+
+import support.Tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+public class LogHistogramTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("LogHistogramTest");
+        tests.run("an empty histogram reports zeros", LogHistogramTest::empty);
+        tests.run("values below 32 are exact", LogHistogramTest::exactSmallValues);
+        tests.run("large values stay within 1/16 relative error", LogHistogramTest::relativeError);
+        tests.run("negative and huge values are clamped", LogHistogramTest::clamping);
+        tests.run("merge equals recording both streams", LogHistogramTest::merge);
+        tests.finish();
+    }
+    
+    private static void empty() {
+        LogHistogram histogram = new LogHistogram();
+        checkEquals(0L, histogram.getCount(), "count");
+        checkEquals(0L, histogram.getPercentile(50), "median");
+        checkEquals(0.0, histogram.getMean(), "mean");
+        checkEquals(0L, histogram.getMax(), "max");
+    }
+    
+    private static void exactSmallValues() {
+        LogHistogram histogram = new LogHistogram();
+        for (int day = 1; day <= 30; day++) {
+            histogram.record(day);
+        }
+        checkEquals(30L, histogram.getCount(), "count");
+        checkEquals(15L, histogram.getPercentile(50), "median");
+        checkEquals(27L, histogram.getPercentile(90), "90th percentile");
+        checkEquals(1L, histogram.getPercentile(0), "minimum");
+        checkEquals(30L, histogram.getPercentile(100), "maximum");
+        checkEquals(15.5, histogram.getMean(), "mean");
+    }
+    
+    private static void relativeError() {
+        LogHistogram histogram = new LogHistogram();
+        Random random = new Random(7);
+        long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 32 + (long) (Math.exp(random.nextDouble() * 12));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] {1, 25, 50, 75, 90, 99, 99.9}) {
+            long actual = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getPercentile(percentile);
+            check(reported >= actual, "p" + percentile + " never below the true value");
+            check(reported - actual <= actual / 16, "p" + percentile + " reported " + reported + " for " + actual);
+        }
+        checkEquals(values[values.length - 1], histogram.getMax(), "max is exact");
+        checkEquals(histogram.getMax(), histogram.getPercentile(100), "p100 is the max");
+    }
+    
+    private static void clamping() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(-5);
+        checkEquals(0L, histogram.getPercentile(100), "negative counts as 0");
+        histogram.record(Long.MAX_VALUE);
+        checkEquals((1L << 21) - 1, histogram.getMax(), "clamped to the top bucket");
+        checkEquals((1L << 21) - 1, histogram.getPercentile(100), "top bucket reachable");
+    }
+    
+    private static void merge() {
+        LogHistogram first = new LogHistogram();
+        LogHistogram second = new LogHistogram();
+        LogHistogram both = new LogHistogram();
+        for (long value = 0; value < 5000; value += 7) {
+            (value % 2 == 0 ? first : second).record(value);
+            both.record(value);
+        }
+        first.merge(second);
+        checkEquals(both.getCount(), first.getCount(), "count");
+        checkEquals(both.getMax(), first.getMax(), "max");
+        checkEquals(both.getMean(), first.getMean(), "mean");
+        for (double percentile : new double[] {10, 50, 95}) {
+            checkEquals(both.getPercentile(percentile), first.getPercentile(percentile), "p" + percentile);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package utils;
+
+import support.Tests;
+
+import java.util.Arrays;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+import static support.Tests.checkThrows;
+
+/**
+ * CSV and JSON Lines records: what is written parses back unchanged
+ */
+public class RecordFormatTest {
+    private static final String[] COLUMNS = {"id", "title", "note", "count"};
+    private static final boolean[] NUMERIC = {false, false, false, true};
+    
+    private static final String[][] RECORDS = {
+        {"B1", "Plain", "NULL", "3"},
+        {"B2", "Commas, \"quotes\" and 'apostrophes'", "tab\there", "0"},
+        {"B3", "Ünïcödé — 日本語 📚", "back\\slash", "12"},
+        {"B4", "", " leading and trailing ", "-1"},
+        {"B5", "control \u0001 char", "slash / too", "7"},
+    };
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("RecordFormatTest");
+        tests.run("formats are picked by extension", RecordFormatTest::forFile);
+        tests.run("CSV records round-trip", () -> roundTrip(RecordFormat.CSV));
+        tests.run("JSON records round-trip", () -> roundTrip(RecordFormat.JSON));
+        tests.run("JSON writes numbers and null unquoted", RecordFormatTest::jsonTypes);
+        tests.run("CSV has a header of column names, JSON none", RecordFormatTest::csvHeader);
+        tests.run("malformed records are rejected", RecordFormatTest::malformed);
+        tests.finish();
+    }
+    
+    private static void forFile() {
+        checkEquals(RecordFormat.CSV, RecordFormat.forFile("out.CSV"), "csv");
+        checkEquals(RecordFormat.JSON, RecordFormat.forFile("out.json"), "json");
+        checkEquals(RecordFormat.JSON, RecordFormat.forFile("out.ndjson"), "ndjson");
+        check(RecordFormat.forFile("out.txt") == null, "other extension");
+    }
+    
+    private static void roundTrip(RecordFormat format) {
+        for (String[] record : RECORDS) {
+            StringBuilder line = new StringBuilder();
+            format.appendRecord(line, COLUMNS, record, NUMERIC);
+            check(line.indexOf("\n") < 0, "one line for " + record[0]);
+            String[] parsed = format.parseRecord(line.toString(), COLUMNS);
+            check(Arrays.equals(record, parsed), record[0] + " read back as " + Arrays.toString(parsed));
+        }
+    }
+    
+    private static void jsonTypes() {
+        StringBuilder line = new StringBuilder();
+        RecordFormat.JSON.appendRecord(line, COLUMNS, RECORDS[0], NUMERIC);
+        checkEquals("{\"id\":\"B1\",\"title\":\"Plain\",\"note\":null,\"count\":3}", line.toString(), "JSON line");
+        String[] reordered = RecordFormat.JSON.parseRecord(
+                "{\"count\":3,\"note\":null,\"title\":\"Plain\",\"id\":\"B1\"}", COLUMNS);
+        check(Arrays.equals(RECORDS[0], reordered), "keys in any order: " + Arrays.toString(reordered));
+    }
+    
+    private static void csvHeader() {
+        String header = RecordFormat.CSV.header(COLUMNS);
+        checkEquals("id,title,note,count", header, "header");
+        check(RecordFormat.JSON.header(COLUMNS) == null, "JSON has no header");
+    }
+    
+    private static void malformed() {
+        checkThrows(IllegalArgumentException.class,
+                () -> RecordFormat.CSV.parseRecord("B1,\"open,x,1", COLUMNS), "unterminated CSV quote");
+        checkThrows(IllegalArgumentException.class,
+                () -> RecordFormat.CSV.parseRecord("B1,x,1", COLUMNS), "missing CSV field");
+        checkThrows(IllegalArgumentException.class,
+                () -> RecordFormat.JSON.parseRecord("{\"id\":\"B1\"", COLUMNS), "unterminated JSON");
+        checkThrows(IllegalArgumentException.class,
+                () -> RecordFormat.JSON.parseRecord("{\"id\":\"B1\",\"title\":\"x\",\"count\":1}", COLUMNS),
+                "missing JSON key");
+    }
+}
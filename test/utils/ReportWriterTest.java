@@ -0,0 +1,125 @@
+package utils;
+
+import support.Tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Rows written through the shared line buffer, and the console pager
+ */
+public class ReportWriterTest {
+    private static final ReportWriter.RowFormatter<String> ROW = (row, line) -> line.append("row ").append(row);
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("ReportWriterTest");
+        tests.run("rows are written one per line", ReportWriterTest::writeRows);
+        tests.run("a short list is printed in full without a prompt", ReportWriterTest::shortList);
+        tests.run("the pager moves between pages", ReportWriterTest::paging);
+        tests.run("the pager exports the whole list", ReportWriterTest::pagerExport);
+        tests.run("the pager quits when input runs out", ReportWriterTest::inputRunsOut);
+        tests.run("an export without a file name fails", ReportWriterTest::emptyExportPath);
+        tests.finish();
+    }
+    
+    private static void writeRows() throws Exception {
+        List<String> rows = Arrays.asList("a much longer first row", "b", "", "d");
+        File file = new File("rows.txt");
+        try (ReportWriter out = ReportWriter.toFile(file.getPath())) {
+            out.println("header");
+            checkEquals(4, out.writeRows(rows, ROW), "rows written");
+            out.writeRows(rows, 1, 3, ROW);
+        }
+        checkEquals(Arrays.asList("header", "row a much longer first row", "row b", "row ", "row d", "row b", "row "),
+                    Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), "file contents");
+    }
+    
+    private static void shortList() {
+        String console = page(rows(ReportWriter.PAGE_SIZE), "");
+        check(console.contains("row " + ReportWriter.PAGE_SIZE), "last row printed");
+        check(console.contains("Total: " + ReportWriter.PAGE_SIZE), "total printed");
+        check(!console.contains("page 1"), "no page number");
+        check(!console.contains("> "), "no prompt");
+    }
+    
+    private static void paging() {
+        List<String> rows = rows(2 * ReportWriter.PAGE_SIZE + 5);
+        String console = page(rows, "n\np\ng\n3\nx\nq\n");
+        checkEquals(Arrays.asList(1, 2, 1, 3, 3), pagesShown(console), "pages shown");
+        check(console.contains("Showing 41-45 of 45"), "last page is partial");
+        check(console.contains("Invalid choice!"), "unknown command reported");
+        
+        console = page(rows, "g\nten\n\n\n\n");
+        checkEquals(Arrays.asList(1, 1, 2, 3), pagesShown(console), "bad page number keeps the page");
+        check(console.contains("Error: Invalid page number!"), "bad page number reported");
+    }
+    
+    private static void pagerExport() throws Exception {
+        List<String> rows = rows(3 * ReportWriter.PAGE_SIZE);
+        String console = page(rows, "e\nexport.txt\nq\n");
+        check(console.contains("Exported 60 rows to export.txt"), "export reported");
+        List<String> lines = Files.readAllLines(new File("export.txt").toPath(), StandardCharsets.UTF_8);
+        checkEquals(60, lines.size(), "every row exported");
+        checkEquals("row 60", lines.get(59), "last row exported");
+    }
+    
+    private static void inputRunsOut() {
+        String console = page(rows(2 * ReportWriter.PAGE_SIZE + 1), "n\n");
+        checkEquals(Arrays.asList(1, 2), pagesShown(console), "pages shown before input ran out");
+    }
+    
+    private static void emptyExportPath() {
+        boolean[] exported = new boolean[1];
+        String console = capture(() -> exported[0] = ReportWriter.export(rows(3), "", ROW));
+        check(!exported[0], "export failed");
+        check(console.contains("Error: File name cannot be empty!"), "error printed");
+    }
+    
+    /**
+     * Run the pager over the rows with the given typed input; returns what it printed
+     */
+    private static String page(List<String> rows, String typed) {
+        return capture(() -> ReportWriter.page(rows, "Rows", ROW, new Scanner(typed)));
+    }
+    
+    private static String capture(Runnable body) {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(console, true));
+        try {
+            body.run();
+        } finally {
+            System.setOut(original);
+        }
+        return new String(console.toByteArray());
+    }
+    
+    private static List<Integer> pagesShown(String console) {
+        List<Integer> pages = new ArrayList<>();
+        Matcher matcher = Pattern.compile("\\(page (\\d+) of").matcher(console);
+        while (matcher.find()) {
+            pages.add(Integer.parseInt(matcher.group(1)));
+        }
+        return pages;
+    }
+    
+    private static List<String> rows(int count) {
+        List<String> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(Integer.toString(i));
+        }
+        return rows;
+    }
+}
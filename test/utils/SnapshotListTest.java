@@ -0,0 +1,108 @@
+package utils;
+
+import support.Tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+import static support.Tests.checkThrows;
+
+public class SnapshotListTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("SnapshotListTest");
+        tests.run("a snapshot does not see later appends", SnapshotListTest::appendsInvisible);
+        tests.run("a snapshot does not see later removals", SnapshotListTest::removalsInvisible);
+        tests.run("appends grow past the initial capacity", SnapshotListTest::grows);
+        tests.run("remove matches by identity", SnapshotListTest::removeByIdentity);
+        tests.run("snapshots are read-only", SnapshotListTest::readOnly);
+        tests.run("readers only ever see whole appends", SnapshotListTest::concurrentReaders);
+        tests.finish();
+    }
+    
+    private static void appendsInvisible() {
+        SnapshotList<String> list = new SnapshotList<>(Arrays.asList("a", "b"));
+        List<String> before = list.snapshot();
+        list.add("c");
+        list.addAll(Arrays.asList("d", "e"));
+        checkEquals(Arrays.asList("a", "b"), before, "old snapshot");
+        checkEquals(Arrays.asList("a", "b", "c", "d", "e"), list.snapshot(), "new snapshot");
+        checkEquals(5, list.size(), "size");
+    }
+    
+    private static void removalsInvisible() {
+        SnapshotList<String> list = new SnapshotList<>(Arrays.asList("a", "b", "c", "d"));
+        List<String> before = list.snapshot();
+        check(list.remove(before.get(1)), "b removed");
+        list.removeAll(Arrays.asList(before.get(0), before.get(3)));
+        checkEquals(Arrays.asList("a", "b", "c", "d"), before, "old snapshot");
+        checkEquals(Collections.singletonList("c"), list.snapshot(), "new snapshot");
+        
+        // Appending after a removal must not write into the older view's array
+        list.add("x");
+        checkEquals("b", before.get(1), "old snapshot after append");
+    }
+    
+    private static void grows() {
+        SnapshotList<Integer> list = new SnapshotList<>(Collections.<Integer>emptyList());
+        check(list.isEmpty(), "starts empty");
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+        checkEquals(expected, list.snapshot(), "all appends kept in order");
+    }
+    
+    private static void removeByIdentity() {
+        String first = new String("same");
+        String second = new String("same");
+        SnapshotList<String> list = new SnapshotList<>(Arrays.asList(first, second));
+        check(!list.remove(new String("same")), "equal but distinct item not removed");
+        check(list.remove(second), "second removed");
+        check(list.snapshot().get(0) == first, "first kept");
+    }
+    
+    private static void readOnly() {
+        List<String> snapshot = new SnapshotList<>(Arrays.asList("a")).snapshot();
+        checkThrows(UnsupportedOperationException.class, () -> snapshot.add("b"), "add rejected");
+        checkThrows(UnsupportedOperationException.class, () -> snapshot.set(0, "b"), "set rejected");
+        checkThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1), "index past the view's size");
+    }
+    
+    private static void concurrentReaders() throws Exception {
+        SnapshotList<Integer> list = new SnapshotList<>(Collections.<Integer>emptyList());
+        AtomicReference<String> problem = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 50_000; i += 2) {
+                list.addAll(Arrays.asList(i, i + 1));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            while (writer.isAlive()) {
+                List<Integer> snapshot = list.snapshot();
+                if (snapshot.size() % 2 != 0) {
+                    problem.set("half of an addAll visible at size " + snapshot.size());
+                    return;
+                }
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.get(i) == null || snapshot.get(i) != i) {
+                        problem.set("slot " + i + " holds " + snapshot.get(i));
+                        return;
+                    }
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        checkEquals(null, problem.get(), "reader saw a consistent prefix");
+        checkEquals(50_000, list.size(), "all appended");
+    }
+}
@@ -0,0 +1,111 @@
+package utils;
+
+import support.Tests;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+import static support.Tests.checkThrows;
+
+public class SpaceSavingTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("SpaceSavingTest");
+        tests.run("counts are exact while every key fits", SpaceSavingTest::exactWhenRoomy);
+        tests.run("top returns the highest counts first", SpaceSavingTest::topOrdering);
+        tests.run("heavy hitters survive a skewed stream and bounds hold", SpaceSavingTest::skewedStream);
+        tests.run("clear forgets everything", SpaceSavingTest::clear);
+        tests.run("capacity must be positive", SpaceSavingTest::rejectsBadCapacity);
+        tests.finish();
+    }
+    
+    private static void exactWhenRoomy() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(4);
+        for (String key : Arrays.asList("a", "b", "a", "c", "a", "b")) {
+            sketch.offer(key);
+        }
+        checkEquals(3L, sketch.estimate("a"), "a");
+        checkEquals(2L, sketch.estimate("b"), "b");
+        checkEquals(1L, sketch.estimate("c"), "c");
+        checkEquals(0L, sketch.estimate("d"), "unseen key");
+        checkEquals(3, sketch.size(), "monitored keys");
+        checkEquals(6L, sketch.getTotal(), "total");
+        for (SpaceSaving.Entry<String> entry : sketch.top(10)) {
+            checkEquals(0L, entry.getError(), "no error for " + entry.getKey());
+        }
+    }
+    
+    private static void topOrdering() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(8);
+        offer(sketch, "low", 1);
+        offer(sketch, "high", 5);
+        offer(sketch, "mid", 3);
+        List<SpaceSaving.Entry<String>> top = sketch.top(2);
+        checkEquals(2, top.size(), "limited to n");
+        checkEquals("high", top.get(0).getKey(), "first");
+        checkEquals(5L, top.get(0).getCount(), "first count");
+        checkEquals("mid", top.get(1).getKey(), "second");
+        checkEquals(3, sketch.top(10).size(), "fewer keys than asked for");
+    }
+    
+    private static void skewedStream() {
+        int capacity = 20;
+        SpaceSaving<Integer> sketch = new SpaceSaving<>(capacity);
+        Map<Integer, Long> truth = new HashMap<>();
+        Random random = new Random(42);
+        int offers = 100_000;
+        for (int i = 0; i < offers; i++) {
+            // A few popular keys, then a long tail of 1000 rare ones
+            int key = random.nextInt(10) < 6 ? random.nextInt(5) : 5 + random.nextInt(1000);
+            sketch.offer(key);
+            truth.merge(key, 1L, Long::sum);
+        }
+        
+        long sum = 0;
+        for (SpaceSaving.Entry<Integer> entry : sketch.top(capacity)) {
+            long actual = truth.get(entry.getKey());
+            check(entry.getCount() >= actual, "never underestimates " + entry.getKey());
+            check(entry.getGuaranteedCount() <= actual, "guaranteed count is a lower bound for " + entry.getKey());
+            sum += entry.getCount();
+        }
+        checkEquals((long) offers, sum, "counts add up to the stream length");
+        checkEquals(capacity, sketch.size(), "bounded by capacity");
+        
+        for (Map.Entry<Integer, Long> entry : truth.entrySet()) {
+            if (entry.getValue() > offers / capacity) {
+                check(sketch.estimate(entry.getKey()) > 0, "frequent key " + entry.getKey() + " monitored");
+            }
+        }
+        for (SpaceSaving.Entry<Integer> entry : sketch.top(5)) {
+            check(entry.getKey() < 5, "top five are the popular keys, got " + entry.getKey());
+        }
+    }
+    
+    private static void clear() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        offer(sketch, "a", 3);
+        offer(sketch, "b", 2);
+        offer(sketch, "c", 1);
+        sketch.clear();
+        checkEquals(0, sketch.size(), "size");
+        checkEquals(0L, sketch.getTotal(), "total");
+        check(sketch.top(5).isEmpty(), "no top keys");
+        sketch.offer("d");
+        checkEquals(1L, sketch.estimate("d"), "usable after clear");
+    }
+    
+    private static void rejectsBadCapacity() {
+        checkThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0), "zero capacity");
+    }
+    
+    private static void offer(SpaceSaving<String> sketch, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.offer(key);
+        }
+    }
+}
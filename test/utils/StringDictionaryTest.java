@@ -0,0 +1,49 @@
+package utils;
+
+import support.Tests;
+
+import java.util.Locale;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+/**
+ * Dictionary codes: shared across case, unknown values stay unknown
+ */
+public class StringDictionaryTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("StringDictionaryTest");
+        tests.run("spellings differing only in case share a code", StringDictionaryTest::caseInsensitive);
+        tests.run("case folding ignores the default locale", StringDictionaryTest::localeIndependent);
+        tests.run("lookup does not register new values", StringDictionaryTest::lookupOnly);
+        tests.finish();
+    }
+    
+    private static void caseInsensitive() {
+        int code = StringDictionary.codeOf("Fiction");
+        checkEquals(code, StringDictionary.codeOf("FICTION"), "upper case");
+        checkEquals(code, StringDictionary.lookupCode("fiction"), "lookup in lower case");
+        check(code != StringDictionary.codeOf("Science"), "other value, other code");
+        checkEquals(StringDictionary.NO_CODE, StringDictionary.codeOf(null), "null");
+    }
+    
+    private static void localeIndependent() {
+        Locale original = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR")); // lowercases I to a dotless i
+        try {
+            int code = StringDictionary.codeOf("KIDS");
+            checkEquals(code, StringDictionary.codeOf("kids"), "KIDS and kids");
+            checkEquals(code, StringDictionary.lookupCode("Kids"), "lookup");
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+    
+    private static void lookupOnly() {
+        checkEquals(StringDictionary.NO_CODE, StringDictionary.lookupCode("Never Registered"), "unknown value");
+        checkEquals(StringDictionary.NO_CODE, StringDictionary.lookupCode("Never Registered"), "still unknown");
+        String first = StringDictionary.intern(new String("Reference"));
+        check(first == StringDictionary.intern(new String("Reference")), "interned to one instance");
+    }
+}
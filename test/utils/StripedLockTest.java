@@ -0,0 +1,98 @@
+package utils;
+
+import support.Tests;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static support.Tests.check;
+import static support.Tests.checkEquals;
+
+public class StripedLockTest {
+    
+    public static void main(String[] args) {
+        Tests tests = new Tests("StripedLockTest");
+        tests.run("keys differing only in case share a lock", StripedLockTest::caseInsensitive);
+        tests.run("case folding ignores the default locale", StripedLockTest::localeIndependent);
+        tests.run("same key serializes concurrent updates", StripedLockTest::serializesSameKey);
+        tests.run("lockAll takes each stripe once and unlockAll releases them", StripedLockTest::lockAllDistinct);
+        tests.run("lockAll in any key order does not deadlock", StripedLockTest::lockAllOrder);
+        tests.finish();
+    }
+    
+    private static void caseInsensitive() {
+        StripedLock locks = new StripedLock(16);
+        check(locks.get("MEM001") == locks.get("mem001"), "same stripe for MEM001 and mem001");
+        check(locks.get(null) != null, "null key still maps to a lock");
+    }
+    
+    private static void localeIndependent() {
+        Locale original = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR")); // lowercases I to a dotless i
+        try {
+            StripedLock locks = new StripedLock(1024);
+            check(locks.get("MIN001") == locks.get("min001"), "same stripe for MIN001 and min001");
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+    
+    private static void serializesSameKey() throws Exception {
+        StripedLock locks = new StripedLock(8);
+        int[] counter = new int[1];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Lock lock = locks.get("BOOK1");
+                    lock.lock();
+                    try {
+                        counter[0]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        checkEquals(80_000, counter[0], "increments under the key's lock");
+    }
+    
+    private static void lockAllDistinct() throws Exception {
+        StripedLock locks = new StripedLock(4);
+        List<Lock> acquired = locks.lockAll(Arrays.asList("a", "A", "b", "a"));
+        check(acquired.size() <= 2, "duplicate keys lock their stripe once");
+        StripedLock.unlockAll(acquired);
+        
+        // Another thread can take every stripe once they are released
+        CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            StripedLock.unlockAll(locks.lockAll(Arrays.asList("a", "b")));
+            done.countDown();
+        }).start();
+        check(done.await(5, TimeUnit.SECONDS), "stripes released by unlockAll");
+    }
+    
+    private static void lockAllOrder() throws Exception {
+        StripedLock locks = new StripedLock(64);
+        List<String> forward = Arrays.asList("k1", "k2", "k3", "k4", "k5");
+        List<String> backward = Arrays.asList("k5", "k4", "k3", "k2", "k1");
+        CountDownLatch done = new CountDownLatch(2);
+        for (List<String> keys : Arrays.asList(forward, backward)) {
+            new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    StripedLock.unlockAll(locks.lockAll(keys));
+                }
+                done.countDown();
+            }).start();
+        }
+        check(done.await(30, TimeUnit.SECONDS), "opposite key orders finished without deadlock");
+    }
+}